@@ -0,0 +1,179 @@
+package it.unisa.diem.wearable.adaptive;
+
+/**
+ * This class decides the sampling period of the sensors according to the motion of the wearer,
+ * without depending on Android.
+ *
+ * The controller receives the samples of the accelerometer and computes the variance of the magnitude
+ * of the acceleration over a sliding window. While the variance stays under a threshold for a whole window,
+ * the sampling period is doubled, up to the maximum period; as soon as the variance exceeds the threshold,
+ * the sampling period goes back to the minimum one, so the rate ramps up within one window
+ * from the beginning of the motion. The minimum and the maximum periods are the bounds set by the coordinator.
+ *
+ * The methods return the new sampling period when it changes, so that the caller can apply it to the sensors.
+ */
+public class AdaptiveSamplingController {
+
+    private static final int MAX_WINDOW_SAMPLES = 512;
+    private static final int MIN_WINDOW_SAMPLES = 2;
+    // The magnitudes are shifted by the gravity, so the sums do not lose precision
+    private static final double GRAVITY = 9.80665;
+
+    private final long windowNanos;
+    private final double varianceThreshold;
+    private final long[] timestamps;
+    private final double[] magnitudes;
+    private int head, size;
+    private double sum, sumOfSquares;
+
+    private boolean enabled;
+    private int minPeriodMs, maxPeriodMs;
+    private int periodMs;
+    private long quietSinceNanos;
+
+    /**
+     * @param windowMillis: the length of the sliding window, in milliseconds
+     * @param varianceThreshold: the variance of the magnitude of the acceleration, in (m/s^2)^2,
+     *                         under which the wearer is considered stationary
+     * @param minPeriodMs: the sampling period during the motion
+     * @param maxPeriodMs: the sampling period while the wearer is stationary
+     */
+    public AdaptiveSamplingController(long windowMillis, double varianceThreshold, int minPeriodMs, int maxPeriodMs) {
+        if(windowMillis <= 0 || varianceThreshold < 0)
+            throw new IllegalArgumentException("Invalid window or threshold!");
+        this.windowNanos = windowMillis * 1000000L;
+        this.varianceThreshold = varianceThreshold;
+        this.timestamps = new long[MAX_WINDOW_SAMPLES];
+        this.magnitudes = new double[MAX_WINDOW_SAMPLES];
+        this.enabled = true;
+        this.quietSinceNanos = -1;
+        setBounds(minPeriodMs, maxPeriodMs);
+        this.periodMs = this.minPeriodMs;
+    }
+
+    /**
+     * This method adds a sample of the accelerometer to the window and updates the sampling period.
+     *
+     * @param timestampNanos
+     * @param x
+     * @param y
+     * @param z
+     * @return the new sampling period, in milliseconds, or 0 if it does not change
+     */
+    public synchronized int update(long timestampNanos, float x, float y, float z) {
+        add(timestampNanos, Math.sqrt(x * x + y * y + z * z) - GRAVITY);
+        if(!enabled)
+            return 0;
+
+        if(getVariance() > varianceThreshold) {
+            quietSinceNanos = -1;
+            return changePeriod(minPeriodMs);
+        }
+        if(quietSinceNanos < 0 || size < MIN_WINDOW_SAMPLES) {
+            if(quietSinceNanos < 0)
+                quietSinceNanos = timestampNanos;
+            return 0;
+        }
+        if(timestampNanos - quietSinceNanos >= windowNanos && periodMs < maxPeriodMs) {
+            // A new quiet window is needed before the next step
+            quietSinceNanos = timestampNanos;
+            return changePeriod((int) Math.min(maxPeriodMs, 2L * periodMs));
+        }
+        return 0;
+    }
+
+    /**
+     * This method restores the minimum sampling period, e.g. when the significant motion sensor triggers.
+     *
+     * @return the new sampling period, in milliseconds, or 0 if it does not change
+     */
+    public synchronized int onSignificantMotion() {
+        quietSinceNanos = -1;
+        return enabled ? changePeriod(minPeriodMs) : 0;
+    }
+
+    /**
+     * This method sets the bounds of the sampling period, which is clamped between them.
+     *
+     * @param minPeriodMs
+     * @param maxPeriodMs: if it is lower than minPeriodMs, the period is fixed to minPeriodMs
+     * @return the current sampling period, in milliseconds
+     */
+    public synchronized int setBounds(int minPeriodMs, int maxPeriodMs) {
+        if(minPeriodMs <= 0)
+            throw new IllegalArgumentException("The sampling period is not positive!");
+        this.minPeriodMs = minPeriodMs;
+        this.maxPeriodMs = Math.max(minPeriodMs, maxPeriodMs);
+        periodMs = Math.max(this.minPeriodMs, Math.min(this.maxPeriodMs, periodMs));
+        return periodMs;
+    }
+
+    /**
+     * This method enables or disables the adaptation: when it is disabled, the period is the minimum one.
+     *
+     * @return the current sampling period, in milliseconds
+     */
+    public synchronized int setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        quietSinceNanos = -1;
+        if(!enabled)
+            periodMs = minPeriodMs;
+        return periodMs;
+    }
+
+    /**
+     * This method empties the window and restores the minimum sampling period, e.g. when the sensors are started.
+     */
+    public synchronized void reset() {
+        head = 0;
+        size = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        quietSinceNanos = -1;
+        periodMs = minPeriodMs;
+    }
+
+    public synchronized int getPeriodMs() {
+        return periodMs;
+    }
+
+    /**
+     * @return true if the sampling period has reached the maximum one
+     */
+    public synchronized boolean isIdle() {
+        return periodMs == maxPeriodMs && maxPeriodMs > minPeriodMs;
+    }
+
+    /**
+     * @return the sample variance of the magnitudes in the window
+     */
+    synchronized double getVariance() {
+        if(size < MIN_WINDOW_SAMPLES)
+            return 0;
+        return Math.max(0, (sumOfSquares - sum * sum / size) / (size - 1));
+    }
+
+    private int changePeriod(int newPeriodMs) {
+        if(newPeriodMs == periodMs)
+            return 0;
+        periodMs = newPeriodMs;
+        return periodMs;
+    }
+
+    private void add(long timestampNanos, double magnitude) {
+        // Eviction of the samples older than the window, or of the oldest one if the window is full
+        while(size > 0 && (size == MAX_WINDOW_SAMPLES ||
+                timestampNanos - timestamps[(head - size + MAX_WINDOW_SAMPLES) % MAX_WINDOW_SAMPLES] > windowNanos)) {
+            double old = magnitudes[(head - size + MAX_WINDOW_SAMPLES) % MAX_WINDOW_SAMPLES];
+            sum -= old;
+            sumOfSquares -= old * old;
+            size--;
+        }
+        timestamps[head] = timestampNanos;
+        magnitudes[head] = magnitude;
+        head = (head + 1) % MAX_WINDOW_SAMPLES;
+        size++;
+        sum += magnitude;
+        sumOfSquares += magnitude * magnitude;
+    }
+}
@@ -0,0 +1,13 @@
+package it.unisa.diem.wearable.buffer;
+
+/**
+ * This enumeration describes what the producer does when the ring buffer is full.
+ */
+public enum OverflowPolicy {
+    /** The oldest sample not yet consumed is overwritten by the new one. */
+    DROP_OLDEST,
+    /** The new sample is discarded. */
+    DROP_NEWEST,
+    /** The producer waits until the consumer frees a slot. */
+    BLOCK
+}
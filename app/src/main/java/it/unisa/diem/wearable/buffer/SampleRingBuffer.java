@@ -0,0 +1,159 @@
+package it.unisa.diem.wearable.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements a lock-free ring buffer of sensor samples between a single producer,
+ * i.e. the thread of the sensor events, and a single consumer, i.e. the thread which publishes the samples.
+ * So, a slow broker cannot stall the delivery of the sensor events.
+ *
+ * The samples are stored in preallocated parallel arrays of primitives, so neither offering
+ * nor draining a sample allocates objects. The capacity is rounded up to a power of two.
+ *
+ * The consumer reads a slot before claiming it with a compare-and-set on the head:
+ * if the producer has overwritten the slot in the meantime (DROP_OLDEST policy), the claim fails
+ * and the torn sample is discarded, because it has already been counted as dropped.
+ */
+public class SampleRingBuffer {
+
+    private static final long BLOCK_PARK_NANOS = 100000L;
+
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy policy;
+
+    private final int[] sensorTypes;
+    private final long[] timestamps;
+    private final float[] xs, ys, zs;
+
+    private final AtomicLong head;
+    private final AtomicLong tail;
+
+    // Written only by the producer
+    private volatile long droppedCount;
+    private volatile long highWaterMark;
+
+    public SampleRingBuffer(int capacity, OverflowPolicy policy) {
+        if(capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        int rounded = 1;
+        while(rounded < capacity)
+            rounded <<= 1;
+        this.capacity = rounded;
+        this.mask = this.capacity - 1;
+        this.policy = policy;
+
+        this.sensorTypes = new int[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.xs = new float[this.capacity];
+        this.ys = new float[this.capacity];
+        this.zs = new float[this.capacity];
+
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * This method adds a sample. It must be called only by the producer.
+     *
+     * @return true if the sample is stored, false if it is discarded (DROP_NEWEST policy)
+     */
+    public boolean offer(int sensorType, long timestampNanos, float x, float y, float z) {
+        long t = tail.get();
+        while(t - head.get() >= capacity) {
+            if(policy == OverflowPolicy.DROP_NEWEST) {
+                droppedCount++;
+                return false;
+            } else if(policy == OverflowPolicy.DROP_OLDEST) {
+                long h = head.get();
+                // If the claim fails, the consumer has just freed a slot
+                if(t - h >= capacity && head.compareAndSet(h, h + 1))
+                    droppedCount++;
+            } else {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                if(Thread.currentThread().isInterrupted())
+                    return false;
+            }
+        }
+
+        int index = (int) (t & mask);
+        sensorTypes[index] = sensorType;
+        timestamps[index] = timestampNanos;
+        xs[index] = x;
+        ys[index] = y;
+        zs[index] = z;
+        tail.lazySet(t + 1);
+
+        long size = t + 1 - head.get();
+        if(size > highWaterMark)
+            highWaterMark = size;
+        return true;
+    }
+
+    /**
+     * This method forwards the stored samples, in order, to a sink. It must be called only by the consumer.
+     *
+     * @param sink: the next stage of the pipeline
+     * @param maxSamples: the maximum number of samples to forward
+     * @return the number of forwarded samples
+     */
+    public int drain(SampleSink sink, int maxSamples) {
+        int drained = 0;
+        while(drained < maxSamples) {
+            long h = head.get();
+            if(h >= tail.get())
+                break;
+
+            int index = (int) (h & mask);
+            int sensorType = sensorTypes[index];
+            long timestampNanos = timestamps[index];
+            float x = xs[index], y = ys[index], z = zs[index];
+            if(!head.compareAndSet(h, h + 1))
+                continue;
+
+            sink.accept(sensorType, timestampNanos, x, y, z);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * This method discards all the stored samples. It must be called only by the consumer.
+     */
+    public void clear() {
+        while(true) {
+            long h = head.get();
+            long t = tail.get();
+            if(h >= t || head.compareAndSet(h, t))
+                return;
+        }
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of samples discarded because the buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the maximum number of samples stored at the same time
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+}
@@ -0,0 +1,17 @@
+package it.unisa.diem.wearable.buffer;
+
+/**
+ * This interface describes a consumer of the samples of the sensors, e.g. a stage of the pipeline
+ * which receives the samples drained from the ring buffer.
+ */
+public interface SampleSink {
+
+    /**
+     * @param sensorType: the type of the sensor which produced the sample (e.g. Sensor.TYPE_ACCELEROMETER)
+     * @param timestampNanos: the epoch timestamp of the sample, in nanoseconds
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void accept(int sensorType, long timestampNanos, float x, float y, float z);
+}
@@ -0,0 +1,198 @@
+package it.unisa.diem.wearable.clock;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class synchronizes an EpochClock with the clock of the coordinator through a request/response
+ * exchange over MQTT, like NTP:
+ *  - the device publishes "sequence,t1" on deviceID/time/request, where t1 is its monotonic time;
+ *  - the coordinator replies "sequence,t1,t2,t3" on deviceID/time/response, where t2 and t3 are its epoch times
+ *    of reception and of transmission;
+ *  - the device reads its monotonic time t4 at the reception, so the offset of the coordinator clock is
+ *    ((t2 - t1) + (t3 - t4)) / 2 and the round-trip delay is (t4 - t1) - (t3 - t2).
+ *
+ * The offsets measured with a longer delay are less accurate, because the paths can be asymmetric,
+ * so the clock follows the measure with the shortest delay among the last WINDOW ones,
+ * and the drift is the slope of the offsets of the accurate measures over time.
+ */
+public class ClockSync {
+
+    public static final String REQUEST_TOPIC = "/time/request";
+    public static final String RESPONSE_TOPIC = "/time/response";
+    public static final int WINDOW = 8;
+    /** The maximum drift accepted, as a fraction: the crystals of the devices stay well below 100 ppm */
+    static final double MAX_DRIFT = 500e-6;
+    /** The minimum time span of the measures used to estimate the drift, in nanoseconds */
+    static final long MIN_DRIFT_SPAN_NANOS = 60000000000L;
+
+    private final EpochClock clock;
+    private final long[] times, offsets, delays;
+    private int count, next;
+    private int sequence;
+    private boolean pending;
+    private long pendingT1;
+    private long lastOffsetNanos, lastDelayNanos;
+    private double drift;
+    private long rejectedCount;
+
+    public ClockSync(EpochClock clock) {
+        this.clock = clock;
+        this.times = new long[WINDOW];
+        this.offsets = new long[WINDOW];
+        this.delays = new long[WINDOW];
+    }
+
+    /**
+     * This method creates a new request: a previous request without response is forgotten.
+     *
+     * @return the payload of the request
+     */
+    public synchronized byte[] createRequest() {
+        sequence++;
+        pending = true;
+        pendingT1 = clock.nowMonotonicNanos();
+        return (sequence + "," + pendingT1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method creates the response of the coordinator to a request.
+     *
+     * @param request: the payload of the request
+     * @param receivedEpochNanos: the epoch time of the reception of the request (t2)
+     * @param sentEpochNanos: the epoch time of the transmission of the response (t3)
+     * @return the payload of the response, or null if the request is malformed
+     */
+    public static byte[] createResponse(byte[] request, long receivedEpochNanos, long sentEpochNanos) {
+        String[] fields = new String(request, StandardCharsets.UTF_8).split(",");
+        if(fields.length != 2)
+            return null;
+        try {
+            return (Integer.parseInt(fields[0].trim()) + "," + Long.parseLong(fields[1].trim()) + "," +
+                    receivedEpochNanos + "," + sentEpochNanos).getBytes(StandardCharsets.UTF_8);
+        } catch(NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * This method processes the response to the last request and updates the mapping of the clock.
+     *
+     * @param response: the payload of the response
+     * @param receivedMonotonicNanos: the monotonic time of the reception of the response (t4),
+     *                              read as soon as the message arrives
+     * @return true if the measure is accepted, false if the response is malformed, late or inconsistent
+     */
+    public synchronized boolean onResponse(byte[] response, long receivedMonotonicNanos) {
+        String[] fields = new String(response, StandardCharsets.UTF_8).split(",");
+        long t1, t2, t3;
+        try {
+            if(fields.length != 4 || !pending || Integer.parseInt(fields[0].trim()) != sequence)
+                return reject();
+            t1 = Long.parseLong(fields[1].trim());
+            t2 = Long.parseLong(fields[2].trim());
+            t3 = Long.parseLong(fields[3].trim());
+        } catch(NumberFormatException ex) {
+            return reject();
+        }
+        long t4 = receivedMonotonicNanos;
+        long delay = (t4 - t1) - (t3 - t2);
+        if(t1 != pendingT1 || delay < 0 || t3 < t2)
+            return reject();
+        pending = false;
+
+        // The offset is measured at the middle of the exchange
+        times[next] = t1 + (t4 - t1) / 2;
+        offsets[next] = ((t2 - t1) + (t3 - t4)) / 2;
+        delays[next] = delay;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+        update();
+        return true;
+    }
+
+    private boolean reject() {
+        rejectedCount++;
+        return false;
+    }
+
+    private void update() {
+        int best = 0;
+        for(int i = 1; i < count; i++)
+            if(delays[i] < delays[best])
+                best = i;
+        drift = estimateDrift(delays[best]);
+        lastOffsetNanos = offsets[best];
+        lastDelayNanos = delays[best];
+        clock.setSynchronized(times[best], offsets[best], drift);
+    }
+
+    /**
+     * This method fits a line to the offsets of the measures whose delay is at most twice the shortest one,
+     * if they span at least MIN_DRIFT_SPAN_NANOS; otherwise, the previous drift is kept.
+     */
+    private double estimateDrift(long minDelay) {
+        long limit = 2 * minDelay;
+        int n = 0;
+        long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+        for(int i = 0; i < count; i++) {
+            if(delays[i] > limit)
+                continue;
+            n++;
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+        }
+        if(n < 3 || maxTime - minTime < MIN_DRIFT_SPAN_NANOS)
+            return drift;
+
+        // The values are relative to the first measure, so the doubles keep their precision
+        long baseOffset = offsets[0];
+        double meanTime = 0, meanOffset = 0;
+        for(int i = 0; i < count; i++) {
+            if(delays[i] > limit)
+                continue;
+            meanTime += (times[i] - minTime) / (double) n;
+            meanOffset += (offsets[i] - baseOffset) / (double) n;
+        }
+        double covariance = 0, variance = 0;
+        for(int i = 0; i < count; i++) {
+            if(delays[i] > limit)
+                continue;
+            double dt = (times[i] - minTime) - meanTime;
+            covariance += dt * ((offsets[i] - baseOffset) - meanOffset);
+            variance += dt * dt;
+        }
+        return Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, covariance / variance));
+    }
+
+    /**
+     * @return the number of measures in the window
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the offset of the measure with the shortest delay, in nanoseconds
+     */
+    public synchronized long getOffsetNanos() {
+        return lastOffsetNanos;
+    }
+
+    /**
+     * @return the shortest round-trip delay of the window, in nanoseconds
+     */
+    public synchronized long getDelayNanos() {
+        return lastDelayNanos;
+    }
+
+    /**
+     * @return the estimated drift, as a fraction
+     */
+    public synchronized double getDrift() {
+        return drift;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+}
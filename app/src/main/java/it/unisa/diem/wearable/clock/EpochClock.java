@@ -0,0 +1,123 @@
+package it.unisa.diem.wearable.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class converts the timestamps of a monotonic clock to epoch timestamps in nanoseconds.
+ *
+ * The offset between the two clocks is measured once by calibrate() and cached, so a conversion
+ * is an addition on a field read, without reading the clocks or allocating anything. When the clock
+ * is synchronized with the coordinator by ClockSync, the offset and the drift measured by the exchange
+ * replace the calibrated offset, so the timestamps of different devices refer to the same clock.
+ */
+public class EpochClock {
+
+    private static final long CALIBRATION_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final TimeSource source;
+    private volatile Mapping mapping;
+    private volatile long calibratedOffsetNanos;
+
+    public EpochClock(TimeSource source) {
+        this.source = source;
+        calibrate();
+    }
+
+    /**
+     * This method measures the offset between the wall clock and the monotonic clock.
+     * The wall clock has a resolution of a millisecond, so it is read until it ticks and the offset
+     * is taken at the tick, which is far more precise than a single reading.
+     * If the clock is not synchronized, the new offset is used by the following conversions.
+     *
+     * @return the offset, in nanoseconds
+     */
+    public long calibrate() {
+        long startMillis = source.currentTimeMillis();
+        long deadline = source.monotonicNanos() + CALIBRATION_TIMEOUT_NANOS;
+        long monotonic, millis;
+        do {
+            monotonic = source.monotonicNanos();
+            millis = source.currentTimeMillis();
+        } while(millis == startMillis && monotonic < deadline);
+
+        long offset = TimeUnit.MILLISECONDS.toNanos(millis) - monotonic;
+        calibratedOffsetNanos = offset;
+        synchronized (this) {
+            if(mapping == null || !mapping.synchronizedClock)
+                mapping = new Mapping(0, offset, 0, false);
+        }
+        return offset;
+    }
+
+    /**
+     * This method sets the mapping measured by the synchronization with the coordinator:
+     * epoch = monotonic + offset + drift * (monotonic - reference).
+     *
+     * @param referenceNanos: the monotonic time at which the offset is measured
+     * @param offsetNanos: the offset at the reference time
+     * @param drift: the drift of the monotonic clock, as a fraction (e.g. 2e-5 for 20 ppm)
+     */
+    public synchronized void setSynchronized(long referenceNanos, long offsetNanos, double drift) {
+        mapping = new Mapping(referenceNanos, offsetNanos, drift, true);
+    }
+
+    /**
+     * @param monotonicNanos: a timestamp of the monotonic clock, e.g. SensorEvent.timestamp
+     * @return the epoch timestamp, in nanoseconds
+     */
+    public long toEpochNanos(long monotonicNanos) {
+        return mapping.toEpochNanos(monotonicNanos);
+    }
+
+    public long nowMonotonicNanos() {
+        return source.monotonicNanos();
+    }
+
+    public long nowEpochNanos() {
+        return toEpochNanos(source.monotonicNanos());
+    }
+
+    public boolean isSynchronized() {
+        return mapping.synchronizedClock;
+    }
+
+    /**
+     * @return the offset between the wall clock and the monotonic clock measured by the last calibration
+     */
+    public long getCalibratedOffsetNanos() {
+        return calibratedOffsetNanos;
+    }
+
+    /**
+     * @return the current offset between the epoch and the monotonic clock used by the conversions
+     */
+    public long getOffsetNanos() {
+        long now = source.monotonicNanos();
+        return toEpochNanos(now) - now;
+    }
+
+    /**
+     * This class holds an immutable mapping, so a conversion reads a consistent offset and drift.
+     */
+    private static final class Mapping {
+
+        final long referenceNanos;
+        final long offsetNanos;
+        final double drift;
+        final boolean synchronizedClock;
+
+        Mapping(long referenceNanos, long offsetNanos, double drift, boolean synchronizedClock) {
+            this.referenceNanos = referenceNanos;
+            this.offsetNanos = offsetNanos;
+            this.drift = drift;
+            this.synchronizedClock = synchronizedClock;
+        }
+
+        long toEpochNanos(long monotonicNanos) {
+            long epoch = monotonicNanos + offsetNanos;
+            if(drift != 0)
+                epoch += (long) ((monotonicNanos - referenceNanos) * drift);
+            return epoch;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package it.unisa.diem.wearable.clock;
+
+/**
+ * This interface describes the clocks read by an EpochClock: a monotonic clock with nanosecond resolution,
+ * which is the time base of the timestamps to convert (on Android, SystemClock.elapsedRealtimeNanos(),
+ * the time base of SensorEvent.timestamp), and the wall clock.
+ */
+public interface TimeSource {
+
+    /**
+     * @return the current time of the monotonic clock, in nanoseconds
+     */
+    public long monotonicNanos();
+
+    /**
+     * @return the current epoch time of the wall clock, in milliseconds
+     */
+    public long currentTimeMillis();
+}
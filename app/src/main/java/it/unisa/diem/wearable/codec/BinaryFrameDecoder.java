@@ -0,0 +1,29 @@
+package it.unisa.diem.wearable.codec;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * This class decodes the frames of the binary codec, which are concatenations of samples
+ * of BinaryPayloadCodec.FRAME_SIZE bytes. The type of the frame is the type of its first sample.
+ */
+public class BinaryFrameDecoder implements FrameDecoder {
+
+    @Override
+    public void decode(byte[] payload, int offset, int length, DecodedFrame frame) throws DataFormatException {
+        if(length == 0 || length % BinaryPayloadCodec.FRAME_SIZE != 0)
+            throw new DataFormatException("The length is not a multiple of the sample size!");
+        int count = length / BinaryPayloadCodec.FRAME_SIZE;
+        frame.reset(BinaryPayloadCodec.readSensorType(payload, offset), count);
+
+        long[] timestamps = frame.timestamps();
+        float[] xs = frame.xs(), ys = frame.ys(), zs = frame.zs();
+        for(int i = 0, position = offset; i < count; i++, position += BinaryPayloadCodec.FRAME_SIZE) {
+            if(payload[position] != BinaryPayloadCodec.VERSION)
+                throw new DataFormatException("Unknown sample version!");
+            timestamps[i] = BinaryPayloadCodec.readTimestampNanos(payload, position);
+            xs[i] = BinaryPayloadCodec.readValue(payload, position, 0);
+            ys[i] = BinaryPayloadCodec.readValue(payload, position, 1);
+            zs[i] = BinaryPayloadCodec.readValue(payload, position, 2);
+        }
+    }
+}
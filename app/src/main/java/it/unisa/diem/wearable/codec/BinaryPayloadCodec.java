@@ -0,0 +1,82 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class implements a compact binary codec with a fixed layout.
+ * Every sample takes FRAME_SIZE bytes, written in big-endian order:
+ *
+ *  offset  0: version of the layout (1 byte)
+ *  offset  1: type of the sensor (1 byte, unsigned)
+ *  offset  2: epoch timestamp in nanoseconds (8 bytes)
+ *  offset 10: x as float32 (4 bytes)
+ *  offset 14: y as float32 (4 bytes)
+ *  offset 18: z as float32 (4 bytes)
+ *
+ * The static read methods allow a coordinator to decode the frames.
+ */
+public class BinaryPayloadCodec implements PayloadCodec {
+
+    public static final String NAME = "binary";
+    public static final byte VERSION = 1;
+    public static final int FRAME_SIZE = 22;
+
+    @Override
+    public int maxSampleSize() {
+        return FRAME_SIZE;
+    }
+
+    @Override
+    public boolean isFixedSize() {
+        return true;
+    }
+
+    @Override
+    public int encode(int sensorType, long timestampNanos, float x, float y, float z,
+                      byte[] buffer, int offset) {
+        buffer[offset] = VERSION;
+        buffer[offset + 1] = (byte) sensorType;
+        writeLong(buffer, offset + 2, timestampNanos);
+        writeInt(buffer, offset + 10, Float.floatToRawIntBits(x));
+        writeInt(buffer, offset + 14, Float.floatToRawIntBits(y));
+        writeInt(buffer, offset + 18, Float.floatToRawIntBits(z));
+        return FRAME_SIZE;
+    }
+
+    public static int readSensorType(byte[] buffer, int offset) {
+        return buffer[offset + 1] & 0xFF;
+    }
+
+    public static long readTimestampNanos(byte[] buffer, int offset) {
+        return readLong(buffer, offset + 2);
+    }
+
+    /**
+     * @param axis: 0 for x, 1 for y and 2 for z
+     * @return the value of the given axis of the frame starting at offset
+     */
+    public static float readValue(byte[] buffer, int offset, int axis) {
+        return Float.intBitsToFloat(readInt(buffer, offset + 10 + 4 * axis));
+    }
+
+    static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    static void writeLong(byte[] buffer, int offset, long value) {
+        writeInt(buffer, offset, (int) (value >>> 32));
+        writeInt(buffer, offset + 4, (int) value);
+    }
+
+    static int readInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24) |
+                ((buffer[offset + 1] & 0xFF) << 16) |
+                ((buffer[offset + 2] & 0xFF) << 8) |
+                (buffer[offset + 3] & 0xFF);
+    }
+
+    static long readLong(byte[] buffer, int offset) {
+        return ((long) readInt(buffer, offset) << 32) | (readInt(buffer, offset + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,64 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class holds the samples of a decoded window as columns of primitives.
+ * The columns grow when needed, so the same instance can be reused for every frame.
+ */
+public class DecodedFrame {
+
+    private int sensorType;
+    private int count;
+    private long[] timestamps = new long[0];
+    private float[] xs = new float[0], ys = new float[0], zs = new float[0];
+
+    void reset(int sensorType, int count) {
+        this.sensorType = sensorType;
+        this.count = count;
+        if(timestamps.length < count) {
+            timestamps = new long[count];
+            xs = new float[count];
+            ys = new float[count];
+            zs = new float[count];
+        }
+    }
+
+    public int getSensorType() {
+        return sensorType;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    public float getX(int i) {
+        return xs[i];
+    }
+
+    public float getY(int i) {
+        return ys[i];
+    }
+
+    public float getZ(int i) {
+        return zs[i];
+    }
+
+    long[] timestamps() {
+        return timestamps;
+    }
+
+    float[] xs() {
+        return xs;
+    }
+
+    float[] ys() {
+        return ys;
+    }
+
+    float[] zs() {
+        return zs;
+    }
+}
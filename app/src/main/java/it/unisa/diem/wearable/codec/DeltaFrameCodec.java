@@ -0,0 +1,108 @@
+package it.unisa.diem.wearable.codec;
+
+import java.util.zip.Deflater;
+
+/**
+ * This class implements a columnar codec for windows of samples, which exploits
+ * the correlation between consecutive samples of a sensor.
+ *
+ * After a header of two bytes (version and flags), the body contains the type of the sensor,
+ * the number of samples and the precision as variable-length integers, followed by four columns:
+ *  - timestamps: the first timestamp, the first delta and then the deltas of the deltas,
+ *    which are almost zero for a regular sampling period;
+ *  - x, y and z: the values quantized to the given number of decimal digits
+ *    (the same precision as the text format by default), the first one followed by the deltas.
+ * All the numbers are zig-zag encoded variable-length integers.
+ * Optionally, the body is further compressed with Deflate (FLAG_DEFLATE).
+ *
+ * Frames are decoded by DeltaFrameDecoder.
+ */
+public class DeltaFrameCodec implements FrameCodec {
+
+    public static final String NAME = "delta";
+    public static final String DEFLATE_NAME = "delta-deflate";
+    public static final byte VERSION = 1;
+    public static final byte FLAG_DEFLATE = 1;
+    public static final int DEFAULT_PRECISION = 5;
+    static final int HEADER_SIZE = 2;
+
+    private final boolean deflate;
+    private final int precision;
+    private final double scale;
+    private final Deflater deflater;
+    private byte[] body;
+
+    /**
+     * @param precision: the number of decimal digits kept for the values
+     * @param deflate: true if the body has to be compressed with Deflate
+     */
+    public DeltaFrameCodec(int precision, boolean deflate) {
+        if(precision < 0 || precision > 9)
+            throw new IllegalArgumentException("The precision must be between 0 and 9 digits!");
+        this.precision = precision;
+        this.scale = Math.pow(10, precision);
+        this.deflate = deflate;
+        this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.body = new byte[0];
+    }
+
+    private static int maxBodySize(int samples) {
+        return 3 * VarInts.MAX_VARLONG_SIZE + samples * 4 * VarInts.MAX_VARLONG_SIZE;
+    }
+
+    @Override
+    public int maxFrameSize(int samples) {
+        int maxBody = maxBodySize(samples);
+        // Deflate can slightly expand incompressible data
+        return HEADER_SIZE + (deflate ? maxBody + maxBody / 8 + 64 : maxBody);
+    }
+
+    @Override
+    public int encode(int sensorType, long[] timestamps, float[] xs, float[] ys, float[] zs, int count,
+                      byte[] buffer, int offset) {
+        buffer[offset] = VERSION;
+        buffer[offset + 1] = deflate ? FLAG_DEFLATE : 0;
+        if(!deflate)
+            return HEADER_SIZE + encodeBody(sensorType, timestamps, xs, ys, zs, count, buffer, offset + HEADER_SIZE);
+
+        int maxBody = maxBodySize(count);
+        if(body.length < maxBody)
+            body = new byte[maxBody];
+        int bodyLength = encodeBody(sensorType, timestamps, xs, ys, zs, count, body, 0);
+        deflater.reset();
+        deflater.setInput(body, 0, bodyLength);
+        deflater.finish();
+        int compressed = deflater.deflate(buffer, offset + HEADER_SIZE, maxFrameSize(count) - HEADER_SIZE);
+        return HEADER_SIZE + compressed;
+    }
+
+    private int encodeBody(int sensorType, long[] timestamps, float[] xs, float[] ys, float[] zs, int count,
+                           byte[] buffer, int offset) {
+        int position = VarInts.writeVarLong(buffer, offset, sensorType);
+        position = VarInts.writeVarLong(buffer, position, count);
+        position = VarInts.writeVarLong(buffer, position, precision);
+
+        long previous = 0, previousDelta = 0;
+        for(int i = 0; i < count; i++) {
+            long delta = timestamps[i] - previous;
+            position = VarInts.writeVarLong(buffer, position, VarInts.zigZag(i < 2 ? delta : delta - previousDelta));
+            previousDelta = i == 0 ? 0 : delta;
+            previous = timestamps[i];
+        }
+
+        position = encodeColumn(xs, count, buffer, position);
+        position = encodeColumn(ys, count, buffer, position);
+        position = encodeColumn(zs, count, buffer, position);
+        return position - offset;
+    }
+
+    private int encodeColumn(float[] values, int count, byte[] buffer, int position) {
+        long previous = 0;
+        for(int i = 0; i < count; i++) {
+            long quantized = Math.round(values[i] * scale);
+            position = VarInts.writeVarLong(buffer, position, VarInts.zigZag(quantized - previous));
+            previous = quantized;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,94 @@
+package it.unisa.diem.wearable.codec;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class decodes the frames produced by DeltaFrameCodec, e.g. on the coordinator.
+ * Instances are not thread-safe.
+ */
+public class DeltaFrameDecoder implements FrameDecoder {
+
+    private final Inflater inflater;
+    private final int[] position;
+    private byte[] body;
+
+    public DeltaFrameDecoder() {
+        inflater = new Inflater();
+        position = new int[1];
+        body = new byte[1024];
+    }
+
+    /**
+     * This method decodes a frame.
+     *
+     * @param payload
+     * @param offset: the position of the frame in the payload
+     * @param length: the length of the frame
+     * @param frame: the destination of the samples
+     * @throws DataFormatException if the frame is malformed or has an unknown version
+     */
+    @Override
+    public void decode(byte[] payload, int offset, int length, DecodedFrame frame) throws DataFormatException {
+        if(length < DeltaFrameCodec.HEADER_SIZE || payload[offset] != DeltaFrameCodec.VERSION)
+            throw new DataFormatException("Unknown frame version!");
+
+        byte[] source = payload;
+        position[0] = offset + DeltaFrameCodec.HEADER_SIZE;
+        if((payload[offset + 1] & DeltaFrameCodec.FLAG_DEFLATE) != 0) {
+            inflate(payload, offset + DeltaFrameCodec.HEADER_SIZE, length - DeltaFrameCodec.HEADER_SIZE);
+            source = body;
+            position[0] = 0;
+        }
+
+        try {
+            int sensorType = (int) VarInts.readVarLong(source, position);
+            int count = (int) VarInts.readVarLong(source, position);
+            double scale = Math.pow(10, VarInts.readVarLong(source, position));
+            if(count < 0)
+                throw new DataFormatException("Negative number of samples!");
+            frame.reset(sensorType, count);
+
+            long[] timestamps = frame.timestamps();
+            long previous = 0, previousDelta = 0;
+            for(int i = 0; i < count; i++) {
+                long value = VarInts.unZigZag(VarInts.readVarLong(source, position));
+                long delta = i < 2 ? value : value + previousDelta;
+                timestamps[i] = previous + delta;
+                previousDelta = i == 0 ? 0 : delta;
+                previous = timestamps[i];
+            }
+
+            decodeColumn(source, frame.xs(), count, scale);
+            decodeColumn(source, frame.ys(), count, scale);
+            decodeColumn(source, frame.zs(), count, scale);
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new DataFormatException("Truncated or malformed frame!");
+        }
+    }
+
+    private void decodeColumn(byte[] source, float[] values, int count, double scale) {
+        long previous = 0;
+        for(int i = 0; i < count; i++) {
+            previous += VarInts.unZigZag(VarInts.readVarLong(source, position));
+            values[i] = (float) (previous / scale);
+        }
+    }
+
+    private void inflate(byte[] payload, int offset, int length) throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(payload, offset, length);
+        int inflated = 0;
+        while(!inflater.finished()) {
+            if(inflated == body.length) {
+                byte[] larger = new byte[body.length * 2];
+                System.arraycopy(body, 0, larger, 0, inflated);
+                body = larger;
+            }
+            int n = inflater.inflate(body, inflated, body.length - inflated);
+            if(n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                throw new DataFormatException("Truncated compressed frame!");
+            inflated += n;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This interface describes a codec which converts a window of samples of the same sensor
+ * into the payload of a single MQTT message.
+ *
+ * The samples are given as columns of primitives, so that a codec can exploit the correlation
+ * between consecutive samples. Implementations are not thread-safe.
+ */
+public interface FrameCodec {
+
+    /**
+     * @param samples: the number of samples of the window
+     * @return the maximum number of bytes that the encoded window can take
+     */
+    public int maxFrameSize(int samples);
+
+    /**
+     * This method encodes a window of samples into the buffer, starting from the given offset.
+     *
+     * @param sensorType: the type of the sensor which produced the samples
+     * @param timestamps: the epoch timestamps of the samples, in nanoseconds
+     * @param xs: the first values of the samples
+     * @param ys: the second values of the samples
+     * @param zs: the third values of the samples
+     * @param count: the number of samples of the window
+     * @param buffer: the destination buffer, at least maxFrameSize(count) bytes long after the offset
+     * @param offset: the position in the buffer of the first byte to write
+     * @return the number of bytes written
+     */
+    public int encode(int sensorType, long[] timestamps, float[] xs, float[] ys, float[] zs, int count,
+                      byte[] buffer, int offset);
+}
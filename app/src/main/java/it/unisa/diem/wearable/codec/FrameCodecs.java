@@ -0,0 +1,24 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class allows to select the codec of the windows of samples through its name,
+ * e.g. the one written in the "configuration.xml" resource:
+ * "text" and "binary" concatenate the samples, while "delta" and "delta-deflate" use the columnar codec.
+ */
+public final class FrameCodecs {
+
+    private FrameCodecs() {
+    }
+
+    /**
+     * @param name: the name of the codec
+     * @return a new instance of the codec; the text codec if the name is unknown
+     */
+    public static FrameCodec forName(String name) {
+        if(DeltaFrameCodec.NAME.equals(name))
+            return new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, false);
+        if(DeltaFrameCodec.DEFLATE_NAME.equals(name))
+            return new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, true);
+        return new SampleFrameCodec(PayloadCodecs.forName(name));
+    }
+}
@@ -0,0 +1,22 @@
+package it.unisa.diem.wearable.codec;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * This interface describes a decoder of the payloads produced by a FrameCodec, e.g. on the coordinator.
+ * The samples are written into a DecodedFrame, which can be reused for every payload.
+ * Implementations are not thread-safe.
+ */
+public interface FrameDecoder {
+
+    /**
+     * This method decodes a frame.
+     *
+     * @param payload
+     * @param offset: the position of the frame in the payload
+     * @param length: the length of the frame
+     * @param frame: the destination of the samples
+     * @throws DataFormatException if the frame is malformed
+     */
+    public void decode(byte[] payload, int offset, int length, DecodedFrame frame) throws DataFormatException;
+}
@@ -0,0 +1,23 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class allows to select the decoder of the windows of samples through the name of their codec,
+ * the same name accepted by FrameCodecs.
+ */
+public final class FrameDecoders {
+
+    private FrameDecoders() {
+    }
+
+    /**
+     * @param name: the name of the codec
+     * @return a new instance of the decoder; the text decoder if the name is unknown
+     */
+    public static FrameDecoder forName(String name) {
+        if(BinaryPayloadCodec.NAME.equals(name))
+            return new BinaryFrameDecoder();
+        if(DeltaFrameCodec.NAME.equals(name) || DeltaFrameCodec.DEFLATE_NAME.equals(name))
+            return new DeltaFrameDecoder();
+        return new TextFrameDecoder();
+    }
+}
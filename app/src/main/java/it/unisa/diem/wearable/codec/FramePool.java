@@ -0,0 +1,51 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class implements a pool of byte arrays with the same size, used as payloads of MQTT messages.
+ *
+ * A payload can be reused only after its publication is completed, because the MQTT client keeps
+ * a reference to it until the message is delivered. So, the arrays are taken through acquire()
+ * and given back through release() when the publication listener is notified.
+ * When the pool is empty, a new array is allocated instead of waiting.
+ */
+public class FramePool {
+
+    private final int frameSize;
+    private final byte[][] frames;
+    private int available;
+
+    public FramePool(int frameSize, int capacity) {
+        this.frameSize = frameSize;
+        this.frames = new byte[capacity][];
+        this.available = 0;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @param length: the exact length of the requested array
+     * @return a pooled array if the length is equal to the frame size, a new array otherwise
+     */
+    public synchronized byte[] acquire(int length) {
+        if(length != frameSize)
+            return new byte[length];
+        if(available == 0)
+            return new byte[frameSize];
+        byte[] frame = frames[--available];
+        frames[available] = null;
+        return frame;
+    }
+
+    /**
+     * This method gives back an array to the pool.
+     * Arrays with a different size or exceeding the capacity are left to the garbage collector.
+     *
+     * @param frame
+     */
+    public synchronized void release(byte[] frame) {
+        if(frame != null && frame.length == frameSize && available < frames.length)
+            frames[available++] = frame;
+    }
+}
@@ -0,0 +1,37 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This interface describes a codec which converts a single sensor sample
+ * into the payload of an MQTT message.
+ *
+ * A codec writes the sample into a buffer provided by the caller, so that
+ * the caller can reuse the same buffer for every event and no object is allocated
+ * on the hot path. Implementations are not thread-safe.
+ */
+public interface PayloadCodec {
+
+    /**
+     * @return the maximum number of bytes that a single encoded sample can take
+     */
+    public int maxSampleSize();
+
+    /**
+     * @return true if every encoded sample takes exactly maxSampleSize() bytes
+     */
+    public boolean isFixedSize();
+
+    /**
+     * This method encodes a sample into the buffer, starting from the given offset.
+     *
+     * @param sensorType: the type of the sensor which produced the sample (e.g. Sensor.TYPE_ACCELEROMETER)
+     * @param timestampNanos: the epoch timestamp of the sample, in nanoseconds
+     * @param x: the first value of the sample
+     * @param y: the second value of the sample
+     * @param z: the third value of the sample
+     * @param buffer: the destination buffer, at least maxSampleSize() bytes long after the offset
+     * @param offset: the position in the buffer of the first byte to write
+     * @return the number of bytes written
+     */
+    public int encode(int sensorType, long timestampNanos, float x, float y, float z,
+                      byte[] buffer, int offset);
+}
@@ -0,0 +1,20 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class allows to select a codec through its name, e.g. the one written in the "configuration.xml" resource.
+ */
+public final class PayloadCodecs {
+
+    private PayloadCodecs() {
+    }
+
+    /**
+     * @param name: the name of the codec
+     * @return a new instance of the codec; the text codec if the name is unknown
+     */
+    public static PayloadCodec forName(String name) {
+        if(BinaryPayloadCodec.NAME.equals(name))
+            return new BinaryPayloadCodec();
+        return new TextPayloadCodec();
+    }
+}
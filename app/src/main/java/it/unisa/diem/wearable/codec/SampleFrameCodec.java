@@ -0,0 +1,36 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class adapts a codec of single samples to windows of samples.
+ * Fixed-size samples are simply concatenated, while variable-size samples (e.g. the text codec)
+ * are separated by a new line.
+ */
+public class SampleFrameCodec implements FrameCodec {
+
+    public static final byte SEPARATOR = '\n';
+
+    private final PayloadCodec codec;
+
+    public SampleFrameCodec(PayloadCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public int maxFrameSize(int samples) {
+        if(codec.isFixedSize())
+            return samples * codec.maxSampleSize();
+        return samples * (codec.maxSampleSize() + 1);
+    }
+
+    @Override
+    public int encode(int sensorType, long[] timestamps, float[] xs, float[] ys, float[] zs, int count,
+                      byte[] buffer, int offset) {
+        int position = offset;
+        for(int i = 0; i < count; i++) {
+            if(i > 0 && !codec.isFixedSize())
+                buffer[position++] = SEPARATOR;
+            position += codec.encode(sensorType, timestamps[i], xs[i], ys[i], zs[i], buffer, position);
+        }
+        return position - offset;
+    }
+}
@@ -0,0 +1,173 @@
+package it.unisa.diem.wearable.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.zip.DataFormatException;
+
+/**
+ * This class decodes the frames of the text codec, whose samples are lines like "dd.MM.yy HH:mm:ss.SSS;x,y,z",
+ * and the text payloads of the locations, "dd.MM.yy HH:mm:ss.SSS;latitude,longitude" (z is 0).
+ * The text format does not contain the type of the sensor, so the type of the frame is always 0.
+ *
+ * The bytes are parsed in place, without creating Strings: the epoch of the hour of the timestamp
+ * is computed through a Calendar only when the hour changes, in the default time zone
+ * like the formatter of the device, and the years are in the 2000s.
+ * The timestamps have the precision of the text format, i.e. milliseconds.
+ */
+public class TextFrameDecoder implements FrameDecoder {
+
+    private static final int TIMESTAMP_LENGTH = TextPayloadCodec.TIMESTAMP_PATTERN.length();
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final Calendar calendar;
+    private final int[] position;
+    private int cachedHour;
+    private long cachedHourMillis;
+
+    public TextFrameDecoder() {
+        calendar = Calendar.getInstance();
+        calendar.setLenient(false);
+        position = new int[1];
+        cachedHour = -1;
+    }
+
+    @Override
+    public void decode(byte[] payload, int offset, int length, DecodedFrame frame) throws DataFormatException {
+        int end = offset + length;
+        int count = length > 0 ? 1 : 0;
+        for(int i = offset; i < end; i++)
+            if(payload[i] == SampleFrameCodec.SEPARATOR)
+                count++;
+        if(count == 0)
+            throw new DataFormatException("Empty frame!");
+        frame.reset(0, count);
+
+        long[] timestamps = frame.timestamps();
+        float[] xs = frame.xs(), ys = frame.ys(), zs = frame.zs();
+        int lineStart = offset;
+        for(int i = 0; i < count; i++) {
+            int lineEnd = lineStart;
+            while(lineEnd < end && payload[lineEnd] != SampleFrameCodec.SEPARATOR)
+                lineEnd++;
+            if(lineEnd - lineStart < TIMESTAMP_LENGTH + 2 || payload[lineStart + TIMESTAMP_LENGTH] != ';')
+                throw new DataFormatException("Malformed sample!");
+
+            timestamps[i] = parseTimestampMillis(payload, lineStart) * 1000000L;
+            position[0] = lineStart + TIMESTAMP_LENGTH + 1;
+            xs[i] = parseValue(payload, lineEnd);
+            ys[i] = parseValue(payload, lineEnd);
+            zs[i] = position[0] < lineEnd ? parseValue(payload, lineEnd) : 0;
+            if(position[0] < lineEnd)
+                throw new DataFormatException("Too many values in a sample!");
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * This method parses a timestamp written with TextPayloadCodec.TIMESTAMP_PATTERN.
+     */
+    private long parseTimestampMillis(byte[] text, int start) throws DataFormatException {
+        int day = parseDigits(text, start, 2);
+        int month = parseDigits(text, start + 3, 2);
+        int year = parseDigits(text, start + 6, 2);
+        int hour = parseDigits(text, start + 9, 2);
+        int minute = parseDigits(text, start + 12, 2);
+        int second = parseDigits(text, start + 15, 2);
+        int millis = parseDigits(text, start + 18, 3);
+        if(text[start + 2] != '.' || text[start + 5] != '.' || text[start + 8] != ' ' ||
+                text[start + 11] != ':' || text[start + 14] != ':' || text[start + 17] != '.' ||
+                minute > 59 || second > 59)
+            throw new DataFormatException("Malformed timestamp!");
+
+        int key = ((year * 100 + month) * 100 + day) * 100 + hour;
+        if(key != cachedHour) {
+            try {
+                calendar.clear();
+                calendar.set(2000 + year, month - 1, day, hour, 0, 0);
+                cachedHourMillis = calendar.getTimeInMillis();
+            } catch(IllegalArgumentException ex) {
+                throw new DataFormatException("Invalid date!");
+            }
+            cachedHour = key;
+        }
+        return cachedHourMillis + minute * 60000L + second * 1000L + millis;
+    }
+
+    private static int parseDigits(byte[] text, int start, int digits) throws DataFormatException {
+        int value = 0;
+        for(int i = start; i < start + digits; i++) {
+            int digit = text[i] - '0';
+            if(digit < 0 || digit > 9)
+                throw new DataFormatException("Malformed timestamp!");
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * This method parses a value written by the DecimalFormat of the text codec, which starts at position[0]
+     * and ends at the next comma or at the end of the line, and moves the position after the comma.
+     */
+    private float parseValue(byte[] text, int lineEnd) throws DataFormatException {
+        int start = position[0];
+        int end = start;
+        while(end < lineEnd && text[end] != ',')
+            end++;
+        position[0] = end < lineEnd ? end + 1 : end;
+
+        int i = start;
+        boolean negative = i < end && text[i] == '-';
+        if(negative)
+            i++;
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean point = false;
+        for(; i < end; i++) {
+            byte c = text[i];
+            if(c == '.' && !point) {
+                point = true;
+            } else if(c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if(point)
+                    fractionDigits++;
+            } else {
+                return parseSpecialValue(text, start, end);
+            }
+        }
+        if(digits == 0)
+            throw new DataFormatException("Missing value!");
+        if(digits >= POWERS_OF_TEN.length)
+            return parseSpecialValue(text, start, end);
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return (float) (negative ? -value : value);
+    }
+
+    /**
+     * This method parses the values which do not fit the fast path: NaN, the infinities and the very large values.
+     */
+    private static float parseSpecialValue(byte[] text, int start, int end) throws DataFormatException {
+        String value = new String(text, start, end - start, StandardCharsets.UTF_8);
+        switch(value) {
+            case "NaN":
+            case "\uFFFD":
+                return Float.NaN;
+            case "\u221E":
+                return Float.POSITIVE_INFINITY;
+            case "-\u221E":
+                return Float.NEGATIVE_INFINITY;
+            default:
+                try {
+                    return Float.parseFloat(value);
+                } catch(NumberFormatException ex) {
+                    throw new DataFormatException("Malformed value: " + value);
+                }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package it.unisa.diem.wearable.codec;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * This class implements the original text codec, which produces payloads like
+ * "dd.MM.yy HH:mm:ss.SSS;x,y,z", so that the coordinators which parse the text format keep working.
+ *
+ * The formatters, the date and the character buffer are created once and reused for every sample.
+ */
+public class TextPayloadCodec implements PayloadCodec {
+
+    public static final String NAME = "text";
+    public static final String TIMESTAMP_PATTERN = "dd.MM.yy HH:mm:ss.SSS";
+    /*
+     * The longest sample is 144 bytes: the timestamp (21 characters), the separators and three values
+     * of at most 40 characters (the sign and the 39 integer digits of Float.MAX_VALUE). Only NaN and
+     * the infinity are written with characters out of ASCII, as 3 bytes each.
+     */
+    private static final int MAX_SAMPLE_SIZE = 192;
+
+    private final SimpleDateFormat dateFormat;
+    private final DecimalFormat decimalFormat;
+    private final Date date;
+    private final StringBuffer text;
+    private final FieldPosition fieldPosition;
+
+    public TextPayloadCodec() {
+        dateFormat = new SimpleDateFormat(TIMESTAMP_PATTERN);
+        decimalFormat = new DecimalFormat("#.#####", new DecimalFormatSymbols(Locale.ENGLISH));
+        date = new Date();
+        text = new StringBuffer(64);
+        fieldPosition = new FieldPosition(0);
+    }
+
+    @Override
+    public int maxSampleSize() {
+        return MAX_SAMPLE_SIZE;
+    }
+
+    @Override
+    public boolean isFixedSize() {
+        return false;
+    }
+
+    @Override
+    public int encode(int sensorType, long timestampNanos, float x, float y, float z,
+                      byte[] buffer, int offset) {
+        text.setLength(0);
+        date.setTime(timestampNanos / 1000000L);
+        dateFormat.format(date, text, fieldPosition);
+        text.append(';');
+        decimalFormat.format(x, text, fieldPosition);
+        text.append(',');
+        decimalFormat.format(y, text, fieldPosition);
+        text.append(',');
+        decimalFormat.format(z, text, fieldPosition);
+        return writeUtf8(text, buffer, offset);
+    }
+
+    /**
+     * This method writes the characters as UTF-8 without creating a String.
+     * The characters produced by the formatters always belong to the Basic Multilingual Plane.
+     *
+     * @throws IllegalStateException if the characters take more than MAX_SAMPLE_SIZE bytes
+     */
+    private static int writeUtf8(CharSequence chars, byte[] buffer, int offset) {
+        int position = offset;
+        int limit = offset + MAX_SAMPLE_SIZE;
+        for(int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if(position + (c < 0x80 ? 1 : c < 0x800 ? 2 : 3) > limit)
+                throw new IllegalStateException("The sample takes more than " + MAX_SAMPLE_SIZE + " bytes!");
+            if(c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if(c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position - offset;
+    }
+}
@@ -0,0 +1,54 @@
+package it.unisa.diem.wearable.codec;
+
+/**
+ * This class provides the variable-length encoding of integers used by the delta codec and by the traces:
+ * 7 bits per byte, with the most significant bit set when more bytes follow,
+ * and the zig-zag mapping, which turns small negative numbers into small positive numbers.
+ */
+public final class VarInts {
+
+    public static final int MAX_VARLONG_SIZE = 10;
+
+    private VarInts() {
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return the position after the written bytes
+     */
+    public static int writeVarLong(byte[] buffer, int position, long value) {
+        while((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * This method reads a variable-length integer.
+     *
+     * @param position: an array of one element with the position of the first byte,
+     *                which is moved after the read bytes
+     */
+    public static long readVarLong(byte[] buffer, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if(shift > 63)
+                throw new IllegalArgumentException("Malformed variable-length integer!");
+            b = buffer[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return value;
+    }
+}
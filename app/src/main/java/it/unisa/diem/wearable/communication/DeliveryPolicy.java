@@ -0,0 +1,81 @@
+package it.unisa.diem.wearable.communication;
+
+/**
+ * This class describes how the messages of a stream are delivered to the broker.
+ *
+ * The messages of the stream are published with the Quality of Service of the policy and they are never retained.
+ * If the latest interval is positive, the last message is also published, at most once per interval,
+ * as a retained message on the "latest" topic of the stream, so a new subscriber immediately receives
+ * the last value without the broker rewriting its retained store for every message.
+ * If the maximum in-flight window is positive, the messages published while that many publications
+ * of the stream are not completed are discarded, so a slow broker cannot queue an unbounded backlog.
+ */
+public final class DeliveryPolicy {
+
+    private final int qos;
+    private final long latestInterval;
+    private final int maxInFlight;
+
+    /**
+     * @param qos: 0, 1 or 2
+     * @param latestInterval: the minimum interval between the publications on the latest topic, in milliseconds,
+     *                      or 0 to disable the latest topic
+     * @param maxInFlight: the maximum number of publications not completed yet, or 0 for no limit
+     */
+    public DeliveryPolicy(int qos, long latestInterval, int maxInFlight) {
+        if(qos < 0 || qos > 2)
+            throw new IllegalArgumentException("The QoS must be 0, 1 or 2!");
+        if(latestInterval < 0 || maxInFlight < 0)
+            throw new IllegalArgumentException("The latest interval and the in-flight window cannot be negative!");
+        this.qos = qos;
+        this.latestInterval = latestInterval;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * This method parses a policy written as "qos", "qos,latestInterval" or "qos,latestInterval,maxInFlight",
+     * where the missing values are 0.
+     *
+     * @param text
+     * @return the policy
+     * @throws IllegalArgumentException if the text is not valid
+     */
+    public static DeliveryPolicy parse(String text) {
+        String[] values = text.trim().split("\\s*,\\s*");
+        if(values.length > 3)
+            throw new IllegalArgumentException("At most three values are allowed: " + text);
+        return new DeliveryPolicy(Integer.parseInt(values[0]),
+                values.length > 1 ? Long.parseLong(values[1]) : 0,
+                values.length > 2 ? Integer.parseInt(values[2]) : 0);
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public long getLatestInterval() {
+        return latestInterval;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof DeliveryPolicy))
+            return false;
+        DeliveryPolicy policy = (DeliveryPolicy) other;
+        return qos == policy.qos && latestInterval == policy.latestInterval && maxInFlight == policy.maxInFlight;
+    }
+
+    @Override
+    public int hashCode() {
+        return (qos * 31 + (int) (latestInterval ^ (latestInterval >>> 32))) * 31 + maxInFlight;
+    }
+
+    @Override
+    public String toString() {
+        return qos + "," + latestInterval + "," + maxInFlight;
+    }
+}
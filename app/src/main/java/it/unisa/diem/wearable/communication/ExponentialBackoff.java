@@ -0,0 +1,52 @@
+package it.unisa.diem.wearable.communication;
+
+import java.util.Random;
+
+/**
+ * This class computes the delays between the attempts of reconnection to the broker.
+ *
+ * The delay doubles at every attempt, from the base delay up to the maximum delay, and a random jitter
+ * takes it between half and the whole of that value: so, many devices which lose the connection
+ * at the same time do not reconnect all together.
+ */
+public class ExponentialBackoff {
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+    private int attempts;
+
+    public ExponentialBackoff(long baseDelayMillis, long maxDelayMillis, Random random) {
+        if(baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis)
+            throw new IllegalArgumentException("Invalid delays for the backoff!");
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    /**
+     * @return the delay before the next attempt, in milliseconds
+     */
+    public long nextDelayMillis() {
+        long delay = baseDelayMillis << Math.min(attempts, 30);
+        if(delay <= 0 || delay > maxDelayMillis)
+            delay = maxDelayMillis;
+        attempts++;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half + 1));
+    }
+
+    /**
+     * @return the number of attempts since the last reset
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * This method restarts the backoff from the base delay, e.g. after a successful reconnection.
+     */
+    public void reset() {
+        attempts = 0;
+    }
+}
@@ -1,34 +1,112 @@
 package it.unisa.diem.wearable.communication;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 
 import org.eclipse.paho.android.service.MqttAndroidClient;
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
-public class MQTTClient {
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import it.unisa.diem.wearable.metrics.Counter;
+import it.unisa.diem.wearable.metrics.LatencyHistogram;
+import it.unisa.diem.wearable.metrics.MetricsRegistry;
+
+/**
+ * This class wraps the Android MQTT client.
+ *
+ * The client connects with a persistent session (clean session disabled), so the broker keeps
+ * the subscriptions and the messages with QoS greater than 0 while the device is offline.
+ * When the connection is lost, the client reconnects automatically, with a jittered exponential backoff,
+ * and subscribes again to all the topics. The callback is notified of the reconnection through
+ * connectComplete(), if it implements MqttCallbackExtended.
+ *
+ * If a metrics registry is set, the client counts the publications, the deliveries and the reconnections,
+ * and records the latency from the publication to deliveryComplete(): the time of the publication
+ * is carried by the delivery token as its user context. The failures are counted by the listeners
+ * of the publications, which are notified of all of them.
+ * For every reconnection it records the outage and the duration of the successful attempt, in milliseconds.
+ */
+public class MQTTClient implements Publisher {
+
+    private static final long RECONNECT_BASE_DELAY_MS = 1000;
+    private static final long RECONNECT_MAX_DELAY_MS = 120000;
 
     private MqttAndroidClient mqttClient;
     private Context context;
 
+    private MqttConnectOptions options;
+    private MqttCallback cbClient;
+    private final Map<String, Integer> subscriptions;
+    private final ExponentialBackoff backoff;
+    private final Handler reconnectHandler;
+    private final Runnable reconnectTask;
+    /*
+     * Written by connect() and disconnect(), which can be called on any thread (e.g. the publishing thread
+     * of the service), and read by the reconnection tasks and callbacks on the main thread.
+     */
+    private volatile boolean disconnectRequested;
+
+    private long connectionLostAt;
+    private long reconnectAttemptStartedAt;
+    private long lastOutageMillis;
+    private long lastReconnectMillis;
+    private int reconnectCount;
+
+    private Counter publishedCounter, deliveredCounter, reconnectCounter;
+    private LatencyHistogram deliveryLatency, outageHistogram, reconnectHistogram;
+
     public MQTTClient(Context context,
                       String serverURI,
                       String clientID) {
         mqttClient = new MqttAndroidClient(context, serverURI, clientID);
         this.context = context;
+        this.subscriptions = new LinkedHashMap<>();
+        this.backoff = new ExponentialBackoff(RECONNECT_BASE_DELAY_MS, RECONNECT_MAX_DELAY_MS, new Random());
+        this.reconnectHandler = new Handler(Looper.getMainLooper());
+        this.reconnectTask = new ReconnectTask();
+    }
+
+    /**
+     * This method enables the metrics of the client, which are registered in the given registry.
+     *
+     * @param metrics
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        publishedCounter = metrics.counter("publish.sent");
+        deliveredCounter = metrics.counter("publish.delivered");
+        reconnectCounter = metrics.counter("reconnects");
+        deliveryLatency = metrics.histogram("publish.latency.us");
+        outageHistogram = metrics.histogram("reconnect.outage.ms");
+        reconnectHistogram = metrics.histogram("reconnect.duration.ms");
     }
 
     public void connect(String username,
                         String password,
                         IMqttActionListener cbConnect,
                         MqttCallback cbClient) {
-        mqttClient.setCallback(cbClient);
-        MqttConnectOptions options = new MqttConnectOptions();
+        this.cbClient = cbClient;
+        mqttClient.setCallback(new ReconnectingCallback());
+        options = new MqttConnectOptions();
         options.setUserName(username);
         options.setPassword(password.toCharArray());
+        // The session is resumed after a reconnection, so the broker keeps the subscriptions
+        options.setCleanSession(false);
+        disconnectRequested = false;
+        reconnectHandler.removeCallbacks(reconnectTask);
+        backoff.reset();
         try {
             mqttClient.connect(options, this.context, cbConnect);
         } catch (MqttException e) {
@@ -36,9 +114,18 @@ public class MQTTClient {
         }
     }
 
+    /**
+     * This method subscribes to a topic. The subscription is recorded,
+     * so that it is renewed automatically after a reconnection.
+     *
+     * @param topic
+     * @param qos
+     * @param cbSubscribe
+     */
     public void subscribe(String topic,
                           int qos,
                           IMqttActionListener cbSubscribe) {
+        subscriptions.put(topic, qos);
         try {
             mqttClient.subscribe(topic, qos, this.context, cbSubscribe);
         } catch (MqttException e) {
@@ -48,6 +135,7 @@ public class MQTTClient {
 
     public void unsubscribe(String topic,
                           IMqttActionListener cbUnsubscribe) {
+        subscriptions.remove(topic);
         try {
             mqttClient.unsubscribe(topic, this.context, cbUnsubscribe);
         } catch (MqttException e) {
@@ -60,22 +148,171 @@ public class MQTTClient {
                         int qos,
                         boolean retained,
                         IMqttActionListener cbPublish) {
+        publish(topic, msg.getBytes(), qos, retained, cbPublish);
+    }
+
+    /**
+     * This method publishes an already encoded payload.
+     * The array is not copied: the caller must not modify it until cbPublish is notified.
+     * The listener is notified exactly once, with onFailure also if the publication cannot be started.
+     *
+     * @param topic
+     * @param payload
+     * @param qos
+     * @param retained
+     * @param cbPublish
+     */
+    @Override
+    public void publish(String topic,
+                        byte[] payload,
+                        int qos,
+                        boolean retained,
+                        IMqttActionListener cbPublish) {
         MqttMessage message = new MqttMessage();
-        message.setPayload(msg.getBytes());
+        message.setPayload(payload);
         message.setQos(qos);
         message.setRetained(retained);
         try {
-            mqttClient.publish(topic, message, this.context, cbPublish);
+            if(deliveryLatency != null) {
+                mqttClient.publish(topic, message, SystemClock.elapsedRealtimeNanos(), cbPublish);
+                publishedCounter.increment();
+            } else
+                mqttClient.publish(topic, message, this.context, cbPublish);
         } catch (MqttException e) {
-            e.printStackTrace();
+            Log.e(getClass().toString(), "Publication on " + topic + " failed: " + e);
+            // The failure is counted by the listener, which is notified anyway, so the stages which wait for the completion do not stall
+            if(cbPublish != null)
+                cbPublish.onFailure(null, e);
         }
     }
 
     public void disconnect(IMqttActionListener cbDisconnect) {
+        disconnectRequested = true;
+        reconnectHandler.removeCallbacks(reconnectTask);
         try {
             mqttClient.disconnect(this.context, cbDisconnect);
         } catch (MqttException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * @return the number of automatic reconnections since the creation of the client
+     */
+    public int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /**
+     * @return the duration of the last outage, from the connection loss to the reconnection, in milliseconds
+     */
+    public long getLastOutageMillis() {
+        return lastOutageMillis;
+    }
+
+    /**
+     * @return the duration of the last successful attempt of reconnection, in milliseconds
+     */
+    public long getLastReconnectMillis() {
+        return lastReconnectMillis;
+    }
+
+    private void scheduleReconnect() {
+        long delay = backoff.nextDelayMillis();
+        Log.d(getClass().toString(), String.format("Reconnection attempt %d in %d ms",
+                backoff.getAttempts(), delay));
+        reconnectHandler.postDelayed(reconnectTask, delay);
+    }
+
+    /**
+     * This class implements the task which tries to reconnect to the broker.
+     */
+    private class ReconnectTask implements Runnable {
+
+        @Override
+        public void run() {
+            if(disconnectRequested)
+                return;
+            reconnectAttemptStartedAt = SystemClock.elapsedRealtime();
+            try {
+                mqttClient.connect(options, context, new ReconnectListener());
+            } catch (MqttException e) {
+                e.printStackTrace();
+                scheduleReconnect();
+            }
+        }
+    }
+
+    /**
+     * This class implements the Listener for an attempt of reconnection:
+     * after a success the subscriptions are renewed and the callback is notified,
+     * otherwise a new attempt is scheduled.
+     */
+    private class ReconnectListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            long now = SystemClock.elapsedRealtime();
+            lastReconnectMillis = now - reconnectAttemptStartedAt;
+            lastOutageMillis = now - connectionLostAt;
+            reconnectCount++;
+            if(reconnectCounter != null) {
+                reconnectCounter.increment();
+                outageHistogram.record(lastOutageMillis);
+                reconnectHistogram.record(lastReconnectMillis);
+            }
+            backoff.reset();
+            Log.d(getClass().toString(), String.format("Reconnected after an outage of %d ms", lastOutageMillis));
+
+            for(Map.Entry<String, Integer> subscription : subscriptions.entrySet()) {
+                try {
+                    mqttClient.subscribe(subscription.getKey(), subscription.getValue(), context, null);
+                } catch (MqttException e) {
+                    e.printStackTrace();
+                }
+            }
+            if(cbClient instanceof MqttCallbackExtended)
+                ((MqttCallbackExtended) cbClient).connectComplete(true, mqttClient.getServerURI());
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            Log.e(getClass().toString(), "Reconnection failed!");
+            if(!disconnectRequested)
+                scheduleReconnect();
+        }
+    }
+
+    /**
+     * This class forwards the events of the connection to the callback of the application,
+     * scheduling the automatic reconnection when the connection is lost.
+     */
+    private class ReconnectingCallback implements MqttCallback {
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            connectionLostAt = SystemClock.elapsedRealtime();
+            if(cbClient != null)
+                cbClient.connectionLost(cause);
+            if(!disconnectRequested)
+                scheduleReconnect();
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) throws Exception {
+            if(cbClient != null)
+                cbClient.messageArrived(topic, message);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            if(deliveryLatency != null && token.getUserContext() instanceof Long) {
+                long latencyNanos = SystemClock.elapsedRealtimeNanos() - (Long) token.getUserContext();
+                deliveryLatency.record(latencyNanos / 1000L);
+                deliveredCounter.increment();
+            }
+            if(cbClient != null)
+                cbClient.deliveryComplete(token);
+        }
+    }
 }
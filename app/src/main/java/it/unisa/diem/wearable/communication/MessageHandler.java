@@ -0,0 +1,15 @@
+package it.unisa.diem.wearable.communication;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * This interface is implemented by the handlers of the messages routed by a TopicRouter.
+ */
+public interface MessageHandler {
+
+    /**
+     * @param topic: the topic of the message, which matches the filter of the handler
+     * @param message
+     */
+    void onMessage(String topic, MqttMessage message);
+}
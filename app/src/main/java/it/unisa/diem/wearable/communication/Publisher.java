@@ -0,0 +1,24 @@
+package it.unisa.diem.wearable.communication;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+
+/**
+ * This interface describes an object which publishes encoded payloads on topics.
+ * It is implemented by MQTTClient and allows the stages of the publishing pipeline
+ * to be used without the Android MQTT service.
+ */
+public interface Publisher {
+
+    /**
+     * This method publishes a payload. The array must not be modified until cbPublish is notified.
+     * The listener is notified exactly once, with onFailure also if the publication cannot be started,
+     * because the stages keep their resources (e.g. a place of the in-flight window) until then.
+     *
+     * @param topic
+     * @param payload
+     * @param qos
+     * @param retained
+     * @param cbPublish
+     */
+    public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish);
+}
@@ -0,0 +1,245 @@
+package it.unisa.diem.wearable.communication;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.Arrays;
+
+/**
+ * This class applies the DeliveryPolicy of a stream to the messages published by its stages.
+ *
+ * The QoS and the retained flag requested by the stages are replaced by the ones of the policy,
+ * which can be changed at any time by the coordinator. The retained copies of the last message are published
+ * on topic + "/latest" with QoS 1, through their own publisher, so they can bypass a spool. The last message
+ * is kept until it is copied there: if the stream becomes quiet before the end of the latest interval,
+ * flushLatest() publishes it when the interval is over.
+ * The messages discarded because the in-flight window is full are notified to the listener as failed,
+ * with the same reason code of the MQTT client when its own window is full;
+ * isWindowFull() tells them apart from the failures of the transport.
+ */
+public class StreamPublisher implements Publisher {
+
+    public static final String LATEST_SUFFIX = "/latest";
+    private static final int LATEST_QOS = 1;
+    private static final MqttException WINDOW_FULL = new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT);
+
+    private final Publisher publisher;
+    private final Publisher latestPublisher;
+    private final IMqttActionListener latestListener;
+    private volatile DeliveryPolicy policy;
+    private int inFlight;
+    private long lastLatestMillis;
+    private boolean hasLatest;
+    private long droppedCount;
+    private IMqttActionListener lastCallback;
+    private InFlightListener lastInFlightListener;
+
+    // The last message of the stream, not copied on the latest topic yet if latestPending is true
+    private String topic, latestTopic;
+    private byte[] latestPayload = new byte[0];
+    private int latestLength;
+    private boolean latestPending;
+
+    public StreamPublisher(Publisher publisher, DeliveryPolicy policy) {
+        this(publisher, publisher, policy);
+    }
+
+    /**
+     * @param publisher: the publisher of the messages of the stream, e.g. a spool
+     * @param latestPublisher: the publisher of the retained copies on the latest topic, e.g. the MQTT client
+     * @param policy
+     */
+    public StreamPublisher(Publisher publisher, Publisher latestPublisher, DeliveryPolicy policy) {
+        this.publisher = publisher;
+        this.latestPublisher = latestPublisher;
+        this.latestListener = new LatestListener();
+        this.policy = policy;
+    }
+
+    /**
+     * @param exception: the reason of a failure notified to a listener
+     * @return true if the message was discarded by the policy because the in-flight window was full
+     */
+    public static boolean isWindowFull(Throwable exception) {
+        return exception == WINDOW_FULL;
+    }
+
+    public void setPolicy(DeliveryPolicy policy) {
+        this.policy = policy;
+    }
+
+    public DeliveryPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of publications which are not completed yet
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the number of messages discarded because the in-flight window was full
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+        publish(topic, payload, cbPublish, System.currentTimeMillis());
+    }
+
+    /**
+     * This method publishes a message of the stream according to the policy.
+     *
+     * @param topic
+     * @param payload
+     * @param cbPublish: the listener of the publication (it can be null)
+     * @param nowMillis: the current time, used to limit the rate of the latest topic
+     */
+    public void publish(String topic, byte[] payload, IMqttActionListener cbPublish, long nowMillis) {
+        DeliveryPolicy policy = this.policy;
+        IMqttActionListener listener;
+        byte[] latest = null;
+        String latestTopic = null;
+        synchronized (this) {
+            if(policy.getMaxInFlight() > 0 && inFlight >= policy.getMaxInFlight()) {
+                droppedCount++;
+                listener = null;
+            } else {
+                inFlight++;
+                listener = inFlightListener(cbPublish);
+            }
+            if(policy.getLatestInterval() > 0) {
+                // The copy is taken first, because the payload can be reused by the stage after its publication
+                keepLatest(topic, payload);
+                latest = takeLatest(policy, nowMillis);
+                latestTopic = this.latestTopic;
+            }
+        }
+
+        if(listener != null) {
+            try {
+                publisher.publish(topic, payload, policy.getQos(), false, listener);
+            } catch(RuntimeException ex) {
+                // The publication was not started, so it must not keep its place in the window
+                onCompleted();
+                if(cbPublish != null)
+                    cbPublish.onFailure(null, ex);
+            }
+        } else if(cbPublish != null)
+            cbPublish.onFailure(null, WINDOW_FULL);
+        if(latest != null)
+            latestPublisher.publish(latestTopic, latest, LATEST_QOS, true, latestListener);
+    }
+
+    /**
+     * This method publishes on the latest topic the last message of the stream, if it was not copied there
+     * because the latest interval was not over. It should be called periodically, so that the latest topic
+     * holds the last message also when the stream becomes quiet, e.g. behind a dead-band filter.
+     *
+     * @param nowMillis: the current time, with the same clock passed to publish()
+     */
+    public void flushLatest(long nowMillis) {
+        byte[] latest;
+        String latestTopic;
+        synchronized (this) {
+            latest = takeLatest(policy, nowMillis);
+            latestTopic = this.latestTopic;
+        }
+        if(latest != null)
+            latestPublisher.publish(latestTopic, latest, LATEST_QOS, true, latestListener);
+    }
+
+    /**
+     * This method copies the last message into the reused buffer of the latest topic.
+     */
+    private void keepLatest(String topic, byte[] payload) {
+        if(!topic.equals(this.topic)) {
+            this.topic = topic;
+            latestTopic = topic + LATEST_SUFFIX;
+        }
+        if(latestPayload.length < payload.length)
+            latestPayload = new byte[payload.length];
+        System.arraycopy(payload, 0, latestPayload, 0, payload.length);
+        latestLength = payload.length;
+        latestPending = true;
+    }
+
+    /**
+     * @return a copy of the last message if it must be published on the latest topic now, or null
+     */
+    private byte[] takeLatest(DeliveryPolicy policy, long nowMillis) {
+        if(!latestPending || policy.getLatestInterval() <= 0 ||
+                (hasLatest && nowMillis - lastLatestMillis < policy.getLatestInterval()))
+            return null;
+        latestPending = false;
+        hasLatest = true;
+        lastLatestMillis = nowMillis;
+        return Arrays.copyOf(latestPayload, latestLength);
+    }
+
+    /**
+     * @return the listener which completes the publication, created once for every listener of the stages
+     */
+    private InFlightListener inFlightListener(IMqttActionListener cbPublish) {
+        if(lastInFlightListener == null || lastCallback != cbPublish) {
+            lastCallback = cbPublish;
+            lastInFlightListener = new InFlightListener(cbPublish);
+        }
+        return lastInFlightListener;
+    }
+
+    private synchronized void onCompleted() {
+        if(inFlight > 0)
+            inFlight--;
+    }
+
+    /**
+     * This class keeps the last message pending when its copy on the latest topic fails, e.g. while the client
+     * is offline, so it is published again by the next flushLatest() after the latest interval.
+     */
+    private class LatestListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            synchronized (StreamPublisher.this) {
+                latestPending = true;
+            }
+        }
+    }
+
+    /**
+     * This class frees a place of the in-flight window when a publication is completed
+     * and notifies the listener of the stage.
+     */
+    private class InFlightListener implements IMqttActionListener {
+
+        private final IMqttActionListener cbPublish;
+
+        InFlightListener(IMqttActionListener cbPublish) {
+            this.cbPublish = cbPublish;
+        }
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            onCompleted();
+            if(cbPublish != null)
+                cbPublish.onSuccess(asyncActionToken);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            onCompleted();
+            if(cbPublish != null)
+                cbPublish.onFailure(asyncActionToken, exception);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package it.unisa.diem.wearable.communication;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class routes the incoming messages to their handlers according to the topic filters of the routes,
+ * with the MQTT wildcards: "+" matches exactly one level and "#", as the last level, matches any number of levels,
+ * also none (e.g. "a/#" matches "a", "a/b" and "a/b/c").
+ *
+ * The routes are compiled when they are added: the filters without wildcards are kept in a hash map,
+ * so most of the messages are dispatched with a single lookup, while the filters with wildcards are kept
+ * in a tree of levels, which is walked only for the levels of the topic. As in MQTT, the topics starting
+ * with "$" are not matched by the filters starting with a wildcard.
+ *
+ * The routes must be added before the router is used; after that, route() can be called by any thread.
+ */
+public class TopicRouter {
+
+    private static final String SINGLE_LEVEL = "+";
+    private static final String MULTI_LEVEL = "#";
+
+    private final Map<String, List<MessageHandler>> exactRoutes;
+    private final Node wildcardRoutes;
+    private final List<String> filters;
+    private boolean hasWildcards;
+
+    public TopicRouter() {
+        this.exactRoutes = new HashMap<>();
+        this.wildcardRoutes = new Node();
+        this.filters = new ArrayList<>();
+    }
+
+    /**
+     * This method adds a route.
+     *
+     * @param filter: the topic filter, with the wildcards "+" and "#"
+     * @param handler
+     * @throws IllegalArgumentException if the filter is not valid
+     */
+    public void addRoute(String filter, MessageHandler handler) {
+        String[] levels = filter.split("/", -1);
+        boolean wildcard = false;
+        for(int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if(level.equals(MULTI_LEVEL)) {
+                if(i != levels.length - 1)
+                    throw new IllegalArgumentException("The wildcard # must be the last level: " + filter);
+                wildcard = true;
+            } else if(level.equals(SINGLE_LEVEL))
+                wildcard = true;
+            else if(level.contains(SINGLE_LEVEL) || level.contains(MULTI_LEVEL))
+                throw new IllegalArgumentException("A wildcard must be a whole level: " + filter);
+        }
+
+        if(!wildcard) {
+            List<MessageHandler> handlers = exactRoutes.get(filter);
+            if(handlers == null) {
+                handlers = new ArrayList<>(1);
+                exactRoutes.put(filter, handlers);
+            }
+            handlers.add(handler);
+        } else {
+            Node node = wildcardRoutes;
+            for(String level : levels) {
+                if(level.equals(MULTI_LEVEL)) {
+                    node.multiLevelHandlers.add(handler);
+                    node = null;
+                    break;
+                }
+                node = node.child(level);
+            }
+            if(node != null)
+                node.handlers.add(handler);
+            hasWildcards = true;
+        }
+        if(!filters.contains(filter))
+            filters.add(filter);
+    }
+
+    /**
+     * This method passes a message to the handlers of all the routes whose filter matches its topic.
+     *
+     * @param topic
+     * @param message
+     * @return the number of handlers which received the message
+     */
+    public int route(String topic, MqttMessage message) {
+        int handled = 0;
+        List<MessageHandler> handlers = exactRoutes.get(topic);
+        if(handlers != null) {
+            for(int i = 0; i < handlers.size(); i++)
+                handlers.get(i).onMessage(topic, message);
+            handled += handlers.size();
+        }
+        if(hasWildcards)
+            handled += match(wildcardRoutes, topic, 0, message, !topic.startsWith("$"));
+        return handled;
+    }
+
+    /**
+     * @return the filters of the routes, in the order in which they were added, e.g. to subscribe to them
+     */
+    public List<String> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * This method matches the levels of the topic from the given position against the subtree of a node.
+     *
+     * @param start: the position of the first character of the current level, or the length of the topic plus one
+     *               if all the levels are matched
+     * @param matchWildcards: false for the first level of the topics starting with "$"
+     */
+    private int match(Node node, String topic, int start, MqttMessage message, boolean matchWildcards) {
+        int handled = 0;
+        if(matchWildcards)
+            handled += dispatch(node.multiLevelHandlers, topic, message);
+        if(start > topic.length())
+            return handled + dispatch(node.handlers, topic, message);
+
+        int end = topic.indexOf('/', start);
+        if(end < 0)
+            end = topic.length();
+        Node child = node.children.get(topic.substring(start, end));
+        if(child != null)
+            handled += match(child, topic, end + 1, message, true);
+        if(node.singleLevel != null && matchWildcards)
+            handled += match(node.singleLevel, topic, end + 1, message, true);
+        return handled;
+    }
+
+    private static int dispatch(List<MessageHandler> handlers, String topic, MqttMessage message) {
+        for(int i = 0; i < handlers.size(); i++)
+            handlers.get(i).onMessage(topic, message);
+        return handlers.size();
+    }
+
+    /**
+     * This class represents a level of the filters with wildcards.
+     */
+    private static class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        Node singleLevel;
+        // The handlers of the filters which end at this level and of the ones which continue with "#"
+        final List<MessageHandler> handlers = new ArrayList<>(1);
+        final List<MessageHandler> multiLevelHandlers = new ArrayList<>(1);
+
+        Node child(String level) {
+            if(level.equals(SINGLE_LEVEL)) {
+                if(singleLevel == null)
+                    singleLevel = new Node();
+                return singleLevel;
+            }
+            Node child = children.get(level);
+            if(child == null) {
+                child = new Node();
+                children.put(level, child);
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package it.unisa.diem.wearable.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import it.unisa.diem.wearable.communication.DeliveryPolicy;
+import it.unisa.diem.wearable.location.LocationPriority;
+import it.unisa.diem.wearable.pipeline.DeadBandFilter;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+
+/**
+ * This class represents a versioned configuration document, which changes several values of the configuration
+ * with a single message, like:
+ * "version=12;samplingPeriod=100;accelerometer=true;orientation=false;accelerometerDeadBand=0.05,0.05,0.1"
+ *
+ * The keys are the names of the values in the configuration resource: samplingPeriod, maxSamplingPeriod,
+ * accelerometer, orientation, location, accelerometerDeadBand, orientationDeadBand, deadBandHeartbeat,
+ * accelerometerOutput, locationPriority, locationInterval, locationFastestInterval, locationMaxWaitTime,
+ * locationMaxAccuracy, locationMinDistance, accelerometerDelivery, orientationDelivery and locationDelivery.
+ * Only the keys which are present are changed, and the document is applied as a whole: if a key or a value
+ * is not valid, none of them is applied.
+ */
+public final class ConfigDocument {
+
+    public static final String VERSION_KEY = "version";
+
+    private final long version;
+    private final Map<String, String> values;
+
+    private ConfigDocument(long version, Map<String, String> values) {
+        this.version = version;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * This method parses a document, made of "key=value" pairs separated by ";".
+     *
+     * @param text
+     * @return the document
+     * @throws IllegalArgumentException if the document has no version, or a pair is not valid or repeated
+     */
+    public static ConfigDocument parse(String text) {
+        Map<String, String> values = new LinkedHashMap<>();
+        Long version = null;
+        for(String pair : text.split(";")) {
+            pair = pair.trim();
+            if(pair.isEmpty())
+                continue;
+            int separator = pair.indexOf('=');
+            if(separator <= 0)
+                throw new IllegalArgumentException("Invalid pair: " + pair);
+            String key = pair.substring(0, separator).trim();
+            String value = pair.substring(separator + 1).trim();
+            if(key.equals(VERSION_KEY)) {
+                if(version != null)
+                    throw new IllegalArgumentException("Repeated version!");
+                version = Long.parseLong(value);
+            } else if(values.put(key, value) != null)
+                throw new IllegalArgumentException("Repeated key: " + key);
+        }
+        if(version == null)
+            throw new IllegalArgumentException("The document has no version!");
+        return new ConfigDocument(version, values);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the values of the document, without the version
+     */
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    /**
+     * This method applies the document to a configuration.
+     *
+     * @param config
+     * @return a new configuration, with the values of the document
+     * @throws IllegalArgumentException if a key is unknown or a value is not valid
+     */
+    public SensingConfig applyTo(SensingConfig config) {
+        SensingConfig.Builder builder = config.toBuilder();
+        for(Map.Entry<String, String> entry : values.entrySet())
+            applyValue(builder, entry.getKey(), entry.getValue());
+        return builder.build();
+    }
+
+    /**
+     * This method sets a single value of a configuration.
+     *
+     * @param builder
+     * @param key: the name of the value, as in the documents
+     * @param value
+     * @throws IllegalArgumentException if the key is unknown or the value is not valid
+     */
+    public static void applyValue(SensingConfig.Builder builder, String key, String value) {
+        switch(key) {
+            case "samplingPeriod":
+                builder.setSamplingPeriod(Integer.parseInt(value));
+                break;
+            case "maxSamplingPeriod":
+                builder.setMaxSamplingPeriod(Integer.parseInt(value));
+                break;
+            case "accelerometer":
+                builder.setAccelerometer(parseBoolean(value));
+                break;
+            case "orientation":
+                builder.setOrientation(parseBoolean(value));
+                break;
+            case "location":
+                builder.setLocation(parseBoolean(value));
+                break;
+            case "accelerometerDeadBand":
+                builder.setAccelerometerDeadBand(DeadBandFilter.parseThresholds(value));
+                break;
+            case "orientationDeadBand":
+                builder.setOrientationDeadBand(DeadBandFilter.parseThresholds(value));
+                break;
+            case "deadBandHeartbeat":
+                builder.setDeadBandHeartbeat(Long.parseLong(value));
+                break;
+            case "accelerometerOutput":
+                builder.setAccelerometerOutput(SensorPipeline.Output.parse(value));
+                break;
+            case "locationPriority":
+                builder.setLocationPriority(LocationPriority.parse(value));
+                break;
+            case "locationInterval":
+                builder.setLocationInterval(Long.parseLong(value));
+                break;
+            case "locationFastestInterval":
+                builder.setLocationFastestInterval(Long.parseLong(value));
+                break;
+            case "locationMaxWaitTime":
+                builder.setLocationMaxWaitTime(Long.parseLong(value));
+                break;
+            case "locationMaxAccuracy":
+                builder.setLocationMaxAccuracy(Float.parseFloat(value));
+                break;
+            case "locationMinDistance":
+                builder.setLocationMinDistance(Float.parseFloat(value));
+                break;
+            case "accelerometerDelivery":
+                builder.setAccelerometerDelivery(DeliveryPolicy.parse(value));
+                break;
+            case "orientationDelivery":
+                builder.setOrientationDelivery(DeliveryPolicy.parse(value));
+                break;
+            case "locationDelivery":
+                builder.setLocationDelivery(DeliveryPolicy.parse(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown key: " + key);
+        }
+    }
+
+    /**
+     * Unlike Boolean.parseBoolean(), a value which is neither "true" nor "false" is not valid,
+     * so a wrong document is rejected instead of disabling a sensor.
+     */
+    private static boolean parseBoolean(String value) {
+        if(value.equalsIgnoreCase("true"))
+            return true;
+        if(value.equalsIgnoreCase("false"))
+            return false;
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+}
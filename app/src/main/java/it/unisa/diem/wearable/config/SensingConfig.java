@@ -0,0 +1,413 @@
+package it.unisa.diem.wearable.config;
+
+import java.util.Arrays;
+
+import it.unisa.diem.wearable.communication.DeliveryPolicy;
+import it.unisa.diem.wearable.location.LocationPriority;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+
+/**
+ * This class is an immutable snapshot of the configuration of the sensing, sent by the coordinator.
+ *
+ * A change of the configuration creates a new snapshot through a Builder, which is published
+ * by replacing the reference to the previous one, so every thread reads a consistent configuration
+ * without locks and the values of a snapshot never change while they are used.
+ */
+public final class SensingConfig {
+
+    private final int samplingPeriod;
+    private final int maxSamplingPeriod;
+    private final boolean accelerometer;
+    private final boolean orientation;
+    private final boolean location;
+    private final float[] accelerometerDeadBand;
+    private final float[] orientationDeadBand;
+    private final long deadBandHeartbeat;
+    private final SensorPipeline.Output accelerometerOutput;
+    private final LocationPriority locationPriority;
+    private final long locationInterval;
+    private final long locationFastestInterval;
+    private final long locationMaxWaitTime;
+    private final float locationMaxAccuracy;
+    private final float locationMinDistance;
+    private final DeliveryPolicy accelerometerDelivery;
+    private final DeliveryPolicy orientationDelivery;
+    private final DeliveryPolicy locationDelivery;
+
+    private SensingConfig(Builder builder) {
+        this.samplingPeriod = builder.samplingPeriod;
+        this.maxSamplingPeriod = builder.maxSamplingPeriod;
+        this.accelerometer = builder.accelerometer;
+        this.orientation = builder.orientation;
+        this.location = builder.location;
+        this.accelerometerDeadBand = builder.accelerometerDeadBand.clone();
+        this.orientationDeadBand = builder.orientationDeadBand.clone();
+        this.deadBandHeartbeat = builder.deadBandHeartbeat;
+        this.accelerometerOutput = builder.accelerometerOutput;
+        this.locationPriority = builder.locationPriority;
+        this.locationInterval = builder.locationInterval;
+        this.locationFastestInterval = builder.locationFastestInterval;
+        this.locationMaxWaitTime = builder.locationMaxWaitTime;
+        this.locationMaxAccuracy = builder.locationMaxAccuracy;
+        this.locationMinDistance = builder.locationMinDistance;
+        this.accelerometerDelivery = builder.accelerometerDelivery;
+        this.orientationDelivery = builder.orientationDelivery;
+        this.locationDelivery = builder.locationDelivery;
+    }
+
+    /**
+     * @return the sampling period requested by the coordinator, in milliseconds
+     */
+    public int getSamplingPeriod() {
+        return samplingPeriod;
+    }
+
+    /**
+     * @return the maximum sampling period of the adaptive sampling, in milliseconds
+     */
+    public int getMaxSamplingPeriod() {
+        return maxSamplingPeriod;
+    }
+
+    public boolean isAccelerometerEnabled() {
+        return accelerometer;
+    }
+
+    public boolean isOrientationEnabled() {
+        return orientation;
+    }
+
+    public boolean isLocationEnabled() {
+        return location;
+    }
+
+    /**
+     * @return a copy of the thresholds of the dead-band filter of the accelerometer
+     */
+    public float[] getAccelerometerDeadBand() {
+        return accelerometerDeadBand.clone();
+    }
+
+    /**
+     * @return a copy of the thresholds of the dead-band filter of the orientation
+     */
+    public float[] getOrientationDeadBand() {
+        return orientationDeadBand.clone();
+    }
+
+    /**
+     * @return the heartbeat of the dead-band filters, in milliseconds
+     */
+    public long getDeadBandHeartbeat() {
+        return deadBandHeartbeat;
+    }
+
+    public SensorPipeline.Output getAccelerometerOutput() {
+        return accelerometerOutput;
+    }
+
+    /**
+     * @return the delivery policy of the samples and of the features of the accelerometer
+     */
+    public DeliveryPolicy getAccelerometerDelivery() {
+        return accelerometerDelivery;
+    }
+
+    public DeliveryPolicy getOrientationDelivery() {
+        return orientationDelivery;
+    }
+
+    public DeliveryPolicy getLocationDelivery() {
+        return locationDelivery;
+    }
+
+    /**
+     * @return the trade-off between accuracy and power requested to the fused location provider
+     */
+    public LocationPriority getLocationPriority() {
+        return locationPriority;
+    }
+
+    /**
+     * @return the interval between the location updates requested to the provider, in milliseconds
+     */
+    public long getLocationInterval() {
+        return locationInterval;
+    }
+
+    /**
+     * @return the minimum interval between the location updates, also if they are requested by other applications,
+     * in milliseconds
+     */
+    public long getLocationFastestInterval() {
+        return locationFastestInterval;
+    }
+
+    /**
+     * @return the maximum time for which the provider can batch the location updates, in milliseconds,
+     * or 0 to deliver every update as soon as possible
+     */
+    public long getLocationMaxWaitTime() {
+        return locationMaxWaitTime;
+    }
+
+    /**
+     * @return the maximum accuracy radius of the published locations, in meters, or 0 to publish any location
+     */
+    public float getLocationMaxAccuracy() {
+        return locationMaxAccuracy;
+    }
+
+    /**
+     * @return the minimum distance between two published locations, in meters
+     */
+    public float getLocationMinDistance() {
+        return locationMinDistance;
+    }
+
+    /**
+     * @return true if the request of location updates differs from the other configuration
+     */
+    public boolean locationRequestDiffers(SensingConfig other) {
+        return locationPriority != other.locationPriority || locationInterval != other.locationInterval ||
+                locationFastestInterval != other.locationFastestInterval ||
+                locationMaxWaitTime != other.locationMaxWaitTime;
+    }
+
+    /**
+     * @return true if the thresholds of the dead-band filter of the accelerometer differ from the other configuration
+     */
+    public boolean accelerometerDeadBandDiffers(SensingConfig other) {
+        return !Arrays.equals(accelerometerDeadBand, other.accelerometerDeadBand);
+    }
+
+    /**
+     * @return true if the thresholds of the dead-band filter of the orientation differ from the other configuration
+     */
+    public boolean orientationDeadBandDiffers(SensingConfig other) {
+        return !Arrays.equals(orientationDeadBand, other.orientationDeadBand);
+    }
+
+    /**
+     * @return a builder initialized with the values of this configuration
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public String toString() {
+        return "SensingConfig{samplingPeriod=" + samplingPeriod + ", maxSamplingPeriod=" + maxSamplingPeriod +
+                ", accelerometer=" + accelerometer + ", orientation=" + orientation + ", location=" + location +
+                ", accelerometerDeadBand=" + Arrays.toString(accelerometerDeadBand) +
+                ", orientationDeadBand=" + Arrays.toString(orientationDeadBand) +
+                ", deadBandHeartbeat=" + deadBandHeartbeat + ", accelerometerOutput=" + accelerometerOutput +
+                ", locationPriority=" + locationPriority + ", locationInterval=" + locationInterval +
+                ", locationFastestInterval=" + locationFastestInterval +
+                ", locationMaxWaitTime=" + locationMaxWaitTime +
+                ", locationMaxAccuracy=" + locationMaxAccuracy + ", locationMinDistance=" + locationMinDistance +
+                ", accelerometerDelivery=" + accelerometerDelivery + ", orientationDelivery=" + orientationDelivery +
+                ", locationDelivery=" + locationDelivery + "}";
+    }
+
+    /**
+     * This class creates the snapshots of the configuration. The setters validate their values
+     * and throw an IllegalArgumentException if they are not valid, so an invalid message is ignored
+     * without changing the configuration.
+     */
+    public static final class Builder {
+
+        private int samplingPeriod;
+        private int maxSamplingPeriod;
+        private boolean accelerometer;
+        private boolean orientation;
+        private boolean location;
+        private float[] accelerometerDeadBand = new float[3];
+        private float[] orientationDeadBand = new float[3];
+        private long deadBandHeartbeat;
+        private SensorPipeline.Output accelerometerOutput = SensorPipeline.Output.RAW;
+        private LocationPriority locationPriority = LocationPriority.BALANCED;
+        private long locationInterval = 30000;
+        private long locationFastestInterval = 10000;
+        private long locationMaxWaitTime;
+        private float locationMaxAccuracy;
+        private float locationMinDistance;
+        private DeliveryPolicy accelerometerDelivery = new DeliveryPolicy(1, 0, 0);
+        private DeliveryPolicy orientationDelivery = new DeliveryPolicy(1, 0, 0);
+        private DeliveryPolicy locationDelivery = new DeliveryPolicy(2, 0, 0);
+
+        public Builder() {
+        }
+
+        private Builder(SensingConfig config) {
+            this.samplingPeriod = config.samplingPeriod;
+            this.maxSamplingPeriod = config.maxSamplingPeriod;
+            this.accelerometer = config.accelerometer;
+            this.orientation = config.orientation;
+            this.location = config.location;
+            this.accelerometerDeadBand = config.accelerometerDeadBand;
+            this.orientationDeadBand = config.orientationDeadBand;
+            this.deadBandHeartbeat = config.deadBandHeartbeat;
+            this.accelerometerOutput = config.accelerometerOutput;
+            this.locationPriority = config.locationPriority;
+            this.locationInterval = config.locationInterval;
+            this.locationFastestInterval = config.locationFastestInterval;
+            this.locationMaxWaitTime = config.locationMaxWaitTime;
+            this.locationMaxAccuracy = config.locationMaxAccuracy;
+            this.locationMinDistance = config.locationMinDistance;
+            this.accelerometerDelivery = config.accelerometerDelivery;
+            this.orientationDelivery = config.orientationDelivery;
+            this.locationDelivery = config.locationDelivery;
+        }
+
+        public Builder setSamplingPeriod(int samplingPeriod) {
+            if(samplingPeriod <= 0)
+                throw new IllegalArgumentException("The sampling period is not positive!");
+            this.samplingPeriod = samplingPeriod;
+            return this;
+        }
+
+        /**
+         * @param maxSamplingPeriod: if it is not greater than the sampling period, the adaptive sampling is disabled
+         */
+        public Builder setMaxSamplingPeriod(int maxSamplingPeriod) {
+            this.maxSamplingPeriod = maxSamplingPeriod;
+            return this;
+        }
+
+        public Builder setAccelerometer(boolean accelerometer) {
+            this.accelerometer = accelerometer;
+            return this;
+        }
+
+        public Builder setOrientation(boolean orientation) {
+            this.orientation = orientation;
+            return this;
+        }
+
+        public Builder setLocation(boolean location) {
+            this.location = location;
+            return this;
+        }
+
+        /**
+         * @param thresholds: [t] or [tx, ty, tz], not negative
+         */
+        public Builder setAccelerometerDeadBand(float[] thresholds) {
+            this.accelerometerDeadBand = checkThresholds(thresholds);
+            return this;
+        }
+
+        /**
+         * @param thresholds: [t] or [tx, ty, tz], not negative
+         */
+        public Builder setOrientationDeadBand(float[] thresholds) {
+            this.orientationDeadBand = checkThresholds(thresholds);
+            return this;
+        }
+
+        public Builder setDeadBandHeartbeat(long deadBandHeartbeat) {
+            if(deadBandHeartbeat <= 0)
+                throw new IllegalArgumentException("The heartbeat is not positive!");
+            this.deadBandHeartbeat = deadBandHeartbeat;
+            return this;
+        }
+
+        public Builder setAccelerometerOutput(SensorPipeline.Output accelerometerOutput) {
+            if(accelerometerOutput == null)
+                throw new IllegalArgumentException("Unknown output!");
+            this.accelerometerOutput = accelerometerOutput;
+            return this;
+        }
+
+        public Builder setAccelerometerDelivery(DeliveryPolicy accelerometerDelivery) {
+            if(accelerometerDelivery == null)
+                throw new IllegalArgumentException("The delivery policy is not set!");
+            this.accelerometerDelivery = accelerometerDelivery;
+            return this;
+        }
+
+        public Builder setOrientationDelivery(DeliveryPolicy orientationDelivery) {
+            if(orientationDelivery == null)
+                throw new IllegalArgumentException("The delivery policy is not set!");
+            this.orientationDelivery = orientationDelivery;
+            return this;
+        }
+
+        public Builder setLocationDelivery(DeliveryPolicy locationDelivery) {
+            if(locationDelivery == null)
+                throw new IllegalArgumentException("The delivery policy is not set!");
+            this.locationDelivery = locationDelivery;
+            return this;
+        }
+
+        public Builder setLocationPriority(LocationPriority locationPriority) {
+            if(locationPriority == null)
+                throw new IllegalArgumentException("Unknown location priority!");
+            this.locationPriority = locationPriority;
+            return this;
+        }
+
+        public Builder setLocationInterval(long locationInterval) {
+            if(locationInterval <= 0)
+                throw new IllegalArgumentException("The location interval is not positive!");
+            this.locationInterval = locationInterval;
+            return this;
+        }
+
+        public Builder setLocationFastestInterval(long locationFastestInterval) {
+            if(locationFastestInterval <= 0)
+                throw new IllegalArgumentException("The fastest location interval is not positive!");
+            this.locationFastestInterval = locationFastestInterval;
+            return this;
+        }
+
+        public Builder setLocationMaxWaitTime(long locationMaxWaitTime) {
+            if(locationMaxWaitTime < 0)
+                throw new IllegalArgumentException("The maximum wait time cannot be negative!");
+            this.locationMaxWaitTime = locationMaxWaitTime;
+            return this;
+        }
+
+        public Builder setLocationMaxAccuracy(float locationMaxAccuracy) {
+            if(!(locationMaxAccuracy >= 0))
+                throw new IllegalArgumentException("The maximum accuracy cannot be negative!");
+            this.locationMaxAccuracy = locationMaxAccuracy;
+            return this;
+        }
+
+        public Builder setLocationMinDistance(float locationMinDistance) {
+            if(!(locationMinDistance >= 0))
+                throw new IllegalArgumentException("The minimum distance cannot be negative!");
+            this.locationMinDistance = locationMinDistance;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if the sampling period is not set
+         * @throws IllegalArgumentException if the fastest location interval is longer than the interval
+         */
+        public SensingConfig build() {
+            if(samplingPeriod <= 0)
+                throw new IllegalStateException("The sampling period is not set!");
+            if(locationFastestInterval > locationInterval)
+                throw new IllegalArgumentException("The fastest location interval is longer than the interval!");
+            return new SensingConfig(this);
+        }
+
+        /**
+         * @return the thresholds of the three axes, from one threshold for all the axes or three thresholds
+         */
+        private static float[] checkThresholds(float[] thresholds) {
+            if(thresholds.length != 1 && thresholds.length != 3)
+                throw new IllegalArgumentException("One or three thresholds are required!");
+            float[] axes = new float[3];
+            for(int i = 0; i < 3; i++) {
+                axes[i] = thresholds[thresholds.length == 1 ? 0 : i];
+                if(axes[i] < 0 || Float.isNaN(axes[i]))
+                    throw new IllegalArgumentException("The thresholds cannot be negative!");
+            }
+            return axes;
+        }
+    }
+}
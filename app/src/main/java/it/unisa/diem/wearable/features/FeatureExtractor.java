@@ -0,0 +1,223 @@
+package it.unisa.diem.wearable.features;
+
+import it.unisa.diem.wearable.buffer.SampleSink;
+
+/**
+ * This class extracts the features of the samples of a sensor over tumbling or sliding windows.
+ *
+ * The windows are aligned to the epoch: they end at the multiples of the hop and they are windowMillis long,
+ * so they are tumbling if the hop is equal to the length of the window and sliding if it is shorter.
+ * The features of a window are computed when the first sample after its end arrives, or when the extractor
+ * is flushed, and they are passed to the FeatureListener.
+ *
+ * The mean, the variance and the RMS (through the Welford algorithm) and the signal magnitude area are updated
+ * incrementally for every sample added to or removed from the window. The samples of the window are kept in
+ * preallocated arrays, from which the minimum, the maximum, the zero-crossings (around the mean) and,
+ * optionally, the dominant frequency of the magnitude (through an in-place FFT) are computed at the end
+ * of the window. No object is allocated after the construction.
+ */
+public class FeatureExtractor implements SampleSink {
+
+    private final long windowNanos;
+    private final long hopNanos;
+    private final int capacity;
+    private final boolean dominantFrequency;
+    private final FeatureListener listener;
+    private final WindowFeatures features;
+
+    private final long[] timestamps;
+    private final float[][] values;
+    private int first, size;
+    private long windowEndNanos;
+    private int sensorType;
+
+    // Welford accumulators and sum of the absolute values of every axis
+    private final double[] means, m2s, absoluteSums;
+
+    private final double[] fftRe, fftIm;
+
+    /**
+     * @param windowMillis: the length of the windows, in milliseconds
+     * @param hopMillis: the time between the ends of two consecutive windows, not greater than windowMillis
+     * @param capacity: the maximum number of samples of a window (the oldest ones are discarded)
+     * @param dominantFrequency: true to compute the dominant frequency of the magnitude
+     * @param listener
+     */
+    public FeatureExtractor(long windowMillis, long hopMillis, int capacity, boolean dominantFrequency,
+                            FeatureListener listener) {
+        if(hopMillis <= 0 || windowMillis < hopMillis)
+            throw new IllegalArgumentException("The hop must be positive and not longer than the window!");
+        if(capacity < 2)
+            throw new IllegalArgumentException("The window must contain at least two samples!");
+        this.windowNanos = windowMillis * 1000000L;
+        this.hopNanos = hopMillis * 1000000L;
+        this.capacity = capacity;
+        this.dominantFrequency = dominantFrequency;
+        this.listener = listener;
+        this.features = new WindowFeatures();
+
+        this.timestamps = new long[capacity];
+        this.values = new float[3][capacity];
+        this.means = new double[3];
+        this.m2s = new double[3];
+        this.absoluteSums = new double[3];
+
+        int fftSize = Integer.highestOneBit(capacity - 1) << 1;
+        this.fftRe = dominantFrequency ? new double[fftSize] : null;
+        this.fftIm = dominantFrequency ? new double[fftSize] : null;
+    }
+
+    @Override
+    public synchronized void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+        if(windowEndNanos == 0)
+            windowEndNanos = (timestampNanos / hopNanos + 1) * hopNanos;
+        while(timestampNanos >= windowEndNanos) {
+            evict(windowEndNanos - windowNanos);
+            if(size > 0) {
+                emit(windowEndNanos);
+                windowEndNanos += hopNanos;
+            } else
+                // After a gap, the next window is the one containing the sample
+                windowEndNanos = (timestampNanos / hopNanos + 1) * hopNanos;
+        }
+        evict(windowEndNanos - windowNanos);
+        if(size == capacity)
+            removeOldest();
+
+        this.sensorType = sensorType;
+        int index = (first + size) % capacity;
+        timestamps[index] = timestampNanos;
+        values[0][index] = x;
+        values[1][index] = y;
+        values[2][index] = z;
+        size++;
+        for(int axis = 0; axis < 3; axis++) {
+            double value = values[axis][index];
+            double delta = value - means[axis];
+            means[axis] += delta / size;
+            m2s[axis] += delta * (value - means[axis]);
+            absoluteSums[axis] += Math.abs(value);
+        }
+    }
+
+    /**
+     * This method emits the features of the current window, even if it is not complete, and empties it.
+     */
+    public synchronized void flush() {
+        if(size > 0)
+            emit(windowEndNanos);
+        reset();
+    }
+
+    /**
+     * This method discards the current window.
+     */
+    public synchronized void reset() {
+        first = 0;
+        size = 0;
+        windowEndNanos = 0;
+        for(int axis = 0; axis < 3; axis++) {
+            means[axis] = 0;
+            m2s[axis] = 0;
+            absoluteSums[axis] = 0;
+        }
+    }
+
+    private void evict(long startNanos) {
+        while(size > 0 && timestamps[first] < startNanos)
+            removeOldest();
+    }
+
+    private void removeOldest() {
+        for(int axis = 0; axis < 3; axis++) {
+            double value = values[axis][first];
+            absoluteSums[axis] -= Math.abs(value);
+            if(size == 1) {
+                means[axis] = 0;
+                m2s[axis] = 0;
+                absoluteSums[axis] = 0;
+            } else {
+                double delta = value - means[axis];
+                means[axis] -= delta / (size - 1);
+                m2s[axis] = Math.max(0, m2s[axis] - delta * (value - means[axis]));
+            }
+        }
+        first = (first + 1) % capacity;
+        size--;
+    }
+
+    private void emit(long endNanos) {
+        WindowFeatures f = features;
+        f.sensorType = sensorType;
+        f.startNanos = endNanos - windowNanos;
+        f.endNanos = endNanos;
+        f.count = size;
+
+        double sma = 0;
+        for(int axis = 0; axis < 3; axis++) {
+            f.mean[axis] = means[axis];
+            f.variance[axis] = m2s[axis] / size;
+            f.rms[axis] = Math.sqrt(means[axis] * means[axis] + f.variance[axis]);
+            sma += absoluteSums[axis];
+
+            float[] axisValues = values[axis];
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            int crossings = 0;
+            boolean previousAbove = false;
+            for(int i = 0; i < size; i++) {
+                float value = axisValues[(first + i) % capacity];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                boolean above = value >= means[axis];
+                if(i > 0 && above != previousAbove)
+                    crossings++;
+                previousAbove = above;
+            }
+            f.min[axis] = min;
+            f.max[axis] = max;
+            f.zeroCrossings[axis] = crossings;
+        }
+        f.signalMagnitudeArea = sma / size;
+        f.dominantFrequency = dominantFrequency ? computeDominantFrequency() : Double.NaN;
+
+        listener.onFeatures(f);
+    }
+
+    /**
+     * This method computes the frequency with the highest energy in the spectrum of the magnitude,
+     * assuming that the samples are uniformly spaced. The signal is zero-padded to a power of two.
+     */
+    private double computeDominantFrequency() {
+        long durationNanos = timestamps[(first + size - 1) % capacity] - timestamps[first];
+        if(size < 4 || durationNanos <= 0)
+            return Double.NaN;
+        double samplingRate = (size - 1) * 1e9 / durationNanos;
+
+        int n = Integer.highestOneBit(size - 1) << 1;
+        double mean = 0;
+        for(int i = 0; i < size; i++) {
+            int index = (first + i) % capacity;
+            double x = values[0][index], y = values[1][index], z = values[2][index];
+            fftRe[i] = Math.sqrt(x * x + y * y + z * z);
+            mean += fftRe[i];
+        }
+        mean /= size;
+        for(int i = 0; i < n; i++) {
+            // The mean is removed, so the constant component does not hide the oscillations
+            fftRe[i] = i < size ? fftRe[i] - mean : 0;
+            fftIm[i] = 0;
+        }
+        Fft.transform(fftRe, fftIm, n);
+
+        int peak = 0;
+        double peakPower = 0;
+        for(int k = 1; k <= n / 2; k++) {
+            double power = fftRe[k] * fftRe[k] + fftIm[k] * fftIm[k];
+            if(power > peakPower) {
+                peakPower = power;
+                peak = k;
+            }
+        }
+        return peak == 0 ? 0 : peak * samplingRate / n;
+    }
+}
@@ -0,0 +1,12 @@
+package it.unisa.diem.wearable.features;
+
+/**
+ * This interface represents the listener of the features extracted from the windows of samples.
+ */
+public interface FeatureListener {
+
+    /**
+     * @param features: the features of a window, which are overwritten by the next window
+     */
+    void onFeatures(WindowFeatures features);
+}
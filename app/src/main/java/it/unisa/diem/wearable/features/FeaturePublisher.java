@@ -0,0 +1,162 @@
+package it.unisa.diem.wearable.features;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+
+import java.util.Arrays;
+
+import it.unisa.diem.wearable.communication.Publisher;
+
+/**
+ * This class publishes the features of every window as a compact JSON object, like:
+ * {"start":1660000000000,"end":1660000002000,"n":100,"mean":[0.1,0.2,9.8],"var":[..],"rms":[..],
+ * "min":[..],"max":[..],"sma":10.2,"zc":[12,10,8],"freq":1.95}
+ * where the timestamps are in milliseconds and "freq" is present only if the dominant frequency is computed.
+ *
+ * The numbers are appended directly to a reused builder, with five significant digits like String.format("%.5g"),
+ * and the text is encoded into a reused byte array: only the payload of each window is allocated,
+ * because the MQTT client keeps it until the message is delivered.
+ */
+public class FeaturePublisher implements FeatureListener {
+
+    private static final int SIGNIFICANT_DIGITS = 5;
+    private static final long MAX_DIGITS = 100000;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+
+    private final String topic;
+    private final Publisher publisher;
+    private final int qos;
+    private final boolean retained;
+    private final IMqttActionListener cbPublish;
+    private final StringBuilder text;
+    private byte[] json;
+
+    public FeaturePublisher(String topic, Publisher publisher, int qos, boolean retained,
+                            IMqttActionListener cbPublish) {
+        this.topic = topic;
+        this.publisher = publisher;
+        this.qos = qos;
+        this.retained = retained;
+        this.cbPublish = cbPublish;
+        this.text = new StringBuilder(384);
+        this.json = new byte[384];
+    }
+
+    @Override
+    public void onFeatures(WindowFeatures features) {
+        CharSequence chars = encode(features);
+        int length = chars.length();
+        if(json.length < length)
+            json = new byte[Math.max(length, json.length * 2)];
+        // The text is ASCII only: digits, signs, letters of the names and of NaN and Infinity
+        for(int i = 0; i < length; i++)
+            json[i] = (byte) chars.charAt(i);
+        publisher.publish(topic, Arrays.copyOf(json, length), qos, retained, cbPublish);
+    }
+
+    /**
+     * This method encodes the features as JSON.
+     *
+     * @return the text, which is reused by the next call
+     */
+    public CharSequence encode(WindowFeatures f) {
+        text.setLength(0);
+        text.append("{\"start\":").append(f.startNanos / 1000000L)
+                .append(",\"end\":").append(f.endNanos / 1000000L)
+                .append(",\"n\":").append(f.count);
+        appendArray("mean", f.mean);
+        appendArray("var", f.variance);
+        appendArray("rms", f.rms);
+        text.append(",\"min\":[").append(f.min[0]).append(',').append(f.min[1]).append(',').append(f.min[2]);
+        text.append("],\"max\":[").append(f.max[0]).append(',').append(f.max[1]).append(',').append(f.max[2]);
+        text.append("],\"sma\":");
+        appendSignificant(f.signalMagnitudeArea);
+        text.append(",\"zc\":[").append(f.zeroCrossings[0]).append(',').append(f.zeroCrossings[1])
+                .append(',').append(f.zeroCrossings[2]).append(']');
+        if(!Double.isNaN(f.dominantFrequency)) {
+            text.append(",\"freq\":");
+            appendSignificant(f.dominantFrequency);
+        }
+        return text.append('}');
+    }
+
+    private void appendArray(String name, double[] values) {
+        text.append(",\"").append(name).append("\":[");
+        appendSignificant(values[0]);
+        text.append(',');
+        appendSignificant(values[1]);
+        text.append(',');
+        appendSignificant(values[2]);
+        text.append(']');
+    }
+
+    /**
+     * This method appends a value with SIGNIFICANT_DIGITS significant digits, like String.format("%.5g"):
+     * in positional notation if the rounded value is between 10^-4 and 10^5, in scientific notation otherwise.
+     */
+    private void appendSignificant(double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            text.append(value);
+            return;
+        }
+        if(value < 0 || (value == 0 && 1 / value < 0)) {
+            text.append('-');
+            value = -value;
+        }
+        if(value == 0) {
+            text.append("0.0000");
+            return;
+        }
+
+        // The digits are the value scaled to an integer of SIGNIFICANT_DIGITS digits
+        int exponent = (int) Math.floor(Math.log10(value));
+        long digits = scale(value, exponent);
+        if(digits >= MAX_DIGITS)
+            digits = scale(value, ++exponent);
+        else if(digits < MAX_DIGITS / 10)
+            digits = scale(value, --exponent);
+        if(digits >= MAX_DIGITS) {
+            digits /= 10;
+            exponent++;
+        }
+
+        if(exponent >= -4 && exponent < SIGNIFICANT_DIGITS) {
+            if(exponent < 0) {
+                text.append("0.");
+                for(int i = -1; i > exponent; i--)
+                    text.append('0');
+                text.append(digits);
+                return;
+            }
+            appendDigits(digits, exponent + 1);
+            return;
+        }
+        appendDigits(digits, 1);
+        text.append(exponent < 0 ? "e-" : "e+");
+        if(Math.abs(exponent) < 10)
+            text.append('0');
+        text.append(Math.abs(exponent));
+    }
+
+    /**
+     * @return the value divided by 10^(exponent - SIGNIFICANT_DIGITS + 1) and rounded
+     */
+    private static long scale(double value, int exponent) {
+        int shift = SIGNIFICANT_DIGITS - 1 - exponent;
+        return Math.round(shift >= 0 ? value * Math.pow(10, shift) : value / Math.pow(10, -shift));
+    }
+
+    /**
+     * This method appends the SIGNIFICANT_DIGITS digits with the decimal point after the first integerDigits.
+     */
+    private void appendDigits(long digits, int integerDigits) {
+        long divisor = POWERS_OF_TEN[SIGNIFICANT_DIGITS - integerDigits];
+        text.append(digits / divisor);
+        if(integerDigits == SIGNIFICANT_DIGITS)
+            return;
+        text.append('.');
+        long fraction = digits % divisor;
+        for(long power = divisor / 10; power > fraction && power > 1; power /= 10)
+            text.append('0');
+        text.append(fraction);
+    }
+}
@@ -0,0 +1,58 @@
+package it.unisa.diem.wearable.features;
+
+/**
+ * This class implements an in-place radix-2 fast Fourier transform on preallocated arrays.
+ */
+final class Fft {
+
+    private Fft() {
+    }
+
+    /**
+     * This method transforms the complex signal (re, im) in place.
+     *
+     * @param re: the real parts
+     * @param im: the imaginary parts
+     * @param n: the number of points, a power of two not greater than the length of the arrays
+     */
+    static void transform(double[] re, double[] im, int n) {
+        if(Integer.bitCount(n) != 1)
+            throw new IllegalArgumentException("The number of points must be a power of two: " + n);
+
+        // Bit-reversal permutation
+        for(int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for(; (j & bit) != 0; bit >>= 1)
+                j ^= bit;
+            j ^= bit;
+            if(i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for(int length = 2; length <= n; length <<= 1) {
+            double angle = -2 * Math.PI / length;
+            double stepRe = Math.cos(angle), stepIm = Math.sin(angle);
+            for(int start = 0; start < n; start += length) {
+                double wRe = 1, wIm = 0;
+                for(int k = 0; k < length / 2; k++) {
+                    int a = start + k, b = a + length / 2;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                    double nextRe = wRe * stepRe - wIm * stepIm;
+                    wIm = wRe * stepIm + wIm * stepRe;
+                    wRe = nextRe;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package it.unisa.diem.wearable.features;
+
+/**
+ * This class contains the features of a window of samples of a sensor with three axes.
+ * An instance is reused for every window, so it must not be stored by the listeners.
+ */
+public class WindowFeatures {
+
+    int sensorType;
+    long startNanos, endNanos;
+    int count;
+    final double[] mean = new double[3];
+    final double[] variance = new double[3];
+    final double[] rms = new double[3];
+    final float[] min = new float[3];
+    final float[] max = new float[3];
+    double signalMagnitudeArea;
+    final int[] zeroCrossings = new int[3];
+    double dominantFrequency = Double.NaN;
+
+    public int getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * @return the beginning of the window (inclusive), as an epoch timestamp in nanoseconds
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return the end of the window (exclusive), as an epoch timestamp in nanoseconds
+     */
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    /**
+     * @return the number of samples of the window
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public double getMean(int axis) {
+        return mean[axis];
+    }
+
+    /**
+     * @return the population variance of an axis
+     */
+    public double getVariance(int axis) {
+        return variance[axis];
+    }
+
+    /**
+     * @return the root mean square of an axis
+     */
+    public double getRms(int axis) {
+        return rms[axis];
+    }
+
+    public float getMin(int axis) {
+        return min[axis];
+    }
+
+    public float getMax(int axis) {
+        return max[axis];
+    }
+
+    /**
+     * @return the signal magnitude area, i.e. the mean of |x| + |y| + |z|
+     */
+    public double getSignalMagnitudeArea() {
+        return signalMagnitudeArea;
+    }
+
+    /**
+     * @return the number of times an axis crosses its mean
+     */
+    public int getZeroCrossings(int axis) {
+        return zeroCrossings[axis];
+    }
+
+    /**
+     * @return the dominant frequency of the magnitude, in Hz, or NaN if it is not computed
+     */
+    public double getDominantFrequency() {
+        return dominantFrequency;
+    }
+}
@@ -0,0 +1,306 @@
+package it.unisa.diem.wearable.fusion;
+
+/**
+ * This class computes the orientation of the device, without depending on Android.
+ *
+ * The orientation is taken from the rotation vector sensor, if the device has one, otherwise it is fused
+ * from the accelerometer, the magnetometer and the gyroscope through a complementary filter:
+ * the gyroscope is integrated, because it is accurate in the short term, and its drift is corrected
+ * towards the absolute orientation given by the gravity and the magnetic field, which are noisy but stable.
+ * Without the gyroscope, the absolute orientation is used directly.
+ *
+ * The orientation is provided both as a unit quaternion [w, x, y, z] and as the angles
+ * [azimuth, pitch, roll] in degrees, with the conventions of SensorManager.getOrientation():
+ * the azimuth is in [0, 360), the pitch in [-90, 90] and the roll in [-180, 180].
+ * The quaternion rotates the coordinates of the device into the coordinates of the world (East, North, Up).
+ *
+ * All the arrays are preallocated, so no update allocates objects. The class is not thread-safe.
+ */
+public class OrientationFusion {
+
+    public static final float DEFAULT_GYROSCOPE_WEIGHT = 0.98f;
+    private static final float MIN_HORIZONTAL_NORM = 0.1f;
+    private static final float NANOS_TO_SECONDS = 1e-9f;
+
+    private final float gyroscopeWeight;
+    private final float[] quaternion;
+    private final float[] angles;
+    private final float[] rotation;
+    private final float[] measured;
+    private final float[] gravity;
+    private final float[] geomagnetic;
+    private boolean hasGravity, hasGeomagnetic;
+    private boolean initialized;
+    private boolean gyroscope;
+    private long gyroscopeTimestampNanos;
+
+    public OrientationFusion() {
+        this(DEFAULT_GYROSCOPE_WEIGHT);
+    }
+
+    /**
+     * @param gyroscopeWeight: the weight of the integrated gyroscope in the complementary filter, in [0, 1);
+     *                       the higher it is, the smoother and the slower to correct the drift the output is
+     */
+    public OrientationFusion(float gyroscopeWeight) {
+        if(gyroscopeWeight < 0 || gyroscopeWeight >= 1)
+            throw new IllegalArgumentException("Invalid weight of the gyroscope: " + gyroscopeWeight);
+        this.gyroscopeWeight = gyroscopeWeight;
+        this.quaternion = new float[]{1, 0, 0, 0};
+        this.angles = new float[3];
+        this.rotation = new float[9];
+        this.measured = new float[4];
+        this.gravity = new float[3];
+        this.geomagnetic = new float[3];
+    }
+
+    /**
+     * This method sets the orientation given by a rotation vector sensor.
+     *
+     * @param values: the values of the event, [x * sin(theta/2), y * sin(theta/2), z * sin(theta/2)]
+     *              and optionally cos(theta/2)
+     */
+    public void updateRotationVector(float[] values) {
+        float x = values[0], y = values[1], z = values[2];
+        float w;
+        if(values.length >= 4)
+            w = values[3];
+        else {
+            w = 1 - x * x - y * y - z * z;
+            w = w > 0 ? (float) Math.sqrt(w) : 0;
+        }
+        set(quaternion, w, x, y, z);
+        normalize(quaternion);
+        initialized = true;
+        computeAngles();
+    }
+
+    /**
+     * This method stores the gravity measured by the accelerometer.
+     * Until an event of the gyroscope arrives, the orientation is computed directly from the gravity
+     * and the magnetic field.
+     *
+     * @param values: the acceleration, in m/s^2
+     * @return true if the orientation is updated
+     */
+    public boolean updateAccelerometer(float[] values) {
+        System.arraycopy(values, 0, gravity, 0, 3);
+        hasGravity = true;
+        return !gyroscope && correct(1);
+    }
+
+    /**
+     * This method stores the magnetic field measured by the magnetometer.
+     *
+     * @param values: the magnetic field, in uT
+     * @return true if the orientation is updated
+     */
+    public boolean updateMagnetometer(float[] values) {
+        System.arraycopy(values, 0, geomagnetic, 0, 3);
+        hasGeomagnetic = true;
+        return !gyroscope && correct(1);
+    }
+
+    /**
+     * This method integrates the angular speed measured by the gyroscope since its previous event
+     * and corrects the result towards the orientation given by the gravity and the magnetic field.
+     *
+     * @param values: the angular speed around the axes of the device, in rad/s
+     * @param timestampNanos: the timestamp of the event
+     * @return true if the orientation is updated
+     */
+    public boolean updateGyroscope(float[] values, long timestampNanos) {
+        long previous = gyroscopeTimestampNanos;
+        gyroscopeTimestampNanos = timestampNanos;
+        gyroscope = true;
+        if(!initialized) {
+            // The integration needs an initial absolute orientation
+            correct(1);
+            return false;
+        }
+        if(previous == 0 || timestampNanos <= previous)
+            return false;
+
+        float dt = (timestampNanos - previous) * NANOS_TO_SECONDS;
+        float wx = values[0], wy = values[1], wz = values[2];
+        float speed = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+        if(speed > 0) {
+            // Rotation of speed * dt radians around the axis of the angular speed, in the frame of the device
+            float halfAngle = speed * dt / 2;
+            float sin = (float) Math.sin(halfAngle) / speed;
+            multiply(quaternion, (float) Math.cos(halfAngle), wx * sin, wy * sin, wz * sin);
+            normalize(quaternion);
+        }
+        correct(1 - gyroscopeWeight);
+        computeAngles();
+        return true;
+    }
+
+    /**
+     * This method forgets the orientation and the measures, e.g. when the sensors are registered again.
+     */
+    public void reset() {
+        set(quaternion, 1, 0, 0, 0);
+        hasGravity = false;
+        hasGeomagnetic = false;
+        initialized = false;
+        gyroscope = false;
+        gyroscopeTimestampNanos = 0;
+    }
+
+    /**
+     * This method copies the orientation as a unit quaternion [w, x, y, z].
+     *
+     * @param out: an array of at least 4 elements
+     */
+    public void getQuaternion(float[] out) {
+        System.arraycopy(quaternion, 0, out, 0, 4);
+    }
+
+    /**
+     * @return the angles [azimuth, pitch, roll] in degrees; the array is overwritten by the next update
+     */
+    public float[] getAngles() {
+        return angles;
+    }
+
+    /**
+     * @return the quaternion [w, x, y, z]; the array is overwritten by the next update
+     */
+    public float[] getQuaternion() {
+        return quaternion;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * This method moves the orientation towards the one given by the gravity and the magnetic field.
+     *
+     * @param weight: the weight of the measured orientation, 1 to replace the current one
+     * @return true if the orientation is updated
+     */
+    private boolean correct(float weight) {
+        if(!hasGravity || !hasGeomagnetic || !measureRotation())
+            return false;
+        toQuaternion(rotation, measured);
+        if(!initialized || weight >= 1) {
+            System.arraycopy(measured, 0, quaternion, 0, 4);
+            initialized = true;
+        } else {
+            // Normalized linear interpolation along the shortest path
+            float sign = dot(quaternion, measured) < 0 ? -1 : 1;
+            for(int i = 0; i < 4; i++)
+                quaternion[i] = (1 - weight) * quaternion[i] + weight * sign * measured[i];
+            normalize(quaternion);
+        }
+        computeAngles();
+        return true;
+    }
+
+    /**
+     * This method computes the rotation matrix from the gravity and the magnetic field,
+     * like SensorManager.getRotationMatrix().
+     *
+     * @return false if the matrix cannot be computed, e.g. in free fall or close to the magnetic poles
+     */
+    private boolean measureRotation() {
+        float ax = gravity[0], ay = gravity[1], az = gravity[2];
+        float ex = geomagnetic[0], ey = geomagnetic[1], ez = geomagnetic[2];
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if(normH < MIN_HORIZONTAL_NORM)
+            return false;
+        float invH = 1 / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        float invA = 1 / (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+        rotation[0] = hx;
+        rotation[1] = hy;
+        rotation[2] = hz;
+        rotation[3] = ay * hz - az * hy;
+        rotation[4] = az * hx - ax * hz;
+        rotation[5] = ax * hy - ay * hx;
+        rotation[6] = ax;
+        rotation[7] = ay;
+        rotation[8] = az;
+        return true;
+    }
+
+    /**
+     * This method computes the angles from the quaternion, like SensorManager.getOrientation().
+     */
+    private void computeAngles() {
+        float w = quaternion[0], x = quaternion[1], y = quaternion[2], z = quaternion[3];
+        float r1 = 2 * x * y - 2 * z * w;
+        float r4 = 1 - 2 * x * x - 2 * z * z;
+        float r6 = 2 * x * z - 2 * y * w;
+        float r7 = 2 * y * z + 2 * x * w;
+        float r8 = 1 - 2 * x * x - 2 * y * y;
+
+        float azimuth = (float) Math.toDegrees(Math.atan2(r1, r4));
+        angles[0] = azimuth < 0 ? azimuth + 360 : azimuth;
+        angles[1] = (float) Math.toDegrees(Math.asin(Math.max(-1, Math.min(1, -r7))));
+        angles[2] = (float) Math.toDegrees(Math.atan2(-r6, r8));
+    }
+
+    /**
+     * This method converts a rotation matrix, in row-major order, to a unit quaternion.
+     */
+    static void toQuaternion(float[] r, float[] q) {
+        float trace = r[0] + r[4] + r[8];
+        if(trace > 0) {
+            float s = (float) Math.sqrt(trace + 1) * 2;
+            set(q, s / 4, (r[7] - r[5]) / s, (r[2] - r[6]) / s, (r[3] - r[1]) / s);
+        } else if(r[0] > r[4] && r[0] > r[8]) {
+            float s = (float) Math.sqrt(1 + r[0] - r[4] - r[8]) * 2;
+            set(q, (r[7] - r[5]) / s, s / 4, (r[1] + r[3]) / s, (r[2] + r[6]) / s);
+        } else if(r[4] > r[8]) {
+            float s = (float) Math.sqrt(1 + r[4] - r[0] - r[8]) * 2;
+            set(q, (r[2] - r[6]) / s, (r[1] + r[3]) / s, s / 4, (r[5] + r[7]) / s);
+        } else {
+            float s = (float) Math.sqrt(1 + r[8] - r[0] - r[4]) * 2;
+            set(q, (r[3] - r[1]) / s, (r[2] + r[6]) / s, (r[5] + r[7]) / s, s / 4);
+        }
+        normalize(q);
+    }
+
+    /**
+     * This method multiplies the quaternion q by the quaternion [w, x, y, z] on the right.
+     */
+    private static void multiply(float[] q, float w, float x, float y, float z) {
+        float qw = q[0], qx = q[1], qy = q[2], qz = q[3];
+        set(q, qw * w - qx * x - qy * y - qz * z,
+                qw * x + qx * w + qy * z - qz * y,
+                qw * y - qx * z + qy * w + qz * x,
+                qw * z + qx * y - qy * x + qz * w);
+    }
+
+    private static void set(float[] q, float w, float x, float y, float z) {
+        q[0] = w;
+        q[1] = x;
+        q[2] = y;
+        q[3] = z;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2] + a[3] * b[3];
+    }
+
+    private static void normalize(float[] q) {
+        float norm = (float) Math.sqrt(dot(q, q));
+        if(norm == 0) {
+            set(q, 1, 0, 0, 0);
+            return;
+        }
+        for(int i = 0; i < 4; i++)
+            q[i] /= norm;
+    }
+}
@@ -0,0 +1,61 @@
+package it.unisa.diem.wearable.location;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import it.unisa.diem.wearable.codec.TextPayloadCodec;
+
+/**
+ * This class encodes the locations published on deviceID/location as the text payload
+ * "dd.MM.yy HH:mm:ss.SSS;latitude,longitude", which the coordinators parse whatever the codec of the samples.
+ * The coordinates are formatted from the doubles, with the same five decimal digits of the text codec.
+ *
+ * The formatters, the date and the character buffer are created once and reused for every fix.
+ * The class is not thread-safe.
+ */
+public class LocationEncoder {
+
+    private final SimpleDateFormat dateFormat;
+    private final DecimalFormat decimalFormat;
+    private final Date date;
+    private final StringBuffer text;
+    private final FieldPosition fieldPosition;
+
+    public LocationEncoder() {
+        dateFormat = new SimpleDateFormat(TextPayloadCodec.TIMESTAMP_PATTERN);
+        decimalFormat = new DecimalFormat("#.#####", new DecimalFormatSymbols(Locale.ENGLISH));
+        date = new Date();
+        text = new StringBuffer(48);
+        fieldPosition = new FieldPosition(0);
+    }
+
+    /**
+     * @param timestampNanos: the epoch time of the fix, written with the precision of the text format
+     * @param latitude: in degrees
+     * @param longitude: in degrees
+     * @return the payload, which belongs to the caller
+     */
+    public byte[] encode(long timestampNanos, double latitude, double longitude) {
+        text.setLength(0);
+        date.setTime(timestampNanos / 1000000L);
+        dateFormat.format(date, text, fieldPosition);
+        text.append(';');
+        decimalFormat.format(latitude, text, fieldPosition);
+        text.append(',');
+        decimalFormat.format(longitude, text, fieldPosition);
+
+        byte[] payload = new byte[text.length()];
+        for(int i = 0; i < payload.length; i++) {
+            char c = text.charAt(i);
+            if(c >= 0x80)
+                return text.toString().getBytes(StandardCharsets.UTF_8);
+            payload[i] = (byte) c;
+        }
+        return payload;
+    }
+}
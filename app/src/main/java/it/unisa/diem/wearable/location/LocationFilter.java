@@ -0,0 +1,91 @@
+package it.unisa.diem.wearable.location;
+
+/**
+ * This class selects the locations which are worth publishing.
+ *
+ * A location is discarded if it is not accurate enough, i.e. its accuracy radius is larger than maxAccuracy,
+ * or if it is closer than minDistance to the last accepted location, so a stationary wearer
+ * does not cause a publication for every update of the provider. A maxAccuracy or a minDistance
+ * equal to 0 disables the relative check. The locations older than the last accepted one are discarded too,
+ * since the provider can deliver them in batches.
+ */
+public class LocationFilter {
+
+    private static final double EARTH_RADIUS_M = 6371008.8;
+
+    private float maxAccuracy;
+    private float minDistance;
+    private boolean hasLast;
+    private double lastLatitude, lastLongitude;
+    private long lastTimeMillis;
+    private long discardedCount;
+
+    /**
+     * @param maxAccuracy: the maximum accuracy radius, in meters, or 0 to accept any accuracy
+     * @param minDistance: the minimum distance from the last accepted location, in meters, or 0
+     */
+    public LocationFilter(float maxAccuracy, float minDistance) {
+        setThresholds(maxAccuracy, minDistance);
+    }
+
+    public synchronized void setThresholds(float maxAccuracy, float minDistance) {
+        if(!(maxAccuracy >= 0) || !(minDistance >= 0))
+            throw new IllegalArgumentException("The thresholds cannot be negative!");
+        this.maxAccuracy = maxAccuracy;
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * This method checks a location and, if it is accepted, remembers it as the last one.
+     *
+     * @param latitude: in degrees
+     * @param longitude: in degrees
+     * @param accuracy: the accuracy radius, in meters, or a negative value if it is unknown
+     * @param timeMillis: the epoch time of the location
+     * @return true if the location has to be published
+     */
+    public synchronized boolean accept(double latitude, double longitude, float accuracy, long timeMillis) {
+        boolean accepted = true;
+        if(maxAccuracy > 0 && (accuracy < 0 || accuracy > maxAccuracy))
+            accepted = false;
+        else if(hasLast && timeMillis < lastTimeMillis)
+            accepted = false;
+        else if(hasLast && minDistance > 0 &&
+                distance(lastLatitude, lastLongitude, latitude, longitude) < minDistance)
+            accepted = false;
+
+        if(!accepted) {
+            discardedCount++;
+            return false;
+        }
+        hasLast = true;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastTimeMillis = timeMillis;
+        return true;
+    }
+
+    /**
+     * This method forgets the last accepted location, so the next accurate one is accepted.
+     */
+    public synchronized void reset() {
+        hasLast = false;
+    }
+
+    public synchronized long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * This method computes the great-circle distance between two points with the haversine formula.
+     *
+     * @return the distance, in meters
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1), phi2 = Math.toRadians(latitude2);
+        double sinDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDeltaLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinDeltaPhi * sinDeltaPhi + Math.cos(phi1) * Math.cos(phi2) * sinDeltaLambda * sinDeltaLambda;
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
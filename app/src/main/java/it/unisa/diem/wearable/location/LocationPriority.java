@@ -0,0 +1,24 @@
+package it.unisa.diem.wearable.location;
+
+/**
+ * The trade-off between accuracy and power requested to the fused location provider.
+ */
+public enum LocationPriority {
+    /** The most accurate locations, mostly from the GPS */
+    HIGH_ACCURACY,
+    /** Locations accurate to about 100 meters, mostly from Wi-Fi and cell towers */
+    BALANCED,
+    /** Locations accurate to about 10 kilometers, from cell towers */
+    LOW_POWER;
+
+    /**
+     * @param name: "high_accuracy", "balanced" or "low_power", ignoring the case
+     * @return the priority, or null if the name is unknown
+     */
+    public static LocationPriority parse(String name) {
+        for(LocationPriority priority : values())
+            if(priority.name().equalsIgnoreCase(name.trim()))
+                return priority;
+        return null;
+    }
+}
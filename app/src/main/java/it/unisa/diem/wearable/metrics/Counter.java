@@ -0,0 +1,24 @@
+package it.unisa.diem.wearable.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements a lock-free monotonic counter, which can be incremented by any thread
+ * without allocating objects.
+ */
+public class Counter {
+
+    private final AtomicLong count = new AtomicLong();
+
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        count.addAndGet(delta);
+    }
+
+    public long get() {
+        return count.get();
+    }
+}
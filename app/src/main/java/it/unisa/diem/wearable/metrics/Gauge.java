@@ -0,0 +1,10 @@
+package it.unisa.diem.wearable.metrics;
+
+/**
+ * This interface represents a value which is read only when a snapshot of the metrics is taken,
+ * e.g. the number of samples in a queue.
+ */
+public interface Gauge {
+
+    long getValue();
+}
@@ -0,0 +1,120 @@
+package it.unisa.diem.wearable.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class implements a lock-free histogram of latencies with log-linear buckets, like HdrHistogram:
+ * every power of two is divided into SUB_BUCKETS linear buckets, so the values are recorded with a relative
+ * error lower than 1 / SUB_BUCKETS (about 3%), using a fixed array of counters. The values greater than
+ * MAX_VALUE are recorded as MAX_VALUE.
+ *
+ * The values are recorded by any thread without locks and without allocating objects.
+ * A snapshot is taken by a single reader through snapshotAndReset(), so every snapshot
+ * describes the interval since the previous one.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong max;
+    private final long[] snapshot;
+
+    public LatencyHistogram() {
+        buckets = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+        max = new AtomicLong();
+        snapshot = new long[buckets.length()];
+    }
+
+    /**
+     * This method records a value.
+     *
+     * @param value: a non-negative value, e.g. a latency in microseconds
+     */
+    public void record(long value) {
+        if(value < 0)
+            value = 0;
+        else if(value > MAX_VALUE)
+            value = MAX_VALUE;
+        buckets.incrementAndGet(bucketIndex(value));
+
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * This method copies the counts recorded since the previous snapshot and resets them.
+     * It must be called by a single thread at a time.
+     *
+     * @return the snapshot, which is valid until the next call
+     */
+    public synchronized Snapshot snapshotAndReset() {
+        long count = 0;
+        for(int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.getAndSet(i, 0);
+            count += snapshot[i];
+        }
+        return new Snapshot(snapshot, count, max.getAndSet(0));
+    }
+
+    static int bucketIndex(long value) {
+        int shift = Math.max(0, (64 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS + 1));
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the value in the middle of the bucket
+     */
+    static long bucketValue(int index) {
+        int shift = index < 2 * SUB_BUCKETS ? 0 : index / SUB_BUCKETS - 1;
+        long lowest = (long) (index - shift * SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+
+    /**
+     * This class contains the counts of a histogram in an interval.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile: a value between 0 and 100
+         * @return the value below which the given percentage of the values falls, or 0 if there are no values
+         */
+        public long getValueAtPercentile(double percentile) {
+            if(count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            if(rank >= count)
+                return max;
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if(seen >= rank)
+                    return Math.min(bucketValue(i), max);
+            }
+            return max;
+        }
+    }
+}
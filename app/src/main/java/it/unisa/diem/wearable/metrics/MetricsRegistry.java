@@ -0,0 +1,114 @@
+package it.unisa.diem.wearable.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class collects the metrics of the application by name: counters, gauges and latency histograms.
+ *
+ * The metrics are registered once, when the components are created, and then they are updated
+ * through their references, so the hot path never looks them up. writeSnapshot() writes all the metrics
+ * as a compact JSON object, like:
+ * {"device":"id","time":1660000000000,"counters":{"events.accelerometer":120},"gauges":{"buffer.size":3},
+ * "histograms":{"publish.latency.us":{"count":6,"p50":81000,"p90":97000,"p99":99000,"max":99500}}}
+ * where the histograms describe the interval since the previous snapshot.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Counter> counters;
+    private final Map<String, Gauge> gauges;
+    private final Map<String, LatencyHistogram> histograms;
+
+    public MetricsRegistry() {
+        counters = new LinkedHashMap<>();
+        gauges = new LinkedHashMap<>();
+        histograms = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the counter with the given name, which is created if it does not exist
+     */
+    public synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if(counter == null) {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * This method registers a gauge, replacing the one with the same name.
+     */
+    public synchronized void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @return the histogram with the given name, which is created if it does not exist
+     */
+    public synchronized LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if(histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * This method writes a snapshot of all the metrics and resets the histograms.
+     *
+     * @param deviceID
+     * @param timeMillis: the time of the snapshot
+     * @param out
+     */
+    public synchronized void writeSnapshot(String deviceID, long timeMillis, StringBuilder out) {
+        out.append("{\"device\":\"").append(deviceID).append("\",\"time\":").append(timeMillis);
+
+        out.append(",\"counters\":{");
+        boolean first = true;
+        for(Map.Entry<String, Counter> entry : counters.entrySet()) {
+            first = appendName(out, entry.getKey(), first);
+            out.append(entry.getValue().get());
+        }
+
+        out.append("},\"gauges\":{");
+        first = true;
+        for(Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            first = appendName(out, entry.getKey(), first);
+            out.append(entry.getValue().getValue());
+        }
+
+        out.append("},\"histograms\":{");
+        first = true;
+        for(Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            first = appendName(out, entry.getKey(), first);
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshotAndReset();
+            out.append("{\"count\":").append(snapshot.getCount())
+                    .append(",\"p50\":").append(snapshot.getValueAtPercentile(50))
+                    .append(",\"p90\":").append(snapshot.getValueAtPercentile(90))
+                    .append(",\"p99\":").append(snapshot.getValueAtPercentile(99))
+                    .append(",\"max\":").append(snapshot.getMax()).append('}');
+        }
+        out.append("}}");
+    }
+
+    /**
+     * This method writes a snapshot of all the metrics and resets the histograms.
+     *
+     * @return the snapshot as a JSON string
+     */
+    public String snapshot(String deviceID, long timeMillis) {
+        StringBuilder out = new StringBuilder(256);
+        writeSnapshot(deviceID, timeMillis, out);
+        return out.toString();
+    }
+
+    private static boolean appendName(StringBuilder out, String name, boolean first) {
+        if(!first)
+            out.append(',');
+        out.append('"').append(name).append("\":");
+        return false;
+    }
+}
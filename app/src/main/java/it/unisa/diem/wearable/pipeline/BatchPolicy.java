@@ -0,0 +1,38 @@
+package it.unisa.diem.wearable.pipeline;
+
+/**
+ * This class describes when a window of samples has to be flushed:
+ * as soon as it contains maxSamples samples or its oldest sample is maxDelayMillis old.
+ * A policy with maxSamples equal to 1 publishes every sample on its own.
+ */
+public final class BatchPolicy {
+
+    private final int maxSamples;
+    private final long maxDelayMillis;
+
+    public BatchPolicy(int maxSamples, long maxDelayMillis) {
+        if(maxSamples < 1)
+            throw new IllegalArgumentException("The window must contain at least one sample!");
+        if(maxDelayMillis < 0)
+            throw new IllegalArgumentException("The delay of the window cannot be negative!");
+        this.maxSamples = maxSamples;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * @param samples: the number of samples in the window
+     * @param ageMillis: the time elapsed since the oldest sample of the window
+     * @return true if the window has to be flushed
+     */
+    public boolean isExpired(int samples, long ageMillis) {
+        return samples >= maxSamples || (samples > 0 && ageMillis >= maxDelayMillis);
+    }
+}
@@ -0,0 +1,113 @@
+package it.unisa.diem.wearable.pipeline;
+
+import it.unisa.diem.wearable.buffer.SampleSink;
+
+/**
+ * This class implements a send-on-delta filter: a sample is forwarded to the next stage only if
+ * at least one of its values differs from the last forwarded sample by more than the threshold of its axis,
+ * so the readings which are identical within the noise of the sensor are not published.
+ * A sample is forwarded anyway if the last forwarded one is older than the heartbeat,
+ * so the coordinator knows that the sensor is still read.
+ *
+ * If all the thresholds are 0, every sample is forwarded.
+ */
+public class DeadBandFilter implements SampleSink {
+
+    private final SampleSink sink;
+    private final float[] thresholds;
+    private long heartbeatNanos;
+
+    private boolean hasLast;
+    private long lastTimestampNanos;
+    private float lastX, lastY, lastZ;
+    private long suppressedCount;
+
+    /**
+     * @param thresholds: the thresholds of the three axes
+     * @param heartbeatMillis: the maximum time between two forwarded samples, in milliseconds
+     * @param sink: the next stage of the pipeline
+     */
+    public DeadBandFilter(float[] thresholds, long heartbeatMillis, SampleSink sink) {
+        this.sink = sink;
+        this.thresholds = new float[3];
+        setThresholds(thresholds);
+        setHeartbeat(heartbeatMillis);
+    }
+
+    /**
+     * This method sets the thresholds of the three axes.
+     *
+     * @param thresholds: an array with one threshold for all the axes or three thresholds
+     */
+    public synchronized void setThresholds(float[] thresholds) {
+        if(thresholds.length != 1 && thresholds.length != 3)
+            throw new IllegalArgumentException("One or three thresholds are required!");
+        for(int i = 0; i < 3; i++) {
+            float threshold = thresholds[thresholds.length == 1 ? 0 : i];
+            if(threshold < 0 || Float.isNaN(threshold))
+                throw new IllegalArgumentException("The thresholds cannot be negative!");
+            this.thresholds[i] = threshold;
+        }
+    }
+
+    /**
+     * This method sets the maximum time between two forwarded samples.
+     *
+     * @param heartbeatMillis
+     */
+    public synchronized void setHeartbeat(long heartbeatMillis) {
+        if(heartbeatMillis <= 0)
+            throw new IllegalArgumentException("The heartbeat must be positive!");
+        this.heartbeatNanos = heartbeatMillis * 1000000L;
+    }
+
+    /**
+     * This method parses the thresholds sent by the coordinator, like "0.05" or "0.05,0.05,0.1".
+     *
+     * @param text
+     * @return the thresholds
+     * @throws NumberFormatException if the text does not contain one or three numbers
+     */
+    public static float[] parseThresholds(String text) {
+        String[] values = text.trim().split("\\s*,\\s*");
+        if(values.length != 1 && values.length != 3)
+            throw new NumberFormatException("One or three thresholds are required: " + text);
+        float[] thresholds = new float[values.length];
+        for(int i = 0; i < values.length; i++)
+            thresholds[i] = Float.parseFloat(values[i]);
+        return thresholds;
+    }
+
+    @Override
+    public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+        synchronized (this) {
+            if(hasLast && timestampNanos - lastTimestampNanos < heartbeatNanos &&
+                    Math.abs(x - lastX) <= thresholds[0] && Math.abs(y - lastY) <= thresholds[1] &&
+                    Math.abs(z - lastZ) <= thresholds[2] &&
+                    (thresholds[0] > 0 || thresholds[1] > 0 || thresholds[2] > 0)) {
+                suppressedCount++;
+                return;
+            }
+            hasLast = true;
+            lastTimestampNanos = timestampNanos;
+            lastX = x;
+            lastY = y;
+            lastZ = z;
+        }
+        sink.accept(sensorType, timestampNanos, x, y, z);
+    }
+
+    /**
+     * This method forgets the last forwarded sample, so the next sample is always forwarded.
+     */
+    public synchronized void reset() {
+        hasLast = false;
+    }
+
+    /**
+     * @return the number of samples which are not forwarded
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+}
@@ -0,0 +1,181 @@
+package it.unisa.diem.wearable.pipeline;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import it.unisa.diem.wearable.buffer.SampleSink;
+import it.unisa.diem.wearable.codec.FrameCodec;
+import it.unisa.diem.wearable.codec.FramePool;
+import it.unisa.diem.wearable.communication.Publisher;
+
+/**
+ * This class collects the samples of a single topic into a window
+ * and publishes the whole window as one message, according to a BatchPolicy.
+ *
+ * The samples are stored into preallocated columns of primitives and the whole window
+ * is encoded by a FrameCodec when it is flushed. The payloads are taken from a FramePool
+ * and given back when the publication is completed.
+ */
+public class SampleBatcher implements SampleSink {
+
+    private static final int FRAME_POOL_CAPACITY = 8;
+
+    private final String topic;
+    private final FrameCodec codec;
+    private final BatchPolicy policy;
+    private final Publisher publisher;
+    private final int qos;
+    private final boolean retained;
+    private final IMqttActionListener cbPublish;
+
+    private final long[] timestamps;
+    private final float[] xs, ys, zs;
+    private final byte[] frame;
+    private final FramePool framePool;
+    private final IMqttActionListener releaseListener;
+    private int sensorType;
+    private int samples;
+    private long windowStartMillis;
+    private volatile long publishedSamples;
+
+    /**
+     * @param topic: the topic on which the windows are published
+     * @param codec: the codec of the windows
+     * @param policy: the policy which decides when a window is flushed
+     * @param publisher: the publisher of the windows, e.g. the MQTT client
+     * @param qos
+     * @param retained
+     * @param cbPublish: the listener notified for every publication (it can be null)
+     */
+    public SampleBatcher(String topic, FrameCodec codec, BatchPolicy policy, Publisher publisher,
+                         int qos, boolean retained, IMqttActionListener cbPublish) {
+        this.topic = topic;
+        this.codec = codec;
+        this.policy = policy;
+        this.publisher = publisher;
+        this.qos = qos;
+        this.retained = retained;
+        this.cbPublish = cbPublish;
+
+        int maxSamples = policy.getMaxSamples();
+        this.timestamps = new long[maxSamples];
+        this.xs = new float[maxSamples];
+        this.ys = new float[maxSamples];
+        this.zs = new float[maxSamples];
+        this.frame = new byte[codec.maxFrameSize(maxSamples)];
+        this.framePool = new FramePool(codec.maxFrameSize(maxSamples), FRAME_POOL_CAPACITY);
+        this.releaseListener = new ReleaseListener();
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the number of samples published (or spooled) since the creation of the batcher
+     */
+    public long getPublishedSamples() {
+        return publishedSamples;
+    }
+
+    /**
+     * This method adds a sample into the current window and flushes it if the policy requires so.
+     *
+     * @param sensorType
+     * @param timestampNanos
+     * @param x
+     * @param y
+     * @param z
+     * @param nowMillis: the current time, used to measure the age of the window
+     */
+    public synchronized void add(int sensorType, long timestampNanos, float x, float y, float z, long nowMillis) {
+        if(samples == 0)
+            windowStartMillis = nowMillis;
+        this.sensorType = sensorType;
+        timestamps[samples] = timestampNanos;
+        xs[samples] = x;
+        ys[samples] = y;
+        zs[samples] = z;
+        samples++;
+
+        if(policy.isExpired(samples, nowMillis - windowStartMillis))
+            flush();
+    }
+
+    /**
+     * This method adds a sample using its timestamp as the current time.
+     */
+    @Override
+    public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+        add(sensorType, timestampNanos, x, y, z, timestampNanos / 1000000L);
+    }
+
+    /**
+     * This method flushes the current window if it is older than the maximum delay.
+     * It should be called periodically, so that a window is published even if no more samples arrive.
+     *
+     * @param nowMillis: the current time, measured with the clock of the timestamps of the samples
+     *                 when they are added through accept()
+     */
+    public synchronized void flushExpired(long nowMillis) {
+        if(policy.isExpired(samples, nowMillis - windowStartMillis))
+            flush();
+    }
+
+    /**
+     * This method publishes the current window, if it is not empty.
+     */
+    public synchronized void flush() {
+        if(samples == 0)
+            return;
+        int length = codec.encode(sensorType, timestamps, xs, ys, zs, samples, frame, 0);
+        byte[] payload = framePool.acquire(length);
+        System.arraycopy(frame, 0, payload, 0, length);
+        publishedSamples += samples;
+        reset();
+        publisher.publish(topic, payload, qos, retained, releaseListener);
+    }
+
+    /**
+     * This method discards the current window without publishing it.
+     */
+    public synchronized void reset() {
+        samples = 0;
+    }
+
+    /**
+     * This class gives back the payload to the pool of frames when the publication is completed
+     * and notifies the listener of the batcher.
+     */
+    private class ReleaseListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            releaseFrame(asyncActionToken);
+            if(cbPublish != null)
+                cbPublish.onSuccess(asyncActionToken);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            releaseFrame(asyncActionToken);
+            if(cbPublish != null)
+                cbPublish.onFailure(asyncActionToken, exception);
+        }
+
+        private void releaseFrame(IMqttToken asyncActionToken) {
+            if(!(asyncActionToken instanceof IMqttDeliveryToken))
+                return;
+            try {
+                MqttMessage message = ((IMqttDeliveryToken) asyncActionToken).getMessage();
+                if(message != null)
+                    framePool.release(message.getPayload());
+            } catch (MqttException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
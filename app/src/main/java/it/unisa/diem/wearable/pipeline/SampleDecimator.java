@@ -0,0 +1,95 @@
+package it.unisa.diem.wearable.pipeline;
+
+import it.unisa.diem.wearable.buffer.SampleSink;
+
+/**
+ * This class reduces the samples of a sensor to exactly one sample per sampling period.
+ *
+ * The time is divided into periods aligned to the epoch and the samples falling into the same period
+ * are aggregated: they can be averaged or only the last one can be kept (e.g. for angles, whose average
+ * is meaningless across 0 and 360 degrees). The aggregated sample of a period is forwarded to the next stage
+ * when the first sample of a following period arrives, or when the decimator is flushed.
+ */
+public class SampleDecimator implements SampleSink {
+
+    public enum Mode {
+        AVERAGE,
+        LAST
+    }
+
+    private final SampleSink sink;
+    private final Mode mode;
+    private long periodNanos;
+
+    private long currentPeriod;
+    private int count;
+    private int sensorType;
+    private long lastTimestampNanos;
+    private double sumX, sumY, sumZ;
+    private float lastX, lastY, lastZ;
+
+    /**
+     * @param samplingPeriodMillis: the sampling period, in milliseconds
+     * @param mode: how the samples of the same period are aggregated
+     * @param sink: the next stage of the pipeline
+     */
+    public SampleDecimator(int samplingPeriodMillis, Mode mode, SampleSink sink) {
+        this.sink = sink;
+        this.mode = mode;
+        setSamplingPeriod(samplingPeriodMillis);
+    }
+
+    /**
+     * This method changes the sampling period. The pending period is forwarded first.
+     *
+     * @param samplingPeriodMillis
+     */
+    public synchronized void setSamplingPeriod(int samplingPeriodMillis) {
+        if(samplingPeriodMillis <= 0)
+            throw new IllegalArgumentException("The sampling period must be positive!");
+        flush();
+        this.periodNanos = samplingPeriodMillis * 1000000L;
+    }
+
+    @Override
+    public synchronized void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+        long period = timestampNanos / periodNanos;
+        if(count > 0 && period != currentPeriod)
+            flush();
+
+        currentPeriod = period;
+        this.sensorType = sensorType;
+        lastTimestampNanos = timestampNanos;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        sumX += x;
+        sumY += y;
+        sumZ += z;
+        count++;
+    }
+
+    /**
+     * This method forwards the aggregated sample of the pending period, if any.
+     */
+    public synchronized void flush() {
+        if(count == 0)
+            return;
+        if(mode == Mode.AVERAGE)
+            sink.accept(sensorType, lastTimestampNanos,
+                    (float) (sumX / count), (float) (sumY / count), (float) (sumZ / count));
+        else
+            sink.accept(sensorType, lastTimestampNanos, lastX, lastY, lastZ);
+        reset();
+    }
+
+    /**
+     * This method discards the pending period without forwarding it.
+     */
+    public synchronized void reset() {
+        count = 0;
+        sumX = 0;
+        sumY = 0;
+        sumZ = 0;
+    }
+}
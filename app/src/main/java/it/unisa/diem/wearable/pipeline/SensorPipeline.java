@@ -0,0 +1,197 @@
+package it.unisa.diem.wearable.pipeline;
+
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.buffer.SampleSink;
+import it.unisa.diem.wearable.features.FeatureExtractor;
+
+/**
+ * This class connects the stages of the publishing pipeline of the sensor samples,
+ * without depending on Android, so that it can be tested and benchmarked on the JVM.
+ *
+ * The thread of the sensor events offers the samples to the ring buffer through offer(),
+ * while the publishing thread moves them through drain() to the stream of their sensor,
+ * made of a decimator, which keeps one sample per sampling period, and a batcher,
+ * which publishes the windows of samples. A stream can also have a feature extractor: the output
+ * of the pipeline selects whether its samples go to the decimator (raw samples), to the extractor (features)
+ * or to both. All the other methods must be called on the publishing thread, except setSamplingPeriod()
+ * and setOutput(), whose stages are synchronized.
+ */
+public class SensorPipeline implements SampleSink {
+
+    /**
+     * The data published for the streams with a feature extractor.
+     */
+    public enum Output {
+        RAW, FEATURES, BOTH;
+
+        /**
+         * @param name: "raw", "features" or "both", ignoring the case
+         * @return the output, or null if the name is unknown
+         */
+        public static Output parse(String name) {
+            for(Output output : values())
+                if(output.name().equalsIgnoreCase(name.trim()))
+                    return output;
+            return null;
+        }
+    }
+
+    public static final int MAX_SENSOR_TYPE = 64;
+
+    private final SampleRingBuffer buffer;
+    private final SampleDecimator[] decimators;
+    private final SampleBatcher[] batchers;
+    private final FeatureExtractor[] extractors;
+    private final boolean[] ownPeriod;
+    private volatile Output output;
+    private int streams;
+    private int[] sensorTypes;
+
+    public SensorPipeline(SampleRingBuffer buffer) {
+        this.buffer = buffer;
+        this.decimators = new SampleDecimator[MAX_SENSOR_TYPE];
+        this.batchers = new SampleBatcher[MAX_SENSOR_TYPE];
+        this.extractors = new FeatureExtractor[MAX_SENSOR_TYPE];
+        this.ownPeriod = new boolean[MAX_SENSOR_TYPE];
+        this.output = Output.RAW;
+        this.sensorTypes = new int[0];
+    }
+
+    /**
+     * This method adds the stream of a sensor. The decimator must forward its samples to the batcher.
+     *
+     * @param sensorType: the type of the sensor (e.g. Sensor.TYPE_ACCELEROMETER), lower than MAX_SENSOR_TYPE
+     * @param decimator: the first stage of the stream
+     * @param batcher: the last stage of the stream
+     */
+    public void addStream(int sensorType, SampleDecimator decimator, SampleBatcher batcher) {
+        if(sensorType < 0 || sensorType >= MAX_SENSOR_TYPE)
+            throw new IllegalArgumentException("Unsupported sensor type: " + sensorType);
+        if(decimators[sensorType] == null) {
+            int[] types = new int[streams + 1];
+            System.arraycopy(sensorTypes, 0, types, 0, streams);
+            types[streams++] = sensorType;
+            sensorTypes = types;
+        }
+        decimators[sensorType] = decimator;
+        batchers[sensorType] = batcher;
+    }
+
+    /**
+     * This method adds a feature extractor to the stream of a sensor, which must be already added.
+     *
+     * @param sensorType
+     * @param extractor
+     */
+    public void addFeatures(int sensorType, FeatureExtractor extractor) {
+        if(sensorType < 0 || sensorType >= MAX_SENSOR_TYPE || decimators[sensorType] == null)
+            throw new IllegalArgumentException("Unknown stream: " + sensorType);
+        extractors[sensorType] = extractor;
+    }
+
+    /**
+     * This method selects the data published for the streams with a feature extractor.
+     * The extractors which are excluded are reset, so they start again from a new window.
+     *
+     * @param output
+     */
+    public void setOutput(Output output) {
+        this.output = output;
+        if(output == Output.RAW)
+            for(int i = 0; i < streams; i++)
+                if(extractors[sensorTypes[i]] != null)
+                    extractors[sensorTypes[i]].reset();
+    }
+
+    public Output getOutput() {
+        return output;
+    }
+
+    /**
+     * This method offers a sample to the ring buffer. It must be called only by the thread of the sensor events.
+     *
+     * @return false if the sample is discarded because the buffer is full
+     */
+    public boolean offer(int sensorType, long timestampNanos, float x, float y, float z) {
+        return buffer.offer(sensorType, timestampNanos, x, y, z);
+    }
+
+    /**
+     * This method moves all the samples of the ring buffer to the streams of their sensors.
+     *
+     * @return the number of samples
+     */
+    public int drain() {
+        return buffer.drain(this, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method forwards a sample to the stream of its sensor; samples of unknown sensors are ignored.
+     */
+    @Override
+    public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+        if(sensorType < 0 || sensorType >= MAX_SENSOR_TYPE || decimators[sensorType] == null)
+            return;
+        FeatureExtractor extractor = extractors[sensorType];
+        Output output = this.output;
+        if(extractor == null || output != Output.FEATURES)
+            decimators[sensorType].accept(sensorType, timestampNanos, x, y, z);
+        if(extractor != null && output != Output.RAW)
+            extractor.accept(sensorType, timestampNanos, x, y, z);
+    }
+
+    /**
+     * This method drains the ring buffer and publishes the windows older than the maximum delay.
+     *
+     * @param nowMillis
+     */
+    public void flushExpired(long nowMillis) {
+        drain();
+        for(int i = 0; i < streams; i++)
+            batchers[sensorTypes[i]].flushExpired(nowMillis);
+    }
+
+    /**
+     * This method publishes all the pending samples: the ones in the ring buffer,
+     * the ones aggregated by the decimators, the windows of the batchers and the ones of the feature extractors.
+     */
+    public void flush() {
+        drain();
+        for(int i = 0; i < streams; i++) {
+            decimators[sensorTypes[i]].flush();
+            batchers[sensorTypes[i]].flush();
+            if(extractors[sensorTypes[i]] != null && output != Output.RAW)
+                extractors[sensorTypes[i]].flush();
+        }
+    }
+
+    /**
+     * This method applies a new sampling period to the decimators of all the streams,
+     * except the ones with their own sampling period.
+     *
+     * @param samplingPeriodMillis
+     */
+    public void setSamplingPeriod(int samplingPeriodMillis) {
+        for(int i = 0; i < streams; i++)
+            if(!ownPeriod[sensorTypes[i]])
+                decimators[sensorTypes[i]].setSamplingPeriod(samplingPeriodMillis);
+    }
+
+    /**
+     * This method gives its own sampling period to the stream of a sensor, which must be already added:
+     * from now on, the stream is not affected by the sampling period of all the streams.
+     *
+     * @param sensorType
+     * @param samplingPeriodMillis
+     */
+    public void setSamplingPeriod(int sensorType, int samplingPeriodMillis) {
+        if(sensorType < 0 || sensorType >= MAX_SENSOR_TYPE || decimators[sensorType] == null)
+            throw new IllegalArgumentException("Unknown stream: " + sensorType);
+        ownPeriod[sensorType] = true;
+        decimators[sensorType].setSamplingPeriod(samplingPeriodMillis);
+    }
+
+    public SampleRingBuffer getBuffer() {
+        return buffer;
+    }
+}
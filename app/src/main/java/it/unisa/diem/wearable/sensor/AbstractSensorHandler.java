@@ -1,16 +1,327 @@
 package it.unisa.diem.wearable.sensor;
 
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class manages the registration of a listener on the sensors of a SensorManager.
+ *
+ * Optionally, the sensors batch their events in the hardware FIFO of the sensor hub: the events are delivered
+ * in bursts at most every maximum report latency, so the application processor is not woken for every sample.
+ * The latency is bounded by the time needed to fill the FIFO at the sampling period, and the sensors
+ * without a FIFO (getFifoMaxEventCount() is 0) deliver every event as soon as possible.
+ * When the listener is unregistered, or registered again with a new sampling period, the FIFO is flushed first,
+ * so the batched events are not lost.
+ */
 public abstract class AbstractSensorHandler implements SensorHandler {
 
+    private static final long FLUSH_TIMEOUT_MS = 2000;
+
     protected SensorManager sensorManager;
     protected SensorEventListener sensorEventListener;
-    protected static final int SENSOR_DELAY = SensorManager.SENSOR_DELAY_NORMAL;
+    protected Handler handler;
+    protected Sensor sensor;
+    protected int samplingPeriodUs;
+    protected int batchingLatencyUs;
+    protected static final int DEFAULT_SAMPLING_PERIOD_US = 200000;
 
-    public AbstractSensorHandler(SensorManager sensorManager, SensorEventListener sensorEventListener) {
+    private final SensorEventListener2 registeredListener;
+    private final List<Sensor> registeredSensors;
+    private final Handler timeoutHandler;
+    private final Runnable unregisterTask;
+    private final Runnable reregisterTask;
+    private boolean batching;
+    private boolean reregisterPending;
+    private int pendingFlushes;
+    private Runnable onUnregistered;
+
+    /**
+     * @param sensorManager
+     * @param sensorEventListener
+     * @param handler: the handler of the thread on which the events are delivered,
+     *               or null to deliver them on the main thread
+     */
+    public AbstractSensorHandler(SensorManager sensorManager, SensorEventListener sensorEventListener,
+                                 Handler handler) {
         this.sensorManager = sensorManager;
         this.sensorEventListener = sensorEventListener;
+        this.handler = handler;
+        this.samplingPeriodUs = DEFAULT_SAMPLING_PERIOD_US;
+        this.registeredListener = new FlushingListener();
+        this.registeredSensors = new ArrayList<>();
+        this.timeoutHandler = handler != null ? handler : new Handler(Looper.getMainLooper());
+        this.unregisterTask = new UnregisterTask();
+        this.reregisterTask = new ReregisterTask();
+    }
+
+    /**
+     * @return the type of the sensor managed by the handler (e.g. Sensor.TYPE_ACCELEROMETER)
+     */
+    protected abstract int getSensorType();
+
+    /**
+     * This method registers the listener on the default sensor of the type managed by the handler,
+     * with the current sampling period and maximum report latency.
+     *
+     * @return the registered sensor, or null if the device has not such a sensor or it cannot be registered
+     */
+    @Override
+    public Sensor registerListener() {
+        Sensor defaultSensor = sensorManager.getDefaultSensor(getSensorType());
+        if(defaultSensor == null || !register(defaultSensor))
+            return null;
+        sensor = defaultSensor;
+        return defaultSensor;
+    }
+
+    /**
+     * This method registers the listener on a sensor, with the current sampling period
+     * and the maximum report latency allowed for the sensor.
+     *
+     * @return true if the sensor is registered
+     */
+    protected synchronized boolean register(Sensor sensor) {
+        boolean reregister = reregisterPending;
+        cancelPendingFlush();
+        if(reregister)
+            reregister();
+        if(!sensorManager.registerListener(registeredListener, sensor, samplingPeriodUs,
+                getMaxReportLatencyUs(sensor), handler))
+            return false;
+        if(!registeredSensors.contains(sensor))
+            registeredSensors.add(sensor);
+        batching |= isBatching(sensor);
+        return true;
+    }
+
+    @Override
+    public void unregisterListener() {
+        unregisterListener(null);
+    }
+
+    /**
+     * This method unregisters the listener from all the sensors. If the sensors batch their events,
+     * the FIFO is flushed first and the listener is unregistered when all the batched events are delivered.
+     *
+     * @param onUnregistered: the task which is run on the thread of the events after the last event,
+     *                      when the listener is unregistered (it can be null)
+     */
+    public synchronized void unregisterListener(Runnable onUnregistered) {
+        cancelPendingFlush();
+        if(batching && !registeredSensors.isEmpty() && sensorManager.flush(registeredListener)) {
+            pendingFlushes = registeredSensors.size();
+            this.onUnregistered = onUnregistered;
+            timeoutHandler.postDelayed(unregisterTask, FLUSH_TIMEOUT_MS);
+            return;
+        }
+        unregisterNow();
+        if(onUnregistered != null)
+            timeoutHandler.post(onUnregistered);
+    }
+
+    /**
+     * This method unregisters the listener immediately, without flushing the FIFO, also if an unregistration
+     * is waiting for a flush. The events still batched in the FIFO are lost, so it is meant for the destruction
+     * of the service, when the thread of the events is going to quit.
+     */
+    public synchronized void unregisterListenerNow() {
+        Runnable task = onUnregistered;
+        cancelPendingFlush();
+        unregisterNow();
+        if(task != null)
+            timeoutHandler.post(task);
+    }
+
+    /**
+     * This method asks the sensors to deliver immediately the events batched in their FIFO.
+     *
+     * @return false if the listener is not registered or the sensors do not batch their events
+     */
+    public synchronized boolean flush() {
+        return batching && !registeredSensors.isEmpty() && sensorManager.flush(registeredListener);
+    }
+
+    /**
+     * This method sets the sampling period requested by the coordinator.
+     * The sensor is asked to deliver one event per period and to hold the events at most for one period,
+     * or for the batching latency if the hardware batching is enabled.
+     * If the listener is already registered and the period changes, it is registered again with the new period,
+     * without affecting the other sensors.
+     *
+     * @param samplingPeriodMs: the sampling period, in milliseconds
+     */
+    public synchronized void setSamplingPeriod(int samplingPeriodMs) {
+        int periodUs = samplingPeriodMs * 1000;
+        if(periodUs == samplingPeriodUs)
+            return;
+        samplingPeriodUs = periodUs;
+        requestReregister();
+    }
+
+    /**
+     * This method enables the batching of the events in the hardware FIFO of the sensors.
+     * It is applied also to the sensors which are already registered.
+     *
+     * @param batchingLatencyMs: the maximum report latency, in milliseconds, or 0 to disable the batching
+     */
+    public synchronized void setHardwareBatching(int batchingLatencyMs) {
+        int latencyUs = batchingLatencyMs * 1000;
+        if(latencyUs == batchingLatencyUs)
+            return;
+        batchingLatencyUs = latencyUs;
+        requestReregister();
+    }
+
+    /**
+     * @return true if at least one registered sensor batches its events in the FIFO
+     */
+    public synchronized boolean isBatching() {
+        return batching;
+    }
+
+    public int getSamplingPeriodUs() {
+        return samplingPeriodUs;
+    }
+
+    /**
+     * @return the maximum report latency for a sensor: the batching latency, bounded by the time needed
+     * to fill the FIFO, or the sampling period if the batching is disabled or not supported
+     */
+    protected int getMaxReportLatencyUs(Sensor sensor) {
+        if(!isBatching(sensor))
+            return samplingPeriodUs;
+        long fifoLatencyUs = (long) sensor.getFifoMaxEventCount() * samplingPeriodUs;
+        return (int) Math.max(samplingPeriodUs, Math.min(batchingLatencyUs, fifoLatencyUs));
+    }
+
+    private boolean isBatching(Sensor sensor) {
+        return batchingLatencyUs > samplingPeriodUs && sensor.getFifoMaxEventCount() > 0;
+    }
+
+    private void unregisterNow() {
+        sensorManager.unregisterListener(registeredListener);
+        registeredSensors.clear();
+        sensor = null;
+        batching = false;
+    }
+
+    /**
+     * This method registers the sensors again with the current sampling period and batching latency.
+     * If they batch their events, the FIFO is flushed first and they are registered again when all the batched
+     * events are delivered. While a flush is pending, nothing is done: the pending re-registration uses
+     * the new values, and a pending unregistration makes them apply to the next registration.
+     */
+    private void requestReregister() {
+        if(registeredSensors.isEmpty() || pendingFlushes > 0)
+            return;
+        if(batching && sensorManager.flush(registeredListener)) {
+            pendingFlushes = registeredSensors.size();
+            reregisterPending = true;
+            timeoutHandler.postDelayed(reregisterTask, FLUSH_TIMEOUT_MS);
+            return;
+        }
+        reregister();
+    }
+
+    private void reregister() {
+        batching = false;
+        Iterator<Sensor> iterator = registeredSensors.iterator();
+        while(iterator.hasNext()) {
+            Sensor registeredSensor = iterator.next();
+            sensorManager.unregisterListener(registeredListener, registeredSensor);
+            if(sensorManager.registerListener(registeredListener, registeredSensor, samplingPeriodUs,
+                    getMaxReportLatencyUs(registeredSensor), handler)) {
+                batching |= isBatching(registeredSensor);
+                continue;
+            }
+            Log.e(getClass().toString(), "The sensor " + registeredSensor.getName() + " cannot be registered again");
+            iterator.remove();
+            if(registeredSensor == sensor)
+                sensor = null;
+        }
+    }
+
+    private void cancelPendingFlush() {
+        timeoutHandler.removeCallbacks(unregisterTask);
+        timeoutHandler.removeCallbacks(reregisterTask);
+        pendingFlushes = 0;
+        onUnregistered = null;
+        reregisterPending = false;
+    }
+
+    private synchronized void onFlushCompleted() {
+        if(pendingFlushes > 0 && --pendingFlushes == 0)
+            (reregisterPending ? reregisterTask : unregisterTask).run();
+    }
+
+    /**
+     * This class unregisters the listener when all the batched events are delivered,
+     * or when they are not delivered within FLUSH_TIMEOUT_MS.
+     */
+    private class UnregisterTask implements Runnable {
+
+        @Override
+        public void run() {
+            Runnable task;
+            synchronized (AbstractSensorHandler.this) {
+                timeoutHandler.removeCallbacks(this);
+                task = onUnregistered;
+                pendingFlushes = 0;
+                onUnregistered = null;
+                unregisterNow();
+            }
+            if(task != null)
+                task.run();
+        }
+    }
+
+    /**
+     * This class registers the sensors again with the current sampling period when all the batched events
+     * are delivered, or when they are not delivered within FLUSH_TIMEOUT_MS.
+     */
+    private class ReregisterTask implements Runnable {
+
+        @Override
+        public void run() {
+            synchronized (AbstractSensorHandler.this) {
+                if(!reregisterPending)
+                    return;
+                cancelPendingFlush();
+                reregister();
+            }
+        }
+    }
+
+    /**
+     * This class forwards the events to the listener of the handler and tracks the completion of the flushes.
+     */
+    private class FlushingListener implements SensorEventListener2 {
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            sensorEventListener.onSensorChanged(event);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            sensorEventListener.onAccuracyChanged(sensor, accuracy);
+        }
+
+        @Override
+        public void onFlushCompleted(Sensor sensor) {
+            if(sensorEventListener instanceof SensorEventListener2)
+                ((SensorEventListener2) sensorEventListener).onFlushCompleted(sensor);
+            AbstractSensorHandler.this.onFlushCompleted();
+        }
     }
 }
@@ -0,0 +1,123 @@
+package it.unisa.diem.wearable.sensor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+
+import it.unisa.diem.wearable.adaptive.AdaptiveSamplingController;
+
+/**
+ * This class applies the sampling period decided by an AdaptiveSamplingController to the sensor handlers.
+ *
+ * The controller is fed with the samples of the accelerometer through onAccelerometerSample().
+ * While the period is the maximum one, the significant motion sensor, if available, is armed:
+ * when it triggers, the minimum period is restored without waiting for the next samples.
+ */
+public class AdaptiveSampler {
+
+    private final SensorManager sensorManager;
+    private final AdaptiveSamplingController controller;
+    private final AbstractSensorHandler[] handlers;
+    private final Sensor significantMotionSensor;
+    private final TriggerEventListener significantMotionListener;
+    private boolean significantMotionRequested;
+    private int appliedPeriodMs;
+
+    /**
+     * @param sensorManager
+     * @param controller
+     * @param useSignificantMotion: true to wake from the maximum period through the significant motion sensor
+     * @param handlers: the handlers whose sampling period is adapted
+     */
+    public AdaptiveSampler(SensorManager sensorManager, AdaptiveSamplingController controller,
+                           boolean useSignificantMotion, AbstractSensorHandler... handlers) {
+        this.sensorManager = sensorManager;
+        this.controller = controller;
+        this.handlers = handlers;
+        this.significantMotionSensor = useSignificantMotion ?
+                sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION) : null;
+        this.significantMotionListener = new SignificantMotionListener();
+    }
+
+    /**
+     * This method feeds a sample of the accelerometer to the controller. It does not allocate objects.
+     *
+     * @param timestampNanos
+     * @param values
+     */
+    public void onAccelerometerSample(long timestampNanos, float[] values) {
+        int periodMs = controller.update(timestampNanos, values[0], values[1], values[2]);
+        if(periodMs > 0)
+            apply(periodMs);
+    }
+
+    /**
+     * This method sets the bounds of the sampling period, e.g. when the coordinator changes them,
+     * and applies the resulting period to the handlers if it changed.
+     *
+     * @param minPeriodMs
+     * @param maxPeriodMs
+     */
+    public void setBounds(int minPeriodMs, int maxPeriodMs) {
+        apply(controller.setBounds(minPeriodMs, maxPeriodMs));
+    }
+
+    /**
+     * This method restores the minimum period before the sensors are started.
+     * The handlers are updated only if their period was not the minimum one.
+     */
+    public void reset() {
+        controller.reset();
+        apply(controller.getPeriodMs());
+    }
+
+    /**
+     * This method disarms the significant motion sensor, when the sensors are stopped.
+     */
+    public synchronized void stop() {
+        if(significantMotionRequested) {
+            sensorManager.cancelTriggerSensor(significantMotionListener, significantMotionSensor);
+            significantMotionRequested = false;
+        }
+    }
+
+    public AdaptiveSamplingController getController() {
+        return controller;
+    }
+
+    private void apply(int periodMs) {
+        boolean changed;
+        synchronized (this) {
+            changed = periodMs != appliedPeriodMs;
+            appliedPeriodMs = periodMs;
+        }
+        if(changed)
+            for(AbstractSensorHandler handler : handlers)
+                handler.setSamplingPeriod(periodMs);
+        synchronized (this) {
+            if(significantMotionSensor != null && controller.isIdle() && !significantMotionRequested)
+                significantMotionRequested = sensorManager.requestTriggerSensor(significantMotionListener,
+                        significantMotionSensor);
+            else if(!controller.isIdle())
+                stop();
+        }
+    }
+
+    /**
+     * This class restores the minimum period when the significant motion sensor triggers.
+     * The trigger is one-shot, so it is armed again when the period reaches the maximum one.
+     */
+    private class SignificantMotionListener extends TriggerEventListener {
+
+        @Override
+        public void onTrigger(TriggerEvent event) {
+            synchronized (AdaptiveSampler.this) {
+                significantMotionRequested = false;
+            }
+            int periodMs = controller.onSignificantMotion();
+            if(periodMs > 0)
+                apply(periodMs);
+        }
+    }
+}
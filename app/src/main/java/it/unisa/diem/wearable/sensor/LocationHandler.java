@@ -1,50 +1,104 @@
 package it.unisa.diem.wearable.sensor;
 
 import android.Manifest;
-import android.app.Activity;
+import android.content.Context;
 import android.content.pm.PackageManager;
-import android.location.LocationListener;
-import android.location.LocationManager;
+import android.os.Looper;
 
 import androidx.core.content.ContextCompat;
 
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationServices;
+
+import it.unisa.diem.wearable.location.LocationPriority;
+
+/**
+ * This class reads the location through the fused location provider, which combines GPS, Wi-Fi and cell
+ * and chooses the sources according to the priority of the request, instead of keeping the GPS always on.
+ * With a maximum wait time, the provider delivers the locations in batches, so the device wakes up less often.
+ */
 public class LocationHandler implements SensorHandler {
 
-    private LocationManager locationManager;
-    private LocationListener locationListener;
-    private Activity activity;
-    private static final int MIN_TIME_MS = 30000;
-    private static final int MIN_DISTANCE_M = 20;
+    private final FusedLocationProviderClient locationClient;
+    private final LocationCallback locationCallback;
+    private final Context context;
+    private LocationPriority priority;
+    private long interval;
+    private long fastestInterval;
+    private long maxWaitTime;
+    private boolean registered;
 
-    public LocationHandler(LocationManager locationManager, LocationListener locationListener, Activity activity) {
-        this.locationManager = locationManager;
-        this.locationListener = locationListener;
-        this.activity = activity;
+    public LocationHandler(Context context, LocationCallback locationCallback) {
+        this.locationClient = LocationServices.getFusedLocationProviderClient(context);
+        this.locationCallback = locationCallback;
+        this.context = context;
+        this.priority = LocationPriority.BALANCED;
+        this.interval = 30000;
+        this.fastestInterval = 10000;
+    }
+
+    /**
+     * This method sets the parameters of the request of location updates.
+     * If the listener is already registered, the updates are requested again with the new parameters.
+     *
+     * @param priority
+     * @param interval: the interval between the updates, in milliseconds
+     * @param fastestInterval: the minimum interval between the updates, in milliseconds
+     * @param maxWaitTime: the maximum time for which the updates can be batched, in milliseconds, or 0
+     */
+    public synchronized void setRequest(LocationPriority priority, long interval, long fastestInterval,
+                                        long maxWaitTime) {
+        this.priority = priority;
+        this.interval = interval;
+        this.fastestInterval = fastestInterval;
+        this.maxWaitTime = maxWaitTime;
+        if(registered) {
+            locationClient.removeLocationUpdates(locationCallback);
+            registered = registerListener();
+        }
     }
 
     /**
      * This method checks the permission for location and,
-     * if it is present, the relative listener is registered.
+     * if it is present, the updates of the fused location provider are requested.
      *
      * @return True if the permission for location is granted, false otherwise
      */
     @Override
-    public Boolean registerListener() {
-        if (ContextCompat.checkSelfPermission(activity,
+    public synchronized Boolean registerListener() {
+        if (ContextCompat.checkSelfPermission(context,
                 Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, MIN_TIME_MS,
-                    MIN_DISTANCE_M, locationListener);
+            LocationRequest request = LocationRequest.create()
+                    .setPriority(toRequestPriority(priority))
+                    .setInterval(interval)
+                    .setFastestInterval(fastestInterval)
+                    .setMaxWaitTime(maxWaitTime);
+            locationClient.requestLocationUpdates(request, locationCallback, Looper.getMainLooper());
+            registered = true;
             return true;
         } else
             return false;
     }
 
     /**
-     * This method unregister the listeners for all location providers.
+     * This method removes the request of location updates.
      */
     @Override
-    public void unregisterListener() {
-        //if (locationManager!=null && locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER))
-            locationManager.removeUpdates(locationListener);
+    public synchronized void unregisterListener() {
+        registered = false;
+        locationClient.removeLocationUpdates(locationCallback);
+    }
+
+    private static int toRequestPriority(LocationPriority priority) {
+        switch(priority) {
+            case HIGH_ACCURACY:
+                return LocationRequest.PRIORITY_HIGH_ACCURACY;
+            case LOW_POWER:
+                return LocationRequest.PRIORITY_LOW_POWER;
+            default:
+                return LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+        }
     }
 }
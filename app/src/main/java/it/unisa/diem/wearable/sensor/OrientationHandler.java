@@ -1,26 +1,98 @@
 package it.unisa.diem.wearable.sensor;
 
 import android.hardware.Sensor;
+import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
 
+import it.unisa.diem.wearable.fusion.OrientationFusion;
+
+/**
+ * This class computes the orientation of the device through an OrientationFusion,
+ * instead of the deprecated orientation sensor.
+ *
+ * The rotation vector sensor is used if the device has one; otherwise the accelerometer and the magnetometer,
+ * and the gyroscope if available, are fused with a complementary filter. Every update of the orientation
+ * is notified to the OrientationListener on the thread of the handler.
+ */
 public class OrientationHandler extends AbstractSensorHandler {
 
-    public OrientationHandler(SensorManager sensorManager, SensorEventListener sensorEventListener) {
-        super(sensorManager, sensorEventListener);
+    private final OrientationListener orientationListener;
+    private final OrientationFusion fusion;
+
+    public OrientationHandler(SensorManager sensorManager, OrientationListener orientationListener,
+                              Handler handler) {
+        super(sensorManager, null, handler);
+        this.sensorEventListener = new FusionListener();
+        this.orientationListener = orientationListener;
+        this.fusion = new OrientationFusion();
     }
 
     @Override
-    public Sensor registerListener() {
-        Sensor orientationSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ORIENTATION);
-        if(orientationSensor != null)
-            sensorManager.registerListener(sensorEventListener, orientationSensor,
-                    SensorManager.SENSOR_DELAY_NORMAL);
-        return orientationSensor;
+    protected int getSensorType() {
+        return Sensor.TYPE_ROTATION_VECTOR;
     }
 
+    /**
+     * This method registers the listener on the rotation vector sensor or, if the device has not one,
+     * on the sensors fused by the complementary filter.
+     *
+     * @return the rotation vector sensor or the accelerometer, or null if the orientation cannot be computed
+     */
     @Override
-    public void unregisterListener() {
-        sensorManager.unregisterListener(sensorEventListener);
+    public Sensor registerListener() {
+        fusion.reset();
+        Sensor rotationVector = super.registerListener();
+        if(rotationVector != null)
+            return rotationVector;
+
+        Sensor accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        Sensor magnetometer = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+        if(accelerometer == null || magnetometer == null)
+            return null;
+        if(!register(accelerometer) || !register(magnetometer)) {
+            unregisterListener();
+            return null;
+        }
+        Sensor gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        if(gyroscope != null)
+            register(gyroscope);
+        sensor = accelerometer;
+        return accelerometer;
+    }
+
+    /**
+     * This class feeds the events of the sensors to the fusion and notifies the updated orientation.
+     */
+    private class FusionListener implements SensorEventListener {
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            boolean updated;
+            switch(event.sensor.getType()) {
+                case Sensor.TYPE_ROTATION_VECTOR:
+                    fusion.updateRotationVector(event.values);
+                    updated = true;
+                    break;
+                case Sensor.TYPE_ACCELEROMETER:
+                    updated = fusion.updateAccelerometer(event.values);
+                    break;
+                case Sensor.TYPE_MAGNETIC_FIELD:
+                    updated = fusion.updateMagnetometer(event.values);
+                    break;
+                case Sensor.TYPE_GYROSCOPE:
+                    updated = fusion.updateGyroscope(event.values, event.timestamp);
+                    break;
+                default:
+                    updated = false;
+            }
+            if(updated)
+                orientationListener.onOrientationChanged(event.timestamp, fusion.getAngles(), fusion.getQuaternion());
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
     }
 }
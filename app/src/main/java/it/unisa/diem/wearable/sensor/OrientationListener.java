@@ -0,0 +1,17 @@
+package it.unisa.diem.wearable.sensor;
+
+/**
+ * This interface represents the listener of the orientation computed by the OrientationHandler.
+ */
+public interface OrientationListener {
+
+    /**
+     * This method is called on the thread of the sensor events, every time the orientation is updated.
+     * The arrays are overwritten by the next update, so they must not be stored.
+     *
+     * @param timestampNanos: the timestamp of the sensor event, relative to the boot of the device
+     * @param angles: [azimuth, pitch, roll], in degrees
+     * @param quaternion: [w, x, y, z]
+     */
+    void onOrientationChanged(long timestampNanos, float[] angles, float[] quaternion);
+}
@@ -0,0 +1,20 @@
+package it.unisa.diem.wearable.sensor;
+
+/**
+ * This interface describes the listener of the events of a single sensor.
+ *
+ * Every SensorStreamHandler registers its own SensorEventListener, so the events are delivered
+ * by the SensorManager directly to the listener of their sensor, without looking up the source.
+ */
+public interface SampleListener {
+
+    /**
+     * This method is called on the thread of the sensor events for every event.
+     * The values must not be kept after the call, because the array is reused by the SensorManager.
+     *
+     * @param sensorType: the type of the sensor (e.g. Sensor.TYPE_ACCELEROMETER)
+     * @param timestampNanos: the timestamp of the event, relative to the boot of the device
+     * @param values
+     */
+    public void onSample(int sensorType, long timestampNanos, float[] values);
+}
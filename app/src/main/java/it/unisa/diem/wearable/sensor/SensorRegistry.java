@@ -0,0 +1,152 @@
+package it.unisa.diem.wearable.sensor;
+
+import android.hardware.Sensor;
+
+/**
+ * This class keeps the handlers of the sensors read by the application, indexed by the type of their stream,
+ * so every sensor can be registered and unregistered at runtime without affecting the others.
+ *
+ * Every handler registers its own listener, so adding a sensor does not add work to the events of the others.
+ * The streams are identified by small integers (usually the type of the sensor), lower than MAX_STREAM,
+ * so the handler of a stream is found by indexing an array.
+ */
+public class SensorRegistry {
+
+    public static final int MAX_STREAM = 64;
+
+    private final AbstractSensorHandler[] handlers;
+    private final Sensor[] registeredSensors;
+    private int[] streams;
+
+    public SensorRegistry() {
+        this.handlers = new AbstractSensorHandler[MAX_STREAM];
+        this.registeredSensors = new Sensor[MAX_STREAM];
+        this.streams = new int[0];
+    }
+
+    /**
+     * This method maps the name of a sensor, as used in the topics, to its type.
+     *
+     * @param name: "gyroscope", "magnetometer", "heartRate" or "stepCounter"
+     * @return the type of the sensor, or -1 if the name is unknown
+     */
+    public static int parseSensorType(String name) {
+        switch(name.trim()) {
+            case "gyroscope":
+                return Sensor.TYPE_GYROSCOPE;
+            case "magnetometer":
+                return Sensor.TYPE_MAGNETIC_FIELD;
+            case "heartRate":
+                return Sensor.TYPE_HEART_RATE;
+            case "stepCounter":
+                return Sensor.TYPE_STEP_COUNTER;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * This method adds the handler of a stream, which must not be registered yet.
+     *
+     * @param stream: the identifier of the stream, lower than MAX_STREAM
+     * @param handler
+     */
+    public synchronized void add(int stream, AbstractSensorHandler handler) {
+        checkStream(stream);
+        if(handlers[stream] == null) {
+            int[] next = new int[streams.length + 1];
+            System.arraycopy(streams, 0, next, 0, streams.length);
+            next[streams.length] = stream;
+            streams = next;
+        }
+        handlers[stream] = handler;
+    }
+
+    /**
+     * @return the handler of the stream, or null if it is not added
+     */
+    public synchronized AbstractSensorHandler get(int stream) {
+        return stream >= 0 && stream < MAX_STREAM ? handlers[stream] : null;
+    }
+
+    /**
+     * @return the identifiers of the streams, in the order in which they are added
+     */
+    public synchronized int[] getStreams() {
+        return streams.clone();
+    }
+
+    /**
+     * This method registers the handler of a stream, if it is not registered yet.
+     *
+     * @param stream
+     * @return the registered sensor, or null if the device has not the sensor or it cannot be registered
+     */
+    public synchronized Sensor enable(int stream) {
+        checkAdded(stream);
+        if(registeredSensors[stream] == null)
+            registeredSensors[stream] = handlers[stream].registerListener();
+        return registeredSensors[stream];
+    }
+
+    /**
+     * This method unregisters the handler of a stream, if it is registered.
+     *
+     * @param stream
+     * @param onUnregistered: the task which is run on the thread of the events after the last event
+     *                      (it can be null)
+     */
+    public synchronized void disable(int stream, Runnable onUnregistered) {
+        checkAdded(stream);
+        if(registeredSensors[stream] == null)
+            return;
+        registeredSensors[stream] = null;
+        handlers[stream].unregisterListener(onUnregistered);
+    }
+
+    /**
+     * This method unregisters the handlers of all the streams.
+     *
+     * @param onUnregistered: the task which is run after the last event of every handler (it can be null)
+     */
+    public synchronized void disableAll(Runnable onUnregistered) {
+        for(int stream : streams)
+            disable(stream, onUnregistered);
+    }
+
+    /**
+     * This method unregisters the handlers of all the streams immediately, without flushing their FIFO,
+     * including the handlers which are waiting for a flush to unregister.
+     */
+    public synchronized void disableAllNow() {
+        for(int stream : streams) {
+            registeredSensors[stream] = null;
+            handlers[stream].unregisterListenerNow();
+        }
+    }
+
+    public synchronized boolean isEnabled(int stream) {
+        return stream >= 0 && stream < MAX_STREAM && registeredSensors[stream] != null;
+    }
+
+    /**
+     * This method enables the batching of the events in the hardware FIFO for the handlers of all the streams.
+     *
+     * @param batchingLatencyMs: the maximum report latency, in milliseconds, or 0 to disable the batching
+     */
+    public synchronized void setHardwareBatching(int batchingLatencyMs) {
+        for(int stream : streams)
+            handlers[stream].setHardwareBatching(batchingLatencyMs);
+    }
+
+    private static void checkStream(int stream) {
+        if(stream < 0 || stream >= MAX_STREAM)
+            throw new IllegalArgumentException("Unsupported stream: " + stream);
+    }
+
+    private void checkAdded(int stream) {
+        checkStream(stream);
+        if(handlers[stream] == null)
+            throw new IllegalArgumentException("Unknown stream: " + stream);
+    }
+}
@@ -0,0 +1,57 @@
+package it.unisa.diem.wearable.sensor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * This class reads a sensor of any type through its own SensorEventListener,
+ * which passes every event to the SampleListener of the sensor.
+ */
+public class SensorStreamHandler extends AbstractSensorHandler {
+
+    private final int sensorType;
+    private final SampleListener sampleListener;
+
+    /**
+     * @param sensorManager
+     * @param sensorType: the type of the sensor (e.g. Sensor.TYPE_GYROSCOPE)
+     * @param sampleListener
+     * @param handler: the handler of the thread on which the events are delivered,
+     *               or null to deliver them on the main thread
+     */
+    public SensorStreamHandler(SensorManager sensorManager, int sensorType, SampleListener sampleListener,
+                               Handler handler) {
+        super(sensorManager, null, handler);
+        this.sensorEventListener = new DispatchListener();
+        this.sensorType = sensorType;
+        this.sampleListener = sampleListener;
+    }
+
+    @Override
+    protected int getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * This class passes the events to the listener of the sensor: it is registered only on this sensor,
+     * so the source of the events is known without checking it.
+     */
+    private class DispatchListener implements SensorEventListener {
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            sampleListener.onSample(sensorType, event.timestamp, event.values);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            Log.d(getClass().toString(),
+                    String.format("Accuracy of %s changed to %d!",
+                            sensor.toString(), accuracy));
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package it.unisa.diem.wearable.service;
+
+import android.util.Log;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import it.unisa.diem.wearable.communication.DeliveryPolicy;
+import it.unisa.diem.wearable.communication.MessageHandler;
+import it.unisa.diem.wearable.communication.TopicRouter;
+import it.unisa.diem.wearable.config.ConfigDocument;
+import it.unisa.diem.wearable.config.SensingConfig;
+import it.unisa.diem.wearable.pipeline.DeadBandFilter;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+import it.unisa.diem.wearable.sensor.SensorRegistry;
+
+/**
+ * This class routes the configuration messages sent by the coordinator on the broadcastTopic and on deviceID/config.
+ * Every message changes a copy of the current configuration, which is passed to the Listener only if the value
+ * is valid; the configuration itself is replaced by the Listener.
+ *
+ * The versioned documents are acknowledged on deviceID/config/ack through the Listener. The versions of the last
+ * documents applied from the broadcastTopic and from deviceID/config are kept by the router, as well as the last
+ * document of the device, because its values override the ones of the broadcast messages.
+ */
+public class ConfigRouter {
+
+    private final String broadcastTopic;
+    private final String deviceID;
+    private final AtomicReference<SensingConfig> config;
+    private final SensingConfig defaults;
+    private final Listener listener;
+
+    private long broadcastConfigVersion = -1, deviceConfigVersion = -1;
+    private ConfigDocument deviceConfigDocument;
+
+    /**
+     * This interface is implemented by the component which applies the configuration, i.e. the SensingService.
+     * Its methods are called on the thread of the MQTT callbacks.
+     */
+    public interface Listener {
+
+        /**
+         * This method is called with the configuration changed by a message, which must replace the current one.
+         *
+         * @param next
+         */
+        void onConfigChanged(SensingConfig next);
+
+        /**
+         * This method is called when an additional sensor is enabled or disabled on broadcastTopic/sensors/name.
+         *
+         * @param type: the type of the sensor
+         * @param enabled
+         * @return false if the sensor is not one of the additional sensors
+         */
+        boolean onSensorEnabled(int type, boolean enabled);
+
+        /**
+         * This method is called with the acknowledgement of a configuration document,
+         * which must be published on deviceID/config/ack.
+         *
+         * @param ack
+         */
+        void onConfigAck(String ack);
+    }
+
+    /**
+     * @param broadcastTopic
+     * @param deviceID
+     * @param config: the current configuration, which is only read by the router
+     * @param defaults: the configuration whose sampling periods replace the invalid ones
+     * @param listener
+     */
+    public ConfigRouter(String broadcastTopic, String deviceID, AtomicReference<SensingConfig> config,
+                        SensingConfig defaults, Listener listener) {
+        this.broadcastTopic = broadcastTopic;
+        this.deviceID = deviceID;
+        this.config = config;
+        this.defaults = defaults;
+        this.listener = listener;
+    }
+
+    /**
+     * This method creates a router with the routes of the configuration messages,
+     * to which the caller can add the routes of the other messages.
+     */
+    public TopicRouter createTopicRouter() {
+        TopicRouter router = new TopicRouter();
+        router.addRoute(broadcastTopic + "/samplingPeriod", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                try {
+                    builder.setSamplingPeriod(Integer.parseInt(value));
+                } catch(IllegalArgumentException ex) {
+                    Log.e(getClass().toString(),
+                            "The sampling period is not a positive integer! Setting default value...");
+                    builder.setSamplingPeriod(defaults.getSamplingPeriod());
+                }
+            }
+        });
+        // The maximum period of the adaptive sampling; if it is not greater than the period, it is disabled
+        router.addRoute(broadcastTopic + "/maxSamplingPeriod", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                try {
+                    builder.setMaxSamplingPeriod(Integer.parseInt(value));
+                } catch(NumberFormatException ex) {
+                    Log.e(getClass().toString(),
+                            "The maximum sampling period is not an integer! Setting default value...");
+                    builder.setMaxSamplingPeriod(defaults.getMaxSamplingPeriod());
+                }
+            }
+        });
+        // If the String value is neither "true" nor "false", "false" will be set.
+        router.addRoute(broadcastTopic + "/accelerometer", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setAccelerometer(Boolean.parseBoolean(value));
+            }
+        });
+        router.addRoute(broadcastTopic + "/orientation", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setOrientation(Boolean.parseBoolean(value));
+            }
+        });
+        router.addRoute(broadcastTopic + "/location", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setLocation(Boolean.parseBoolean(value));
+            }
+        });
+        // The thresholds of a dead-band filter, sent as "t" or "tx,ty,tz" on broadcastTopic/<stream>/deadBand
+        router.addRoute(broadcastTopic + "/+/deadBand", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                if(topic.equals(broadcastTopic + "/accelerometer/deadBand"))
+                    builder.setAccelerometerDeadBand(DeadBandFilter.parseThresholds(value));
+                else if(topic.equals(broadcastTopic + "/orientation/deadBand"))
+                    builder.setOrientationDeadBand(DeadBandFilter.parseThresholds(value));
+                else
+                    throw new IllegalArgumentException("Unknown stream!");
+            }
+        });
+        /*
+         * The delivery policy of a stream, sent as "qos,latestInterval,maxInFlight"
+         * on broadcastTopic/<stream>/delivery.
+         * The one of the location is handled by the route of the location settings.
+         */
+        router.addRoute(broadcastTopic + "/accelerometer/delivery", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setAccelerometerDelivery(DeliveryPolicy.parse(value));
+            }
+        });
+        router.addRoute(broadcastTopic + "/orientation/delivery", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setOrientationDelivery(DeliveryPolicy.parse(value));
+            }
+        });
+        router.addRoute(broadcastTopic + "/deadBandHeartbeat", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setDeadBandHeartbeat(Long.parseLong(value));
+            }
+        });
+        // The data published for the accelerometer: "raw", "features" or "both"
+        router.addRoute(broadcastTopic + "/accelerometer/output", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                builder.setAccelerometerOutput(SensorPipeline.Output.parse(value));
+            }
+        });
+        /*
+         * The request of location updates and the filter of the locations, sent on broadcastTopic/location/<setting>,
+         * where the setting is priority ("high_accuracy", "balanced" or "low_power"), interval, fastestInterval
+         * and maxWaitTime (in milliseconds), maxAccuracy and minDistance (in meters), or delivery.
+         */
+        router.addRoute(broadcastTopic + "/location/+", new ConfigHandler() {
+            @Override
+            protected void update(SensingConfig.Builder builder, String topic, String value) {
+                String setting = topic.substring(topic.lastIndexOf('/') + 1);
+                if(setting.isEmpty())
+                    throw new IllegalArgumentException("Unknown setting!");
+                ConfigDocument.applyValue(builder, "location" + Character.toUpperCase(setting.charAt(0)) +
+                        setting.substring(1), value);
+            }
+        });
+        // The additional sensors, enabled with "true" and disabled with "false" on broadcastTopic/sensors/<name>
+        router.addRoute(broadcastTopic + "/sensors/+", new MessageHandler() {
+            @Override
+            public void onMessage(String topic, MqttMessage message) {
+                int type = SensorRegistry.parseSensorType(topic.substring(topic.lastIndexOf('/') + 1));
+                String value = message.toString().trim();
+                if(type < 0 || !(value.equals("true") || value.equals("false")) ||
+                        !listener.onSensorEnabled(type, Boolean.parseBoolean(value)))
+                    Log.e(getClass().toString(), String.format("Invalid value (%s) from %s! Ignoring it...",
+                            value, topic));
+            }
+        });
+        // The versioned documents which change several values at once, for all the devices or only for this one
+        router.addRoute(broadcastTopic + "/config", new ConfigDocumentHandler(false));
+        router.addRoute(deviceID + "/config", new ConfigDocumentHandler(true));
+        return router;
+    }
+
+    /**
+     * This method passes to the Listener the acknowledgement of a configuration document, like
+     * {"source":"broadcast","version":12,"status":"applied"}, where the status is "applied", "stale"
+     * (the version is not newer than the applied one) or "rejected", with the reason in "error".
+     */
+    private void acknowledge(String source, long version, String status, String error) {
+        StringBuilder ack = new StringBuilder(96);
+        ack.append("{\"source\":\"").append(source).append("\",\"version\":").append(version)
+                .append(",\"status\":\"").append(status).append('"');
+        if(error != null)
+            ack.append(",\"error\":\"").append(error.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        ack.append('}');
+        listener.onConfigAck(ack.toString());
+    }
+
+    /**
+     * This class implements the handler of a configuration message: it changes a copy of the current configuration
+     * through update() and passes it to the Listener. If the value is not valid, the message is ignored.
+     */
+    protected abstract class ConfigHandler implements MessageHandler {
+
+        @Override
+        public void onMessage(String topic, MqttMessage message) {
+            SensingConfig.Builder builder = config.get().toBuilder();
+            SensingConfig next;
+            try {
+                update(builder, topic, message.toString().trim());
+                // The values of the document of the device override the ones sent to all the devices
+                next = builder.build();
+                if(deviceConfigDocument != null)
+                    next = deviceConfigDocument.applyTo(next);
+            } catch(IllegalArgumentException ex) {
+                Log.e(getClass().toString(), String.format("Invalid value (%s) from %s! Ignoring it...",
+                        message.toString(), topic));
+                return;
+            }
+            listener.onConfigChanged(next);
+        }
+
+        /**
+         * @param builder: a copy of the current configuration
+         * @param topic
+         * @param value: the payload of the message
+         * @throws IllegalArgumentException if the value is not valid
+         */
+        protected abstract void update(SensingConfig.Builder builder, String topic, String value);
+    }
+
+    /**
+     * This class implements the handler of the configuration documents, which are applied as a whole
+     * and acknowledged on deviceID/config/ack. A document is applied only if its version is newer
+     * than the last one received on the same topic. The values of the last document of the device
+     * are applied again after every broadcast document, so they override the ones of the fleet.
+     */
+    protected class ConfigDocumentHandler implements MessageHandler {
+
+        private final boolean perDevice;
+        private final String source;
+
+        public ConfigDocumentHandler(boolean perDevice) {
+            this.perDevice = perDevice;
+            this.source = perDevice ? "device" : "broadcast";
+        }
+
+        @Override
+        public void onMessage(String topic, MqttMessage message) {
+            ConfigDocument document;
+            SensingConfig next;
+            try {
+                document = ConfigDocument.parse(message.toString());
+            } catch(IllegalArgumentException ex) {
+                Log.e(getClass().toString(), "Invalid configuration document from " + topic + "! Ignoring it...");
+                acknowledge(source, -1, "rejected", ex.getMessage());
+                return;
+            }
+
+            if(document.getVersion() <= (perDevice ? deviceConfigVersion : broadcastConfigVersion)) {
+                acknowledge(source, document.getVersion(), "stale", null);
+                return;
+            }
+            try {
+                next = document.applyTo(config.get());
+                if(!perDevice && deviceConfigDocument != null)
+                    next = deviceConfigDocument.applyTo(next);
+            } catch(IllegalArgumentException ex) {
+                Log.e(getClass().toString(), "Invalid configuration document from " + topic + "! Ignoring it...");
+                acknowledge(source, document.getVersion(), "rejected", ex.getMessage());
+                return;
+            }
+
+            if(perDevice) {
+                deviceConfigDocument = document;
+                deviceConfigVersion = document.getVersion();
+            } else
+                broadcastConfigVersion = document.getVersion();
+            listener.onConfigChanged(next);
+            acknowledge(source, document.getVersion(), "applied", null);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package it.unisa.diem.wearable.service;
+
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.clock.ClockSync;
+import it.unisa.diem.wearable.clock.EpochClock;
+import it.unisa.diem.wearable.communication.StreamPublisher;
+import it.unisa.diem.wearable.location.LocationFilter;
+import it.unisa.diem.wearable.metrics.Gauge;
+import it.unisa.diem.wearable.metrics.MetricsRegistry;
+import it.unisa.diem.wearable.pipeline.DeadBandFilter;
+import it.unisa.diem.wearable.pipeline.SampleBatcher;
+import it.unisa.diem.wearable.spool.SegmentLog;
+
+/**
+ * This class registers the gauges of the publishing pipeline in a MetricsRegistry: the published samples,
+ * the samples suppressed by the dead-band filters, the messages dropped by the delivery policies,
+ * the state of the clock, of the ring buffer and of the spool.
+ *
+ * The gauges appear in the snapshots in the order in which they are registered.
+ */
+public class PipelineGauges {
+
+    private final MetricsRegistry metrics;
+
+    public PipelineGauges(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * This method registers samples.stream, the number of samples published by the batcher of a stream.
+     */
+    public void addSamples(String stream, final SampleBatcher batcher) {
+        metrics.gauge("samples." + stream, new Gauge() {
+            @Override
+            public long getValue() {
+                return batcher.getPublishedSamples();
+            }
+        });
+    }
+
+    /**
+     * This method registers deadBand.stream.suppressed, the number of samples dropped by the filter of a stream.
+     */
+    public void addDeadBand(String stream, final DeadBandFilter filter) {
+        metrics.gauge("deadBand." + stream + ".suppressed", new Gauge() {
+            @Override
+            public long getValue() {
+                return filter.getSuppressedCount();
+            }
+        });
+    }
+
+    /**
+     * This method registers location.discarded, the number of locations dropped by the filter.
+     */
+    public void addLocationFilter(final LocationFilter filter) {
+        metrics.gauge("location.discarded", new Gauge() {
+            @Override
+            public long getValue() {
+                return filter.getDiscardedCount();
+            }
+        });
+    }
+
+    /**
+     * This method registers delivery.stream.dropped, the number of messages of a stream
+     * dropped by the delivery policies of its publishers.
+     */
+    public void addDelivery(String stream, final StreamPublisher... publishers) {
+        metrics.gauge("delivery." + stream + ".dropped", new Gauge() {
+            @Override
+            public long getValue() {
+                long dropped = 0;
+                for(StreamPublisher publisher : publishers)
+                    dropped += publisher.getDroppedCount();
+                return dropped;
+            }
+        });
+    }
+
+    /**
+     * This method registers the correction of the clock by the time-sync exchange, the delay of the last exchange
+     * and the estimated drift.
+     */
+    public void addClock(final EpochClock clock, final ClockSync clockSync) {
+        metrics.gauge("clock.correctionMicros", new Gauge() {
+            @Override
+            public long getValue() {
+                return (clock.getOffsetNanos() - clock.getCalibratedOffsetNanos()) / 1000;
+            }
+        });
+        metrics.gauge("clock.delayMicros", new Gauge() {
+            @Override
+            public long getValue() {
+                return clockSync.getDelayNanos() / 1000;
+            }
+        });
+        metrics.gauge("clock.driftPpb", new Gauge() {
+            @Override
+            public long getValue() {
+                return Math.round(clockSync.getDrift() * 1e9);
+            }
+        });
+    }
+
+    /**
+     * This method registers the size of the ring buffer, the samples it dropped and its high-water mark.
+     */
+    public void addBuffer(final SampleRingBuffer buffer) {
+        metrics.gauge("buffer.size", new Gauge() {
+            @Override
+            public long getValue() {
+                return buffer.size();
+            }
+        });
+        metrics.gauge("buffer.dropped", new Gauge() {
+            @Override
+            public long getValue() {
+                return buffer.getDroppedCount();
+            }
+        });
+        metrics.gauge("buffer.highWaterMark", new Gauge() {
+            @Override
+            public long getValue() {
+                return buffer.getHighWaterMark();
+            }
+        });
+    }
+
+    /**
+     * This method registers the records waiting in the spool and the ones dropped by its retention.
+     */
+    public void addSpool(final SegmentLog log) {
+        metrics.gauge("spool.pending", new Gauge() {
+            @Override
+            public long getValue() {
+                return log.getPendingRecords();
+            }
+        });
+        metrics.gauge("spool.dropped", new Gauge() {
+            @Override
+            public long getValue() {
+                return log.getDroppedRecords();
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package it.unisa.diem.wearable.service;
+
+/**
+ * This interface is implemented by the component which displays the state of the SensingService,
+ * i.e. the Activity bound to it.
+ */
+public interface SensingListener {
+
+    /**
+     * This method is called on the thread of the sensor events for every sample of the accelerometer.
+     * The values are reused by the caller, so they must be copied.
+     *
+     * @param values: [x, y, z], in m/s^2
+     */
+    void onAccelerometerChanged(float[] values);
+
+    /**
+     * This method is called on the thread of the sensor events for every sample of the orientation.
+     * The values are reused by the caller, so they must be copied.
+     *
+     * @param angles: [azimuth, pitch, roll], in degrees
+     */
+    void onOrientationChanged(float[] angles);
+
+    /**
+     * This method is called on the main thread for every location.
+     *
+     * @param values: "latitude,longitude"
+     */
+    void onLocationChanged(String values);
+
+    /**
+     * This method is called on the main thread when the connection, the reading of the sensors
+     * or the configuration of the service changes.
+     */
+    void onStateChanged();
+
+    /**
+     * This method is called on the main thread when the location must be read, but the permission is not granted.
+     * The permission should be requested and the result passed to SensingService.onLocationPermissionResult().
+     */
+    void onLocationPermissionRequired();
+}
@@ -0,0 +1,1399 @@
+package it.unisa.diem.wearable.service;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.location.Location;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.google.android.gms.location.LocationAvailability;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationResult;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import it.unisa.diem.wearable.MainActivity;
+import it.unisa.diem.wearable.R;
+import it.unisa.diem.wearable.adaptive.AdaptiveSamplingController;
+import it.unisa.diem.wearable.buffer.OverflowPolicy;
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.clock.ClockSync;
+import it.unisa.diem.wearable.clock.EpochClock;
+import it.unisa.diem.wearable.clock.TimeSource;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+import it.unisa.diem.wearable.communication.MQTTClient;
+import it.unisa.diem.wearable.communication.MessageHandler;
+import it.unisa.diem.wearable.communication.DeliveryPolicy;
+import it.unisa.diem.wearable.communication.Publisher;
+import it.unisa.diem.wearable.communication.StreamPublisher;
+import it.unisa.diem.wearable.communication.TopicRouter;
+import it.unisa.diem.wearable.config.SensingConfig;
+import it.unisa.diem.wearable.location.LocationPriority;
+import it.unisa.diem.wearable.features.FeatureExtractor;
+import it.unisa.diem.wearable.features.FeaturePublisher;
+import it.unisa.diem.wearable.metrics.Counter;
+import it.unisa.diem.wearable.metrics.MetricsRegistry;
+import it.unisa.diem.wearable.pipeline.BatchPolicy;
+import it.unisa.diem.wearable.pipeline.DeadBandFilter;
+import it.unisa.diem.wearable.pipeline.SampleBatcher;
+import it.unisa.diem.wearable.pipeline.SampleDecimator;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+import it.unisa.diem.wearable.sensor.AccelerometerHandler;
+import it.unisa.diem.wearable.sensor.AdaptiveSampler;
+import it.unisa.diem.wearable.location.LocationEncoder;
+import it.unisa.diem.wearable.location.LocationFilter;
+import it.unisa.diem.wearable.sensor.LocationHandler;
+import it.unisa.diem.wearable.sensor.OrientationHandler;
+import it.unisa.diem.wearable.sensor.OrientationListener;
+import it.unisa.diem.wearable.sensor.SampleListener;
+import it.unisa.diem.wearable.sensor.SensorRegistry;
+import it.unisa.diem.wearable.sensor.SensorStreamHandler;
+import it.unisa.diem.wearable.spool.SegmentLog;
+import it.unisa.diem.wearable.spool.SpoolingPublisher;
+import it.unisa.diem.wearable.trace.TraceWriter;
+
+/**
+ * This class implements the long-running service which reads the sensors and publishes their samples,
+ * so that the capture is not interrupted when the Activity is paused, stopped or destroyed.
+ *
+ * The service owns the MQTT client, the sensor handlers and the publishing pipeline. The Activity binds to it
+ * only to display its state and to forward the commands of the user, through a SensingListener.
+ * While the client is connected (or reconnecting) or the sensors are read, the service is started
+ * in the foreground, with an ongoing notification, so it survives the unbinding of the Activity
+ * and it is not killed in the background; otherwise it lives only while the Activity is bound.
+ *
+ * The screen and the CPU are not kept awake by the service: a partial wake-lock is held
+ * only while the pending samples are flushed to the MQTT client.
+ */
+public class SensingService extends Service {
+
+    private static final String NOTIFICATION_CHANNEL_ID = "sensing";
+    private static final int NOTIFICATION_ID = 1;
+    private static final long FLUSH_WAKE_LOCK_TIMEOUT_MS = 10000;
+
+    private final IBinder binder = new LocalBinder();
+    private volatile SensingListener listener;
+
+    private String deviceID;
+    private String username, password;
+    private String broadcastTopic;
+    private TopicRouter topicRouter;
+    private MQTTClient mqttClient;
+    private volatile boolean mqttClientConnected;
+    private boolean connectionRequested, started, foreground;
+    private SpoolingPublisher spool;
+    private Runnable replayTask;
+
+    private DecimalFormat decimalFormat;
+    private PowerManager.WakeLock flushWakeLock;
+
+    private MetricsRegistry metrics;
+    private Counter accelerometerEvents, orientationEvents, publishFailures;
+    private Runnable metricsTask;
+
+    private EpochClock clock;
+    private ClockSync clockSync;
+    private Runnable clockSyncTask;
+    private long messageArrivedNanos;
+
+    private BatchPolicy batchPolicy;
+    private SensorPipeline sensorPipeline;
+    private DeadBandFilter accelerometerDeadBand, orientationDeadBand;
+    private Runnable batchFlushTask;
+
+    private Runnable drainTask;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    // The recorder of the events which enter the pipeline, while the sensors are read (null if not recording)
+    private volatile TraceWriter traceWriter;
+
+    private HandlerThread sensorThread, publishThread;
+    private Handler sensorThreadHandler, publishThreadHandler;
+
+    private AccelerometerHandler accelerometerHandler;
+    private OrientationHandler orientationHandler;
+    private LocationHandler locationHandler;
+    private AdaptiveSampler adaptiveSampler;
+
+    private SensorManager sensorManager;
+    private SensorRegistry sensorRegistry;
+    /*
+     * The additional sensors read with their own sampling period, which can be enabled and disabled
+     * by the coordinator on broadcastTopic/sensors/<name>.
+     */
+    private final boolean[] extraSensorEnabled = new boolean[SensorRegistry.MAX_STREAM];
+    private LocationFilter locationFilter;
+    private LocationEncoder locationEncoder;
+    private StreamPublisher accelerometerPublisher, featurePublisher, orientationPublisher, locationPublisher;
+    private final List<StreamPublisher> streamPublishers = new ArrayList<>();
+    private boolean locationAvailable = true;
+
+    /*
+     * The orientation is computed by the OrientationHandler, but its samples keep the type of the deprecated
+     * orientation sensor (Sensor.TYPE_ORIENTATION), so the coordinators still recognize them in the binary
+     * payloads. The value is written as a literal, since the constant is deprecated.
+     */
+    private static final int ORIENTATION_STREAM = 3;
+
+    /*
+     * The configuration is replaced as a whole, only on the main thread, and it is read without locks by any thread.
+     */
+    private final AtomicReference<SensingConfig> config = new AtomicReference<>();
+
+    /**
+     * This class allows the Activity bound to the service to call its methods directly,
+     * because they run in the same process.
+     */
+    public class LocalBinder extends Binder {
+
+        public SensingService getService() {
+            return SensingService.this;
+        }
+    }
+
+    /**
+     * This method is called when the service is created, i.e. when the Activity binds to it for the first time.
+     * It creates instances of MQTT Client through the broker URI written in the "configuration.xml" resource,
+     * Sensor Manager and fused location provider, generates a random ID for the device,
+     * reads the default values for configuration variables from the resource
+     * and creates the publishing pipeline.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Creation of a decimal format
+        decimalFormat = new DecimalFormat("#.#####", new DecimalFormatSymbols(Locale.ENGLISH));
+
+        // Creation of the wake-lock held while the samples are flushed, released at most after the timeout
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        flushWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "Wearable:flush");
+
+        // Creation of variables needed for the connection to the MQTT Broker
+        username = getString(R.string.username);
+        password = getString(R.string.password);
+        deviceID = UUID.randomUUID().toString();
+        mqttClient = new MQTTClient(this, getString(R.string.serverURI), deviceID);
+        broadcastTopic = getString(R.string.broadcastTopic);
+        mqttClientConnected = false;
+        Log.d(getClass().toString(), "MQTT client created with ID " + deviceID);
+
+        // Creation of the metrics, which are published periodically on the topic deviceID/metrics
+        metrics = new MetricsRegistry();
+        mqttClient.setMetrics(metrics);
+        accelerometerEvents = metrics.counter("events.accelerometer");
+        orientationEvents = metrics.counter("events.orientation");
+        publishFailures = metrics.counter("publish.failed");
+
+        /*
+         * Creation of the clock which converts the timestamps of the sensor events, relative to the boot,
+         * to epoch timestamps through a cached offset. The offset is corrected by the time-sync exchange
+         * with the coordinator, so the samples of different devices can be aligned.
+         */
+        clock = new EpochClock(new TimeSource() {
+            @Override
+            public long monotonicNanos() {
+                return SystemClock.elapsedRealtimeNanos();
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        });
+        clockSync = new ClockSync(clock);
+
+        /*
+         * Creation of the thread which receives the sensor events and of the thread which runs the publishing
+         * pipeline, so that the main thread is not involved in the capture.
+         * The samples pass from the first thread to the second one through a lock-free ring buffer,
+         * so a slow broker cannot stall the delivery of the sensor events.
+         */
+        sensorThread = new HandlerThread("SensorProcessing");
+        sensorThread.start();
+        sensorThreadHandler = new Handler(sensorThread.getLooper());
+        publishThread = new HandlerThread("SamplePublishing");
+        publishThread.start();
+        publishThreadHandler = new Handler(publishThread.getLooper());
+        drainTask = new DrainTask();
+
+        /*
+         * Creation of Sensor manager and handlers: every handler registers its own listener, so the events
+         * reach the listener of their sensor directly and every sensor can be enabled and disabled on its own.
+         */
+        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+        sensorRegistry = new SensorRegistry();
+
+        accelerometerHandler = new AccelerometerHandler(sensorManager, new AccelerometerSampleListener(),
+                sensorThreadHandler);
+        orientationHandler = new OrientationHandler(sensorManager, new ApplicationOrientationListener(),
+                sensorThreadHandler);
+        sensorRegistry.add(Sensor.TYPE_ACCELEROMETER, accelerometerHandler);
+        sensorRegistry.add(ORIENTATION_STREAM, orientationHandler);
+        locationHandler = new LocationHandler(this, new ApplicationLocationCallback());
+
+        /*
+         * Creation of the spool, which stores the samples on the device while the broker is unreachable
+         * and publishes them again, in order, after the reconnection.
+         * If the spool cannot be created, the samples are published directly through the MQTT client.
+         */
+        Publisher samplePublisher = mqttClient;
+        try {
+            spool = new SpoolingPublisher(mqttClient, new SegmentLog(new File(getFilesDir(), "spool"),
+                    getResources().getInteger(R.integer.spoolSegmentSize),
+                    getResources().getInteger(R.integer.spoolMaxSize)));
+            samplePublisher = spool;
+            replayTask = new ReplayTask();
+        } catch (IOException e) {
+            Log.e(getClass().toString(), "Spool not available! The samples will be lost while offline.");
+            e.printStackTrace();
+        }
+
+        // Reading the default values from configuration resource
+        SensingConfig defaults = createDefaultConfig();
+        config.set(defaults);
+        int samplingPeriod = defaults.getSamplingPeriod();
+
+        /*
+         * The fused provider chooses the sources of the location according to the priority requested by
+         * the coordinator, and the filter drops the updates which are not accurate enough or which
+         * do not move far enough from the last published location.
+         */
+        applyLocationRequest(defaults);
+        locationPublisher = createStreamPublisher(mqttClient, defaults.getLocationDelivery());
+        locationFilter = new LocationFilter(defaults.getLocationMaxAccuracy(), defaults.getLocationMinDistance());
+
+        /*
+         * Creation of the publishing pipeline: a batcher for each sensor topic collects the samples into windows,
+         * bounded by number of samples and by time, and each window is published as a single message.
+         * The QoS of each stream, its retained "latest" topic and its in-flight window are set by its delivery policy,
+         * which the coordinator can change at any time, so the QoS and the retained flag of the batchers are ignored.
+         * Each batcher has its own instance of the codec selected in the configuration resource.
+         * Before the batcher, a decimator forwards exactly one sample per sampling period:
+         * the accelerometer samples are averaged, while for the orientation only the last sample
+         * of each period is kept, because the average of angles is not meaningful.
+         * Between them, a dead-band filter drops the samples which do not differ from the last published one
+         * by more than the thresholds, unless the last published one is older than the heartbeat.
+         */
+        String codecName = getString(R.string.payloadCodec);
+        locationEncoder = new LocationEncoder();
+        batchPolicy = new BatchPolicy(getResources().getInteger(R.integer.batchMaxSamples),
+                getResources().getInteger(R.integer.batchMaxDelay));
+        PublicationListener publicationListener = new PublicationListener();
+        sensorPipeline = new SensorPipeline(new SampleRingBuffer(
+                getResources().getInteger(R.integer.sampleBufferCapacity),
+                OverflowPolicy.valueOf(getString(R.string.sampleBufferPolicy))));
+        long heartbeat = defaults.getDeadBandHeartbeat();
+        accelerometerPublisher = createStreamPublisher(samplePublisher, defaults.getAccelerometerDelivery());
+        featurePublisher = createStreamPublisher(samplePublisher, defaults.getAccelerometerDelivery());
+        orientationPublisher = createStreamPublisher(samplePublisher, defaults.getOrientationDelivery());
+        SampleBatcher accelerometerBatcher = new SampleBatcher(deviceID + "/accelerometer",
+                FrameCodecs.forName(codecName), batchPolicy, accelerometerPublisher, 0, false, publicationListener);
+        accelerometerDeadBand = new DeadBandFilter(defaults.getAccelerometerDeadBand(), heartbeat,
+                accelerometerBatcher);
+        sensorPipeline.addStream(Sensor.TYPE_ACCELEROMETER, new SampleDecimator(samplingPeriod,
+                SampleDecimator.Mode.AVERAGE, accelerometerDeadBand), accelerometerBatcher);
+        /*
+         * The features of the accelerometer are extracted from all the samples of the sensor, before the decimation,
+         * and published at deviceID/accelerometer/features. The coordinator selects the raw samples, the features
+         * or both through broadcastTopic/accelerometer/output.
+         */
+        sensorPipeline.addFeatures(Sensor.TYPE_ACCELEROMETER, new FeatureExtractor(
+                getResources().getInteger(R.integer.featureWindow),
+                getResources().getInteger(R.integer.featureHop),
+                getResources().getInteger(R.integer.featureCapacity),
+                getResources().getBoolean(R.bool.featureFft),
+                new FeaturePublisher(deviceID + "/accelerometer/features", featurePublisher, 0, false,
+                        publicationListener)));
+        sensorPipeline.setOutput(defaults.getAccelerometerOutput());
+        SampleBatcher orientationBatcher = new SampleBatcher(deviceID + "/orientation",
+                FrameCodecs.forName(codecName), batchPolicy, orientationPublisher, 0, false, publicationListener);
+        orientationDeadBand = new DeadBandFilter(defaults.getOrientationDeadBand(), heartbeat,
+                orientationBatcher);
+        sensorPipeline.addStream(ORIENTATION_STREAM, new SampleDecimator(samplingPeriod,
+                SampleDecimator.Mode.LAST, orientationDeadBand), orientationBatcher);
+        addExtraSensors(getString(R.string.extraSensors), samplePublisher, codecName, publicationListener);
+        // The sensors with a hardware FIFO can deliver their events in bursts, if configured
+        sensorRegistry.setHardwareBatching(getResources().getInteger(R.integer.sensorBatchLatency));
+        batchFlushTask = new BatchFlushTask();
+
+        /*
+         * Creation of the adaptive sampling: while the wearer is stationary, the sampling period of the sensors
+         * grows from the one requested by the coordinator up to maxSamplingPeriod.
+         */
+        AdaptiveSamplingController adaptiveController = new AdaptiveSamplingController(
+                getResources().getInteger(R.integer.adaptiveWindow),
+                Double.parseDouble(getString(R.string.adaptiveVarianceThreshold)),
+                samplingPeriod, defaults.getMaxSamplingPeriod());
+        adaptiveController.setEnabled(getResources().getBoolean(R.bool.adaptiveSampling));
+        adaptiveSampler = new AdaptiveSampler(sensorManager, adaptiveController,
+                getResources().getBoolean(R.bool.significantMotion), accelerometerHandler, orientationHandler);
+        applySamplingPeriod(defaults);
+        registerGauges(accelerometerBatcher, orientationBatcher);
+
+        /*
+         * Creation of the routes of the messages sent by the coordinator: the configuration messages
+         * and the responses to the time-sync requests, timed when the message arrived.
+         */
+        topicRouter = new ConfigRouter(broadcastTopic, deviceID, config, defaults, new ConfigListener())
+                .createTopicRouter();
+        topicRouter.addRoute(deviceID + ClockSync.RESPONSE_TOPIC, new MessageHandler() {
+            @Override
+            public void onMessage(String topic, MqttMessage message) {
+                if(!clockSync.onResponse(message.getPayload(), messageArrivedNanos))
+                    Log.d(getClass().toString(), "Time-sync response ignored: " + message);
+            }
+        });
+
+        metricsTask = new MetricsTask();
+        publishThreadHandler.postDelayed(metricsTask, getResources().getInteger(R.integer.metricsInterval));
+        clockSyncTask = new ClockSyncTask();
+        if(getResources().getInteger(R.integer.clockSyncInterval) > 0)
+            publishThreadHandler.post(clockSyncTask);
+    }
+
+    /**
+     * This method is called when the service is started by connect(): the service is moved to the foreground.
+     * It is not restarted if the system kills it, because the connection must be requested by the user.
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        createNotificationChannel();
+        startForeground(NOTIFICATION_ID, buildNotification());
+        foreground = true;
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    /**
+     * This method is called when the service is destroyed: the sensors are unregistered,
+     * the pending samples are published (or spooled) and the client is disconnected.
+     */
+    @Override
+    public void onDestroy() {
+        if(started) {
+            adaptiveSampler.stop();
+            locationHandler.unregisterListener();
+            publishThreadHandler.removeCallbacks(batchFlushTask);
+        }
+        // The flush of the FIFO would complete on the thread of the events, which quits below
+        sensorRegistry.disableAllNow();
+        if(mqttClientConnected)
+            publishThreadHandler.post(new FlushAndDisconnectTask());
+        else
+            publishThreadHandler.post(new FlushTask());
+        if(spool != null)
+            publishThreadHandler.post(new CloseSpoolTask());
+        stopTrace();
+        publishThreadHandler.removeCallbacks(metricsTask);
+        publishThreadHandler.removeCallbacks(clockSyncTask);
+        sensorThread.quitSafely();
+        publishThread.quitSafely();
+
+        super.onDestroy();
+    }
+
+    /**
+     * This method sets the listener which displays the state of the service, or removes it if it is null.
+     * It must be called on the main thread.
+     *
+     * @param listener
+     */
+    public void setListener(SensingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * This method connects the MQTT Client to the broker, whose URI is written in the client object,
+     * through username and password, which are written in the configuration file,
+     * and it will be subscribed on the broadcast topic, whose nome is also written in this resource.
+     *
+     * On the broadcast topic, the coordinator will send the configuration for the scanning of values
+     * and the device will receive it.
+     * The service is started in the foreground, so it survives the Activity until the disconnection.
+     */
+    public void connect() {
+        connectionRequested = true;
+        ContextCompat.startForegroundService(this, new Intent(this, SensingService.class));
+        mqttClient.connect(username, password, new ConnectionListener(), new ConnectionCallback());
+    }
+
+    /**
+     * This method publishes the pending samples and then disconnects the client.
+     */
+    public void disconnect() {
+        publishThreadHandler.post(new FlushAndDisconnectTask());
+    }
+
+    /**
+     * This method starts to read the sensors and send the data to the MQTT broker.
+     * If the location must be read, but the permission is not granted, the listener is notified.
+     */
+    public void start() {
+        adaptiveSampler.reset();
+        SensingConfig config = this.config.get();
+        SensingConfig.Builder unavailable = config.toBuilder();
+        if(config.isAccelerometerEnabled()) {
+            if(sensorRegistry.enable(Sensor.TYPE_ACCELEROMETER) == null)
+                unavailable.setAccelerometer(false);
+        }
+
+        if(config.isOrientationEnabled()) {
+            if(sensorRegistry.enable(ORIENTATION_STREAM) == null)
+                unavailable.setOrientation(false);
+        }
+
+        for(int stream : sensorRegistry.getStreams())
+            if(extraSensorEnabled[stream] && sensorRegistry.enable(stream) == null)
+                Log.e(getClass().toString(), "Sensor " + stream + " not available!");
+
+        if(config.isLocationEnabled()) {
+            locationFilter.reset();
+            if (!locationHandler.registerListener()) {
+                Log.d(getClass().toString(), "Permission denied for location! Requesting...");
+                SensingListener listener = this.listener;
+                if(listener != null)
+                    listener.onLocationPermissionRequired();
+                else
+                    unavailable.setLocation(false);
+            }
+        }
+        // The sensors which are not available are disabled
+        updateConfig(unavailable.build());
+        config = this.config.get();
+
+        Log.d(getClass().toString(), String.format("Accelerometer: %b\n" +
+                "Orientation: %b\nLocation: %b", config.isAccelerometerEnabled(), config.isOrientationEnabled(),
+                config.isLocationEnabled()));
+
+        // Scheduling the periodic flush of the windows which are not filled in time
+        publishThreadHandler.postDelayed(batchFlushTask, batchPolicy.getMaxDelayMillis());
+        if(getResources().getBoolean(R.bool.traceRecording))
+            startTrace();
+
+        started = true;
+        notifyStateChanged();
+    }
+
+    /**
+     * This method stops to read the sensors and send the data to the MQTT broker.
+     */
+    public void stop() {
+        if(!started)
+            return;
+        /*
+         * Unregister the listeners for all sensors. The events batched in the FIFO of the sensors
+         * are delivered first, then the pending samples and windows are flushed,
+         * and they are spooled if the client is not connected.
+         */
+        publishThreadHandler.removeCallbacks(batchFlushTask);
+        adaptiveSampler.stop();
+        sensorRegistry.disableAll(new PostFlushTask());
+        locationHandler.unregisterListener();
+        stopTrace();
+
+        started = false;
+        notifyStateChanged();
+        stopIfIdle();
+    }
+
+    /**
+     * This method is called with the result of the request of the permission for the location.
+     *
+     * @param granted
+     */
+    public void onLocationPermissionResult(boolean granted) {
+        if(granted) {
+            Log.d(getClass().toString(), "Permission just granted for location!");
+            if(started && config.get().isLocationEnabled())
+                locationHandler.registerListener();
+        } else {
+            Log.e(getClass().toString(), "Permission just denied for location!");
+            updateConfig(config.get().toBuilder().setLocation(false).build());
+        }
+    }
+
+    public String getDeviceID() {
+        return deviceID;
+    }
+
+    public boolean isConnected() {
+        return mqttClientConnected;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return the current snapshot of the configuration
+     */
+    public SensingConfig getConfig() {
+        return config.get();
+    }
+
+    /**
+     * This method starts to record the samples and the locations which enter the pipeline into a new trace,
+     * files/traces/yyyyMMdd-HHmmss.wtr, which can be replayed through the same pipeline by the simulator module.
+     * The full buffers of the trace are written on the publishing thread, so the thread of the sensor events
+     * never waits for the storage. If the trace cannot be created, the sensors are read anyway.
+     */
+    private void startTrace() {
+        long now = System.currentTimeMillis();
+        File directory = new File(getFilesDir(), "traces");
+        File file = new File(directory, new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date(now)) +
+                ".wtr");
+        try {
+            if(!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Cannot create " + directory);
+            traceWriter = new TraceWriter(new FileOutputStream(file), now, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    publishThreadHandler.post(command);
+                }
+            });
+            Log.d(getClass().toString(), "Recording the trace " + file);
+        } catch(IOException ex) {
+            Log.e(getClass().toString(), "The trace cannot be created: " + ex);
+        }
+    }
+
+    /**
+     * This method stops the recording of the trace: the events delivered later by the sensors are not recorded,
+     * and the trace is closed on the publishing thread.
+     */
+    private void stopTrace() {
+        TraceWriter writer = traceWriter;
+        if(writer == null)
+            return;
+        traceWriter = null;
+        writer.close();
+        publishThreadHandler.post(new TraceReportTask(writer));
+    }
+
+    /**
+     * This method leaves the foreground and stops the service when the client is disconnected
+     * and the sensors are not read. The service is destroyed when the Activity is unbound.
+     */
+    private void stopIfIdle() {
+        if(connectionRequested || started || !foreground)
+            return;
+        stopForeground(true);
+        stopSelf();
+        foreground = false;
+    }
+
+    private void notifyStateChanged() {
+        if(foreground) {
+            NotificationManager notificationManager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.notify(NOTIFICATION_ID, buildNotification());
+        }
+        SensingListener listener = this.listener;
+        if(listener != null)
+            listener.onStateChanged();
+    }
+
+    private void createNotificationChannel() {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(NOTIFICATION_CHANNEL_ID,
+                    getString(R.string.notificationChannel), NotificationManager.IMPORTANCE_LOW);
+            ((NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE)).createNotificationChannel(channel);
+        }
+    }
+
+    /**
+     * This method builds the ongoing notification of the service, which opens the Activity when it is clicked.
+     */
+    private Notification buildNotification() {
+        int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), flags);
+        String text = getString(mqttClientConnected ? R.string.notificationConnected : R.string.notificationOffline);
+        if(started)
+            text += " - " + getString(R.string.notificationSensing);
+        return new NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(text)
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .build();
+    }
+
+    /**
+     * This method creates the configuration with the default values of the configuration resource.
+     */
+    private SensingConfig createDefaultConfig() {
+        return new SensingConfig.Builder()
+                .setSamplingPeriod(getResources().getInteger(R.integer.samplingPeriod))
+                .setMaxSamplingPeriod(getResources().getInteger(R.integer.maxSamplingPeriod))
+                .setAccelerometer(getResources().getBoolean(R.bool.accelerometer))
+                .setOrientation(getResources().getBoolean(R.bool.orientation))
+                .setLocation(getResources().getBoolean(R.bool.location))
+                .setAccelerometerDeadBand(DeadBandFilter.parseThresholds(getString(R.string.accelerometerDeadBand)))
+                .setOrientationDeadBand(DeadBandFilter.parseThresholds(getString(R.string.orientationDeadBand)))
+                .setDeadBandHeartbeat(getResources().getInteger(R.integer.deadBandHeartbeat))
+                .setAccelerometerOutput(SensorPipeline.Output.parse(getString(R.string.accelerometerOutput)))
+                .setLocationPriority(LocationPriority.parse(getString(R.string.locationPriority)))
+                .setLocationInterval(getResources().getInteger(R.integer.locationInterval))
+                .setLocationFastestInterval(getResources().getInteger(R.integer.locationFastestInterval))
+                .setLocationMaxWaitTime(getResources().getInteger(R.integer.locationMaxWaitTime))
+                .setLocationMaxAccuracy(Float.parseFloat(getString(R.string.locationMaxAccuracy)))
+                .setLocationMinDistance(Float.parseFloat(getString(R.string.locationMinDistance)))
+                .setAccelerometerDelivery(DeliveryPolicy.parse(getString(R.string.accelerometerDelivery)))
+                .setOrientationDelivery(DeliveryPolicy.parse(getString(R.string.orientationDelivery)))
+                .setLocationDelivery(DeliveryPolicy.parse(getString(R.string.locationDelivery)))
+                .build();
+    }
+
+    /**
+     * This method replaces the configuration and applies the values which are changed
+     * to the sensor handlers and to the publishing pipeline. It must be called on the main thread.
+     *
+     * @param next
+     */
+    private void updateConfig(SensingConfig next) {
+        SensingConfig previous = config.getAndSet(next);
+        if(previous.getSamplingPeriod() != next.getSamplingPeriod() ||
+                previous.getMaxSamplingPeriod() != next.getMaxSamplingPeriod())
+            applySamplingPeriod(next);
+        if(next.accelerometerDeadBandDiffers(previous))
+            accelerometerDeadBand.setThresholds(next.getAccelerometerDeadBand());
+        if(next.orientationDeadBandDiffers(previous))
+            orientationDeadBand.setThresholds(next.getOrientationDeadBand());
+        if(previous.getDeadBandHeartbeat() != next.getDeadBandHeartbeat()) {
+            accelerometerDeadBand.setHeartbeat(next.getDeadBandHeartbeat());
+            orientationDeadBand.setHeartbeat(next.getDeadBandHeartbeat());
+        }
+        if(previous.getAccelerometerOutput() != next.getAccelerometerOutput())
+            sensorPipeline.setOutput(next.getAccelerometerOutput());
+        if(!previous.getAccelerometerDelivery().equals(next.getAccelerometerDelivery())) {
+            accelerometerPublisher.setPolicy(next.getAccelerometerDelivery());
+            featurePublisher.setPolicy(next.getAccelerometerDelivery());
+        }
+        if(!previous.getOrientationDelivery().equals(next.getOrientationDelivery()))
+            orientationPublisher.setPolicy(next.getOrientationDelivery());
+        if(!previous.getLocationDelivery().equals(next.getLocationDelivery()))
+            locationPublisher.setPolicy(next.getLocationDelivery());
+        if(next.locationRequestDiffers(previous))
+            applyLocationRequest(next);
+        if(previous.getLocationMaxAccuracy() != next.getLocationMaxAccuracy() ||
+                previous.getLocationMinDistance() != next.getLocationMinDistance())
+            locationFilter.setThresholds(next.getLocationMaxAccuracy(), next.getLocationMinDistance());
+        if(started)
+            applySensors(previous, next);
+        notifyStateChanged();
+    }
+
+    /**
+     * This method adds the streams of the additional sensors, written as "name:period,..." (e.g. "gyroscope:100"),
+     * where the period is in milliseconds. Every sensor is read with its own period and published on deviceID/name,
+     * and it is read only after it is enabled on broadcastTopic/sensors/name.
+     */
+    private void addExtraSensors(String sensors, Publisher samplePublisher, String codecName,
+                                 IMqttActionListener publicationListener) {
+        DeliveryPolicy delivery = DeliveryPolicy.parse(getString(R.string.extraSensorDelivery));
+        for(String sensor : sensors.split(",")) {
+            if(sensor.trim().isEmpty())
+                continue;
+            String[] nameAndPeriod = sensor.trim().split(":");
+            int type = SensorRegistry.parseSensorType(nameAndPeriod[0]);
+            if(type < 0 || nameAndPeriod.length != 2 || sensorRegistry.get(type) != null) {
+                Log.e(getClass().toString(), "Invalid additional sensor: " + sensor);
+                continue;
+            }
+            String name = nameAndPeriod[0].trim();
+            int period = Integer.parseInt(nameAndPeriod[1].trim());
+
+            SampleBatcher batcher = new SampleBatcher(deviceID + "/" + name, FrameCodecs.forName(codecName),
+                    batchPolicy, createStreamPublisher(samplePublisher, delivery), 0, false, publicationListener);
+            // The steps are counted since the boot, so only the last count of each period is meaningful
+            sensorPipeline.addStream(type, new SampleDecimator(period, type == Sensor.TYPE_STEP_COUNTER ?
+                    SampleDecimator.Mode.LAST : SampleDecimator.Mode.AVERAGE, batcher), batcher);
+            sensorPipeline.setSamplingPeriod(type, period);
+            SensorStreamHandler handler = new SensorStreamHandler(sensorManager, type,
+                    new ExtraSampleListener(metrics.counter("events." + name)), sensorThreadHandler);
+            handler.setSamplingPeriod(period);
+            sensorRegistry.add(type, handler);
+        }
+    }
+
+    /**
+     * This method creates the publisher of a stream. The retained copies on its latest topic are published
+     * directly through the MQTT client, bypassing the spool: a stale value replayed after a reconnection
+     * would replace a newer one.
+     */
+    private StreamPublisher createStreamPublisher(Publisher publisher, DeliveryPolicy policy) {
+        StreamPublisher streamPublisher = new StreamPublisher(publisher, mqttClient, policy);
+        streamPublishers.add(streamPublisher);
+        return streamPublisher;
+    }
+
+    /**
+     * This method enables or disables an additional sensor; if the sensors are read, it is registered
+     * or unregistered immediately, without affecting the other sensors.
+     */
+    private void setExtraSensorEnabled(int type, boolean enabled) {
+        extraSensorEnabled[type] = enabled;
+        if(!started)
+            return;
+        if(enabled) {
+            if(sensorRegistry.enable(type) == null)
+                Log.e(getClass().toString(), "Sensor " + type + " not available!");
+        } else
+            sensorRegistry.disable(type, new PostFlushTask());
+    }
+
+    /**
+     * This method applies the parameters of the request of location updates; if the location is read,
+     * the updates are requested again.
+     */
+    private void applyLocationRequest(SensingConfig config) {
+        locationHandler.setRequest(config.getLocationPriority(), config.getLocationInterval(),
+                config.getLocationFastestInterval(), config.getLocationMaxWaitTime());
+    }
+
+    /**
+     * This method registers or unregisters the sensors which are enabled or disabled by a new configuration
+     * while the sensors are read, so the other sensors are not restarted.
+     */
+    private void applySensors(SensingConfig previous, SensingConfig next) {
+        if(!previous.isAccelerometerEnabled() && next.isAccelerometerEnabled()) {
+            if(sensorRegistry.enable(Sensor.TYPE_ACCELEROMETER) == null)
+                Log.e(getClass().toString(), "Accelerometer not available!");
+        } else if(previous.isAccelerometerEnabled() && !next.isAccelerometerEnabled())
+            sensorRegistry.disable(Sensor.TYPE_ACCELEROMETER, new PostFlushTask());
+
+        if(!previous.isOrientationEnabled() && next.isOrientationEnabled()) {
+            if(sensorRegistry.enable(ORIENTATION_STREAM) == null)
+                Log.e(getClass().toString(), "Orientation not available!");
+        } else if(previous.isOrientationEnabled() && !next.isOrientationEnabled())
+            sensorRegistry.disable(ORIENTATION_STREAM, new PostFlushTask());
+
+        if(!previous.isLocationEnabled() && next.isLocationEnabled()) {
+            locationFilter.reset();
+            if(!locationHandler.registerListener()) {
+                SensingListener listener = this.listener;
+                if(listener != null)
+                    listener.onLocationPermissionRequired();
+            }
+        } else if(previous.isLocationEnabled() && !next.isLocationEnabled())
+            locationHandler.unregisterListener();
+    }
+
+    /**
+     * This method registers the gauges of the publishing pipeline, in the order of the snapshots.
+     */
+    private void registerGauges(SampleBatcher accelerometerBatcher, SampleBatcher orientationBatcher) {
+        PipelineGauges gauges = new PipelineGauges(metrics);
+        gauges.addSamples("accelerometer", accelerometerBatcher);
+        gauges.addSamples("orientation", orientationBatcher);
+        gauges.addDeadBand("accelerometer", accelerometerDeadBand);
+        gauges.addDeadBand("orientation", orientationDeadBand);
+        gauges.addLocationFilter(locationFilter);
+        gauges.addDelivery("accelerometer", accelerometerPublisher, featurePublisher);
+        gauges.addDelivery("orientation", orientationPublisher);
+        gauges.addDelivery("location", locationPublisher);
+        gauges.addClock(clock, clockSync);
+        gauges.addBuffer(sensorPipeline.getBuffer());
+        if(spool != null)
+            gauges.addSpool(spool.getLog());
+    }
+
+    /**
+     * This method applies the current sampling period to the decimators and, as the minimum period,
+     * to the adaptive sampling of the sensor handlers.
+     * The sensors which are already read are registered again with the new period.
+     */
+    private void applySamplingPeriod(SensingConfig config) {
+        adaptiveSampler.setBounds(config.getSamplingPeriod(), config.getMaxSamplingPeriod());
+        sensorPipeline.setSamplingPeriod(config.getSamplingPeriod());
+    }
+
+    /**
+     * This method converts the timestamp of a sensor event, which is relative to the boot of the device,
+     * to an epoch timestamp synchronized with the coordinator. The timestamp of the event is used
+     * instead of the current time because the sensors can deliver the events in bursts.
+     *
+     * @param eventTimestampNanos
+     * @return the epoch timestamp, in nanoseconds
+     */
+    private long toEpochNanos(long eventTimestampNanos) {
+        return clock.toEpochNanos(eventTimestampNanos);
+    }
+
+    /**
+     * This method provides an useful and simple interface to the Toast class,
+     * in order to show custom toast messages on the display.
+     * @param text
+     */
+    protected void showToast(String text) {
+        Toast.makeText(this, text, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * This class implements a task of the publishing thread which holds the partial wake-lock while it runs,
+     * so the CPU is not suspended while the samples are passed to the MQTT client.
+     */
+    protected abstract class WakefulTask implements Runnable {
+
+        @Override
+        public final void run() {
+            flushWakeLock.acquire(FLUSH_WAKE_LOCK_TIMEOUT_MS);
+            try {
+                runWakeful();
+            } finally {
+                if(flushWakeLock.isHeld())
+                    flushWakeLock.release();
+            }
+        }
+
+        protected abstract void runWakeful();
+    }
+
+    /**
+     * This class implements the task which forwards the samples of the ring buffer to the pipeline.
+     * It is posted on the publishing thread by the thread of the sensor events, only if it is not already pending.
+     */
+    protected class DrainTask implements Runnable {
+
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            sensorPipeline.drain();
+        }
+    }
+
+    /**
+     * This class implements the task which publishes all the pending samples.
+     */
+    protected class FlushTask extends WakefulTask {
+
+        @Override
+        protected void runWakeful() {
+            sensorPipeline.flush();
+        }
+    }
+
+    /**
+     * This class implements the task which posts a FlushTask on the publishing thread,
+     * when the listener of a sensor is unregistered.
+     */
+    protected class PostFlushTask implements Runnable {
+
+        @Override
+        public void run() {
+            publishThreadHandler.post(new FlushTask());
+        }
+    }
+
+    /**
+     * This class implements the periodic task which publishes the spooled samples after the reconnection.
+     * At most spoolReplayRate messages are published every spoolReplayInterval milliseconds,
+     * so the replay does not saturate the connection. It stops when the spool is empty or the client disconnects.
+     */
+    protected class ReplayTask implements Runnable {
+
+        @Override
+        public void run() {
+            spool.replay(getResources().getInteger(R.integer.spoolReplayRate));
+            if(spool.isConnected() && spool.hasBacklog())
+                publishThreadHandler.postDelayed(this, getResources().getInteger(R.integer.spoolReplayInterval));
+        }
+    }
+
+    /**
+     * This class implements the task which saves the spool on the storage before the service is destroyed.
+     */
+    protected class CloseSpoolTask implements Runnable {
+
+        @Override
+        public void run() {
+            spool.getLog().close();
+        }
+    }
+
+    /**
+     * This class implements the task which reports a trace, after the writes queued by its closing.
+     */
+    protected class TraceReportTask implements Runnable {
+
+        private final TraceWriter writer;
+
+        public TraceReportTask(TraceWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void run() {
+            if(writer.getError() != null)
+                Log.e(getClass().toString(), "The trace cannot be written: " + writer.getError());
+            else
+                Log.d(getClass().toString(), "Trace recorded: " + writer.getEventCount() + " events, " +
+                        writer.getSize() + " bytes, " + writer.getDroppedCount() + " events dropped");
+        }
+    }
+
+    /**
+     * This class implements the task which publishes all the pending samples and then disconnects the client.
+     */
+    protected class FlushAndDisconnectTask extends WakefulTask {
+
+        @Override
+        protected void runWakeful() {
+            sensorPipeline.flush();
+            mqttClient.disconnect(new DisconnectionListener());
+        }
+    }
+
+    /**
+     * This class implements the periodic task which publishes the windows
+     * older than the maximum delay of the batch policy, while the sensors are read,
+     * and the last messages of the quiet streams on their latest topics.
+     * It runs on the publishing thread, like the rest of the pipeline.
+     */
+    protected class BatchFlushTask extends WakefulTask {
+
+        @Override
+        protected void runWakeful() {
+            // The windows start at the epoch timestamps of their samples, so their age is measured with the same clock
+            sensorPipeline.flushExpired(clock.nowEpochNanos() / 1000000L);
+            // The latest topics are timed by the publishers with the clock of the device
+            long nowMillis = System.currentTimeMillis();
+            for(StreamPublisher streamPublisher : streamPublishers)
+                streamPublisher.flushLatest(nowMillis);
+            publishThreadHandler.postDelayed(this, batchPolicy.getMaxDelayMillis());
+        }
+    }
+
+    /**
+     * This class implements the periodic task which publishes a snapshot of the metrics
+     * on the topic deviceID/metrics, with Quality of Service 0 because a lost snapshot is replaced by the next one.
+     * While the client is not connected, the snapshot is not taken, so the latencies are kept for the next one.
+     */
+    protected class MetricsTask implements Runnable {
+
+        @Override
+        public void run() {
+            if(mqttClientConnected)
+                mqttClient.publish(deviceID + "/metrics", metrics.snapshot(deviceID, System.currentTimeMillis()),
+                        0, false, null);
+            publishThreadHandler.postDelayed(this, getResources().getInteger(R.integer.metricsInterval));
+        }
+    }
+
+    /**
+     * This class implements the periodic task which sends a time-sync request to the coordinator
+     * on deviceID/time/request, with Quality of Service 0 because a lost request is replaced by the next one.
+     * The offset of the wall clock, used until the first response, is calibrated again at the same time.
+     */
+    protected class ClockSyncTask implements Runnable {
+
+        @Override
+        public void run() {
+            clock.calibrate();
+            if(mqttClientConnected)
+                mqttClient.publish(deviceID + ClockSync.REQUEST_TOPIC, clockSync.createRequest(), 0, false, null);
+            publishThreadHandler.postDelayed(this, getResources().getInteger(R.integer.clockSyncInterval));
+        }
+    }
+
+    /**
+     * This method is called when the client is connected to the broker, also after an automatic reconnection.
+     */
+    private void onConnected() {
+        mqttClientConnected = true;
+
+        // The samples spooled while the client was offline are published again
+        if(spool != null) {
+            spool.setConnected(true);
+            publishThreadHandler.removeCallbacks(replayTask);
+            publishThreadHandler.post(replayTask);
+        }
+        // The clock is synchronized as soon as the client is connected
+        if(getResources().getInteger(R.integer.clockSyncInterval) > 0) {
+            publishThreadHandler.removeCallbacks(clockSyncTask);
+            publishThreadHandler.post(clockSyncTask);
+        }
+        notifyStateChanged();
+    }
+
+    /**
+     * This class implements the Listener for the connection to the broker
+     * and the methods for successful connection and failed connection.
+     */
+    protected class ConnectionListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            String msg = "Connection successful!";
+
+            Log.d(getClass().toString(), msg);
+            showToast(msg);
+
+            onConnected();
+
+            /*
+             * The client subscribes to the filters of all the routes of the broadcastTopic with Quality of Service 1
+             * because there are no problems if the client received the configuration more times.
+             */
+            for(String filter : topicRouter.getFilters())
+                mqttClient.subscribe(filter, 1, new SubscriptionListener());
+
+            /*
+             * The client sends its ID to the coordinator, in order to be added into its collection of devices.
+             * This collection will be used by the coordinator to broadcast messages to all devices.
+             * The message is retained: so, the coordinator will see the device also if it connects
+             * after the device itself.
+             */
+            mqttClient.publish(broadcastTopic + "/newDevice", deviceID, 1, true, new PublicationListener());
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            String msg = "Connection failed!";
+            Log.e(getClass().toString(), msg);
+            showToast(msg);
+
+            connectionRequested = false;
+            notifyStateChanged();
+            stopIfIdle();
+        }
+    }
+
+    /**
+     * This class implements the Callback for the connection to the broker
+     * and, in particular, the method to manage the arrival of a message on the topics
+     * which the client is subscribed at.
+     * The client reconnects automatically after a connection loss and renews the subscriptions,
+     * then the method connectComplete is called.
+     */
+    protected class ConnectionCallback implements MqttCallbackExtended {
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            if(!reconnect)
+                return;
+            String msg = "Reconnection successful!";
+            Log.d(getClass().toString(), String.format("%s Outage of %d ms, reconnection in %d ms", msg,
+                    mqttClient.getLastOutageMillis(), mqttClient.getLastReconnectMillis()));
+            showToast(msg);
+
+            onConnected();
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            Log.e(getClass().toString(), "Connection lost! Reconnecting...");
+            mqttClientConnected = false;
+
+            /*
+             * The sensors are still read: the samples are stored in the spool
+             * until the client is connected again.
+             */
+            if(spool != null)
+                spool.setConnected(false);
+            else
+                stop();
+            notifyStateChanged();
+        }
+
+        /**
+         * This method manages the arrival of a message on the topics which the client is subscribed at,
+         * i.e. the routes of the broadcastTopic.
+         * @param topic
+         * @param message
+         * @throws Exception
+         */
+        @Override
+        public void messageArrived(String topic, MqttMessage message) throws Exception {
+            messageArrivedNanos = SystemClock.elapsedRealtimeNanos();
+            Log.d(getClass().toString(), String.format("Message (%s) arrived from %s!", message.toString(), topic));
+
+            // The message is passed to the handlers of the routes whose filter matches the topic
+            if(topicRouter.route(topic, message) == 0)
+                Log.d(getClass().toString(), "No route for the topic " + topic + "! Ignoring the message...");
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            //Log.d(getClass().toString(), "Delivery complete!");
+        }
+    }
+
+    protected class DisconnectionListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            String msg = "Disconnection successful!";
+
+            Log.d(getClass().toString(), msg);
+            showToast(msg);
+
+            mqttClientConnected = false;
+            connectionRequested = false;
+            if(spool != null)
+                spool.setConnected(false);
+            /*
+             * Stops to read the sensors. This step is necessary in order to avoid waste of energy.
+             */
+            stop();
+            notifyStateChanged();
+            stopIfIdle();
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            String msg = "Disconnection failed!";
+            Log.e(getClass().toString(), msg);
+            showToast(msg);
+        }
+    }
+
+    /**
+     * This class applies the configuration changed by the messages of the coordinator
+     * and publishes the acknowledgements of the configuration documents.
+     */
+    protected class ConfigListener implements ConfigRouter.Listener {
+
+        @Override
+        public void onConfigChanged(SensingConfig next) {
+            updateConfig(next);
+        }
+
+        @Override
+        public boolean onSensorEnabled(int type, boolean enabled) {
+            if(sensorRegistry.get(type) == null)
+                return false;
+            setExtraSensorEnabled(type, enabled);
+            return true;
+        }
+
+        @Override
+        public void onConfigAck(String ack) {
+            mqttClient.publish(deviceID + "/config/ack", ack, 1, false, new PublicationListener());
+        }
+    }
+
+    /**
+     * This class implements the Listener for the subscription to a topic
+     * and the methods for successful connection and failed subscription.
+     */
+    protected class SubscriptionListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            Log.d(getClass().toString(), "Subscription successful!");
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            Log.e(getClass().toString(), "Subscription failed!");
+        }
+    }
+
+    /**
+     * This class implements the Listener for the publication of a message
+     * and the methods for successful connection and failed publication.
+     */
+    protected class PublicationListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            //Log.d(getClass().toString(), "Publication successful!");
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            // The messages discarded by a delivery policy are counted by the delivery.*.dropped gauges
+            if(StreamPublisher.isWindowFull(exception))
+                return;
+            Log.e(getClass().toString(), "Publication failed!");
+            publishFailures.increment();
+        }
+    }
+
+    /**
+     * This method passes a sample to the publishing thread through the ring buffer,
+     * then it is reduced to one per sampling period by the decimators
+     * and published by the batchers when their windows are full or expired.
+     * It is called on the thread of the sensor events.
+     *
+     * @param sensorType
+     * @param eventTimestampNanos: the timestamp of the sensor event, relative to the boot of the device
+     * @param values
+     */
+    private void offerSample(int sensorType, long eventTimestampNanos, float[] values) {
+        offerSample(sensorType, eventTimestampNanos, values[0], values[1], values[2]);
+    }
+
+    private void offerSample(int sensorType, long eventTimestampNanos, float x, float y, float z) {
+        long timestampNanos = toEpochNanos(eventTimestampNanos);
+        TraceWriter writer = traceWriter;
+        if(writer != null) {
+            try {
+                writer.writeSample(sensorType, timestampNanos, x, y, z);
+            } catch(IOException ex) {
+                Log.e(getClass().toString(), "The trace cannot be written: " + ex);
+                stopTrace();
+            }
+        }
+        sensorPipeline.offer(sensorType, timestampNanos, x, y, z);
+        if(drainScheduled.compareAndSet(false, true))
+            publishThreadHandler.post(drainTask);
+    }
+
+    /**
+     * This method records a location in the trace, if the recording is active, before it is filtered,
+     * so the replay applies the filter again.
+     */
+    private void recordLocation(long timestampNanos, double latitude, double longitude, float accuracy,
+                                long timeMillis) {
+        TraceWriter writer = traceWriter;
+        if(writer == null)
+            return;
+        try {
+            writer.writeLocation(timestampNanos, latitude, longitude, accuracy, timeMillis);
+        } catch(IOException ex) {
+            Log.e(getClass().toString(), "The trace cannot be written: " + ex);
+            stopTrace();
+        }
+    }
+
+    /**
+     * This class implements the Listener for all the events relative to the accelerometer.
+     * The events are delivered on the thread of the sensor events, not on the main thread.
+     */
+    protected class AccelerometerSampleListener implements SampleListener {
+
+        @Override
+        public void onSample(int sensorType, long timestampNanos, float[] values) {
+            accelerometerEvents.increment();
+            adaptiveSampler.onAccelerometerSample(timestampNanos, values);
+            SensingListener listener = SensingService.this.listener;
+            if(listener != null)
+                listener.onAccelerometerChanged(values);
+            offerSample(sensorType, timestampNanos, values);
+        }
+    }
+
+    /**
+     * This class implements the Listener for the events of an additional sensor.
+     * The sensors with less than three values (e.g. the heart rate) are published with the missing values at 0.
+     */
+    protected class ExtraSampleListener implements SampleListener {
+
+        private final Counter events;
+
+        public ExtraSampleListener(Counter events) {
+            this.events = events;
+        }
+
+        @Override
+        public void onSample(int sensorType, long timestampNanos, float[] values) {
+            events.increment();
+            offerSample(sensorType, timestampNanos, values[0],
+                    values.length > 1 ? values[1] : 0, values.length > 2 ? values[2] : 0);
+        }
+    }
+
+    /**
+     * This class implements the Listener for the orientation, as [azimuth, pitch, roll] in degrees,
+     * computed by the OrientationHandler on the thread of the sensor events.
+     */
+    protected class ApplicationOrientationListener implements OrientationListener {
+
+        @Override
+        public void onOrientationChanged(long timestampNanos, float[] angles, float[] quaternion) {
+            orientationEvents.increment();
+            SensingListener listener = SensingService.this.listener;
+            if(listener != null)
+                listener.onOrientationChanged(angles);
+            offerSample(ORIENTATION_STREAM, timestampNanos, angles);
+        }
+    }
+
+    /**
+     * This class implements the callback of the fused location provider, which can deliver
+     * several locations at once when the updates are batched.
+     */
+    protected class ApplicationLocationCallback extends LocationCallback {
+
+        @Override
+        public void onLocationResult(LocationResult result) {
+            for(Location location : result.getLocations()) {
+                /*
+                 * The timestamp is the time of the fix, since a batched location can be older than its delivery,
+                 * measured on the clock of the sensors, so it is synchronized like the samples
+                 */
+                long timestampNanos = toEpochNanos(location.getElapsedRealtimeNanos());
+                float accuracy = location.hasAccuracy() ? location.getAccuracy() : -1;
+                recordLocation(timestampNanos, location.getLatitude(), location.getLongitude(), accuracy,
+                        location.getTime());
+                if(!locationFilter.accept(location.getLatitude(), location.getLongitude(), accuracy,
+                        location.getTime()))
+                    continue;
+
+                // The location is always text, whatever the codec of the samples, so the coordinators parse it
+                byte[] payload = locationEncoder.encode(timestampNanos, location.getLatitude(),
+                        location.getLongitude());
+                SensingListener listener = SensingService.this.listener;
+                if(listener != null)
+                    listener.onLocationChanged(decimalFormat.format(location.getLatitude()) + "," +
+                            decimalFormat.format(location.getLongitude()));
+                // The Quality of Service is set by the delivery policy of the location
+                locationPublisher.publish(deviceID + "/location", payload, 0, false, new PublicationListener());
+            }
+        }
+
+        @Override
+        public void onLocationAvailability(LocationAvailability availability) {
+            boolean available = availability.isLocationAvailable();
+            if(!available && locationAvailable)
+                showToast("Enable location!");
+            else if(available && !locationAvailable)
+                Log.d(getClass().toString(), "Location is now available");
+            locationAvailable = available;
+        }
+    }
+}
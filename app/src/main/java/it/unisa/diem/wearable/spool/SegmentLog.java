@@ -0,0 +1,371 @@
+package it.unisa.diem.wearable.spool;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class implements an append-only log of messages, stored in memory-mapped segment files
+ * of a directory, which survives the restart of the application.
+ *
+ * Every record is written as
+ * [length (4 bytes)][topic length (2 bytes)][topic][qos (1 byte)][retained (1 byte)][payload],
+ * where the length is written last: a record with a zero length marks the end of the segment,
+ * so a record interrupted by a crash is simply overwritten by the next one.
+ *
+ * The records are read in order through a read cursor and the position up to which they are published
+ * is saved in a "cursor" file through commit(). If the publication fails, rewind() moves the read cursor
+ * back to the committed position. The segments which are fully committed are deleted (compaction)
+ * and, when the log exceeds its maximum size, the oldest segments are deleted even if they are not
+ * published yet (retention), counting the lost records.
+ */
+public class SegmentLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE_NAME = "cursor";
+    private static final int CURSOR_SIZE = 12;
+    private static final int LENGTH_SIZE = 4;
+    private static final int FIXED_BODY_SIZE = 4;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final TreeMap<Long, Segment> segments;
+    private final MappedByteBuffer cursor;
+    private Segment writeSegment;
+
+    private long readSegmentId;
+    private int readPosition;
+    private long committedSegmentId;
+    private int committedPosition;
+    private int readSinceCommit;
+    private long pendingRecords;
+    private long droppedRecords;
+
+    /**
+     * This constructor opens the log stored in the directory, or creates it if the directory is empty.
+     *
+     * @param directory: the directory of the segment files
+     * @param segmentSize: the size of every segment file, in bytes
+     * @param maxSize: the maximum size of the log, in bytes (at least two segments are kept)
+     * @throws IOException
+     */
+    public SegmentLog(File directory, int segmentSize, long maxSize) throws IOException {
+        if(segmentSize <= LENGTH_SIZE + FIXED_BODY_SIZE)
+            throw new IllegalArgumentException("The segments are too small!");
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create the directory " + directory);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxSize / segmentSize);
+        this.segments = new TreeMap<>();
+
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if(files != null) {
+            for(File file : files) {
+                String name = file.getName();
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    Segment segment = openSegment(id);
+                    segment.records = scan(segment);
+                    segments.put(id, segment);
+                } catch (NumberFormatException ex) {
+                    // Not a segment of the log
+                }
+            }
+        }
+        if(segments.isEmpty())
+            segments.put(0L, openSegment(0));
+        writeSegment = segments.lastEntry().getValue();
+
+        cursor = map(new File(directory, CURSOR_FILE_NAME), CURSOR_SIZE);
+        committedSegmentId = cursor.getLong(0);
+        committedPosition = cursor.getInt(8);
+        Segment committedSegment = segments.get(committedSegmentId);
+        if(committedSegment == null || committedPosition > committedSegment.writePosition) {
+            committedSegmentId = segments.firstKey();
+            committedPosition = 0;
+        }
+        while(segments.firstKey() < committedSegmentId)
+            deleteSegment(segments.firstEntry().getValue());
+
+        for(Segment segment : segments.values())
+            pendingRecords += segment.records;
+        pendingRecords -= countRecords(segments.get(committedSegmentId), committedPosition);
+        readSegmentId = committedSegmentId;
+        readPosition = committedPosition;
+        persistCursor();
+    }
+
+    /**
+     * This method appends a record at the end of the log, deleting the oldest segments if it is full.
+     *
+     * @param topic
+     * @param payload
+     * @param qos
+     * @param retained
+     * @throws IOException
+     */
+    public synchronized void append(String topic, byte[] payload, int qos, boolean retained) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_SIZE + topicBytes.length + payload.length;
+        if(LENGTH_SIZE + bodyLength > segmentSize)
+            throw new IOException("The record is larger than a segment!");
+        if(writeSegment.writePosition + LENGTH_SIZE + bodyLength > segmentSize)
+            roll();
+
+        MappedByteBuffer buffer = writeSegment.buffer;
+        int position = writeSegment.writePosition + LENGTH_SIZE;
+        buffer.putShort(position, (short) topicBytes.length);
+        position += 2;
+        for(byte b : topicBytes)
+            buffer.put(position++, b);
+        buffer.put(position++, (byte) qos);
+        buffer.put(position++, (byte) (retained ? 1 : 0));
+        for(byte b : payload)
+            buffer.put(position++, b);
+        // The length is written last, so the record becomes visible only when it is complete
+        buffer.putInt(writeSegment.writePosition, bodyLength);
+
+        writeSegment.writePosition = position;
+        writeSegment.records++;
+        pendingRecords++;
+    }
+
+    /**
+     * This method reads the next record after the read cursor and moves the cursor after it.
+     *
+     * @return the record, or null if all the records are already read
+     */
+    public synchronized SpoolRecord read() {
+        Segment segment = segments.get(readSegmentId);
+        while(segment != null && readPosition >= segment.writePosition) {
+            Map.Entry<Long, Segment> next = segments.higherEntry(readSegmentId);
+            if(next == null)
+                return null;
+            segment = next.getValue();
+            readSegmentId = segment.id;
+            readPosition = 0;
+        }
+        if(segment == null)
+            return null;
+
+        MappedByteBuffer buffer = segment.buffer;
+        int bodyLength = buffer.getInt(readPosition);
+        int position = readPosition + LENGTH_SIZE;
+        byte[] topicBytes = new byte[buffer.getShort(position)];
+        position += 2;
+        for(int i = 0; i < topicBytes.length; i++)
+            topicBytes[i] = buffer.get(position++);
+        int qos = buffer.get(position++);
+        boolean retained = buffer.get(position++) != 0;
+        byte[] payload = new byte[bodyLength - FIXED_BODY_SIZE - topicBytes.length];
+        for(int i = 0; i < payload.length; i++)
+            payload[i] = buffer.get(position++);
+
+        readPosition = position;
+        readSinceCommit++;
+        return new SpoolRecord(new String(topicBytes, StandardCharsets.UTF_8), payload, qos, retained);
+    }
+
+    /**
+     * This method saves the read cursor as the committed position and deletes the segments
+     * which are fully committed.
+     */
+    public synchronized void commit() {
+        committedSegmentId = readSegmentId;
+        committedPosition = readPosition;
+        pendingRecords -= readSinceCommit;
+        readSinceCommit = 0;
+        compact();
+        persistCursor();
+    }
+
+    /**
+     * This method moves the read cursor back to the committed position,
+     * so that the records read after the last commit are read again.
+     */
+    public synchronized void rewind() {
+        readSegmentId = committedSegmentId;
+        readPosition = committedPosition;
+        readSinceCommit = 0;
+    }
+
+    /**
+     * @return true if all the records are already read
+     */
+    public synchronized boolean isEmpty() {
+        return readSegmentId == writeSegment.id && readPosition >= writeSegment.writePosition;
+    }
+
+    /**
+     * @return the number of records which are not committed yet
+     */
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    /**
+     * @return the number of records deleted by the retention before being committed
+     */
+    public synchronized long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /**
+     * @return the number of segment files of the log
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        for(Segment segment : segments.values())
+            segment.buffer.force();
+        cursor.force();
+    }
+
+    private void roll() throws IOException {
+        writeSegment.buffer.force();
+        writeSegment = openSegment(writeSegment.id + 1);
+        segments.put(writeSegment.id, writeSegment);
+
+        // Retention: the oldest segments are deleted, even if their records are not committed
+        while(segments.size() > maxSegments) {
+            Segment oldest = segments.firstEntry().getValue();
+            int committedRecords = committedSegmentId == oldest.id ? countRecords(oldest, committedPosition) : 0;
+            long lost = committedSegmentId <= oldest.id ? oldest.records - committedRecords : oldest.records;
+            droppedRecords += lost;
+            pendingRecords -= lost;
+            // The records of the segment read after the commit are lost, so a later commit must not count them
+            if(committedSegmentId == oldest.id) {
+                int readEnd = readSegmentId == oldest.id ? readPosition : oldest.writePosition;
+                readSinceCommit -= countRecords(oldest, readEnd) - committedRecords;
+            }
+            deleteSegment(oldest);
+            if(committedSegmentId <= oldest.id) {
+                committedSegmentId = segments.firstKey();
+                committedPosition = 0;
+                persistCursor();
+            }
+            /*
+             * The read cursor moves only if it was in the deleted segment: the records read from the next
+             * segments may be in flight, and they are committed when they are acknowledged
+             */
+            if(readSegmentId <= oldest.id) {
+                readSegmentId = committedSegmentId;
+                readPosition = 0;
+                readSinceCommit = 0;
+            }
+        }
+    }
+
+    private void compact() {
+        while(segments.firstKey() < committedSegmentId)
+            deleteSegment(segments.firstEntry().getValue());
+
+        // When everything is committed, the write segment is replaced by an empty one
+        if(pendingRecords == 0 && committedSegmentId == writeSegment.id && committedPosition > 0 &&
+                committedPosition >= writeSegment.writePosition) {
+            try {
+                Segment empty = openSegment(writeSegment.id + 1);
+                segments.put(empty.id, empty);
+                deleteSegment(writeSegment);
+                writeSegment = empty;
+                committedSegmentId = empty.id;
+                committedPosition = 0;
+                readSegmentId = empty.id;
+                readPosition = 0;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void persistCursor() {
+        cursor.putLong(0, committedSegmentId);
+        cursor.putInt(8, committedPosition);
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        File file = new File(directory, String.format(Locale.ROOT, "%020d%s", id, SEGMENT_SUFFIX));
+        return new Segment(id, file, map(file, segmentSize));
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.id);
+        if(!segment.file.delete())
+            segment.file.deleteOnExit();
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // The mapping remains valid after the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * This method finds the end of the records of a segment.
+     *
+     * @return the number of complete records
+     */
+    private int scan(Segment segment) {
+        int records = 0;
+        int position = 0;
+        while(position + LENGTH_SIZE <= segmentSize) {
+            int bodyLength = segment.buffer.getInt(position);
+            if(bodyLength < FIXED_BODY_SIZE || position + LENGTH_SIZE + bodyLength > segmentSize)
+                break;
+            position += LENGTH_SIZE + bodyLength;
+            records++;
+        }
+        segment.writePosition = position;
+        return records;
+    }
+
+    /**
+     * @return the number of records of a segment before the given position
+     */
+    private int countRecords(Segment segment, int end) {
+        int records = 0;
+        int position = 0;
+        while(position < end) {
+            position += LENGTH_SIZE + segment.buffer.getInt(position);
+            records++;
+        }
+        return records;
+    }
+
+    private static class Segment {
+
+        final long id;
+        final File file;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        int records;
+
+        Segment(long id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package it.unisa.diem.wearable.spool;
+
+/**
+ * This class represents a message stored in the spool, waiting to be published.
+ */
+public final class SpoolRecord {
+
+    private final String topic;
+    private final byte[] payload;
+    private final int qos;
+    private final boolean retained;
+
+    public SpoolRecord(String topic, byte[] payload, int qos, boolean retained) {
+        this.topic = topic;
+        this.payload = payload;
+        this.qos = qos;
+        this.retained = retained;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public boolean isRetained() {
+        return retained;
+    }
+}
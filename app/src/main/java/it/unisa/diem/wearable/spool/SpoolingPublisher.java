@@ -0,0 +1,129 @@
+package it.unisa.diem.wearable.spool;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+
+import java.io.IOException;
+
+import it.unisa.diem.wearable.communication.Publisher;
+
+/**
+ * This class wraps a publisher (e.g. the MQTT client) with a durable store-and-forward spool.
+ *
+ * While the broker is reachable and the spool is empty, the messages are published directly.
+ * Otherwise they are appended to the segment log, so that they are not lost while the device is offline
+ * and the order of the messages is preserved. After the reconnection, replay() publishes the spooled messages
+ * in order, a bounded number at a time: the next group is published only when the previous one is
+ * acknowledged, and it is committed in the log only then. If a publication of the group fails,
+ * the group is read again from the log at the next call.
+ */
+public class SpoolingPublisher implements Publisher {
+
+    private final Publisher publisher;
+    private final SegmentLog log;
+    private final IMqttActionListener replayListener;
+    private boolean connected;
+    private int replayPending;
+    private boolean replayFailed;
+
+    public SpoolingPublisher(Publisher publisher, SegmentLog log) {
+        this.publisher = publisher;
+        this.log = log;
+        this.replayListener = new ReplayListener();
+        this.connected = false;
+    }
+
+    /**
+     * This method notifies the spool that the broker is reachable or not.
+     *
+     * @param connected
+     */
+    public synchronized void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public synchronized void publish(String topic, byte[] payload, int qos, boolean retained,
+                                     IMqttActionListener cbPublish) {
+        if(connected && log.isEmpty() && replayPending == 0) {
+            publisher.publish(topic, payload, qos, retained, cbPublish);
+            return;
+        }
+
+        try {
+            log.append(topic, payload, qos, retained);
+        } catch (IOException e) {
+            // The message is lost, so the caller must not count it as delivered
+            if(cbPublish != null)
+                cbPublish.onFailure(null, e);
+            return;
+        }
+        // The payload is already copied into the log, so the caller can reuse it
+        if(cbPublish != null)
+            cbPublish.onSuccess(null);
+    }
+
+    /**
+     * This method publishes the next group of spooled messages, if the previous group is acknowledged.
+     *
+     * @param maxMessages: the maximum number of messages of the group
+     * @return the number of published messages
+     */
+    public synchronized int replay(int maxMessages) {
+        if(!connected || replayPending > 0)
+            return 0;
+
+        int published = 0;
+        SpoolRecord record;
+        while(published < maxMessages && (record = log.read()) != null) {
+            replayPending++;
+            published++;
+            publisher.publish(record.getTopic(), record.getPayload(), record.getQos(), record.isRetained(),
+                    replayListener);
+        }
+        return published;
+    }
+
+    /**
+     * @return true if there are spooled messages which are not published or not acknowledged yet
+     */
+    public synchronized boolean hasBacklog() {
+        return log.getPendingRecords() > 0;
+    }
+
+    public SegmentLog getLog() {
+        return log;
+    }
+
+    private synchronized void onReplayCompleted(boolean success) {
+        if(!success)
+            replayFailed = true;
+        if(replayPending > 0 && --replayPending == 0) {
+            if(replayFailed)
+                log.rewind();
+            else
+                log.commit();
+            replayFailed = false;
+        }
+    }
+
+    /**
+     * This class commits or rewinds the group of replayed messages when all of them are completed.
+     */
+    private class ReplayListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            onReplayCompleted(true);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            onReplayCompleted(false);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package it.unisa.diem.wearable.trace;
+
+/**
+ * This class holds an event read from a trace: a sample of a sensor or a location.
+ * The same instance is filled by every call of TraceReader.next(), so the reading does not allocate.
+ */
+public class TraceEvent {
+
+    public enum Type {
+        SAMPLE,
+        LOCATION
+    }
+
+    Type type;
+    long timestampNanos;
+    int sensorType;
+    float x, y, z;
+    double latitude, longitude;
+    float accuracy;
+    long timeMillis;
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the epoch time of the sample or of the fix, in nanoseconds
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * @return the type of the sensor of a sample
+     */
+    public int getSensorType() {
+        return sensorType;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getZ() {
+        return z;
+    }
+
+    /**
+     * @return the latitude of a location, in degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return the longitude of a location, in degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the accuracy radius of a location, in meters, or a negative value if it is unknown
+     */
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return the epoch time of a location declared by the provider, in milliseconds
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+}
@@ -0,0 +1,146 @@
+package it.unisa.diem.wearable.trace;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import it.unisa.diem.wearable.codec.VarInts;
+
+/**
+ * This class reads the events of a trace written by a TraceWriter, in the order in which they were recorded.
+ *
+ * The stream is read in large blocks into a buffer, which always holds a whole record unless the trace ends,
+ * so the records are decoded in place.
+ */
+public class TraceReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    /** The buffer has room for a record after its size, so a truncated record is never read out of bounds */
+    private final byte[] buffer;
+    private final int[] position;
+    private int limit;
+    private boolean endOfStream;
+    private final long startMillis;
+    private long lastTimestampNanos;
+
+    /**
+     * @param in: the stream of the trace, which is closed by close()
+     * @throws IOException if the stream cannot be read or it is not a trace of a supported version
+     */
+    public TraceReader(InputStream in) throws IOException {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE + TraceWriter.MAX_RECORD_SIZE];
+        this.position = new int[1];
+        fill();
+        for(int i = 0; i < TraceWriter.MAGIC.length; i++)
+            if(limit <= i || buffer[i] != TraceWriter.MAGIC[i])
+                throw new IOException("Not a trace!");
+        position[0] = TraceWriter.MAGIC.length;
+        if(limit <= position[0] || buffer[position[0]++] != TraceWriter.VERSION)
+            throw new IOException("Unsupported version of the trace!");
+        startMillis = readVarLong();
+        checkRead();
+    }
+
+    /**
+     * @return the epoch time of the start of the recording, in milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * This method reads the next event.
+     *
+     * @param event: the event which receives the values of the record
+     * @return false if the trace has no more events
+     * @throws IOException if the stream cannot be read or the trace is malformed or truncated
+     */
+    public boolean next(TraceEvent event) throws IOException {
+        if(limit - position[0] < TraceWriter.MAX_RECORD_SIZE && !endOfStream)
+            fill();
+        if(position[0] == limit)
+            return false;
+
+        int tag = buffer[position[0]++];
+        switch(tag) {
+            case TraceWriter.SAMPLE:
+                long sensorType = readVarLong();
+                if(sensorType > Integer.MAX_VALUE)
+                    throw new IOException("Malformed type of sensor in the trace!");
+                event.type = TraceEvent.Type.SAMPLE;
+                event.sensorType = (int) sensorType;
+                event.timestampNanos = readTimestamp();
+                event.x = Float.intBitsToFloat(readInt());
+                event.y = Float.intBitsToFloat(readInt());
+                event.z = Float.intBitsToFloat(readInt());
+                break;
+            case TraceWriter.LOCATION:
+                event.type = TraceEvent.Type.LOCATION;
+                event.timestampNanos = readTimestamp();
+                event.latitude = Double.longBitsToDouble(readLong());
+                event.longitude = Double.longBitsToDouble(readLong());
+                event.accuracy = Float.intBitsToFloat(readInt());
+                event.timeMillis = event.timestampNanos / 1000000L + VarInts.unZigZag(readVarLong());
+                break;
+            default:
+                throw new IOException("Unknown record in the trace: " + tag);
+        }
+        checkRead();
+        return true;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * This method moves the bytes not read yet at the beginning of the buffer and reads the stream
+     * until the buffer holds at least a whole record or the stream ends.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - position[0];
+        System.arraycopy(buffer, position[0], buffer, 0, remaining);
+        position[0] = 0;
+        limit = remaining;
+        while(limit < TraceWriter.MAX_RECORD_SIZE) {
+            int read = in.read(buffer, limit, BUFFER_SIZE - limit);
+            if(read < 0) {
+                endOfStream = true;
+                return;
+            }
+            limit += read;
+        }
+    }
+
+    private void checkRead() throws EOFException {
+        if(position[0] > limit)
+            throw new EOFException("The trace is truncated!");
+    }
+
+    private long readVarLong() throws IOException {
+        try {
+            return VarInts.readVarLong(buffer, position);
+        } catch(IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    private long readTimestamp() throws IOException {
+        lastTimestampNanos += VarInts.unZigZag(readVarLong());
+        return lastTimestampNanos;
+    }
+
+    private int readInt() {
+        int p = position[0];
+        position[0] = p + 4;
+        return (buffer[p] & 0xFF) << 24 | (buffer[p + 1] & 0xFF) << 16 | (buffer[p + 2] & 0xFF) << 8 |
+                (buffer[p + 3] & 0xFF);
+    }
+
+    private long readLong() {
+        return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,259 @@
+package it.unisa.diem.wearable.trace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+
+import it.unisa.diem.wearable.codec.VarInts;
+
+/**
+ * This class records the events which enter the sensing pipeline into a compact binary trace,
+ * which can be replayed later through the same pipeline.
+ *
+ * The trace starts with a header (the MAGIC bytes, the VERSION and the epoch time of the start of the recording,
+ * as a variable-length integer) followed by the records:
+ *  - SAMPLE: the tag, the type of the sensor, the timestamp as the zig-zag difference from the previous record
+ *    and the values x, y and z as big-endian floats;
+ *  - LOCATION: the tag, the timestamp of the fix like a sample, the latitude and the longitude as big-endian
+ *    doubles, the accuracy as a big-endian float (negative if unknown) and the time of the fix declared
+ *    by the provider, as the zig-zag difference from the timestamp in milliseconds.
+ * The timestamps are epoch times in nanoseconds, so a sample takes about 16 bytes.
+ *
+ * The records are written into one of two buffers, without allocations. When it is full, the buffer is given
+ * to an Executor (e.g. the publishing thread), which writes it on the stream while the records go into
+ * the other buffer, so the thread of the sensor events never waits for the storage. If the executor has not
+ * written the previous buffer yet, the events are dropped and counted. The errors of the stream are reported
+ * by the next call of a write method. The events written after close() are ignored, since the sensors
+ * can deliver them after the recording is stopped.
+ */
+public class TraceWriter {
+
+    static final byte[] MAGIC = {'W', 'T', 'R', 'C'};
+    static final int VERSION = 1;
+    static final int SAMPLE = 1;
+    static final int LOCATION = 2;
+    /** The maximum size of a record, in bytes */
+    static final int MAX_RECORD_SIZE = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final Executor executor;
+    private byte[] buffer;
+    /** The buffer which is not being filled, or null while the executor writes it */
+    private byte[] spare;
+    private int position;
+    private long lastTimestampNanos;
+    private long eventCount;
+    private long droppedCount;
+    private long size;
+    private boolean closed;
+    private volatile IOException error;
+
+    /**
+     * @param out: the stream of the trace, e.g. a FileOutputStream, which is closed by close()
+     * @param startMillis: the epoch time of the start of the recording
+     * @param executor: the executor of the writes on the stream, which runs the tasks in order
+     */
+    public TraceWriter(OutputStream out, long startMillis, Executor executor) {
+        this.out = out;
+        this.executor = executor;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.spare = new byte[BUFFER_SIZE];
+        System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+        position = MAGIC.length;
+        buffer[position++] = VERSION;
+        position = VarInts.writeVarLong(buffer, position, startMillis);
+        size = position;
+    }
+
+    /**
+     * This method records a sample.
+     *
+     * @param sensorType
+     * @param timestampNanos: the epoch time of the sample
+     * @param x
+     * @param y
+     * @param z
+     * @throws IOException if the trace cannot be written
+     */
+    public synchronized void writeSample(int sensorType, long timestampNanos, float x, float y, float z)
+            throws IOException {
+        if(closed)
+            return;
+        checkError();
+        if(!ensureSpace()) {
+            droppedCount++;
+            return;
+        }
+        int start = position;
+        buffer[position++] = SAMPLE;
+        position = VarInts.writeVarLong(buffer, position, sensorType);
+        writeTimestamp(timestampNanos);
+        writeInt(Float.floatToIntBits(x));
+        writeInt(Float.floatToIntBits(y));
+        writeInt(Float.floatToIntBits(z));
+        size += position - start;
+        eventCount++;
+    }
+
+    /**
+     * This method records a location, before it is filtered.
+     *
+     * @param timestampNanos: the epoch time of the fix, measured on the clock of the sensors
+     * @param latitude: in degrees
+     * @param longitude: in degrees
+     * @param accuracy: the accuracy radius, in meters, or a negative value if it is unknown
+     * @param timeMillis: the epoch time of the fix declared by the provider
+     * @throws IOException if the trace cannot be written
+     */
+    public synchronized void writeLocation(long timestampNanos, double latitude, double longitude, float accuracy,
+                                           long timeMillis) throws IOException {
+        if(closed)
+            return;
+        checkError();
+        if(!ensureSpace()) {
+            droppedCount++;
+            return;
+        }
+        int start = position;
+        buffer[position++] = LOCATION;
+        writeTimestamp(timestampNanos);
+        writeLong(Double.doubleToLongBits(latitude));
+        writeLong(Double.doubleToLongBits(longitude));
+        writeInt(Float.floatToIntBits(accuracy));
+        position = VarInts.writeVarLong(buffer, position, VarInts.zigZag(timeMillis - timestampNanos / 1000000L));
+        size += position - start;
+        eventCount++;
+    }
+
+    /**
+     * This method writes the buffered records and closes the stream, through the executor,
+     * so it does not wait for the storage.
+     */
+    public synchronized void close() {
+        if(closed)
+            return;
+        closed = true;
+        final byte[] last = buffer;
+        final int length = position;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if(error == null)
+                        out.write(last, 0, length);
+                } catch(IOException ex) {
+                    error = ex;
+                } finally {
+                    try {
+                        out.close();
+                    } catch(IOException ex) {
+                        if(error == null)
+                            error = ex;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the number of events recorded
+     */
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the number of events dropped because the executor was late
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the size of the trace, including the records not written yet, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the first error of the stream, or null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    private void checkError() throws IOException {
+        IOException error = this.error;
+        if(error != null)
+            throw error;
+    }
+
+    /**
+     * This method gives the buffer to the executor if there is no room for a record.
+     *
+     * @return false if there is no room and the other buffer is still being written
+     */
+    private boolean ensureSpace() {
+        if(position <= buffer.length - MAX_RECORD_SIZE)
+            return true;
+        if(spare == null)
+            return false;
+        byte[] full = buffer;
+        int length = position;
+        buffer = spare;
+        spare = null;
+        position = 0;
+        // The buffers are swapped first, since the executor can write and release the full one immediately
+        executor.execute(new WriteTask(full, length));
+        return true;
+    }
+
+    private synchronized void release(byte[] written) {
+        spare = written;
+    }
+
+    private void writeTimestamp(long timestampNanos) {
+        position = VarInts.writeVarLong(buffer, position, VarInts.zigZag(timestampNanos - lastTimestampNanos));
+        lastTimestampNanos = timestampNanos;
+    }
+
+    private void writeInt(int value) {
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    /**
+     * This class writes a full buffer on the stream and gives it back to the writer.
+     */
+    private class WriteTask implements Runnable {
+
+        private final byte[] full;
+        private final int length;
+
+        WriteTask(byte[] full, int length) {
+            this.full = full;
+            this.length = length;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(error == null)
+                    out.write(full, 0, length);
+            } catch(IOException ex) {
+                error = ex;
+            } finally {
+                release(full);
+            }
+        }
+    }
+}
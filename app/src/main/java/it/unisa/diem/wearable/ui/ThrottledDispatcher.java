@@ -0,0 +1,63 @@
+package it.unisa.diem.wearable.ui;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class runs an update of the user interface at most once every minimum interval,
+ * however frequently it is requested.
+ *
+ * The requests can come from any thread: all the requests received while an update is already scheduled
+ * are coalesced into that update, which reads the latest values when it runs on the thread of the handler.
+ * So, the refresh rate of the display does not depend on the rate of the sensors.
+ */
+public class ThrottledDispatcher {
+
+    private final Handler handler;
+    private final long minIntervalMillis;
+    private final Runnable update;
+    private final Runnable task;
+    private final AtomicBoolean scheduled;
+    private volatile long lastRunMillis;
+
+    /**
+     * @param handler: the handler of the thread which runs the update, e.g. the main thread
+     * @param minIntervalMillis: the minimum interval between two updates
+     * @param update: the update of the user interface
+     */
+    public ThrottledDispatcher(Handler handler, long minIntervalMillis, Runnable update) {
+        this.handler = handler;
+        this.minIntervalMillis = minIntervalMillis;
+        this.update = update;
+        this.task = new UpdateTask();
+        this.scheduled = new AtomicBoolean(false);
+    }
+
+    /**
+     * This method requests an update, which is scheduled only if no other update is pending.
+     */
+    public void dispatch() {
+        if(scheduled.compareAndSet(false, true))
+            handler.postAtTime(task, Math.max(SystemClock.uptimeMillis(), lastRunMillis + minIntervalMillis));
+    }
+
+    /**
+     * This method removes the pending update, if any.
+     */
+    public void cancel() {
+        handler.removeCallbacks(task);
+        scheduled.set(false);
+    }
+
+    private class UpdateTask implements Runnable {
+
+        @Override
+        public void run() {
+            scheduled.set(false);
+            lastRunMillis = SystemClock.uptimeMillis();
+            update.run();
+        }
+    }
+}
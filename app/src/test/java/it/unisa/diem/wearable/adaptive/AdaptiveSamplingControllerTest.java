@@ -0,0 +1,110 @@
+package it.unisa.diem.wearable.adaptive;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the adaptive sampling controller, fed by synthetic traces of the accelerometer
+ * of a wearer who rests and then walks. The sensor delivers the samples at the period chosen by the controller.
+ */
+public class AdaptiveSamplingControllerTest {
+
+    private static final long WINDOW_MS = 2000;
+    private static final double THRESHOLD = 0.05;
+
+    private final Random random = new Random(3);
+    private long timeNanos;
+
+    /**
+     * This method feeds the controller for the given duration.
+     *
+     * @param walking: if true, the vertical acceleration oscillates at 2 Hz, like during a walk
+     * @return the time of the first change of the period, relative to the beginning, or -1
+     */
+    private long feed(AdaptiveSamplingController controller, long durationMs, boolean walking) {
+        long start = timeNanos;
+        long firstChange = -1;
+        while(timeNanos - start < durationMs * 1000000L) {
+            timeNanos += controller.getPeriodMs() * 1000000L;
+            double t = timeNanos / 1e9;
+            float z = (float) (9.81 + 0.05 * random.nextGaussian() + (walking ? 2 * Math.sin(2 * Math.PI * 2 * t) : 0));
+            float x = (float) (0.05 * random.nextGaussian());
+            float y = (float) (0.05 * random.nextGaussian());
+            if(controller.update(timeNanos, x, y, z) != 0 && firstChange < 0)
+                firstChange = (timeNanos - start) / 1000000L;
+        }
+        return firstChange;
+    }
+
+    @Test
+    public void rest_slowsDownToTheMaximumPeriod() {
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(WINDOW_MS, THRESHOLD, 20, 320);
+        feed(controller, 5000, false);
+        assertTrue(controller.getPeriodMs() > 20);
+        assertTrue(controller.getPeriodMs() < 320);
+
+        feed(controller, 20000, false);
+        assertEquals(320, controller.getPeriodMs());
+        assertTrue(controller.isIdle());
+    }
+
+    @Test
+    public void motion_rampsUpWithinOneWindow() {
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(WINDOW_MS, THRESHOLD, 20, 320);
+        feed(controller, 30000, false);
+        assertEquals(320, controller.getPeriodMs());
+
+        long rampUp = feed(controller, 10000, true);
+        assertTrue("ramp up after " + rampUp + " ms", rampUp >= 0 && rampUp <= WINDOW_MS);
+        assertEquals(20, controller.getPeriodMs());
+        assertFalse(controller.isIdle());
+    }
+
+    @Test
+    public void bounds_limitThePeriod() {
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(WINDOW_MS, THRESHOLD, 20, 320);
+        feed(controller, 30000, false);
+        assertEquals(100, controller.setBounds(50, 100));
+
+        feed(controller, 10000, true);
+        assertEquals(50, controller.getPeriodMs());
+        feed(controller, 30000, false);
+        assertEquals(100, controller.getPeriodMs());
+
+        // A maximum lower than the minimum fixes the period
+        assertEquals(200, controller.setBounds(200, 100));
+        assertFalse(controller.isIdle());
+    }
+
+    @Test
+    public void significantMotion_restoresTheMinimumPeriod() {
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(WINDOW_MS, THRESHOLD, 20, 320);
+        feed(controller, 30000, false);
+        assertEquals(20, controller.onSignificantMotion());
+        assertEquals(0, controller.onSignificantMotion());
+    }
+
+    @Test
+    public void disabled_keepsTheMinimumPeriod() {
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(WINDOW_MS, THRESHOLD, 20, 320);
+        feed(controller, 30000, false);
+        assertEquals(20, controller.setEnabled(false));
+        assertEquals(-1, feed(controller, 30000, false));
+        assertEquals(20, controller.getPeriodMs());
+    }
+
+    @Test
+    public void variance_ofTheWindow() {
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(1000, THRESHOLD, 20, 320);
+        controller.update(0, 0, 0, 10);
+        controller.update(100000000L, 0, 0, 12);
+        assertEquals(2, controller.getVariance(), 1e-9);
+
+        // The first sample leaves the window
+        controller.update(1050000000L, 0, 0, 12);
+        assertEquals(0, controller.getVariance(), 1e-9);
+    }
+}
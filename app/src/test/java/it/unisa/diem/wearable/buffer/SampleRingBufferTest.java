@@ -0,0 +1,108 @@
+package it.unisa.diem.wearable.buffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lock-free ring buffer of samples.
+ */
+public class SampleRingBufferTest {
+
+    private static class CollectingSink implements SampleSink {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Float> xs = new ArrayList<>();
+
+        @Override
+        public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+            timestamps.add(timestampNanos);
+            xs.add(x);
+        }
+    }
+
+    @Test
+    public void capacity_isRoundedToPowerOfTwo() {
+        assertEquals(8, new SampleRingBuffer(5, OverflowPolicy.DROP_NEWEST).capacity());
+        assertEquals(1, new SampleRingBuffer(1, OverflowPolicy.DROP_NEWEST).capacity());
+        assertEquals(16, new SampleRingBuffer(16, OverflowPolicy.DROP_NEWEST).capacity());
+    }
+
+    @Test
+    public void drain_preservesOrderAndValues() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, OverflowPolicy.DROP_NEWEST);
+        for(int i = 0; i < 3; i++)
+            assertTrue(buffer.offer(1, i, i * 10f, 0f, 0f));
+
+        CollectingSink sink = new CollectingSink();
+        assertEquals(3, buffer.drain(sink, Integer.MAX_VALUE));
+        assertEquals(3, sink.timestamps.size());
+        assertEquals(Long.valueOf(2), sink.timestamps.get(2));
+        assertEquals(20f, sink.xs.get(2), 0f);
+        assertEquals(0, buffer.size());
+        assertEquals(3, buffer.getHighWaterMark());
+    }
+
+    @Test
+    public void dropNewest_discardsIncomingSamples() {
+        SampleRingBuffer buffer = new SampleRingBuffer(2, OverflowPolicy.DROP_NEWEST);
+        assertTrue(buffer.offer(1, 0, 0f, 0f, 0f));
+        assertTrue(buffer.offer(1, 1, 0f, 0f, 0f));
+        assertFalse(buffer.offer(1, 2, 0f, 0f, 0f));
+        assertEquals(1, buffer.getDroppedCount());
+
+        CollectingSink sink = new CollectingSink();
+        buffer.drain(sink, Integer.MAX_VALUE);
+        assertEquals(Long.valueOf(0), sink.timestamps.get(0));
+        assertEquals(Long.valueOf(1), sink.timestamps.get(1));
+    }
+
+    @Test
+    public void dropOldest_keepsLatestSamples() {
+        SampleRingBuffer buffer = new SampleRingBuffer(2, OverflowPolicy.DROP_OLDEST);
+        for(int i = 0; i < 5; i++)
+            assertTrue(buffer.offer(1, i, 0f, 0f, 0f));
+        assertEquals(3, buffer.getDroppedCount());
+        assertEquals(2, buffer.getHighWaterMark());
+
+        CollectingSink sink = new CollectingSink();
+        assertEquals(2, buffer.drain(sink, Integer.MAX_VALUE));
+        assertEquals(Long.valueOf(3), sink.timestamps.get(0));
+        assertEquals(Long.valueOf(4), sink.timestamps.get(1));
+    }
+
+    @Test
+    public void block_waitsForConsumer() throws InterruptedException {
+        final SampleRingBuffer buffer = new SampleRingBuffer(4, OverflowPolicy.BLOCK);
+        final int samples = 10000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < samples; i++)
+                    buffer.offer(1, i, i, 0f, 0f);
+            }
+        });
+        producer.start();
+
+        CollectingSink sink = new CollectingSink();
+        while(sink.timestamps.size() < samples)
+            buffer.drain(sink, 3);
+        producer.join();
+
+        assertEquals(0, buffer.getDroppedCount());
+        for(int i = 0; i < samples; i++)
+            assertEquals(Long.valueOf(i), sink.timestamps.get(i));
+    }
+
+    @Test
+    public void clear_discardsStoredSamples() {
+        SampleRingBuffer buffer = new SampleRingBuffer(4, OverflowPolicy.DROP_NEWEST);
+        buffer.offer(1, 0, 0f, 0f, 0f);
+        buffer.offer(1, 1, 0f, 0f, 0f);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.drain(new CollectingSink(), Integer.MAX_VALUE));
+    }
+}
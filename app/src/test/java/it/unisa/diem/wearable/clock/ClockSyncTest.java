@@ -0,0 +1,96 @@
+package it.unisa.diem.wearable.clock;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the cached epoch clock and its synchronization with the coordinator.
+ */
+public class ClockSyncTest {
+
+    private static final long TRUE_OFFSET = 1666000000123456789L;
+
+    /**
+     * This class simulates a monotonic clock which advances by a microsecond at every reading
+     * and a wall clock with the resolution of a millisecond.
+     */
+    private static class FakeSource implements TimeSource {
+
+        long monotonic = 5000000000L;
+
+        @Override
+        public long monotonicNanos() {
+            monotonic += 1000;
+            return monotonic;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return (monotonic + TRUE_OFFSET) / 1000000L;
+        }
+    }
+
+    @Test
+    public void calibrate_measuresTheOffsetBelowTheMillisecond() {
+        EpochClock clock = new EpochClock(new FakeSource());
+        assertEquals(TRUE_OFFSET, clock.getCalibratedOffsetNanos(), 2000);
+        assertFalse(clock.isSynchronized());
+        assertEquals(1000 + clock.getCalibratedOffsetNanos(), clock.toEpochNanos(1000));
+    }
+
+    /**
+     * The coordinator clock runs 20 ppm faster than the device and is 3 seconds ahead of its wall clock.
+     */
+    private static long coordinatorTime(long monotonic) {
+        return monotonic + TRUE_OFFSET + 3000000000L + (long) (monotonic * 20e-6);
+    }
+
+    @Test
+    public void exchange_tracksOffsetAndDrift() {
+        FakeSource source = new FakeSource();
+        EpochClock clock = new EpochClock(source);
+        ClockSync sync = new ClockSync(clock);
+        Random random = new Random(3);
+
+        for(int i = 0; i < 12; i++) {
+            byte[] request = sync.createRequest();
+            long t1 = source.monotonic;
+            // The network adds up to 2 ms of jitter and, sometimes, 300 ms of queueing on a single path
+            long up = 20000000L + random.nextInt(2000000), down = 20000000L + random.nextInt(2000000);
+            if(i % 4 == 1)
+                up += 300000000L;
+            long t2 = coordinatorTime(t1 + up);
+            long t3 = t2 + 200000;
+            byte[] response = ClockSync.createResponse(request, t2, t3);
+            assertTrue(sync.onResponse(response, t1 + up + 200000 + down));
+            source.monotonic += 60000000000L;
+        }
+
+        assertTrue(clock.isSynchronized());
+        assertEquals(ClockSync.WINDOW, sync.getCount());
+        assertEquals(20e-6, sync.getDrift(), 5e-6);
+        // The error is at most half of the asymmetry of the exchanges, plus the error of the drift
+        long now = source.monotonic;
+        assertEquals(coordinatorTime(now), clock.toEpochNanos(now), 2000000);
+        assertEquals(coordinatorTime(now + 60000000000L), clock.toEpochNanos(now + 60000000000L), 2000000);
+    }
+
+    @Test
+    public void onResponse_rejectsStaleAndMalformedResponses() {
+        FakeSource source = new FakeSource();
+        ClockSync sync = new ClockSync(new EpochClock(source));
+        byte[] first = sync.createRequest();
+        byte[] staleResponse = ClockSync.createResponse(first, 10, 20);
+        sync.createRequest();
+
+        assertFalse(sync.onResponse(staleResponse, source.monotonic));
+        assertFalse(sync.onResponse("1,2,3".getBytes(StandardCharsets.UTF_8), source.monotonic));
+        assertNull(ClockSync.createResponse("x".getBytes(StandardCharsets.UTF_8), 10, 20));
+        assertEquals(2, sync.getRejectedCount());
+        assertEquals(0, sync.getCount());
+    }
+}
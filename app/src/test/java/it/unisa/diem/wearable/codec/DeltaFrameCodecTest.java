@@ -0,0 +1,83 @@
+package it.unisa.diem.wearable.codec;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the columnar delta codec and its decoder.
+ */
+public class DeltaFrameCodecTest {
+
+    private static final int SAMPLES = 50;
+
+    private final long[] timestamps = new long[SAMPLES];
+    private final float[] xs = new float[SAMPLES], ys = new float[SAMPLES], zs = new float[SAMPLES];
+
+    public DeltaFrameCodecTest() {
+        Random random = new Random(42);
+        long timestamp = 1666000000000000000L;
+        for(int i = 0; i < SAMPLES; i++) {
+            timestamp += 20000000L + random.nextInt(50000);
+            timestamps[i] = timestamp;
+            xs[i] = (float) (0.3 * Math.sin(i / 5.0) + random.nextGaussian() * 0.01);
+            ys[i] = (float) (-0.2 + random.nextGaussian() * 0.01);
+            zs[i] = (float) (9.81 + random.nextGaussian() * 0.02);
+        }
+    }
+
+    private DecodedFrame roundTrip(DeltaFrameCodec codec) throws DataFormatException {
+        byte[] buffer = new byte[codec.maxFrameSize(SAMPLES) + 3];
+        int length = codec.encode(1, timestamps, xs, ys, zs, SAMPLES, buffer, 3);
+        assertTrue(length <= codec.maxFrameSize(SAMPLES));
+
+        DecodedFrame frame = new DecodedFrame();
+        new DeltaFrameDecoder().decode(buffer, 3, length, frame);
+        return frame;
+    }
+
+    private void assertSamples(DecodedFrame frame) {
+        assertEquals(1, frame.getSensorType());
+        assertEquals(SAMPLES, frame.getCount());
+        for(int i = 0; i < SAMPLES; i++) {
+            assertEquals(timestamps[i], frame.getTimestamp(i));
+            assertEquals(xs[i], frame.getX(i), 0.5e-5);
+            assertEquals(ys[i], frame.getY(i), 0.5e-5);
+            assertEquals(zs[i], frame.getZ(i), 0.5e-5);
+        }
+    }
+
+    @Test
+    public void roundTrip_keepsTimestampsAndPrecision() throws DataFormatException {
+        assertSamples(roundTrip(new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, false)));
+    }
+
+    @Test
+    public void roundTrip_withDeflate() throws DataFormatException {
+        assertSamples(roundTrip(new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, true)));
+    }
+
+    @Test
+    public void frame_isSmallerThanBinaryAndText() {
+        byte[] buffer = new byte[4096];
+        int delta = new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, false)
+                .encode(1, timestamps, xs, ys, zs, SAMPLES, buffer, 0);
+        int binary = new SampleFrameCodec(new BinaryPayloadCodec())
+                .encode(1, timestamps, xs, ys, zs, SAMPLES, new byte[4096], 0);
+        int text = new SampleFrameCodec(new TextPayloadCodec())
+                .encode(1, timestamps, xs, ys, zs, SAMPLES, new byte[16384], 0);
+        assertTrue(delta < binary);
+        assertTrue(binary < text);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void truncatedFrame_isRejected() throws DataFormatException {
+        DeltaFrameCodec codec = new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, false);
+        byte[] buffer = new byte[codec.maxFrameSize(SAMPLES)];
+        int length = codec.encode(1, timestamps, xs, ys, zs, SAMPLES, buffer, 0);
+        new DeltaFrameDecoder().decode(java.util.Arrays.copyOf(buffer, length / 2), 0, length / 2, new DecodedFrame());
+    }
+}
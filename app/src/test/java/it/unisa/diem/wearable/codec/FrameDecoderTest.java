@@ -0,0 +1,98 @@
+package it.unisa.diem.wearable.codec;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the decoders of the text and binary frames.
+ */
+public class FrameDecoderTest {
+
+    private static final int SAMPLES = 50;
+
+    private final long[] timestamps = new long[SAMPLES];
+    private final float[] xs = new float[SAMPLES], ys = new float[SAMPLES], zs = new float[SAMPLES];
+
+    public FrameDecoderTest() {
+        Random random = new Random(7);
+        // The text format keeps milliseconds, so the timestamps are whole milliseconds
+        long timestamp = 1666000000000L * 1000000L;
+        for(int i = 0; i < SAMPLES; i++) {
+            timestamp += 20000000L + random.nextInt(50) * 1000000L;
+            timestamps[i] = timestamp;
+            xs[i] = (float) (0.3 * Math.sin(i / 5.0) + random.nextGaussian());
+            ys[i] = (float) (-0.2 + random.nextGaussian() * 10);
+            zs[i] = (float) (9.81 + random.nextGaussian() * 0.02);
+        }
+    }
+
+    private DecodedFrame roundTrip(String codecName) throws DataFormatException {
+        FrameCodec codec = FrameCodecs.forName(codecName);
+        byte[] buffer = new byte[codec.maxFrameSize(SAMPLES) + 3];
+        int length = codec.encode(1, timestamps, xs, ys, zs, SAMPLES, buffer, 3);
+
+        DecodedFrame frame = new DecodedFrame();
+        FrameDecoders.forName(codecName).decode(buffer, 3, length, frame);
+        assertEquals(SAMPLES, frame.getCount());
+        for(int i = 0; i < SAMPLES; i++)
+            assertEquals(timestamps[i], frame.getTimestamp(i));
+        return frame;
+    }
+
+    @Test
+    public void text_roundTripKeepsTheFormatPrecision() throws DataFormatException {
+        DecodedFrame frame = roundTrip(TextPayloadCodec.NAME);
+        assertEquals(0, frame.getSensorType());
+        // Half of the last digit, plus the rounding of the decoded value to a float
+        for(int i = 0; i < SAMPLES; i++) {
+            assertEquals(xs[i], frame.getX(i), 1e-5);
+            assertEquals(ys[i], frame.getY(i), 1e-5);
+            assertEquals(zs[i], frame.getZ(i), 1e-5);
+        }
+    }
+
+    @Test
+    public void binary_roundTripIsExact() throws DataFormatException {
+        DecodedFrame frame = roundTrip(BinaryPayloadCodec.NAME);
+        assertEquals(1, frame.getSensorType());
+        for(int i = 0; i < SAMPLES; i++) {
+            assertEquals(xs[i], frame.getX(i), 0);
+            assertEquals(ys[i], frame.getY(i), 0);
+            assertEquals(zs[i], frame.getZ(i), 0);
+        }
+    }
+
+    @Test
+    public void text_decodesLocations() throws DataFormatException {
+        long millis = 1666000123456L;
+        byte[] payload = (new SimpleDateFormat(TextPayloadCodec.TIMESTAMP_PATTERN).format(new Date(millis)) +
+                ";40.77461,-14.78915").getBytes(StandardCharsets.UTF_8);
+
+        DecodedFrame frame = new DecodedFrame();
+        new TextFrameDecoder().decode(payload, 0, payload.length, frame);
+        assertEquals(1, frame.getCount());
+        assertEquals(millis * 1000000L, frame.getTimestamp(0));
+        assertEquals(40.77461f, frame.getX(0), 0);
+        assertEquals(-14.78915f, frame.getY(0), 0);
+        assertEquals(0, frame.getZ(0), 0);
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void text_rejectsMalformedSamples() throws DataFormatException {
+        byte[] payload = "18.10.26 10:00:00.000;1,x".getBytes(StandardCharsets.UTF_8);
+        new TextFrameDecoder().decode(payload, 0, payload.length, new DecodedFrame());
+    }
+
+    @Test(expected = DataFormatException.class)
+    public void binary_rejectsTruncatedFrames() throws DataFormatException {
+        new BinaryFrameDecoder().decode(new byte[BinaryPayloadCodec.FRAME_SIZE + 1], 0,
+                BinaryPayloadCodec.FRAME_SIZE + 1, new DecodedFrame());
+    }
+}
@@ -0,0 +1,44 @@
+package it.unisa.diem.wearable.codec;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the text payloads.
+ */
+public class TextPayloadCodecTest {
+
+    private static final long TIMESTAMP_NANOS = 1666000000123456789L;
+
+    @Test
+    public void extremeValues_fitIntoTheMaximumSize() {
+        TextPayloadCodec codec = new TextPayloadCodec();
+        byte[] buffer = new byte[codec.maxSampleSize()];
+
+        int length = codec.encode(1, TIMESTAMP_NANOS, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE,
+                buffer, 0);
+        String text = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        assertEquals(144, length);
+        assertTrue(text.endsWith(",-340282346638528860000000000000000000000"));
+
+        length = codec.encode(1, TIMESTAMP_NANOS, Float.NaN, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+                buffer, 0);
+        text = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        assertTrue(length <= codec.maxSampleSize());
+        assertEquals(3, text.split(";")[1].split(",").length);
+    }
+
+    @Test
+    public void encode_writesAtTheOffset() {
+        TextPayloadCodec codec = new TextPayloadCodec();
+        byte[] buffer = new byte[codec.maxSampleSize() + 5];
+
+        int length = codec.encode(1, TIMESTAMP_NANOS, 0.5f, -1.25f, 9.81f, buffer, 5);
+        String text = new String(buffer, 5, length, StandardCharsets.UTF_8);
+        assertTrue(text, text.endsWith(";0.5,-1.25,9.81"));
+        assertEquals(0, buffer[0]);
+    }
+}
@@ -0,0 +1,85 @@
+package it.unisa.diem.wearable.communication;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the delays of the reconnection backoff.
+ */
+public class ExponentialBackoffTest {
+
+    private static final long BASE_MILLIS = 1000;
+    private static final long MAX_MILLIS = 120000;
+
+    private static class FixedRandom extends Random {
+        private final double value;
+
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+
+    @Test
+    public void delays_stayBetweenHalfAndTheWholeOfTheDoubledDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(BASE_MILLIS, MAX_MILLIS, new Random(7));
+        for(int round = 0; round < 100; round++) {
+            backoff.reset();
+            long delay = BASE_MILLIS;
+            for(int attempt = 0; attempt < 40; attempt++) {
+                long next = backoff.nextDelayMillis();
+                assertTrue(next + " < " + delay / 2, next >= delay / 2);
+                assertTrue(next + " > " + delay, next <= delay);
+                delay = Math.min(delay * 2, MAX_MILLIS);
+            }
+            assertEquals(40, backoff.getAttempts());
+        }
+    }
+
+    @Test
+    public void jitter_spansTheWholeRange() {
+        // 1000, 2000, ... 64000 ms, then the maximum delay
+        ExponentialBackoff lowest = new ExponentialBackoff(BASE_MILLIS, MAX_MILLIS, new FixedRandom(0));
+        ExponentialBackoff highest = new ExponentialBackoff(BASE_MILLIS, MAX_MILLIS, new FixedRandom(0.999999999));
+        long delay = BASE_MILLIS;
+        for(int attempt = 0; attempt < 10; attempt++) {
+            assertEquals(delay / 2, lowest.nextDelayMillis());
+            assertEquals(delay, highest.nextDelayMillis());
+            delay = Math.min(delay * 2, MAX_MILLIS);
+        }
+        assertEquals(MAX_MILLIS, delay);
+    }
+
+    @Test
+    public void manyAttempts_doNotOverflowTheMaximumDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(BASE_MILLIS, Long.MAX_VALUE / 2, new FixedRandom(0));
+        long previous = 0;
+        for(int attempt = 0; attempt < 100; attempt++) {
+            long next = backoff.nextDelayMillis();
+            assertTrue(next >= previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void reset_restartsFromTheBaseDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(BASE_MILLIS, MAX_MILLIS, new FixedRandom(0));
+        for(int attempt = 0; attempt < 5; attempt++)
+            backoff.nextDelayMillis();
+        backoff.reset();
+        assertEquals(0, backoff.getAttempts());
+        assertEquals(BASE_MILLIS / 2, backoff.nextDelayMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumDelayLowerThanTheBase_isRejected() {
+        new ExponentialBackoff(BASE_MILLIS, BASE_MILLIS - 1, new Random());
+    }
+}
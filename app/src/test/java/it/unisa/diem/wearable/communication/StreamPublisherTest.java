@@ -0,0 +1,219 @@
+package it.unisa.diem.wearable.communication;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the delivery policies of the streams, against a stand-in broker
+ * which acknowledges the messages only when asked to.
+ */
+public class StreamPublisherTest {
+
+    private static class StandInBroker implements Publisher {
+        final List<String> topics = new ArrayList<>();
+        final List<byte[]> payloads = new ArrayList<>();
+        final List<Integer> qos = new ArrayList<>();
+        final List<Boolean> retained = new ArrayList<>();
+        final List<IMqttActionListener> unacknowledged = new ArrayList<>();
+
+        @Override
+        public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+            topics.add(topic);
+            payloads.add(payload.clone());
+            this.qos.add(qos);
+            this.retained.add(retained);
+            if(cbPublish != null)
+                unacknowledged.add(cbPublish);
+        }
+
+        void acknowledgeAll() {
+            List<IMqttActionListener> listeners = new ArrayList<>(unacknowledged);
+            unacknowledged.clear();
+            for(IMqttActionListener listener : listeners)
+                listener.onSuccess(null);
+        }
+    }
+
+    private static class CountingListener implements IMqttActionListener {
+        int succeeded, failed;
+        Throwable lastException;
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            succeeded++;
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            failed++;
+            lastException = exception;
+        }
+    }
+
+    private StandInBroker broker;
+
+    @Before
+    public void setUp() {
+        broker = new StandInBroker();
+    }
+
+    @Test
+    public void policy_replacesQosAndRetainedFlag() {
+        StreamPublisher publisher = new StreamPublisher(broker, new DeliveryPolicy(0, 0, 0));
+        publisher.publish("d/accelerometer", new byte[]{1}, 2, true, null);
+
+        assertEquals(1, broker.topics.size());
+        assertEquals(0, (int) broker.qos.get(0));
+        assertFalse(broker.retained.get(0));
+    }
+
+    @Test
+    public void latestTopic_isRetainedAtMostOncePerInterval() {
+        StreamPublisher publisher = new StreamPublisher(broker, new DeliveryPolicy(0, 1000, 0));
+        byte[] payload = {1, 2, 3};
+
+        publisher.publish("d/orientation", payload, null, 0);
+        publisher.publish("d/orientation", payload, null, 500);
+        publisher.publish("d/orientation", payload, null, 1000);
+
+        assertEquals(5, broker.topics.size());
+        assertEquals("d/orientation/latest", broker.topics.get(1));
+        assertEquals(1, (int) broker.qos.get(1));
+        assertTrue(broker.retained.get(1));
+        assertEquals("d/orientation/latest", broker.topics.get(4));
+        assertFalse(broker.retained.get(2));
+    }
+
+    @Test
+    public void quietStream_retainsItsLastMessageAfterTheInterval() {
+        StreamPublisher publisher = new StreamPublisher(broker, new DeliveryPolicy(0, 1000, 0));
+        byte[] payload = {1};
+
+        publisher.publish("d/orientation", payload, null, 0);
+        // The stage reuses its payload, then the stream becomes quiet
+        payload[0] = 2;
+        publisher.publish("d/orientation", payload, null, 500);
+        payload[0] = 3;
+        assertEquals(3, broker.topics.size());
+
+        publisher.flushLatest(999);
+        assertEquals(3, broker.topics.size());
+        publisher.flushLatest(1000);
+        assertEquals(4, broker.topics.size());
+        assertEquals("d/orientation/latest", broker.topics.get(3));
+        assertArrayEquals(new byte[]{2}, broker.payloads.get(3));
+
+        // The last message is retained only once
+        publisher.flushLatest(5000);
+        assertEquals(4, broker.topics.size());
+    }
+
+    @Test
+    public void latestTopic_bypassesThePublisherOfTheStream() {
+        StandInBroker spool = new StandInBroker();
+        StreamPublisher publisher = new StreamPublisher(spool, broker, new DeliveryPolicy(1, 1000, 0));
+
+        publisher.publish("d/accelerometer", new byte[]{1}, null, 0);
+        assertEquals(1, spool.topics.size());
+        assertEquals("d/accelerometer", spool.topics.get(0));
+        assertEquals(1, broker.topics.size());
+        assertEquals("d/accelerometer/latest", broker.topics.get(0));
+    }
+
+    @Test
+    public void failedLatest_isPublishedAgainAfterTheInterval() {
+        final List<String> failed = new ArrayList<>();
+        Publisher offline = new Publisher() {
+            @Override
+            public void publish(String topic, byte[] payload, int qos, boolean retained,
+                                IMqttActionListener cbPublish) {
+                failed.add(topic);
+                cbPublish.onFailure(null, new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED));
+            }
+        };
+        StreamPublisher publisher = new StreamPublisher(broker, offline, new DeliveryPolicy(0, 1000, 0));
+
+        publisher.publish("d/accelerometer", new byte[]{1}, null, 0);
+        assertEquals(1, failed.size());
+        publisher.flushLatest(500);
+        assertEquals(1, failed.size());
+        publisher.flushLatest(1000);
+        assertEquals(2, failed.size());
+    }
+
+    @Test
+    public void fullWindow_discardsTheMessages() {
+        StreamPublisher publisher = new StreamPublisher(broker, new DeliveryPolicy(1, 0, 2));
+        CountingListener listener = new CountingListener();
+
+        for(int i = 0; i < 4; i++)
+            publisher.publish("d/accelerometer", new byte[]{(byte) i}, listener, i);
+        assertEquals(2, broker.topics.size());
+        assertEquals(2, publisher.getDroppedCount());
+        assertEquals(2, listener.failed);
+        assertEquals(MqttException.REASON_CODE_MAX_INFLIGHT,
+                ((MqttException) listener.lastException).getReasonCode());
+        assertTrue(StreamPublisher.isWindowFull(listener.lastException));
+        assertFalse(StreamPublisher.isWindowFull(new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT)));
+
+        // The acknowledgements free the window
+        broker.acknowledgeAll();
+        assertEquals(2, listener.succeeded);
+        assertEquals(0, publisher.getInFlight());
+        publisher.publish("d/accelerometer", new byte[]{4}, listener, 4);
+        assertEquals(3, broker.topics.size());
+    }
+
+    @Test
+    public void failureToStart_freesThePlaceInTheWindow() {
+        Publisher failing = new Publisher() {
+            @Override
+            public void publish(String topic, byte[] payload, int qos, boolean retained,
+                                IMqttActionListener cbPublish) {
+                if(topic.equals("d/broken"))
+                    throw new IllegalStateException("Client closed");
+                broker.publish(topic, payload, qos, retained, cbPublish);
+            }
+        };
+        StreamPublisher publisher = new StreamPublisher(failing, new DeliveryPolicy(1, 0, 1));
+        CountingListener listener = new CountingListener();
+
+        publisher.publish("d/broken", new byte[]{0}, listener, 0);
+        assertEquals(1, listener.failed);
+        assertEquals(0, publisher.getInFlight());
+        publisher.publish("d/accelerometer", new byte[]{1}, listener, 1);
+        assertEquals(1, broker.topics.size());
+        assertEquals(0, publisher.getDroppedCount());
+    }
+
+    @Test
+    public void newPolicy_isAppliedToTheNextMessages() {
+        StreamPublisher publisher = new StreamPublisher(broker, new DeliveryPolicy(1, 0, 0));
+        publisher.publish("d/location", new byte[]{1}, null, 0);
+        publisher.setPolicy(DeliveryPolicy.parse("2"));
+        publisher.publish("d/location", new byte[]{2}, null, 1);
+
+        assertEquals(1, (int) broker.qos.get(0));
+        assertEquals(2, (int) broker.qos.get(1));
+    }
+
+    @Test
+    public void parse_fillsTheMissingValues() {
+        assertEquals(new DeliveryPolicy(0, 0, 0), DeliveryPolicy.parse("0"));
+        assertEquals(new DeliveryPolicy(1, 30000, 0), DeliveryPolicy.parse("1, 30000"));
+        assertEquals(new DeliveryPolicy(0, 10000, 16), DeliveryPolicy.parse("0,10000,16"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidQos_isRejected() {
+        DeliveryPolicy.parse("3");
+    }
+}
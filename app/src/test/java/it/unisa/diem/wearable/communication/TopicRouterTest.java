@@ -0,0 +1,99 @@
+package it.unisa.diem.wearable.communication;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the routing of the messages by topic filter.
+ */
+public class TopicRouterTest {
+
+    private static final MqttMessage MESSAGE = new MqttMessage("1".getBytes());
+
+    private static class RecordingHandler implements MessageHandler {
+        final List<String> topics = new ArrayList<>();
+
+        @Override
+        public void onMessage(String topic, MqttMessage message) {
+            topics.add(topic);
+        }
+    }
+
+    @Test
+    public void exactFilters_matchOnlyTheirTopic() {
+        TopicRouter router = new TopicRouter();
+        RecordingHandler period = new RecordingHandler(), accelerometer = new RecordingHandler();
+        router.addRoute("configuration/samplingPeriod", period);
+        router.addRoute("configuration/accelerometer", accelerometer);
+
+        assertEquals(1, router.route("configuration/samplingPeriod", MESSAGE));
+        assertEquals(0, router.route("configuration/samplingPeriod/x", MESSAGE));
+        assertEquals(0, router.route("configuration", MESSAGE));
+
+        assertEquals(Arrays.asList("configuration/samplingPeriod"), period.topics);
+        assertTrue(accelerometer.topics.isEmpty());
+    }
+
+    @Test
+    public void singleLevelWildcard_matchesExactlyOneLevel() {
+        TopicRouter router = new TopicRouter();
+        RecordingHandler deadBand = new RecordingHandler();
+        router.addRoute("configuration/+/deadBand", deadBand);
+
+        assertEquals(1, router.route("configuration/accelerometer/deadBand", MESSAGE));
+        assertEquals(1, router.route("configuration//deadBand", MESSAGE));
+        assertEquals(0, router.route("configuration/deadBand", MESSAGE));
+        assertEquals(0, router.route("configuration/a/b/deadBand", MESSAGE));
+
+        assertEquals(Arrays.asList("configuration/accelerometer/deadBand", "configuration//deadBand"),
+                deadBand.topics);
+    }
+
+    @Test
+    public void multiLevelWildcard_matchesTheParentAndAllTheLevels() {
+        TopicRouter router = new TopicRouter();
+        RecordingHandler all = new RecordingHandler(), exact = new RecordingHandler();
+        router.addRoute("device/#", all);
+        router.addRoute("device/config", exact);
+
+        assertEquals(1, router.route("device", MESSAGE));
+        assertEquals(2, router.route("device/config", MESSAGE));
+        assertEquals(1, router.route("device/a/b/c", MESSAGE));
+        assertEquals(0, router.route("other/config", MESSAGE));
+
+        assertEquals(Arrays.asList("device", "device/config", "device/a/b/c"), all.topics);
+        assertEquals(Arrays.asList("device/config"), exact.topics);
+        assertEquals(Arrays.asList("device/#", "device/config"), router.getFilters());
+    }
+
+    @Test
+    public void systemTopics_areNotMatchedByLeadingWildcards() {
+        TopicRouter router = new TopicRouter();
+        RecordingHandler all = new RecordingHandler(), system = new RecordingHandler();
+        router.addRoute("#", all);
+        router.addRoute("+/uptime", all);
+        router.addRoute("$SYS/#", system);
+
+        assertEquals(1, router.route("$SYS/uptime", MESSAGE));
+        assertEquals(2, router.route("broker/uptime", MESSAGE));
+
+        assertEquals(Arrays.asList("broker/uptime", "broker/uptime"), all.topics);
+        assertEquals(Arrays.asList("$SYS/uptime"), system.topics);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiLevelWildcard_mustBeTheLastLevel() {
+        new TopicRouter().addRoute("a/#/b", new RecordingHandler());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wildcards_mustBeWholeLevels() {
+        new TopicRouter().addRoute("a/b+", new RecordingHandler());
+    }
+}
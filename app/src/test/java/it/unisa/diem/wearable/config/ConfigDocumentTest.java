@@ -0,0 +1,102 @@
+package it.unisa.diem.wearable.config;
+
+import org.junit.Test;
+
+import it.unisa.diem.wearable.location.LocationPriority;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the versioned configuration documents.
+ */
+public class ConfigDocumentTest {
+
+    private static SensingConfig defaults() {
+        return new SensingConfig.Builder()
+                .setSamplingPeriod(100)
+                .setMaxSamplingPeriod(1000)
+                .setAccelerometer(true)
+                .setOrientation(true)
+                .setLocation(false)
+                .setAccelerometerDeadBand(new float[]{0.05f})
+                .setOrientationDeadBand(new float[]{0.5f})
+                .setDeadBandHeartbeat(5000)
+                .build();
+    }
+
+    @Test
+    public void document_changesOnlyItsKeys() {
+        ConfigDocument document = ConfigDocument.parse("version=7; samplingPeriod=50;orientation=false;" +
+                "accelerometerDeadBand=0.1,0.1,0.2;accelerometerOutput=both;");
+        SensingConfig config = document.applyTo(defaults());
+
+        assertEquals(7, document.getVersion());
+        assertEquals(50, config.getSamplingPeriod());
+        assertEquals(1000, config.getMaxSamplingPeriod());
+        assertTrue(config.isAccelerometerEnabled());
+        assertFalse(config.isOrientationEnabled());
+        assertArrayEquals(new float[]{0.1f, 0.1f, 0.2f}, config.getAccelerometerDeadBand(), 0);
+        assertArrayEquals(new float[]{0.5f, 0.5f, 0.5f}, config.getOrientationDeadBand(), 0);
+        assertEquals(SensorPipeline.Output.BOTH, config.getAccelerometerOutput());
+    }
+
+    @Test
+    public void invalidValue_rejectsTheWholeDocument() {
+        SensingConfig config = defaults();
+        ConfigDocument document = ConfigDocument.parse("version=8;samplingPeriod=20;location=yes");
+        try {
+            document.applyTo(config);
+            fail();
+        } catch(IllegalArgumentException ex) {
+            // The configuration is immutable, so it is not changed by the valid values
+            assertEquals(100, config.getSamplingPeriod());
+        }
+    }
+
+    @Test
+    public void locationKeys_changeTheRequestAndTheFilter() {
+        SensingConfig config = ConfigDocument.parse("version=2;locationPriority=high_accuracy;locationInterval=5000;" +
+                "locationFastestInterval=1000;locationMaxWaitTime=60000;locationMaxAccuracy=25;locationMinDistance=5")
+                .applyTo(defaults());
+
+        assertEquals(LocationPriority.HIGH_ACCURACY, config.getLocationPriority());
+        assertEquals(5000, config.getLocationInterval());
+        assertEquals(1000, config.getLocationFastestInterval());
+        assertEquals(60000, config.getLocationMaxWaitTime());
+        assertEquals(25f, config.getLocationMaxAccuracy(), 0);
+        assertEquals(5f, config.getLocationMinDistance(), 0);
+        assertTrue(config.locationRequestDiffers(defaults()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fastestIntervalLongerThanInterval_isRejected() {
+        ConfigDocument.parse("version=1;locationInterval=5000;locationFastestInterval=10000").applyTo(defaults());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownKey_isRejected() {
+        ConfigDocument.parse("version=1;gyroscope=true").applyTo(defaults());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void documentWithoutVersion_isRejected() {
+        ConfigDocument.parse("samplingPeriod=50");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void repeatedKey_isRejected() {
+        ConfigDocument.parse("version=1;samplingPeriod=50;samplingPeriod=60");
+    }
+
+    @Test
+    public void deviceDocument_overridesTheBroadcastOne() {
+        ConfigDocument device = ConfigDocument.parse("version=1;samplingPeriod=20");
+        ConfigDocument broadcast = ConfigDocument.parse("version=3;samplingPeriod=200;location=true");
+
+        SensingConfig config = device.applyTo(broadcast.applyTo(device.applyTo(defaults())));
+
+        assertEquals(20, config.getSamplingPeriod());
+        assertTrue(config.isLocationEnabled());
+    }
+}
@@ -0,0 +1,126 @@
+package it.unisa.diem.wearable.features;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the extraction of the features over windows.
+ */
+public class FeatureExtractorTest {
+
+    private static final long MS = 1000000L;
+
+    private static class CollectingListener implements FeatureListener {
+        final List<long[]> windows = new ArrayList<>();
+        final List<double[]> values = new ArrayList<>();
+
+        @Override
+        public void onFeatures(WindowFeatures f) {
+            // The features are reused by the extractor, so they are copied
+            windows.add(new long[]{f.getStartNanos(), f.getEndNanos(), f.getCount()});
+            values.add(new double[]{f.getMean(0), f.getVariance(0), f.getRms(0), f.getMin(0), f.getMax(0),
+                    f.getSignalMagnitudeArea(), f.getZeroCrossings(0), f.getDominantFrequency()});
+        }
+    }
+
+    @Test
+    public void tumblingWindows_matchTheBruteForceStatistics() {
+        CollectingListener listener = new CollectingListener();
+        FeatureExtractor extractor = new FeatureExtractor(1000, 1000, 128, false, listener);
+
+        float[] xs = new float[50];
+        for(int i = 0; i < 50; i++) {
+            xs[i] = (float) Math.sin(i * 0.7) * 3 + 1;
+            extractor.accept(1, i * 20 * MS, xs[i], -2f, 0.5f);
+        }
+        extractor.accept(1, 1000 * MS, 0f, 0f, 0f);
+
+        assertEquals(1, listener.windows.size());
+        assertArrayEquals(new long[]{0, 1000 * MS, 50}, listener.windows.get(0));
+
+        double mean = 0, squares = 0, sma = 0;
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for(float x : xs) {
+            mean += x;
+            squares += x * x;
+            sma += Math.abs(x) + 2 + 0.5;
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        mean /= xs.length;
+        double variance = 0;
+        for(float x : xs)
+            variance += (x - mean) * (x - mean);
+        variance /= xs.length;
+
+        double[] features = listener.values.get(0);
+        assertEquals(mean, features[0], 1e-6);
+        assertEquals(variance, features[1], 1e-6);
+        assertEquals(Math.sqrt(squares / xs.length), features[2], 1e-6);
+        assertEquals(min, features[3], 0);
+        assertEquals(max, features[4], 0);
+        assertEquals(sma / xs.length, features[5], 1e-6);
+        assertTrue(Double.isNaN(features[7]));
+    }
+
+    @Test
+    public void slidingWindows_removeTheOldSamples() {
+        CollectingListener listener = new CollectingListener();
+        FeatureExtractor extractor = new FeatureExtractor(1000, 500, 128, false, listener);
+
+        // 1 for the first second, then 3
+        for(int i = 0; i < 100; i++)
+            extractor.accept(1, i * 20 * MS, i < 50 ? 1f : 3f, 0f, 0f);
+        extractor.accept(1, 2000 * MS, 0f, 0f, 0f);
+
+        assertEquals(4, listener.windows.size());
+        assertArrayEquals(new long[]{-500 * MS, 500 * MS, 25}, listener.windows.get(0));
+        assertArrayEquals(new long[]{0, 1000 * MS, 50}, listener.windows.get(1));
+        assertArrayEquals(new long[]{500 * MS, 1500 * MS, 50}, listener.windows.get(2));
+        assertArrayEquals(new long[]{1000 * MS, 2000 * MS, 50}, listener.windows.get(3));
+        assertEquals(1, listener.values.get(1)[0], 1e-9);
+        assertEquals(0, listener.values.get(1)[1], 1e-9);
+        assertEquals(2, listener.values.get(2)[0], 1e-9);
+        assertEquals(1, listener.values.get(2)[1], 1e-9);
+        assertEquals(1, listener.values.get(2)[6], 0);
+        assertEquals(3, listener.values.get(3)[0], 1e-9);
+        assertEquals(0, listener.values.get(3)[1], 1e-9);
+    }
+
+    @Test
+    public void sineWave_hasItsDominantFrequencyAndZeroCrossings() {
+        CollectingListener listener = new CollectingListener();
+        FeatureExtractor extractor = new FeatureExtractor(2000, 2000, 128, true, listener);
+
+        // 2 Hz oscillation of the magnitude around the gravity, sampled at 50 Hz
+        for(int i = 0; i < 100; i++) {
+            double t = i * 0.02;
+            extractor.accept(1, i * 20 * MS, (float) (9.81 + 2 * Math.sin(2 * Math.PI * 2 * t + 0.3)), 0f, 0f);
+        }
+        extractor.flush();
+
+        assertEquals(1, listener.values.size());
+        double[] features = listener.values.get(0);
+        assertEquals(2, features[7], 0.3);
+        // Two crossings of the mean per period
+        assertEquals(8, features[6], 1);
+    }
+
+    @Test
+    public void gaps_skipTheEmptyWindows() {
+        CollectingListener listener = new CollectingListener();
+        FeatureExtractor extractor = new FeatureExtractor(1000, 1000, 16, false, listener);
+
+        extractor.accept(1, 100 * MS, 1f, 0f, 0f);
+        extractor.accept(1, 10100 * MS, 2f, 0f, 0f);
+        extractor.flush();
+
+        assertEquals(2, listener.windows.size());
+        assertArrayEquals(new long[]{0, 1000 * MS, 1}, listener.windows.get(0));
+        assertArrayEquals(new long[]{10000 * MS, 11000 * MS, 1}, listener.windows.get(1));
+    }
+}
@@ -0,0 +1,91 @@
+package it.unisa.diem.wearable.features;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import it.unisa.diem.wearable.communication.Publisher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the JSON encoding of the features.
+ */
+public class FeaturePublisherTest {
+
+    private static class CollectingPublisher implements Publisher {
+        final List<byte[]> payloads = new ArrayList<>();
+
+        @Override
+        public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+            payloads.add(payload);
+        }
+    }
+
+    private static WindowFeatures features(double value) {
+        WindowFeatures features = new WindowFeatures();
+        features.startNanos = 1660000000000L * 1000000L;
+        features.endNanos = 1660000002000L * 1000000L;
+        features.count = 100;
+        for(int axis = 0; axis < 3; axis++) {
+            features.mean[axis] = value;
+            features.variance[axis] = value * value;
+            features.rms[axis] = -value;
+            features.min[axis] = -1.5f;
+            features.max[axis] = 9.75f;
+            features.zeroCrossings[axis] = axis;
+        }
+        features.signalMagnitudeArea = value / 3;
+        features.dominantFrequency = 1.95;
+        return features;
+    }
+
+    private static String expected(WindowFeatures f) {
+        StringBuilder text = new StringBuilder("{\"start\":1660000000000,\"end\":1660000002000,\"n\":100");
+        String[] names = {"mean", "var", "rms"};
+        double[][] arrays = {f.mean, f.variance, f.rms};
+        for(int i = 0; i < names.length; i++)
+            text.append(String.format(Locale.ROOT, ",\"%s\":[%.5g,%.5g,%.5g]", names[i],
+                    arrays[i][0], arrays[i][1], arrays[i][2]));
+        text.append(",\"min\":[-1.5,-1.5,-1.5],\"max\":[9.75,9.75,9.75]");
+        text.append(String.format(Locale.ROOT, ",\"sma\":%.5g,\"zc\":[0,1,2],\"freq\":%.5g}",
+                f.signalMagnitudeArea, f.dominantFrequency));
+        return text.toString();
+    }
+
+    @Test
+    public void numbers_areWrittenLikeTheFormatter() {
+        FeaturePublisher publisher = new FeaturePublisher("d/accelerometer/features", new CollectingPublisher(),
+                0, false, null);
+        double[] values = {0, -0.0, 1, 9.81, 0.1, 0.00012345, 0.000099999, 99999.4, 99999.5, 123456.789,
+                1e-7, 3.0e8, 0.5, 2.5e-5, Double.NaN, Double.POSITIVE_INFINITY};
+        for(double value : values) {
+            WindowFeatures features = features(value);
+            assertEquals(expected(features), publisher.encode(features).toString());
+        }
+
+        Random random = new Random(7);
+        for(int i = 0; i < 10000; i++) {
+            double value = random.nextGaussian() * Math.pow(10, random.nextInt(16) - 8);
+            WindowFeatures features = features(value);
+            assertEquals(expected(features), publisher.encode(features).toString());
+        }
+    }
+
+    @Test
+    public void onFeatures_publishesANewPayload() {
+        CollectingPublisher collector = new CollectingPublisher();
+        FeaturePublisher publisher = new FeaturePublisher("d/accelerometer/features", collector, 0, false, null);
+
+        publisher.onFeatures(features(1));
+        publisher.onFeatures(features(2));
+        assertEquals(2, collector.payloads.size());
+        assertEquals(expected(features(1)), new String(collector.payloads.get(0), StandardCharsets.US_ASCII));
+        assertEquals(expected(features(2)), new String(collector.payloads.get(1), StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,114 @@
+package it.unisa.diem.wearable.fusion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the orientation fusion, fed by synthetic traces of a device lying flat
+ * and turning around the vertical axis.
+ */
+public class OrientationFusionTest {
+
+    private static final float GRAVITY = 9.81f;
+    private static final float NORTH_FIELD = 22f, DOWN_FIELD = -40f;
+
+    /**
+     * @return the magnetic field measured by a flat device whose top points to the given azimuth
+     */
+    private static float[] magneticField(double azimuthDegrees, float noise, Random random) {
+        double h = Math.toRadians(azimuthDegrees);
+        return new float[]{
+                (float) (-NORTH_FIELD * Math.sin(h) + noise * random.nextGaussian()),
+                (float) (NORTH_FIELD * Math.cos(h) + noise * random.nextGaussian()),
+                (float) (DOWN_FIELD + noise * random.nextGaussian())};
+    }
+
+    private static float angleError(float expected, float actual) {
+        float error = Math.abs(expected - actual) % 360;
+        return error > 180 ? 360 - error : error;
+    }
+
+    @Test
+    public void rotationVector_identity() {
+        OrientationFusion fusion = new OrientationFusion();
+        fusion.updateRotationVector(new float[]{0, 0, 0});
+
+        assertArrayEquals(new float[]{1, 0, 0, 0}, fusion.getQuaternion(), 1e-6f);
+        assertArrayEquals(new float[]{0, 0, 0}, fusion.getAngles(), 1e-4f);
+    }
+
+    @Test
+    public void rotationVector_aroundVerticalAxis() {
+        OrientationFusion fusion = new OrientationFusion();
+        float sin = (float) Math.sin(Math.toRadians(45));
+        fusion.updateRotationVector(new float[]{0, 0, sin, (float) Math.cos(Math.toRadians(45))});
+
+        // A counterclockwise rotation of 90 degrees turns the top of the device from North to West
+        assertEquals(270, fusion.getAngles()[0], 1e-3f);
+        assertEquals(0, fusion.getAngles()[1], 1e-3f);
+        assertEquals(0, fusion.getAngles()[2], 1e-3f);
+    }
+
+    @Test
+    public void accelerometerAndMagnetometer_giveAbsoluteOrientation() {
+        OrientationFusion fusion = new OrientationFusion();
+        assertFalse(fusion.updateAccelerometer(new float[]{0, 0, GRAVITY}));
+        assertTrue(fusion.updateMagnetometer(magneticField(30, 0, new Random())));
+
+        assertEquals(30, fusion.getAngles()[0], 1e-3f);
+        assertEquals(0, fusion.getAngles()[1], 1e-3f);
+        assertEquals(0, fusion.getAngles()[2], 1e-3f);
+
+        float[] quaternion = new float[4];
+        fusion.getQuaternion(quaternion);
+        float norm = 0;
+        for(float q : quaternion)
+            norm += q * q;
+        assertEquals(1, norm, 1e-5f);
+    }
+
+    @Test
+    public void magnetometer_closeToGravity_isIgnored() {
+        OrientationFusion fusion = new OrientationFusion();
+        fusion.updateAccelerometer(new float[]{0, 0, GRAVITY});
+        assertFalse(fusion.updateMagnetometer(new float[]{0, 0, DOWN_FIELD}));
+        assertFalse(fusion.isInitialized());
+    }
+
+    @Test
+    public void gyroscope_reducesTheNoiseOfTheMagnetometer() {
+        Random random = new Random(7);
+        OrientationFusion fused = new OrientationFusion();
+        OrientationFusion absolute = new OrientationFusion();
+        float[] gravity = {0, 0, GRAVITY};
+        // The device turns clockwise at 30 degrees per second, sampled at 50 Hz for 20 seconds
+        float speed = (float) Math.toRadians(-30);
+        long periodNanos = 20000000L;
+        double fusedError = 0, absoluteError = 0;
+        int samples = 0;
+
+        for(int i = 0; i < 1000; i++) {
+            double azimuth = 30.0 * i * periodNanos / 1e9;
+            float[] field = magneticField(azimuth, 3f, random);
+            fused.updateAccelerometer(gravity);
+            fused.updateMagnetometer(field);
+            fused.updateGyroscope(new float[]{0, 0, speed + 0.01f}, (i + 1) * periodNanos);
+            absolute.updateAccelerometer(gravity);
+            absolute.updateMagnetometer(field);
+
+            if(i >= 200) {
+                fusedError += Math.pow(angleError((float) azimuth, fused.getAngles()[0]), 2);
+                absoluteError += Math.pow(angleError((float) azimuth, absolute.getAngles()[0]), 2);
+                samples++;
+            }
+        }
+        fusedError = Math.sqrt(fusedError / samples);
+        absoluteError = Math.sqrt(absoluteError / samples);
+
+        assertTrue("fused error " + fusedError, fusedError < 2);
+        assertTrue(fusedError < absoluteError / 2);
+    }
+}
@@ -0,0 +1,48 @@
+package it.unisa.diem.wearable.location;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.zip.DataFormatException;
+
+import it.unisa.diem.wearable.codec.DecodedFrame;
+import it.unisa.diem.wearable.codec.TextFrameDecoder;
+import it.unisa.diem.wearable.codec.TextPayloadCodec;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the encoding of the locations.
+ */
+public class LocationEncoderTest {
+
+    private static final long TIMESTAMP_NANOS = 1666000000123456789L;
+
+    @Test
+    public void encode_writesTheTextPayload() throws DataFormatException {
+        LocationEncoder encoder = new LocationEncoder();
+        byte[] payload = encoder.encode(TIMESTAMP_NANOS, 40.772512, -179.999987);
+
+        String timestamp = new SimpleDateFormat(TextPayloadCodec.TIMESTAMP_PATTERN).format(
+                new Date(TIMESTAMP_NANOS / 1000000L));
+        // The coordinates are formatted from the doubles, so the fifth decimal digit is exact
+        assertEquals(timestamp + ";40.77251,-179.99999", new String(payload, StandardCharsets.UTF_8));
+
+        DecodedFrame frame = new DecodedFrame();
+        new TextFrameDecoder().decode(payload, 0, payload.length, frame);
+        assertEquals(1, frame.getCount());
+        assertEquals(TIMESTAMP_NANOS / 1000000L * 1000000L, frame.getTimestamp(0));
+        assertEquals(0, frame.getZ(0), 0);
+    }
+
+    @Test
+    public void encode_returnsANewPayload() {
+        LocationEncoder encoder = new LocationEncoder();
+        byte[] first = encoder.encode(TIMESTAMP_NANOS, 40.7725, 14.7903);
+        byte[] copy = first.clone();
+        encoder.encode(TIMESTAMP_NANOS + 1000000000L, 41, 15);
+        assertArrayEquals(copy, first);
+    }
+}
@@ -0,0 +1,64 @@
+package it.unisa.diem.wearable.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the filter of the locations.
+ */
+public class LocationFilterTest {
+
+    // About 11 meters of latitude
+    private static final double STEP = 0.0001;
+
+    @Test
+    public void distance_matchesOneDegreeOfLatitude() {
+        assertEquals(111195, LocationFilter.distance(45, 14, 46, 14), 1);
+        assertEquals(0, LocationFilter.distance(40.77, 14.79, 40.77, 14.79), 0);
+    }
+
+    @Test
+    public void inaccurateLocations_areDiscarded() {
+        LocationFilter filter = new LocationFilter(50, 0);
+
+        assertFalse(filter.accept(40.77, 14.79, 120, 1000));
+        assertFalse(filter.accept(40.77, 14.79, -1, 2000));
+        assertTrue(filter.accept(40.77, 14.79, 30, 3000));
+        assertEquals(2, filter.getDiscardedCount());
+    }
+
+    @Test
+    public void closeLocations_areDiscarded() {
+        LocationFilter filter = new LocationFilter(0, 20);
+
+        assertTrue(filter.accept(40.77, 14.79, 10, 1000));
+        assertFalse(filter.accept(40.77 + STEP, 14.79, 10, 2000));
+        // The distance is measured from the last accepted location, so a slow drift is eventually published
+        assertTrue(filter.accept(40.77 + 2 * STEP, 14.79, 10, 3000));
+        assertFalse(filter.accept(40.77 + 2 * STEP, 14.79, 10, 4000));
+    }
+
+    @Test
+    public void olderLocations_areDiscarded() {
+        LocationFilter filter = new LocationFilter(0, 0);
+
+        assertTrue(filter.accept(40.77, 14.79, 10, 5000));
+        assertFalse(filter.accept(40.78, 14.79, 10, 4000));
+        assertTrue(filter.accept(40.78, 14.79, 10, 6000));
+    }
+
+    @Test
+    public void reset_acceptsTheNextLocation() {
+        LocationFilter filter = new LocationFilter(0, 100);
+
+        assertTrue(filter.accept(40.77, 14.79, 10, 1000));
+        filter.reset();
+        assertTrue(filter.accept(40.77, 14.79, 10, 2000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThreshold_isRejected() {
+        new LocationFilter(-1, 0);
+    }
+}
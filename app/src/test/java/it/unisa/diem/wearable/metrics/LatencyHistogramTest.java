@@ -0,0 +1,75 @@
+package it.unisa.diem.wearable.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the latency histogram and the snapshot of the metrics.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketValue_isWithinRelativeError() {
+        for(long value = 0; value < 10000000L; value = value * 3 / 2 + 1) {
+            long bucketValue = LatencyHistogram.bucketValue(LatencyHistogram.bucketIndex(value));
+            assertTrue("value " + value, Math.abs(bucketValue - value) <= value / 32 + 1);
+        }
+    }
+
+    @Test
+    public void percentiles_ofUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 1; i <= 1000; i++)
+            histogram.record(i * 100L);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(50000, snapshot.getValueAtPercentile(50), 50000 / 32.0);
+        assertEquals(99000, snapshot.getValueAtPercentile(99), 99000 / 32.0);
+        assertEquals(100000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void snapshot_resetsTheInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.snapshotAndReset();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void record_clampsOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void registry_writesCompactSnapshot() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("events").add(3);
+        registry.gauge("size", new Gauge() {
+            @Override
+            public long getValue() {
+                return 7;
+            }
+        });
+        registry.histogram("latency").record(10);
+
+        assertSame(registry.counter("events"), registry.counter("events"));
+        assertEquals("{\"device\":\"d\",\"time\":42,\"counters\":{\"events\":3},\"gauges\":{\"size\":7}," +
+                "\"histograms\":{\"latency\":{\"count\":1,\"p50\":10,\"p90\":10,\"p99\":10,\"max\":10}}}",
+                registry.snapshot("d", 42));
+    }
+}
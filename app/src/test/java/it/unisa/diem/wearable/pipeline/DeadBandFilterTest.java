@@ -0,0 +1,88 @@
+package it.unisa.diem.wearable.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unisa.diem.wearable.buffer.SampleSink;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the send-on-delta filter.
+ */
+public class DeadBandFilterTest {
+
+    private static final long MS = 1000000L;
+
+    private static class CollectingSink implements SampleSink {
+        final List<Long> timestamps = new ArrayList<>();
+
+        @Override
+        public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+            timestamps.add(timestampNanos);
+        }
+    }
+
+    @Test
+    public void samplesWithinTheThresholds_areSuppressed() {
+        CollectingSink sink = new CollectingSink();
+        DeadBandFilter filter = new DeadBandFilter(new float[]{0.1f, 0.1f, 0.5f}, 5000, sink);
+
+        filter.accept(1, 0, 1f, 1f, 1f);
+        filter.accept(1, 200 * MS, 1.05f, 0.95f, 1.4f);
+        filter.accept(1, 400 * MS, 1.08f, 1f, 0.6f);
+        filter.accept(1, 600 * MS, 1.09f, 1f, 1f);
+        // The difference is measured from the last forwarded sample, so slow drifts are forwarded too
+        filter.accept(1, 800 * MS, 1.2f, 1f, 1f);
+
+        assertEquals(2, sink.timestamps.size());
+        assertEquals(Long.valueOf(0), sink.timestamps.get(0));
+        assertEquals(Long.valueOf(800 * MS), sink.timestamps.get(1));
+        assertEquals(3, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void heartbeat_forwardsConstantValues() {
+        CollectingSink sink = new CollectingSink();
+        DeadBandFilter filter = new DeadBandFilter(new float[]{0.1f}, 1000, sink);
+
+        for(long t = 0; t <= 3000; t += 200)
+            filter.accept(1, t * MS, 1f, 1f, 1f);
+
+        assertEquals(4, sink.timestamps.size());
+        assertEquals(Long.valueOf(1000 * MS), sink.timestamps.get(1));
+        assertEquals(Long.valueOf(3000 * MS), sink.timestamps.get(3));
+    }
+
+    @Test
+    public void zeroThresholds_forwardEverySample() {
+        CollectingSink sink = new CollectingSink();
+        DeadBandFilter filter = new DeadBandFilter(new float[]{0f}, 1000, sink);
+        filter.accept(1, 0, 1f, 1f, 1f);
+        filter.accept(1, MS, 1f, 1f, 1f);
+        assertEquals(2, sink.timestamps.size());
+    }
+
+    @Test
+    public void thresholds_areTunedAtRuntime() {
+        CollectingSink sink = new CollectingSink();
+        DeadBandFilter filter = new DeadBandFilter(new float[]{1f}, 5000, sink);
+        filter.accept(1, 0, 0f, 0f, 0f);
+        filter.accept(1, MS, 0.5f, 0f, 0f);
+        filter.setThresholds(DeadBandFilter.parseThresholds(" 0.1, 2 ,2"));
+        filter.accept(1, 2 * MS, 0.5f, 0f, 0f);
+        assertEquals(2, sink.timestamps.size());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseThresholds_rejectsTwoValues() {
+        DeadBandFilter.parseThresholds("0.1,0.2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setThresholds_rejectsNegativeValues() {
+        new DeadBandFilter(new float[]{-1f}, 1000, new CollectingSink());
+    }
+}
@@ -0,0 +1,129 @@
+package it.unisa.diem.wearable.pipeline;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import it.unisa.diem.wearable.codec.DecodedFrame;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+import it.unisa.diem.wearable.codec.FrameDecoders;
+import it.unisa.diem.wearable.communication.Publisher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the windows of the batcher.
+ */
+public class SampleBatcherTest {
+
+    private static final long MS = 1000000L;
+    private static final long NOW_MILLIS = 1666000000000L;
+
+    private static class CollectingPublisher implements Publisher {
+        final List<byte[]> payloads = new ArrayList<>();
+
+        @Override
+        public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+            payloads.add(payload.clone());
+        }
+
+        int samples(int message) throws DataFormatException {
+            DecodedFrame frame = new DecodedFrame();
+            byte[] payload = payloads.get(message);
+            FrameDecoders.forName("binary").decode(payload, 0, payload.length, frame);
+            return frame.getCount();
+        }
+    }
+
+    private static SampleBatcher batcher(int maxSamples, long maxDelayMillis, Publisher publisher) {
+        return new SampleBatcher("accelerometer", FrameCodecs.forName("binary"),
+                new BatchPolicy(maxSamples, maxDelayMillis), publisher, 0, false, null);
+    }
+
+    @Test
+    public void fullWindow_isPublishedWithItsLastSample() throws DataFormatException {
+        CollectingPublisher publisher = new CollectingPublisher();
+        SampleBatcher batcher = batcher(5, 1000, publisher);
+
+        for(int i = 0; i < 4; i++)
+            batcher.add(1, (NOW_MILLIS + i) * MS, 0, 0, 1, NOW_MILLIS + i);
+        assertEquals(0, publisher.payloads.size());
+
+        batcher.add(1, (NOW_MILLIS + 4) * MS, 0, 0, 1, NOW_MILLIS + 4);
+        assertEquals(1, publisher.payloads.size());
+        assertEquals(5, publisher.samples(0));
+        assertEquals(5, batcher.getPublishedSamples());
+    }
+
+    @Test
+    public void oldWindow_isPublishedWithTheSampleWhichExpiresIt() throws DataFormatException {
+        CollectingPublisher publisher = new CollectingPublisher();
+        SampleBatcher batcher = batcher(50, 100, publisher);
+
+        // A sample every 40 ms: the fourth one is 120 ms after the first one
+        for(int i = 0; i < 3; i++)
+            batcher.accept(1, (NOW_MILLIS + i * 40) * MS, 0, 0, 1);
+        assertEquals(0, publisher.payloads.size());
+
+        batcher.accept(1, (NOW_MILLIS + 120) * MS, 0, 0, 1);
+        assertEquals(1, publisher.payloads.size());
+        assertEquals(4, publisher.samples(0));
+    }
+
+    @Test
+    public void flushExpired_publishesOnlyTheOldWindows() throws DataFormatException {
+        CollectingPublisher publisher = new CollectingPublisher();
+        SampleBatcher batcher = batcher(50, 100, publisher);
+
+        batcher.add(1, NOW_MILLIS * MS, 0, 0, 1, NOW_MILLIS);
+        batcher.add(1, (NOW_MILLIS + 20) * MS, 0, 0, 1, NOW_MILLIS + 20);
+        batcher.flushExpired(NOW_MILLIS + 99);
+        assertEquals(0, publisher.payloads.size());
+
+        // The age is measured from the first sample of the window
+        batcher.flushExpired(NOW_MILLIS + 100);
+        assertEquals(1, publisher.payloads.size());
+        assertEquals(2, publisher.samples(0));
+
+        // The window is empty, so nothing is published
+        batcher.flushExpired(NOW_MILLIS + 1000);
+        assertEquals(1, publisher.payloads.size());
+    }
+
+    @Test
+    public void flushExpired_measuresTheAgeWithTheClockOfTheSamples() {
+        CollectingPublisher publisher = new CollectingPublisher();
+        SampleBatcher batcher = batcher(50, 100, publisher);
+
+        // accept() starts the window at the timestamp of the sample, e.g. an epoch time corrected
+        // by the time-sync exchange, which is 30 s ahead of the clock of the device
+        long sampleMillis = NOW_MILLIS + 30000;
+        batcher.accept(1, sampleMillis * MS, 0, 0, 1);
+
+        // Measured with the clock of the device, the window would wait 30 s more than the maximum delay
+        batcher.flushExpired(NOW_MILLIS + 200);
+        assertEquals(0, publisher.payloads.size());
+
+        // Measured with the clock of the samples, as the periodic flush of the service does, it is published
+        batcher.flushExpired(sampleMillis + 200);
+        assertEquals(1, publisher.payloads.size());
+    }
+
+    @Test
+    public void flush_publishesThePartialWindowOnce() {
+        CollectingPublisher publisher = new CollectingPublisher();
+        SampleBatcher batcher = batcher(50, 1000, publisher);
+
+        batcher.flush();
+        assertEquals(0, publisher.payloads.size());
+
+        batcher.accept(1, NOW_MILLIS * MS, 0, 0, 1);
+        batcher.flush();
+        batcher.flush();
+        assertEquals(1, publisher.payloads.size());
+        assertEquals(1, batcher.getPublishedSamples());
+    }
+}
@@ -0,0 +1,107 @@
+package it.unisa.diem.wearable.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unisa.diem.wearable.buffer.SampleSink;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the decimation of the samples to one per sampling period.
+ */
+public class SampleDecimatorTest {
+
+    private static final long MS = 1000000L;
+    // Aligned to the periods, which start at multiples of the period since the epoch
+    private static final long START_MILLIS = 1666000000000L;
+
+    private static class CollectingSink implements SampleSink {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<float[]> values = new ArrayList<>();
+
+        @Override
+        public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+            timestamps.add(timestampNanos);
+            values.add(new float[]{x, y, z});
+        }
+    }
+
+    @Test
+    public void samplesOfAPeriod_areForwardedOnce() {
+        CollectingSink sink = new CollectingSink();
+        SampleDecimator decimator = new SampleDecimator(100, SampleDecimator.Mode.AVERAGE, sink);
+
+        // 1 second of samples every 10 ms
+        for(int i = 0; i < 100; i++)
+            decimator.accept(1, (START_MILLIS + i * 10) * MS, 0, 0, 1);
+        assertEquals(9, sink.timestamps.size());
+        decimator.flush();
+        assertEquals(10, sink.timestamps.size());
+        for(int i = 0; i < 10; i++)
+            assertEquals((START_MILLIS + i * 100 + 90) * MS, (long) sink.timestamps.get(i));
+
+        // The pending period is forwarded only once
+        decimator.flush();
+        assertEquals(10, sink.timestamps.size());
+    }
+
+    @Test
+    public void averageMode_forwardsTheMeanOfThePeriod() {
+        CollectingSink sink = new CollectingSink();
+        SampleDecimator decimator = new SampleDecimator(100, SampleDecimator.Mode.AVERAGE, sink);
+
+        decimator.accept(1, START_MILLIS * MS, 1, 2, 3);
+        decimator.accept(1, (START_MILLIS + 50) * MS, 3, 4, 5);
+        // The first sample of the next period closes the previous one, with the timestamp of its last sample
+        decimator.accept(1, (START_MILLIS + 100) * MS, 10, 10, 10);
+
+        assertEquals(1, sink.values.size());
+        assertEquals((START_MILLIS + 50) * MS, (long) sink.timestamps.get(0));
+        assertArrayEquals(new float[]{2, 3, 4}, sink.values.get(0), 0);
+
+        decimator.flush();
+        assertArrayEquals(new float[]{10, 10, 10}, sink.values.get(1), 0);
+    }
+
+    @Test
+    public void lastMode_forwardsTheLastSampleOfThePeriod() {
+        CollectingSink sink = new CollectingSink();
+        SampleDecimator decimator = new SampleDecimator(100, SampleDecimator.Mode.LAST, sink);
+
+        decimator.accept(3, START_MILLIS * MS, 350, 0, 0);
+        decimator.accept(3, (START_MILLIS + 50) * MS, 10, 0, 0);
+        decimator.accept(3, (START_MILLIS + 100) * MS, 20, 0, 0);
+
+        // The average of 350 and 10 degrees would be meaningless
+        assertEquals(1, sink.values.size());
+        assertArrayEquals(new float[]{10, 0, 0}, sink.values.get(0), 0);
+    }
+
+    @Test
+    public void setSamplingPeriod_forwardsThePendingPeriodFirst() {
+        CollectingSink sink = new CollectingSink();
+        SampleDecimator decimator = new SampleDecimator(100, SampleDecimator.Mode.AVERAGE, sink);
+
+        decimator.accept(1, START_MILLIS * MS, 1, 1, 1);
+        decimator.accept(1, (START_MILLIS + 10) * MS, 3, 3, 3);
+        decimator.setSamplingPeriod(500);
+        assertEquals(1, sink.values.size());
+        assertArrayEquals(new float[]{2, 2, 2}, sink.values.get(0), 0);
+
+        // The samples are now aggregated over the periods [0, 500) and [500, 1000) ms
+        for(int i = 0; i < 9; i++)
+            decimator.accept(1, (START_MILLIS + 100 + i * 100) * MS, 0, 0, 1);
+        decimator.flush();
+        assertEquals(3, sink.values.size());
+        assertEquals((START_MILLIS + 400) * MS, (long) sink.timestamps.get(1));
+        assertEquals((START_MILLIS + 900) * MS, (long) sink.timestamps.get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositivePeriod_isRejected() {
+        new SampleDecimator(100, SampleDecimator.Mode.AVERAGE, new CollectingSink()).setSamplingPeriod(0);
+    }
+}
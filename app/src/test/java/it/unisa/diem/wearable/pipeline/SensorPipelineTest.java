@@ -0,0 +1,71 @@
+package it.unisa.diem.wearable.pipeline;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unisa.diem.wearable.buffer.OverflowPolicy;
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+import it.unisa.diem.wearable.communication.Publisher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streams of the publishing pipeline.
+ */
+public class SensorPipelineTest {
+
+    private static final long MS = 1000000L;
+
+    private static class CollectingPublisher implements Publisher {
+        final List<String> topics = new ArrayList<>();
+
+        @Override
+        public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+            topics.add(topic);
+        }
+
+        int count(String topic) {
+            int count = 0;
+            for(String t : topics)
+                if(t.equals(topic))
+                    count++;
+            return count;
+        }
+    }
+
+    private static void addStream(SensorPipeline pipeline, int sensorType, String topic, Publisher publisher) {
+        // Every window holds a single sample, so every decimated sample is published
+        SampleBatcher batcher = new SampleBatcher(topic, FrameCodecs.forName("text"), new BatchPolicy(1, 0),
+                publisher, 0, false, null);
+        pipeline.addStream(sensorType, new SampleDecimator(100, SampleDecimator.Mode.AVERAGE, batcher), batcher);
+    }
+
+    @Test
+    public void streamWithItsOwnPeriod_ignoresTheCommonPeriod() {
+        CollectingPublisher publisher = new CollectingPublisher();
+        SensorPipeline pipeline = new SensorPipeline(new SampleRingBuffer(256, OverflowPolicy.DROP_OLDEST));
+        addStream(pipeline, 1, "accelerometer", publisher);
+        addStream(pipeline, 4, "gyroscope", publisher);
+
+        pipeline.setSamplingPeriod(4, 500);
+        pipeline.setSamplingPeriod(50);
+        for(int i = 0; i < 20; i++) {
+            pipeline.offer(1, i * 50 * MS, 0, 0, 1);
+            pipeline.offer(4, i * 50 * MS, 0, 1, 0);
+        }
+        pipeline.flush();
+
+        // 1 second of samples: 20 periods of 50 ms and 2 periods of 500 ms
+        assertEquals(20, publisher.count("accelerometer"));
+        assertEquals(2, publisher.count("gyroscope"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ownPeriodOfUnknownStream_isRejected() {
+        new SensorPipeline(new SampleRingBuffer(16, OverflowPolicy.DROP_OLDEST)).setSamplingPeriod(4, 500);
+    }
+}
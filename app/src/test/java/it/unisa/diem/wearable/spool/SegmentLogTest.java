@@ -0,0 +1,131 @@
+package it.unisa.diem.wearable.spool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the memory-mapped segment log, stored in a temporary directory.
+ */
+public class SegmentLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] payload(int i) {
+        return ("sample " + i).getBytes();
+    }
+
+    @Test
+    public void records_areReadInOrder() throws IOException {
+        SegmentLog log = new SegmentLog(folder.getRoot(), 128, 4096);
+        for(int i = 0; i < 20; i++)
+            log.append("device/accelerometer", payload(i), 1, i % 2 == 0);
+        assertTrue(log.getSegmentCount() > 1);
+        assertEquals(20, log.getPendingRecords());
+
+        for(int i = 0; i < 20; i++) {
+            SpoolRecord record = log.read();
+            assertEquals("device/accelerometer", record.getTopic());
+            assertArrayEquals(payload(i), record.getPayload());
+            assertEquals(1, record.getQos());
+            assertEquals(i % 2 == 0, record.isRetained());
+        }
+        assertNull(log.read());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void committedPosition_survivesReopening() throws IOException {
+        File directory = folder.getRoot();
+        SegmentLog log = new SegmentLog(directory, 128, 4096);
+        for(int i = 0; i < 10; i++)
+            log.append("t", payload(i), 1, false);
+        for(int i = 0; i < 4; i++)
+            log.read();
+        log.commit();
+        log.read();
+        log.close();
+
+        SegmentLog reopened = new SegmentLog(directory, 128, 4096);
+        assertEquals(6, reopened.getPendingRecords());
+        assertArrayEquals(payload(4), reopened.read().getPayload());
+    }
+
+    @Test
+    public void rewind_readsAgainUncommittedRecords() throws IOException {
+        SegmentLog log = new SegmentLog(folder.getRoot(), 128, 4096);
+        for(int i = 0; i < 3; i++)
+            log.append("t", payload(i), 0, false);
+        log.read();
+        log.commit();
+        log.read();
+        log.read();
+        log.rewind();
+        assertArrayEquals(payload(1), log.read().getPayload());
+    }
+
+    @Test
+    public void committedSegments_areCompacted() throws IOException {
+        SegmentLog log = new SegmentLog(folder.getRoot(), 128, 4096);
+        for(int i = 0; i < 20; i++)
+            log.append("t", payload(i), 0, false);
+        while(log.read() != null);
+        log.commit();
+        assertEquals(1, log.getSegmentCount());
+        assertEquals(0, log.getPendingRecords());
+
+        log.append("t", payload(20), 0, false);
+        assertArrayEquals(payload(20), log.read().getPayload());
+    }
+
+    @Test
+    public void retention_dropsOldestRecords() throws IOException {
+        SegmentLog log = new SegmentLog(folder.getRoot(), 128, 256);
+        for(int i = 0; i < 50; i++)
+            log.append("t", payload(i), 0, false);
+        assertEquals(2, log.getSegmentCount());
+        assertTrue(log.getDroppedRecords() > 0);
+        assertEquals(50, log.getPendingRecords() + log.getDroppedRecords());
+
+        SpoolRecord last = null, record;
+        while((record = log.read()) != null)
+            last = record;
+        assertArrayEquals(payload(49), last.getPayload());
+    }
+
+    @Test
+    public void retention_keepsTheRecordsInFlight() throws IOException {
+        SegmentLog log = new SegmentLog(folder.getRoot(), 128, 256);
+        int appended = 0;
+        while(log.getSegmentCount() < 2)
+            log.append("t", payload(appended++), 1, false);
+        log.append("t", payload(appended++), 1, false);
+
+        // A replay group reads all the records, up to the second segment, and waits for their acknowledgements
+        int read = 0;
+        while(log.read() != null)
+            read++;
+        assertEquals(appended, read);
+
+        // Meanwhile the new messages roll the log past its maximum size, deleting the first segment
+        while(log.getDroppedRecords() == 0)
+            log.append("t", payload(appended++), 1, false);
+        assertEquals(2, log.getSegmentCount());
+
+        // The acknowledged group is committed, so its records are not published again
+        log.commit();
+        assertEquals(appended - read, log.getPendingRecords());
+        assertArrayEquals(payload(read), log.read().getPayload());
+    }
+
+    @Test(expected = IOException.class)
+    public void recordLargerThanSegment_isRejected() throws IOException {
+        new SegmentLog(folder.getRoot(), 64, 4096).append("t", new byte[128], 0, false);
+    }
+}
@@ -0,0 +1,132 @@
+package it.unisa.diem.wearable.spool;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unisa.diem.wearable.communication.Publisher;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the store-and-forward spool, against a stand-in broker
+ * which acknowledges the messages only when asked to.
+ */
+public class SpoolingPublisherTest {
+
+    private static class StandInBroker implements Publisher {
+        final List<String> received = new ArrayList<>();
+        final List<IMqttActionListener> unacknowledged = new ArrayList<>();
+
+        @Override
+        public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+            received.add(new String(payload));
+            unacknowledged.add(cbPublish);
+        }
+
+        void acknowledgeAll(boolean success) {
+            List<IMqttActionListener> listeners = new ArrayList<>(unacknowledged);
+            unacknowledged.clear();
+            for(IMqttActionListener listener : listeners) {
+                if(success)
+                    listener.onSuccess(null);
+                else
+                    listener.onFailure(null, new Exception("Connection lost"));
+            }
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StandInBroker broker;
+    private SpoolingPublisher spool;
+
+    @Before
+    public void setUp() throws IOException {
+        broker = new StandInBroker();
+        spool = new SpoolingPublisher(broker, new SegmentLog(folder.getRoot(), 1024, 16384));
+    }
+
+    @Test
+    public void online_publishesDirectly() {
+        spool.setConnected(true);
+        spool.publish("t", "a".getBytes(), 1, false, null);
+        assertEquals(1, broker.received.size());
+        assertFalse(spool.hasBacklog());
+    }
+
+    @Test
+    public void offline_spoolsAndReplaysInOrderAtBoundedRate() {
+        for(int i = 0; i < 5; i++)
+            spool.publish("t", String.valueOf(i).getBytes(), 1, false, null);
+        assertTrue(broker.received.isEmpty());
+
+        spool.setConnected(true);
+        // New messages wait behind the backlog
+        spool.publish("t", "5".getBytes(), 1, false, null);
+        assertTrue(broker.received.isEmpty());
+
+        assertEquals(2, spool.replay(2));
+        assertEquals(0, spool.replay(2));
+        broker.acknowledgeAll(true);
+        while(spool.replay(2) > 0)
+            broker.acknowledgeAll(true);
+
+        assertEquals(6, broker.received.size());
+        for(int i = 0; i < 6; i++)
+            assertEquals(String.valueOf(i), broker.received.get(i));
+        assertFalse(spool.hasBacklog());
+
+        spool.publish("t", "6".getBytes(), 1, false, null);
+        assertEquals("6", broker.received.get(6));
+    }
+
+    @Test
+    public void failedReplay_isRepeated() {
+        spool.publish("t", "0".getBytes(), 1, false, null);
+        spool.setConnected(true);
+
+        spool.replay(10);
+        broker.acknowledgeAll(false);
+        spool.replay(10);
+        broker.acknowledgeAll(true);
+
+        assertEquals(2, broker.received.size());
+        assertEquals("0", broker.received.get(1));
+        assertFalse(spool.hasBacklog());
+    }
+
+    @Test
+    public void failedAppend_isReportedAsFailure() {
+        final int[] outcomes = new int[2];
+        IMqttActionListener listener = new IMqttActionListener() {
+            @Override
+            public void onSuccess(IMqttToken asyncActionToken) {
+                outcomes[0]++;
+            }
+
+            @Override
+            public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                assertTrue(exception instanceof IOException);
+                outcomes[1]++;
+            }
+        };
+        // A record larger than a segment cannot be appended to the log
+        spool.publish("t", new byte[2048], 1, false, listener);
+        assertEquals(0, outcomes[0]);
+        assertEquals(1, outcomes[1]);
+        assertFalse(spool.hasBacklog());
+
+        spool.publish("t", "0".getBytes(), 1, false, listener);
+        assertEquals(1, outcomes[0]);
+        assertEquals(1, outcomes[1]);
+    }
+}
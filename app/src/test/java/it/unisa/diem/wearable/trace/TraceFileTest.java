@@ -0,0 +1,174 @@
+package it.unisa.diem.wearable.trace;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the recording and the reading of the traces.
+ */
+public class TraceFileTest {
+
+    private static final long START_MILLIS = 1666000000123L;
+    /** It writes the buffers on the calling thread */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void writeAndRead_returnsTheSameEvents() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceWriter writer = new TraceWriter(out, START_MILLIS, DIRECT);
+        Random random = new Random(7);
+        long timestamp = START_MILLIS * 1000000L;
+        // More than a buffer of records, so the writer and the reader refill their buffers
+        int events = 10000;
+        long[] timestamps = new long[events];
+        float[] values = new float[3 * events];
+        for(int i = 0; i < events; i++) {
+            // The events of different sensors can be slightly out of order
+            timestamp += 20000000L - random.nextInt(1000000);
+            timestamps[i] = timestamp;
+            for(int j = 0; j < 3; j++)
+                values[3 * i + j] = (float) random.nextGaussian() * 10;
+            if(i % 100 == 50)
+                writer.writeLocation(timestamp, 40.7725 + i * 1e-6, 14.7903, i % 200 == 50 ? -1 : 12.5f,
+                        timestamp / 1000000L - 3);
+            else
+                writer.writeSample(1 + i % 3, timestamp, values[3 * i], values[3 * i + 1], values[3 * i + 2]);
+        }
+        writer.close();
+        assertEquals(events, writer.getEventCount());
+        assertEquals(out.size(), writer.getSize());
+        assertTrue("A sample should take less than 20 bytes", out.size() < 20 * events);
+
+        TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(START_MILLIS, reader.getStartMillis());
+        TraceEvent event = new TraceEvent();
+        for(int i = 0; i < events; i++) {
+            assertTrue(reader.next(event));
+            assertEquals(timestamps[i], event.getTimestampNanos());
+            if(i % 100 == 50) {
+                assertEquals(TraceEvent.Type.LOCATION, event.getType());
+                assertEquals(40.7725 + i * 1e-6, event.getLatitude(), 0);
+                assertEquals(14.7903, event.getLongitude(), 0);
+                assertEquals(i % 200 == 50 ? -1 : 12.5f, event.getAccuracy(), 0);
+                assertEquals(timestamps[i] / 1000000L - 3, event.getTimeMillis());
+            } else {
+                assertEquals(TraceEvent.Type.SAMPLE, event.getType());
+                assertEquals(1 + i % 3, event.getSensorType());
+                assertEquals(values[3 * i], event.getX(), 0);
+                assertEquals(values[3 * i + 1], event.getY(), 0);
+                assertEquals(values[3 * i + 2], event.getZ(), 0);
+            }
+        }
+        assertFalse(reader.next(event));
+    }
+
+    @Test
+    public void write_afterCloseIsIgnored() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceWriter writer = new TraceWriter(out, START_MILLIS, DIRECT);
+        writer.writeSample(1, 1000, 1, 2, 3);
+        writer.close();
+        writer.writeSample(1, 2000, 1, 2, 3);
+        writer.close();
+
+        TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()));
+        TraceEvent event = new TraceEvent();
+        assertTrue(reader.next(event));
+        assertFalse(reader.next(event));
+        assertEquals(1, writer.getEventCount());
+    }
+
+    @Test
+    public void write_whileTheExecutorIsLateDropsTheEvents() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<Runnable> pending = new ArrayList<>();
+        TraceWriter writer = new TraceWriter(out, START_MILLIS, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pending.add(command);
+            }
+        });
+        // Enough samples to fill both the buffers
+        int events = 10000;
+        for(int i = 0; i < events; i++)
+            writer.writeSample(1, 1000L * i, 1, 2, 3);
+        assertEquals(1, pending.size());
+        assertTrue(writer.getDroppedCount() > 0);
+        assertEquals(events, writer.getEventCount() + writer.getDroppedCount());
+
+        // The buffer written by the executor is reused
+        pending.remove(0).run();
+        long dropped = writer.getDroppedCount();
+        writer.writeSample(1, 1000L * events, 1, 2, 3);
+        assertEquals(dropped, writer.getDroppedCount());
+        writer.close();
+        for(Runnable task : pending)
+            task.run();
+
+        TraceReader reader = new TraceReader(new ByteArrayInputStream(out.toByteArray()));
+        TraceEvent event = new TraceEvent();
+        long read = 0;
+        while(reader.next(event))
+            read++;
+        assertEquals(writer.getEventCount(), read);
+    }
+
+    @Test
+    public void write_afterAnErrorOfTheStreamFails() throws IOException {
+        TraceWriter writer = new TraceWriter(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("No space left on device");
+            }
+        }, START_MILLIS, DIRECT);
+        try {
+            for(int i = 0; i < 10000; i++)
+                writer.writeSample(1, 1000L * i, 1, 2, 3);
+            fail("The error of the stream should be reported");
+        } catch(IOException ex) {
+            assertSame(ex, writer.getError());
+        }
+    }
+
+    @Test
+    public void read_truncatedTraceFails() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceWriter writer = new TraceWriter(out, START_MILLIS, DIRECT);
+        writer.writeSample(1, 1000, 1, 2, 3);
+        writer.writeSample(1, 2000, 4, 5, 6);
+        writer.close();
+        byte[] trace = out.toByteArray();
+
+        TraceReader reader = new TraceReader(new ByteArrayInputStream(Arrays.copyOf(trace, trace.length - 2)));
+        TraceEvent event = new TraceEvent();
+        assertTrue(reader.next(event));
+        try {
+            reader.next(event);
+            fail("A truncated record should not be read");
+        } catch(EOFException ex) {
+            // Expected
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_otherFileFails() throws IOException {
+        new TraceReader(new ByteArrayInputStream("dd.MM.yy HH:mm:ss.SSS;1,2,3".getBytes()));
+    }
+}
@@ -0,0 +1,82 @@
+package it.unisa.diem.wearable.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.codec.BinaryPayloadCodec;
+import it.unisa.diem.wearable.codec.DeltaFrameCodec;
+import it.unisa.diem.wearable.codec.TextPayloadCodec;
+
+/**
+ * This class measures the cost of encoding a single sample with the original text path
+ * and with the encoders of the codec package, which write into a reused buffer.
+ * The delta codec is measured on a window of WINDOW samples, so its score must be divided by WINDOW.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EncodingBenchmark {
+
+    public static final int WINDOW = 50;
+
+    private LegacyTextEncoding legacy;
+    private TextPayloadCodec text;
+    private BinaryPayloadCodec binary;
+    private DeltaFrameCodec delta;
+    private byte[] buffer;
+    private byte[] frameBuffer;
+    private float[] values;
+    private long[] timestamps;
+    private float[] xs, ys, zs;
+    private long timestampNanos;
+
+    @Setup
+    public void setup() {
+        legacy = new LegacyTextEncoding();
+        text = new TextPayloadCodec();
+        binary = new BinaryPayloadCodec();
+        delta = new DeltaFrameCodec(DeltaFrameCodec.DEFAULT_PRECISION, false);
+        buffer = new byte[text.maxSampleSize()];
+        frameBuffer = new byte[delta.maxFrameSize(WINDOW)];
+        values = new float[]{0.1234567f, -9.80665f, 3.1415927f};
+        timestampNanos = System.currentTimeMillis() * 1000000L;
+
+        timestamps = new long[WINDOW];
+        xs = new float[WINDOW];
+        ys = new float[WINDOW];
+        zs = new float[WINDOW];
+        for(int i = 0; i < WINDOW; i++) {
+            timestamps[i] = timestampNanos + i * 20000000L;
+            xs[i] = values[0] + i * 0.01f;
+            ys[i] = values[1] - i * 0.01f;
+            zs[i] = values[2];
+        }
+    }
+
+    @Benchmark
+    public byte[] legacyText() {
+        return legacy.encode(values);
+    }
+
+    @Benchmark
+    public int text() {
+        return text.encode(1, timestampNanos, values[0], values[1], values[2], buffer, 0);
+    }
+
+    @Benchmark
+    public int binary() {
+        return binary.encode(1, timestampNanos, values[0], values[1], values[2], buffer, 0);
+    }
+
+    @Benchmark
+    public int deltaWindow() {
+        return delta.encode(1, timestamps, xs, ys, zs, WINDOW, frameBuffer, 0);
+    }
+}
@@ -0,0 +1,93 @@
+package it.unisa.diem.wearable.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.codec.FrameCodec;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+
+/**
+ * This class measures the cost of encoding a window of WINDOW samples with every frame codec,
+ * on a synthetic accelerometer trace (gravity, slow motion and sensor noise).
+ * The trace is generated with a fixed seed from a fixed start time, so the compression ratio
+ * with respect to the text codec, printed at the end of every trial, is the same in every run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FrameCodecBenchmark {
+
+    public static final int WINDOW = 50;
+    private static final int WINDOWS = 1000;
+    private static final long SEED = 7;
+    private static final long START_NANOS = 1666000000000L * 1000000L;
+
+    @Param({"text", "binary", "delta", "delta-deflate"})
+    public String codecName;
+
+    private FrameCodec codec;
+    private byte[] buffer;
+    private long[][] timestamps;
+    private float[][] xs, ys, zs;
+    private int window;
+    private double bytesPerSample, ratio;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timestamps = new long[WINDOWS][WINDOW];
+        xs = new float[WINDOWS][WINDOW];
+        ys = new float[WINDOWS][WINDOW];
+        zs = new float[WINDOWS][WINDOW];
+        Random random = new Random(SEED);
+        long timestamp = START_NANOS;
+        for(int w = 0; w < WINDOWS; w++) {
+            for(int i = 0; i < WINDOW; i++) {
+                int n = w * WINDOW + i;
+                timestamp += 20000000L + random.nextInt(100000);
+                timestamps[w][i] = timestamp;
+                xs[w][i] = (float) (0.5 * Math.sin(n / 25.0) + random.nextGaussian() * 0.02);
+                ys[w][i] = (float) (0.3 * Math.cos(n / 40.0) + random.nextGaussian() * 0.02);
+                zs[w][i] = (float) (9.81 + random.nextGaussian() * 0.03);
+            }
+        }
+
+        codec = FrameCodecs.forName(codecName);
+        buffer = new byte[codec.maxFrameSize(WINDOW)];
+        long bytes = encodeAll(codec);
+        bytesPerSample = (double) bytes / (WINDOWS * WINDOW);
+        ratio = (double) encodeAll(FrameCodecs.forName("text")) / bytes;
+    }
+
+    private long encodeAll(FrameCodec codec) {
+        byte[] buffer = new byte[codec.maxFrameSize(WINDOW)];
+        long bytes = 0;
+        for(int w = 0; w < WINDOWS; w++)
+            bytes += codec.encode(1, timestamps[w], xs[w], ys[w], zs[w], WINDOW, buffer, 0);
+        return bytes;
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.println(String.format(Locale.ROOT, "%n%s: %.2f bytes/sample, compression ratio %.2f (text = 1)",
+                codecName, bytesPerSample, ratio));
+    }
+
+    @Benchmark
+    public int encodeWindow() {
+        int w = window;
+        window = w + 1 < WINDOWS ? w + 1 : 0;
+        return codec.encode(1, timestamps[w], xs[w], ys[w], zs[w], WINDOW, buffer, 0);
+    }
+}
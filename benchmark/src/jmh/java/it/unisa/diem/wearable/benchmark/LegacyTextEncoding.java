@@ -0,0 +1,39 @@
+package it.unisa.diem.wearable.benchmark;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * This class reproduces the original encoding of a sample in MainActivity, used as the baseline:
+ * a new SimpleDateFormat and a new Date for every timestamp, the concatenation of the formatted values,
+ * String.format() and the conversion of the message to bytes.
+ */
+public class LegacyTextEncoding {
+
+    private final DecimalFormat decimalFormat;
+
+    public LegacyTextEncoding() {
+        decimalFormat = new DecimalFormat("#.#####", new DecimalFormatSymbols(Locale.ENGLISH));
+    }
+
+    /**
+     * This method retrieves the current timestamp with a milliseconds format.
+     */
+    public static String getTimestamp() {
+        return new SimpleDateFormat("dd.MM.yy HH:mm:ss.SSS").format(new Date());
+    }
+
+    /**
+     * This method encodes a sample as the original onSensorChanged() did.
+     */
+    public byte[] encode(float[] values) {
+        String valuesText = decimalFormat.format(values[0]) +
+                "," + decimalFormat.format(values[1]) +
+                "," + decimalFormat.format(values[2]);
+        String msg = String.format("%s;%s", getTimestamp(), valuesText);
+        return msg.getBytes();
+    }
+}
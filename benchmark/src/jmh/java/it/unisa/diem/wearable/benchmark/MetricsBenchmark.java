@@ -0,0 +1,48 @@
+package it.unisa.diem.wearable.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.metrics.Counter;
+import it.unisa.diem.wearable.metrics.LatencyHistogram;
+import it.unisa.diem.wearable.metrics.MetricsRegistry;
+
+/**
+ * This class measures the overhead which the metrics add to the hot path:
+ * the counter of the events is incremented for every sensor event,
+ * while the histogram of the latencies is updated for every delivered message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private Counter counter;
+    private LatencyHistogram histogram;
+    private long value;
+
+    @Setup
+    public void setup() {
+        MetricsRegistry registry = new MetricsRegistry();
+        counter = registry.counter("events.accelerometer");
+        histogram = registry.histogram("publish.latency.us");
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        value = (value * 31 + 7) & 0xFFFFF;
+        histogram.record(value);
+    }
+}
@@ -0,0 +1,70 @@
+package it.unisa.diem.wearable.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.fusion.OrientationFusion;
+
+/**
+ * This class measures the cost of an update of the orientation, replaying a trace of a device
+ * which turns around the vertical axis, with noisy magnetometer readings.
+ * The complementary filter consumes three events (accelerometer, magnetometer and gyroscope) per update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrientationFusionBenchmark {
+
+    private static final int TRACE_LENGTH = 1024;
+    private static final long PERIOD_NANOS = 20000000L;
+
+    private OrientationFusion fusion;
+    private float[][] gravity, geomagnetic, angularSpeed, rotationVector;
+    private int index;
+    private long timestampNanos;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        fusion = new OrientationFusion();
+        gravity = new float[TRACE_LENGTH][];
+        geomagnetic = new float[TRACE_LENGTH][];
+        angularSpeed = new float[TRACE_LENGTH][];
+        rotationVector = new float[TRACE_LENGTH][];
+        float speed = (float) Math.toRadians(-30);
+        for(int i = 0; i < TRACE_LENGTH; i++) {
+            double azimuth = Math.toRadians(30.0 * i * PERIOD_NANOS / 1e9);
+            gravity[i] = new float[]{0, 0, 9.81f};
+            geomagnetic[i] = new float[]{
+                    (float) (-22 * Math.sin(azimuth) + 3 * random.nextGaussian()),
+                    (float) (22 * Math.cos(azimuth) + 3 * random.nextGaussian()),
+                    (float) (-40 + 3 * random.nextGaussian())};
+            angularSpeed[i] = new float[]{0, 0, speed};
+            rotationVector[i] = new float[]{0, 0, (float) -Math.sin(azimuth / 2), (float) Math.cos(azimuth / 2)};
+        }
+    }
+
+    @Benchmark
+    public float complementaryFilter() {
+        int i = index++ & (TRACE_LENGTH - 1);
+        timestampNanos += PERIOD_NANOS;
+        fusion.updateAccelerometer(gravity[i]);
+        fusion.updateMagnetometer(geomagnetic[i]);
+        fusion.updateGyroscope(angularSpeed[i], timestampNanos);
+        return fusion.getAngles()[0];
+    }
+
+    @Benchmark
+    public float rotationVector() {
+        fusion.updateRotationVector(rotationVector[index++ & (TRACE_LENGTH - 1)]);
+        return fusion.getAngles()[0];
+    }
+}
@@ -0,0 +1,83 @@
+package it.unisa.diem.wearable.benchmark;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.buffer.OverflowPolicy;
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+import it.unisa.diem.wearable.communication.Publisher;
+import it.unisa.diem.wearable.pipeline.BatchPolicy;
+import it.unisa.diem.wearable.pipeline.SampleBatcher;
+import it.unisa.diem.wearable.pipeline.SampleDecimator;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+
+/**
+ * This class measures the whole path of a sensor event, from the ring buffer to the published frame,
+ * at the sensor rates of 50, 100 and 200 Hz with the sampling period of the application (200 ms).
+ * Every operation offers one event and drains the buffer, so the cost of the decimation, of the batching
+ * and of the encoding of the windows is spread over the events which produce them.
+ * The publisher is a stand-in which completes every publication immediately.
+ * The original application encoded every event, whatever the rate, so its cost per event is
+ * EncodingBenchmark.legacyText.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PipelineBenchmark {
+
+    private static final int SENSOR_TYPE = 1;
+    private static final int SAMPLING_PERIOD = 200;
+
+    @Param({"50", "100", "200"})
+    public int rateHz;
+
+    @Param({"text", "binary", "delta", "delta-deflate"})
+    public String codec;
+
+    private SensorPipeline pipeline;
+    private long timestampNanos;
+    private long periodNanos;
+    private float[] values;
+
+    @Setup
+    public void setup() {
+        pipeline = new SensorPipeline(new SampleRingBuffer(1024, OverflowPolicy.DROP_OLDEST));
+        SampleBatcher batcher = new SampleBatcher("device/accelerometer", FrameCodecs.forName(codec),
+                new BatchPolicy(50, SAMPLING_PERIOD), new ImmediatePublisher(), 1, true, null);
+        pipeline.addStream(SENSOR_TYPE, new SampleDecimator(SAMPLING_PERIOD, SampleDecimator.Mode.AVERAGE,
+                batcher), batcher);
+        timestampNanos = System.currentTimeMillis() * 1000000L;
+        periodNanos = 1000000000L / rateHz;
+        values = new float[]{0.1234567f, -9.80665f, 3.1415927f};
+    }
+
+    @Benchmark
+    public int pipeline() {
+        timestampNanos += periodNanos;
+        pipeline.offer(SENSOR_TYPE, timestampNanos, values[0], values[1], values[2]);
+        return pipeline.drain();
+    }
+
+    /**
+     * This class completes every publication immediately, without sending anything.
+     */
+    private static class ImmediatePublisher implements Publisher {
+
+        @Override
+        public void publish(String topic, byte[] payload, int qos, boolean retained,
+                            IMqttActionListener cbPublish) {
+            if(cbPublish != null)
+                cbPublish.onSuccess(null);
+        }
+    }
+}
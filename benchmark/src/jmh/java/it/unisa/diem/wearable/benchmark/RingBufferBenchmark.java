@@ -0,0 +1,45 @@
+package it.unisa.diem.wearable.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.buffer.OverflowPolicy;
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.buffer.SampleSink;
+
+/**
+ * This class measures the hand-off of the samples between the thread of the sensor events
+ * and the publishing thread through the ring buffer, in a single thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RingBufferBenchmark {
+
+    private SampleRingBuffer buffer;
+    private SampleSink sink;
+    private long timestampNanos;
+
+    @Setup
+    public void setup() {
+        buffer = new SampleRingBuffer(1024, OverflowPolicy.DROP_OLDEST);
+        sink = new SampleSink() {
+            @Override
+            public void accept(int sensorType, long timestampNanos, float x, float y, float z) {
+            }
+        };
+    }
+
+    @Benchmark
+    public int offerAndDrain() {
+        buffer.offer(1, ++timestampNanos, 0.1f, 0.2f, 0.3f);
+        return buffer.drain(sink, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,319 @@
+package it.unisa.diem.wearable.coordinator;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.clock.ClockSync;
+import it.unisa.diem.wearable.clock.EpochClock;
+import it.unisa.diem.wearable.clock.TimeSource;
+
+/**
+ * This class implements the coordinator of the wearables: it collects the devices announced on
+ * broadcastTopic/newDevice, stores the samples of their streams (deviceID/accelerometer, deviceID/orientation,
+ * deviceID/location, ...) in a TimeSeriesStore and sends the configuration on the topics to which
+ * the devices subscribe (broadcastTopic/samplingPeriod, broadcastTopic/accelerometer, deviceID/config, ...).
+ *
+ * The MQTT clients only hand the messages to a pool of workers, which decode them, so the decoding
+ * does not slow down the reception. With more subscribers in a shared subscription, the broker spreads
+ * the messages over more connections. The time-sync requests of the devices (deviceID/time/request)
+ * are answered directly by the clients, so the responses are not delayed by the queues of the workers.
+ */
+public class Coordinator {
+
+    private static final long TIMEOUT_MS = 10000;
+    private static final String NEW_DEVICE = "/newDevice";
+
+    public static void main(String[] args) throws Exception {
+        CoordinatorOptions options;
+        try {
+            options = CoordinatorOptions.parse(args);
+        } catch(IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: Coordinator [--broker tcp://host:port] [--username u --password p] " +
+                    "[--client-id id] [--broadcast-topic t] [--streams accelerometer,orientation,location] " +
+                    "[--codec text|binary|delta|delta-deflate] [--subscribers N --share-group g] [--qos q] " +
+                    "[--workers N] [--queue N] [--retention s] [--capacity samples] [--report s]");
+            System.exit(2);
+            return;
+        }
+        Coordinator coordinator = new Coordinator(options);
+        coordinator.start();
+        new CoordinatorConsole(coordinator, System.out).run(
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+        coordinator.stop();
+    }
+
+    private final CoordinatorOptions options;
+    private final TimeSeriesStore store;
+    private final IngestStats stats;
+    private final IngestWorker[] workers;
+    private final Thread[] workerThreads;
+    private final MqttAsyncClient[] clients;
+    private final ScheduledExecutorService maintenance;
+    private final String newDeviceTopic;
+    private final EpochClock clock;
+
+    public Coordinator(CoordinatorOptions options) throws MqttException {
+        this.options = options;
+        this.store = new TimeSeriesStore(options.initialCapacity, options.maxCapacity,
+                TimeUnit.SECONDS.toNanos(options.retentionSeconds));
+        this.stats = new IngestStats();
+        this.workers = new IngestWorker[options.workers];
+        this.workerThreads = new Thread[options.workers];
+        for(int i = 0; i < workers.length; i++) {
+            workers[i] = new IngestWorker(options.queueCapacity, options.codec, store, stats);
+            workerThreads[i] = new Thread(workers[i], "ingest-" + i);
+            workerThreads[i].setDaemon(true);
+        }
+        this.clients = new MqttAsyncClient[options.subscribers];
+        for(int i = 0; i < clients.length; i++)
+            clients[i] = new MqttAsyncClient(options.brokerURI,
+                    clients.length > 1 ? options.clientID + "-" + i : options.clientID, new MemoryPersistence());
+        this.maintenance = Executors.newSingleThreadScheduledExecutor();
+        this.newDeviceTopic = options.broadcastTopic + NEW_DEVICE;
+        this.clock = new EpochClock(new TimeSource() {
+            @Override
+            public long monotonicNanos() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+        });
+    }
+
+    public TimeSeriesStore getStore() {
+        return store;
+    }
+
+    public IngestStats getStats() {
+        return stats;
+    }
+
+    /**
+     * This method starts the workers, connects the clients and subscribes to the streams of the devices.
+     */
+    public void start() throws MqttException {
+        for(Thread thread : workerThreads)
+            thread.start();
+        MqttConnectOptions connectOptions = new MqttConnectOptions();
+        connectOptions.setCleanSession(true);
+        connectOptions.setAutomaticReconnect(true);
+        if(options.username != null) {
+            connectOptions.setUserName(options.username);
+            connectOptions.setPassword(options.password.toCharArray());
+        }
+        for(int i = 0; i < clients.length; i++) {
+            clients[i].setCallback(new IngestCallback(i));
+            clients[i].connect(connectOptions).waitForCompletion(TIMEOUT_MS);
+            subscribe(i);
+        }
+        maintenance.scheduleAtFixedRate(new MaintenanceTask(), options.reportSeconds, options.reportSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * This method subscribes a client to the streams and the first client also to the new devices,
+     * which must not be shared among the clients.
+     */
+    private void subscribe(int client) throws MqttException {
+        String prefix = options.shareGroup != null ? "$share/" + options.shareGroup + "/" : "";
+        int topics = options.streams.length + (client == 0 ? 2 : 1);
+        String[] filters = new String[topics];
+        int[] qos = new int[topics];
+        for(int i = 0; i < options.streams.length; i++) {
+            filters[i] = prefix + "+/" + options.streams[i];
+            qos[i] = options.qos;
+        }
+        filters[options.streams.length] = prefix + "+" + ClockSync.REQUEST_TOPIC;
+        qos[options.streams.length] = 0;
+        if(client == 0) {
+            filters[topics - 1] = newDeviceTopic;
+            qos[topics - 1] = 1;
+        }
+        clients[client].subscribe(filters, qos).waitForCompletion(TIMEOUT_MS);
+    }
+
+    /**
+     * This method disconnects the clients and stops the workers.
+     */
+    public void stop() {
+        maintenance.shutdownNow();
+        for(MqttAsyncClient client : clients) {
+            try {
+                client.disconnect(TIMEOUT_MS).waitForCompletion(TIMEOUT_MS);
+                client.close();
+            } catch(MqttException e) {
+                // The client is closed anyway
+            }
+        }
+        for(Thread thread : workerThreads)
+            thread.interrupt();
+    }
+
+    /**
+     * This method sends a configuration value to all the devices on broadcastTopic/name,
+     * e.g. "samplingPeriod" and "100" or "accelerometer" and "false".
+     */
+    public void configure(String name, String value) throws MqttException {
+        clients[0].publish(options.broadcastTopic + "/" + name, value.getBytes(StandardCharsets.UTF_8), 1, false)
+                .waitForCompletion(TIMEOUT_MS);
+    }
+
+    /**
+     * This method sends a configuration document to a single device on deviceID/config.
+     */
+    public void configureDevice(String deviceID, String document) throws MqttException {
+        clients[0].publish(deviceID + "/config", document.getBytes(StandardCharsets.UTF_8), 1, false)
+                .waitForCompletion(TIMEOUT_MS);
+    }
+
+    /**
+     * This method gives a message to the worker of its device.
+     * The configuration messages on the broadcast topic, which match the same filters, are ignored.
+     *
+     * @param topic
+     * @param payload
+     */
+    void dispatch(String topic, byte[] payload) throws InterruptedException {
+        if(topic.equals(newDeviceTopic)) {
+            stats.registrations.incrementAndGet();
+            store.register(new String(payload, StandardCharsets.UTF_8));
+            return;
+        }
+        int separator = topic.lastIndexOf('/');
+        if(separator <= 0 || separator == options.broadcastTopic.length() &&
+                topic.startsWith(options.broadcastTopic))
+            return;
+
+        // The hash of the device is computed without extracting it from the topic
+        int hash = 0;
+        for(int i = 0; i < separator; i++)
+            hash = 31 * hash + topic.charAt(i);
+        stats.messages.incrementAndGet();
+        stats.bytes.addAndGet(payload.length);
+        workers[(hash & Integer.MAX_VALUE) % workers.length].submit(topic, separator, payload);
+    }
+
+    /**
+     * This method answers a time-sync request of a device on deviceID/time/response.
+     *
+     * @param client: the client which received the request
+     * @param topic: deviceID/time/request
+     * @param request
+     * @param receivedEpochNanos: the time at which the request arrived
+     */
+    private void answerTimeRequest(int client, String topic, byte[] request, long receivedEpochNanos) {
+        String deviceID = topic.substring(0, topic.length() - ClockSync.REQUEST_TOPIC.length());
+        byte[] response = ClockSync.createResponse(request, receivedEpochNanos, clock.nowEpochNanos());
+        if(response == null) {
+            stats.malformed.incrementAndGet();
+            return;
+        }
+        try {
+            clients[client].publish(deviceID + ClockSync.RESPONSE_TOPIC, response, 0, false);
+            stats.timeRequests.incrementAndGet();
+        } catch(MqttException ex) {
+            System.err.println("The coordinator cannot answer a time-sync request: " + ex);
+        }
+    }
+
+    /**
+     * @return the number of messages waiting in the queues of the workers
+     */
+    public int getQueued() {
+        int queued = 0;
+        for(IngestWorker worker : workers)
+            queued += worker.getQueued();
+        return queued;
+    }
+
+    /**
+     * This class receives the messages of a client and resubscribes after an automatic reconnection,
+     * because the session is clean.
+     */
+    private class IngestCallback implements MqttCallbackExtended {
+
+        private final int client;
+
+        IngestCallback(int client) {
+            this.client = client;
+        }
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            if(!reconnect)
+                return;
+            try {
+                subscribe(client);
+            } catch(MqttException ex) {
+                System.err.println("The coordinator cannot subscribe again: " + ex);
+            }
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            System.err.println("The coordinator lost the connection: " + cause);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) throws InterruptedException {
+            if(topic.endsWith(ClockSync.REQUEST_TOPIC))
+                answerTimeRequest(client, topic, message.getPayload(), clock.nowEpochNanos());
+            else
+                dispatch(topic, message.getPayload());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+        }
+    }
+
+    /**
+     * This class periodically evicts the expired samples and prints the rates of the ingestion.
+     */
+    private class MaintenanceTask implements Runnable {
+
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.ROOT);
+        private long lastMessages, lastSamples, lastBytes;
+
+        @Override
+        public void run() {
+            long now = System.currentTimeMillis();
+            // The clock which answers the time-sync requests follows the corrections of the wall clock
+            clock.calibrate();
+            store.evictBefore(TimeUnit.MILLISECONDS.toNanos(now) -
+                    TimeUnit.SECONDS.toNanos(options.retentionSeconds));
+
+            long messages = stats.messages.get(), samples = stats.samples.get(), bytes = stats.bytes.get();
+            System.out.printf(Locale.ROOT, "%s %.1f msg/s, %.1f samples/s, %.1f kB/s, %d queued, " +
+                            "%d devices, %d stored samples, %d malformed, %d discarded, %d stalls%n",
+                    timeFormat.format(new Date(now)),
+                    (messages - lastMessages) / (double) options.reportSeconds,
+                    (samples - lastSamples) / (double) options.reportSeconds,
+                    (bytes - lastBytes) / 1024.0 / options.reportSeconds,
+                    getQueued(), store.getDevices().size(), store.getSampleCount(),
+                    stats.malformed.get(), stats.discarded.get(), stats.stalls.get());
+            lastMessages = messages;
+            lastSamples = samples;
+            lastBytes = bytes;
+        }
+    }
+}
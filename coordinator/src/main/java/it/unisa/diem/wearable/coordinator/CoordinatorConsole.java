@@ -0,0 +1,126 @@
+package it.unisa.diem.wearable.coordinator;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class reads the commands of the operator of the coordinator, one per line:
+ *
+ *  devices                                          the devices and their streams
+ *  range DEVICE STREAM SECONDS                      the samples of the last seconds
+ *  downsample DEVICE STREAM SECONDS BUCKET_MS       the mean, minimum and maximum of every bucket
+ *  config NAME VALUE                                e.g. "config samplingPeriod 100", sent to all the devices
+ *  config-device DEVICE DOCUMENT                    a configuration document sent to a single device
+ *  stats                                            the counters of the ingestion
+ *  quit
+ */
+public class CoordinatorConsole {
+
+    private final Coordinator coordinator;
+    private final PrintStream out;
+    private final SimpleDateFormat timeFormat;
+    private final SeriesRange range;
+    private final Downsample downsample;
+
+    public CoordinatorConsole(Coordinator coordinator, PrintStream out) {
+        this.coordinator = coordinator;
+        this.out = out;
+        this.timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT);
+        this.range = new SeriesRange();
+        this.downsample = new Downsample();
+    }
+
+    /**
+     * This method executes the commands until "quit" or the end of the input.
+     */
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+", 3);
+            if(words[0].equals("quit"))
+                return;
+            try {
+                execute(words, line.trim());
+            } catch(IllegalArgumentException | MqttException ex) {
+                out.println("Error: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void execute(String[] words, String line) throws MqttException {
+        TimeSeriesStore store = coordinator.getStore();
+        switch(words[0]) {
+            case "":
+                break;
+            case "devices":
+                for(String device : store.getDevices())
+                    out.println(device + " " + store.getStreams(device));
+                break;
+            case "range": {
+                String[] arguments = line.split("\\s+");
+                checkArguments(arguments, 4);
+                long to = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+                long from = to - TimeUnit.SECONDS.toNanos(Long.parseLong(arguments[3]));
+                store.range(arguments[1], arguments[2], from, Long.MAX_VALUE, range);
+                for(int i = 0; i < range.getCount(); i++)
+                    out.printf(Locale.ROOT, "%s %f %f %f%n", formatTime(range.getTimestamp(i)),
+                            range.getX(i), range.getY(i), range.getZ(i));
+                out.println(range.getCount() + " samples");
+                break;
+            }
+            case "downsample": {
+                String[] arguments = line.split("\\s+");
+                checkArguments(arguments, 5);
+                long to = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+                long from = to - TimeUnit.SECONDS.toNanos(Long.parseLong(arguments[3]));
+                store.downsample(arguments[1], arguments[2], from, Long.MAX_VALUE,
+                        TimeUnit.MILLISECONDS.toNanos(Long.parseLong(arguments[4])), downsample);
+                for(int i = 0; i < downsample.getCount(); i++) {
+                    out.printf(Locale.ROOT, "%s n=%d", formatTime(downsample.getStart(i)),
+                            downsample.getSampleCount(i));
+                    for(int axis = 0; axis < Downsample.AXES; axis++)
+                        out.printf(Locale.ROOT, " %f [%f, %f]", downsample.getMean(i, axis),
+                                downsample.getMin(i, axis), downsample.getMax(i, axis));
+                    out.println();
+                }
+                out.println(downsample.getCount() + " buckets");
+                break;
+            }
+            case "config":
+                checkArguments(words, 3);
+                coordinator.configure(words[1], words[2]);
+                break;
+            case "config-device":
+                checkArguments(words, 3);
+                coordinator.configureDevice(words[1], words[2]);
+                break;
+            case "stats": {
+                IngestStats stats = coordinator.getStats();
+                out.printf(Locale.ROOT, "messages %d, bytes %d, samples %d, registrations %d, time requests %d, " +
+                                "malformed %d, discarded %d, stalls %d, queued %d, stored samples %d%n",
+                        stats.messages.get(), stats.bytes.get(), stats.samples.get(), stats.registrations.get(),
+                        stats.timeRequests.get(), stats.malformed.get(), stats.discarded.get(), stats.stalls.get(),
+                        coordinator.getQueued(), store.getSampleCount());
+                break;
+            }
+            default:
+                out.println("Unknown command: " + words[0]);
+        }
+    }
+
+    private static void checkArguments(String[] words, int count) {
+        if(words.length != count)
+            throw new IllegalArgumentException("The command needs " + (count - 1) + " arguments");
+    }
+
+    private String formatTime(long timestampNanos) {
+        return timeFormat.format(new Date(TimeUnit.NANOSECONDS.toMillis(timestampNanos)));
+    }
+}
@@ -0,0 +1,104 @@
+package it.unisa.diem.wearable.coordinator;
+
+/**
+ * This class holds the options of the coordinator, parsed from the command line as "--name value".
+ * The defaults are the values of the "configuration.xml" resource of the application.
+ */
+public class CoordinatorOptions {
+
+    public String brokerURI = "tcp://localhost:1883";
+    public String username, password;
+    public String clientID = "coordinator";
+    public String broadcastTopic = "configuration";
+    /** The streams of the devices to which the coordinator subscribes */
+    public String[] streams = {"accelerometer", "orientation", "location"};
+    /** The codec of the samples, as in the "payloadCodec" resource; the locations are always text */
+    public String codec = "text";
+    /** The number of MQTT clients which subscribe to the streams, in the same shared subscription */
+    public int subscribers = 1;
+    /** The group of the shared subscription ($share/group/...), or null for normal subscriptions */
+    public String shareGroup;
+    public int qos = 1;
+    public int workers = Runtime.getRuntime().availableProcessors();
+    public int queueCapacity = 4096;
+    public int retentionSeconds = 600;
+    public int initialCapacity = 1024;
+    public int maxCapacity = 1 << 16;
+    public int reportSeconds = 10;
+
+    /**
+     * @param args
+     * @return the options
+     * @throws IllegalArgumentException if an option is unknown or its value is not valid
+     */
+    public static CoordinatorOptions parse(String[] args) {
+        CoordinatorOptions options = new CoordinatorOptions();
+        for(int i = 0; i < args.length; i += 2) {
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            String value = args[i + 1];
+            switch(args[i]) {
+                case "--broker":
+                    options.brokerURI = value;
+                    break;
+                case "--username":
+                    options.username = value;
+                    break;
+                case "--password":
+                    options.password = value;
+                    break;
+                case "--client-id":
+                    options.clientID = value;
+                    break;
+                case "--broadcast-topic":
+                    options.broadcastTopic = value;
+                    break;
+                case "--streams":
+                    options.streams = value.split("\\s*,\\s*");
+                    break;
+                case "--codec":
+                    options.codec = value;
+                    break;
+                case "--subscribers":
+                    options.subscribers = Integer.parseInt(value);
+                    break;
+                case "--share-group":
+                    options.shareGroup = value.isEmpty() ? null : value;
+                    break;
+                case "--qos":
+                    options.qos = Integer.parseInt(value);
+                    break;
+                case "--workers":
+                    options.workers = Integer.parseInt(value);
+                    break;
+                case "--queue":
+                    options.queueCapacity = Integer.parseInt(value);
+                    break;
+                case "--retention":
+                    options.retentionSeconds = Integer.parseInt(value);
+                    break;
+                case "--capacity":
+                    options.maxCapacity = Integer.parseInt(value);
+                    break;
+                case "--report":
+                    options.reportSeconds = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if(options.subscribers <= 0 || options.workers <= 0 || options.queueCapacity <= 0 ||
+                options.retentionSeconds <= 0 || options.reportSeconds <= 0)
+            throw new IllegalArgumentException("The numeric options must be positive!");
+        if(options.qos < 0 || options.qos > 2)
+            throw new IllegalArgumentException("The QoS must be 0, 1 or 2!");
+        if(Integer.bitCount(options.maxCapacity) != 1)
+            throw new IllegalArgumentException("The capacity must be a power of two!");
+        if(options.subscribers > 1 && options.shareGroup == null)
+            throw new IllegalArgumentException("More subscribers need a shared subscription (--share-group)!");
+        options.initialCapacity = Math.min(options.initialCapacity, options.maxCapacity);
+        if(options.username != null && options.password == null)
+            options.password = "";
+        return options;
+    }
+}
@@ -0,0 +1,89 @@
+package it.unisa.diem.wearable.coordinator;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the buckets returned by a downsample query: for every bucket, its start,
+ * the number of samples and the mean, the minimum and the maximum of every axis.
+ * The columns grow when needed, so the same instance can be reused for every query.
+ */
+public class Downsample {
+
+    public static final int AXES = 3;
+
+    private int count;
+    private long[] starts = new long[16];
+    private int[] sampleCounts = new int[16];
+    private double[][] sums = new double[AXES][16];
+    private float[][] mins = new float[AXES][16], maxs = new float[AXES][16];
+
+    void clear() {
+        count = 0;
+    }
+
+    void startBucket(long startNanos) {
+        if(count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            sampleCounts = Arrays.copyOf(sampleCounts, capacity);
+            for(int axis = 0; axis < AXES; axis++) {
+                sums[axis] = Arrays.copyOf(sums[axis], capacity);
+                mins[axis] = Arrays.copyOf(mins[axis], capacity);
+                maxs[axis] = Arrays.copyOf(maxs[axis], capacity);
+            }
+        }
+        starts[count] = startNanos;
+        sampleCounts[count] = 0;
+        for(int axis = 0; axis < AXES; axis++) {
+            sums[axis][count] = 0;
+            mins[axis][count] = Float.POSITIVE_INFINITY;
+            maxs[axis][count] = Float.NEGATIVE_INFINITY;
+        }
+        count++;
+    }
+
+    void add(float x, float y, float z) {
+        int bucket = count - 1;
+        sampleCounts[bucket]++;
+        addValue(0, bucket, x);
+        addValue(1, bucket, y);
+        addValue(2, bucket, z);
+    }
+
+    private void addValue(int axis, int bucket, float value) {
+        sums[axis][bucket] += value;
+        mins[axis][bucket] = Math.min(mins[axis][bucket], value);
+        maxs[axis][bucket] = Math.max(maxs[axis][bucket], value);
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public long getStart(int bucket) {
+        return starts[bucket];
+    }
+
+    public int getSampleCount(int bucket) {
+        return sampleCounts[bucket];
+    }
+
+    /**
+     * @param bucket
+     * @param axis: 0 for x, 1 for y and 2 for z
+     */
+    public float getMean(int bucket, int axis) {
+        return (float) (sums[axis][bucket] / sampleCounts[bucket]);
+    }
+
+    public float getMin(int bucket, int axis) {
+        return mins[axis][bucket];
+    }
+
+    public float getMax(int bucket, int axis) {
+        return maxs[axis][bucket];
+    }
+}
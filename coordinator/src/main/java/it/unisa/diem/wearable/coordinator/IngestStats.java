@@ -0,0 +1,20 @@
+package it.unisa.diem.wearable.coordinator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class counts the messages and the samples ingested by the coordinator.
+ */
+public class IngestStats {
+
+    public final AtomicLong messages = new AtomicLong();
+    public final AtomicLong bytes = new AtomicLong();
+    public final AtomicLong samples = new AtomicLong();
+    /** The samples discarded because they were not newer than the last sample of their stream */
+    public final AtomicLong discarded = new AtomicLong();
+    public final AtomicLong malformed = new AtomicLong();
+    /** The messages which found the queue of their worker full, so the client waited */
+    public final AtomicLong stalls = new AtomicLong();
+    public final AtomicLong registrations = new AtomicLong();
+    public final AtomicLong timeRequests = new AtomicLong();
+}
@@ -0,0 +1,100 @@
+package it.unisa.diem.wearable.coordinator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+
+import it.unisa.diem.wearable.codec.DecodedFrame;
+import it.unisa.diem.wearable.codec.FrameDecoder;
+import it.unisa.diem.wearable.codec.FrameDecoders;
+import it.unisa.diem.wearable.codec.TextFrameDecoder;
+
+/**
+ * This class decodes the messages of a subset of the devices and appends their samples to the store.
+ *
+ * The messages of a device are always given to the same worker, so the samples of a stream
+ * are appended in order by a single thread, and the decoders, which are not thread-safe,
+ * belong to the worker. When the queue is full, the MQTT client waits, so the broker slows down
+ * the delivery instead of the coordinator running out of memory.
+ */
+class IngestWorker implements Runnable {
+
+    static final String LOCATION_STREAM = "location";
+
+    private final BlockingQueue<Message> queue;
+    private final TimeSeriesStore store;
+    private final IngestStats stats;
+    private final FrameDecoder sampleDecoder;
+    private final FrameDecoder locationDecoder;
+    private final DecodedFrame frame;
+
+    IngestWorker(int queueCapacity, String codec, TimeSeriesStore store, IngestStats stats) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.store = store;
+        this.stats = stats;
+        this.sampleDecoder = FrameDecoders.forName(codec);
+        this.locationDecoder = new TextFrameDecoder();
+        this.frame = new DecodedFrame();
+    }
+
+    /**
+     * This method queues a message, waiting if the queue is full.
+     *
+     * @param topic: deviceID/stream
+     * @param streamSeparator: the position of the last '/' of the topic
+     * @param payload
+     */
+    void submit(String topic, int streamSeparator, byte[] payload) throws InterruptedException {
+        Message message = new Message(topic, streamSeparator, payload);
+        if(!queue.offer(message)) {
+            stats.stalls.incrementAndGet();
+            queue.put(message);
+        }
+    }
+
+    int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while(!Thread.currentThread().isInterrupted())
+                ingest(queue.take());
+        } catch(InterruptedException ex) {
+            // The coordinator is stopping
+        }
+    }
+
+    private void ingest(Message message) {
+        String deviceID = message.topic.substring(0, message.streamSeparator);
+        String stream = message.topic.substring(message.streamSeparator + 1);
+        FrameDecoder decoder = LOCATION_STREAM.equals(stream) ? locationDecoder : sampleDecoder;
+        try {
+            decoder.decode(message.payload, 0, message.payload.length, frame);
+        } catch(DataFormatException ex) {
+            stats.malformed.incrementAndGet();
+            return;
+        }
+        int appended = store.append(deviceID, stream, frame);
+        stats.samples.addAndGet(appended);
+        if(appended < frame.getCount())
+            stats.discarded.addAndGet(frame.getCount() - appended);
+    }
+
+    /**
+     * This class holds a message waiting to be ingested.
+     */
+    private static final class Message {
+
+        final String topic;
+        final int streamSeparator;
+        final byte[] payload;
+
+        Message(String topic, int streamSeparator, byte[] payload) {
+            this.topic = topic;
+            this.streamSeparator = streamSeparator;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package it.unisa.diem.wearable.coordinator;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the samples returned by a range query as columns of primitives.
+ * The columns grow when needed, so the same instance can be reused for every query.
+ */
+public class SeriesRange {
+
+    private int count;
+    private long[] timestamps = new long[16];
+    private float[] xs = new float[16], ys = new float[16], zs = new float[16];
+
+    void clear() {
+        count = 0;
+    }
+
+    void add(long timestampNanos, float x, float y, float z) {
+        if(count == timestamps.length) {
+            int capacity = count * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+        }
+        timestamps[count] = timestampNanos;
+        xs[count] = x;
+        ys[count] = y;
+        zs[count] = z;
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    public float getX(int i) {
+        return xs[i];
+    }
+
+    public float getY(int i) {
+        return ys[i];
+    }
+
+    public float getZ(int i) {
+        return zs[i];
+    }
+}
@@ -0,0 +1,246 @@
+package it.unisa.diem.wearable.coordinator;
+
+import it.unisa.diem.wearable.codec.DecodedFrame;
+
+/**
+ * This class stores the samples of a stream of a device as columns of primitives in a ring,
+ * ordered by timestamp, so neither the samples nor their values are boxed.
+ *
+ * The samples older than the retention, with respect to the last sample, are evicted when new samples
+ * are appended; when the ring is full, it doubles up to its maximum capacity and then the oldest
+ * samples are overwritten. The samples not newer than the last one (e.g. repeated after a reconnection)
+ * are discarded, so the timestamps stay sorted and the ranges are found through a binary search.
+ *
+ * A ring is written by a single ingestion worker and read by the queries, so every method is synchronized.
+ */
+public class SeriesRing {
+
+    private final int maxCapacity;
+    private final long retentionNanos;
+    private long[] timestamps;
+    private float[] xs, ys, zs;
+    private int head;
+    private int size;
+    private long discardedCount;
+    private long overwrittenCount;
+    private boolean closed;
+
+    /**
+     * @param initialCapacity: the initial number of samples, a power of two
+     * @param maxCapacity: the maximum number of samples, a power of two
+     * @param retentionNanos: how long the samples are kept, with respect to the last sample, in nanoseconds
+     */
+    public SeriesRing(int initialCapacity, int maxCapacity, long retentionNanos) {
+        if(Integer.bitCount(initialCapacity) != 1 || Integer.bitCount(maxCapacity) != 1 ||
+                initialCapacity > maxCapacity)
+            throw new IllegalArgumentException("The capacities must be powers of two!");
+        this.maxCapacity = maxCapacity;
+        this.retentionNanos = retentionNanos;
+        this.timestamps = new long[initialCapacity];
+        this.xs = new float[initialCapacity];
+        this.ys = new float[initialCapacity];
+        this.zs = new float[initialCapacity];
+    }
+
+    /**
+     * This method appends the samples of a decoded frame.
+     *
+     * @param frame
+     * @return the number of samples appended, i.e. the ones newer than the last sample,
+     * or -1 if the ring is closed
+     */
+    public synchronized int append(DecodedFrame frame) {
+        if(closed)
+            return -1;
+        int appended = 0;
+        for(int i = 0; i < frame.getCount(); i++)
+            if(add(frame.getTimestamp(i), frame.getX(i), frame.getY(i), frame.getZ(i)))
+                appended++;
+        evictExpired();
+        return appended;
+    }
+
+    /**
+     * This method appends a sample.
+     *
+     * @return true if the sample is appended, false if it is not newer than the last sample
+     */
+    public synchronized boolean append(long timestampNanos, float x, float y, float z) {
+        boolean added = add(timestampNanos, x, y, z);
+        evictExpired();
+        return added;
+    }
+
+    private void evictExpired() {
+        if(size > 0)
+            evictBefore(timestamps[index(size - 1)] - retentionNanos);
+    }
+
+    private boolean add(long timestampNanos, float x, float y, float z) {
+        if(size > 0 && timestampNanos <= timestamps[index(size - 1)]) {
+            discardedCount++;
+            return false;
+        }
+        if(size == timestamps.length) {
+            if(timestamps.length < maxCapacity) {
+                grow();
+            } else {
+                head = index(1);
+                size--;
+                overwrittenCount++;
+            }
+        }
+        int tail = index(size);
+        timestamps[tail] = timestampNanos;
+        xs[tail] = x;
+        ys[tail] = y;
+        zs[tail] = z;
+        size++;
+        return true;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = unroll(timestamps, new long[capacity]);
+        xs = unroll(xs, new float[capacity]);
+        ys = unroll(ys, new float[capacity]);
+        zs = unroll(zs, new float[capacity]);
+        head = 0;
+    }
+
+    private long[] unroll(long[] column, long[] larger) {
+        int first = Math.min(size, column.length - head);
+        System.arraycopy(column, head, larger, 0, first);
+        System.arraycopy(column, 0, larger, first, size - first);
+        return larger;
+    }
+
+    private float[] unroll(float[] column, float[] larger) {
+        int first = Math.min(size, column.length - head);
+        System.arraycopy(column, head, larger, 0, first);
+        System.arraycopy(column, 0, larger, first, size - first);
+        return larger;
+    }
+
+    private int index(int i) {
+        return (head + i) & (timestamps.length - 1);
+    }
+
+    /**
+     * This method closes the ring if it is empty, so it can be removed from the store
+     * without losing the samples appended concurrently: they are rejected and appended to a new ring.
+     *
+     * @return true if the ring is closed
+     */
+    synchronized boolean closeIfEmpty() {
+        if(size == 0)
+            closed = true;
+        return closed;
+    }
+
+    /**
+     * This method removes the samples older than a timestamp.
+     *
+     * @param timestampNanos
+     * @return the number of samples removed
+     */
+    public synchronized int evictBefore(long timestampNanos) {
+        int removed = lowerBound(timestampNanos);
+        head = index(removed);
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     * @return the position of the first sample not older than the timestamp, or size if there is none
+     */
+    private int lowerBound(long timestampNanos) {
+        int low = 0, high = size;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(timestamps[index(middle)] < timestampNanos)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int capacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * @return the timestamp of the last sample, or Long.MIN_VALUE if the ring is empty
+     */
+    public synchronized long getLastTimestamp() {
+        return size > 0 ? timestamps[index(size - 1)] : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the number of samples discarded because they were not newer than the last sample
+     */
+    public synchronized long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * @return the number of samples overwritten before their retention because the ring was full
+     */
+    public synchronized long getOverwrittenCount() {
+        return overwrittenCount;
+    }
+
+    /**
+     * This method copies the samples with fromNanos <= timestamp < toNanos.
+     *
+     * @param fromNanos
+     * @param toNanos
+     * @param result: the destination, which is cleared first
+     * @return the number of samples copied
+     */
+    public synchronized int range(long fromNanos, long toNanos, SeriesRange result) {
+        result.clear();
+        for(int i = lowerBound(fromNanos); i < size; i++) {
+            int position = index(i);
+            if(timestamps[position] >= toNanos)
+                break;
+            result.add(timestamps[position], xs[position], ys[position], zs[position]);
+        }
+        return result.getCount();
+    }
+
+    /**
+     * This method aggregates the samples with fromNanos <= timestamp < toNanos in buckets of the same length,
+     * starting from fromNanos. Only the buckets with at least a sample are reported.
+     *
+     * @param fromNanos
+     * @param toNanos
+     * @param bucketNanos: the length of a bucket, in nanoseconds
+     * @param result: the destination, which is cleared first
+     * @return the number of buckets
+     */
+    public synchronized int downsample(long fromNanos, long toNanos, long bucketNanos, Downsample result) {
+        if(bucketNanos <= 0)
+            throw new IllegalArgumentException("The buckets must be longer than 0!");
+        result.clear();
+        long bucketEnd = Long.MIN_VALUE;
+        for(int i = lowerBound(fromNanos); i < size; i++) {
+            int position = index(i);
+            long timestamp = timestamps[position];
+            if(timestamp >= toNanos)
+                break;
+            if(timestamp >= bucketEnd) {
+                long bucketStart = fromNanos + (timestamp - fromNanos) / bucketNanos * bucketNanos;
+                bucketEnd = bucketStart + bucketNanos;
+                result.startBucket(bucketStart);
+            }
+            result.add(xs[position], ys[position], zs[position]);
+        }
+        return result.getCount();
+    }
+}
@@ -0,0 +1,208 @@
+package it.unisa.diem.wearable.coordinator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import it.unisa.diem.wearable.codec.DecodedFrame;
+
+/**
+ * This class keeps in memory the recent samples of every stream of every device,
+ * each one in its own SeriesRing, and answers the range and the downsample queries.
+ *
+ * The rings evict the expired samples when they are written; the streams of the devices which stop
+ * publishing are evicted by evictBefore(), called periodically, and the devices without samples
+ * which are not registered are forgotten.
+ */
+public class TimeSeriesStore {
+
+    private final ConcurrentHashMap<String, Device> devices;
+    private final int initialCapacity;
+    private final int maxCapacity;
+    private final long retentionNanos;
+
+    /**
+     * @param initialCapacity: the initial number of samples of every stream, a power of two
+     * @param maxCapacity: the maximum number of samples of every stream, a power of two
+     * @param retentionNanos: how long the samples are kept, in nanoseconds
+     */
+    public TimeSeriesStore(int initialCapacity, int maxCapacity, long retentionNanos) {
+        this.devices = new ConcurrentHashMap<>();
+        this.initialCapacity = initialCapacity;
+        this.maxCapacity = maxCapacity;
+        this.retentionNanos = retentionNanos;
+    }
+
+    /**
+     * This method records a device announced on the newDevice topic, even before its first sample.
+     */
+    public void register(String deviceID) {
+        while(true) {
+            Device device = device(deviceID);
+            synchronized (device) {
+                if(!device.evicted) {
+                    device.registered = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    private Device device(String deviceID) {
+        Device device = devices.get(deviceID);
+        if(device == null) {
+            Device created = new Device();
+            device = devices.putIfAbsent(deviceID, created);
+            if(device == null)
+                device = created;
+        }
+        return device;
+    }
+
+    /**
+     * This method appends the samples of a decoded frame to a stream, which is created if it does not exist.
+     *
+     * @param deviceID
+     * @param stream: the name of the stream, e.g. "accelerometer"
+     * @param frame
+     * @return the number of samples appended
+     */
+    public int append(String deviceID, String stream, DecodedFrame frame) {
+        while(true) {
+            // A closed ring or device has just been evicted by the sweep, so it is looked up again
+            SeriesRing ring = series(deviceID, stream);
+            int appended = ring != null ? ring.append(frame) : -1;
+            if(appended >= 0)
+                return appended;
+        }
+    }
+
+    /**
+     * @return the ring of the stream, created if it does not exist, or null if the device is evicted
+     */
+    private SeriesRing series(String deviceID, String stream) {
+        Device device = device(deviceID);
+        SeriesRing ring = device.streams.get(stream);
+        if(ring != null)
+            return ring;
+        synchronized (device) {
+            if(device.evicted)
+                return null;
+            ring = device.streams.get(stream);
+            if(ring == null) {
+                ring = new SeriesRing(initialCapacity, maxCapacity, retentionNanos);
+                device.streams.put(stream, ring);
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * @return the ring of the stream, or null if the stream has no samples
+     */
+    public SeriesRing get(String deviceID, String stream) {
+        Device device = devices.get(deviceID);
+        return device != null ? device.streams.get(stream) : null;
+    }
+
+    /**
+     * @return the identifiers of the devices, sorted
+     */
+    public List<String> getDevices() {
+        List<String> ids = new ArrayList<>(devices.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @return the names of the streams of a device, sorted
+     */
+    public List<String> getStreams(String deviceID) {
+        Device device = devices.get(deviceID);
+        if(device == null)
+            return Collections.emptyList();
+        List<String> streams = new ArrayList<>(device.streams.keySet());
+        Collections.sort(streams);
+        return streams;
+    }
+
+    /**
+     * This method copies the samples of a stream with fromNanos <= timestamp < toNanos.
+     *
+     * @return the number of samples, 0 if the stream does not exist
+     */
+    public int range(String deviceID, String stream, long fromNanos, long toNanos, SeriesRange result) {
+        SeriesRing ring = get(deviceID, stream);
+        if(ring == null) {
+            result.clear();
+            return 0;
+        }
+        return ring.range(fromNanos, toNanos, result);
+    }
+
+    /**
+     * This method aggregates the samples of a stream with fromNanos <= timestamp < toNanos in buckets.
+     *
+     * @return the number of buckets, 0 if the stream does not exist
+     */
+    public int downsample(String deviceID, String stream, long fromNanos, long toNanos, long bucketNanos,
+                          Downsample result) {
+        SeriesRing ring = get(deviceID, stream);
+        if(ring == null) {
+            result.clear();
+            return 0;
+        }
+        return ring.downsample(fromNanos, toNanos, bucketNanos, result);
+    }
+
+    /**
+     * This method evicts the samples older than a timestamp from all the streams,
+     * removes the streams left empty and forgets the devices without streams which are not registered.
+     *
+     * @param timestampNanos: usually the current epoch time minus the retention
+     * @return the number of samples evicted
+     */
+    public long evictBefore(long timestampNanos) {
+        long evicted = 0;
+        for(Iterator<Device> devicesIterator = devices.values().iterator(); devicesIterator.hasNext(); ) {
+            Device device = devicesIterator.next();
+            for(Iterator<SeriesRing> rings = device.streams.values().iterator(); rings.hasNext(); ) {
+                SeriesRing ring = rings.next();
+                evicted += ring.evictBefore(timestampNanos);
+                if(ring.closeIfEmpty())
+                    rings.remove();
+            }
+            // The streams are created while holding the lock of the device, so an evicted device stays empty
+            synchronized (device) {
+                if(device.streams.isEmpty() && !device.registered) {
+                    device.evicted = true;
+                    devicesIterator.remove();
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the number of samples in the store
+     */
+    public long getSampleCount() {
+        long samples = 0;
+        for(Device device : devices.values())
+            for(SeriesRing ring : device.streams.values())
+                samples += ring.size();
+        return samples;
+    }
+
+    /**
+     * This class holds the streams of a device.
+     */
+    private static class Device {
+
+        final ConcurrentHashMap<String, SeriesRing> streams = new ConcurrentHashMap<>();
+        boolean registered;
+        boolean evicted;
+    }
+}
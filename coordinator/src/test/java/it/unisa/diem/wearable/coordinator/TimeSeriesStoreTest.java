@@ -0,0 +1,131 @@
+package it.unisa.diem.wearable.coordinator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.DataFormatException;
+
+import it.unisa.diem.wearable.codec.BinaryFrameDecoder;
+import it.unisa.diem.wearable.codec.BinaryPayloadCodec;
+import it.unisa.diem.wearable.codec.DecodedFrame;
+import it.unisa.diem.wearable.codec.FrameCodec;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the columnar rings and the time-series store of the coordinator.
+ */
+public class TimeSeriesStoreTest {
+
+    private static final long MS = 1000000L;
+
+    /**
+     * @return a frame of samples taken every 10 ms from startMillis, with x equal to the index of the sample
+     */
+    private static DecodedFrame frame(long startMillis, int count) throws DataFormatException {
+        long[] timestamps = new long[count];
+        float[] xs = new float[count], ys = new float[count], zs = new float[count];
+        for(int i = 0; i < count; i++) {
+            timestamps[i] = (startMillis + 10 * i) * MS;
+            xs[i] = i;
+            ys[i] = -i;
+            zs[i] = 9.81f;
+        }
+        FrameCodec codec = FrameCodecs.forName(BinaryPayloadCodec.NAME);
+        byte[] payload = new byte[codec.maxFrameSize(count)];
+        int length = codec.encode(1, timestamps, xs, ys, zs, count, payload, 0);
+        DecodedFrame frame = new DecodedFrame();
+        new BinaryFrameDecoder().decode(payload, 0, length, frame);
+        return frame;
+    }
+
+    @Test
+    public void ring_growsAndKeepsTheOrder() throws DataFormatException {
+        SeriesRing ring = new SeriesRing(4, 1024, Long.MAX_VALUE / 2);
+        assertEquals(100, ring.append(frame(0, 100)));
+        assertEquals(100, ring.size());
+        assertEquals(128, ring.capacity());
+
+        SeriesRange range = new SeriesRange();
+        assertEquals(10, ring.range(200 * MS, 300 * MS, range));
+        for(int i = 0; i < range.getCount(); i++) {
+            assertEquals((200 + 10 * i) * MS, range.getTimestamp(i));
+            assertEquals(20 + i, range.getX(i), 0);
+        }
+    }
+
+    @Test
+    public void ring_overwritesTheOldestSamplesWhenFull() throws DataFormatException {
+        SeriesRing ring = new SeriesRing(4, 16, Long.MAX_VALUE / 2);
+        ring.append(frame(0, 40));
+        assertEquals(16, ring.size());
+        assertEquals(24, ring.getOverwrittenCount());
+
+        SeriesRange range = new SeriesRange();
+        ring.range(0, Long.MAX_VALUE, range);
+        assertEquals(240 * MS, range.getTimestamp(0));
+        assertEquals(390 * MS, range.getTimestamp(15));
+    }
+
+    @Test
+    public void ring_evictsTheSamplesOlderThanTheRetention() throws DataFormatException {
+        SeriesRing ring = new SeriesRing(16, 1024, 100 * MS);
+        ring.append(frame(0, 50));
+        // The last sample is at 490 ms, so the samples before 390 ms are expired
+        assertEquals(11, ring.size());
+        assertTrue(ring.append(1000 * MS, 0, 0, 0));
+        assertEquals(1, ring.size());
+    }
+
+    @Test
+    public void ring_discardsTheSamplesOlderThanTheLast() throws DataFormatException {
+        SeriesRing ring = new SeriesRing(16, 1024, Long.MAX_VALUE / 2);
+        ring.append(frame(1000, 10));
+        assertEquals(5, ring.append(frame(1050, 10)));
+        assertEquals(15, ring.size());
+        assertEquals(5, ring.getDiscardedCount());
+        assertFalse(ring.append(0, 0, 0, 0));
+    }
+
+    @Test
+    public void ring_downsamplesInBuckets() throws DataFormatException {
+        SeriesRing ring = new SeriesRing(16, 1024, Long.MAX_VALUE / 2);
+        ring.append(frame(0, 100));
+
+        Downsample downsample = new Downsample();
+        assertEquals(4, ring.downsample(100 * MS, 500 * MS, 100 * MS, downsample));
+        for(int bucket = 0; bucket < 4; bucket++) {
+            assertEquals((100 + 100 * bucket) * MS, downsample.getStart(bucket));
+            assertEquals(10, downsample.getSampleCount(bucket));
+            assertEquals(10 * bucket + 14.5f, downsample.getMean(bucket, 0), 1e-5);
+            assertEquals(10 * bucket + 10, downsample.getMin(bucket, 0), 0);
+            assertEquals(-(10 * bucket + 10), downsample.getMax(bucket, 1), 0);
+            assertEquals(9.81f, downsample.getMean(bucket, 2), 1e-5);
+        }
+    }
+
+    @Test
+    public void store_evictsIdleStreamsAndUnregisteredDevices() throws DataFormatException {
+        TimeSeriesStore store = new TimeSeriesStore(16, 1024, Long.MAX_VALUE / 2);
+        store.register("registered");
+        store.append("registered", "accelerometer", frame(0, 10));
+        store.append("anonymous", "accelerometer", frame(0, 10));
+        store.append("anonymous", "orientation", frame(1000, 10));
+        assertEquals(Arrays.asList("anonymous", "registered"), store.getDevices());
+        assertEquals(Arrays.asList("accelerometer", "orientation"), store.getStreams("anonymous"));
+        assertEquals(30, store.getSampleCount());
+
+        assertEquals(20, store.evictBefore(500 * MS));
+        assertEquals(Collections.singletonList("orientation"), store.getStreams("anonymous"));
+        assertEquals(Collections.emptyList(), store.getStreams("registered"));
+
+        store.evictBefore(2000 * MS);
+        assertEquals(Collections.singletonList("registered"), store.getDevices());
+
+        // The evicted streams are created again by the next frame
+        assertEquals(10, store.append("anonymous", "orientation", frame(3000, 10)));
+        assertEquals(10, store.range("anonymous", "orientation", 0, Long.MAX_VALUE, new SeriesRange()));
+    }
+}
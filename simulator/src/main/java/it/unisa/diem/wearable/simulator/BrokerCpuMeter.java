@@ -0,0 +1,76 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class measures the CPU time of the embedded broker, which runs in the same JVM as the devices:
+ * the CPU time of the threads of the simulator (the scheduler of the devices, the threads of the Paho clients
+ * and the main thread) is excluded, so the remaining time is spent by the threads of the broker.
+ * The threads which end within the interval are not counted.
+ */
+public class BrokerCpuMeter {
+
+    private static final String[] CLIENT_THREAD_PREFIXES = {"fleet-", "MQTT ", "main"};
+
+    private final ThreadMXBean threads;
+    private final Map<Long, Long> startCpuNanos;
+    private long startWallNanos;
+
+    public BrokerCpuMeter() {
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.startCpuNanos = new HashMap<>();
+        if(threads.isThreadCpuTimeSupported())
+            threads.setThreadCpuTimeEnabled(true);
+    }
+
+    public boolean isSupported() {
+        return threads.isThreadCpuTimeSupported();
+    }
+
+    public void start() {
+        startCpuNanos.clear();
+        brokerCpuNanos(startCpuNanos);
+        startWallNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the CPU used by the broker since start(), in percent of one core
+     */
+    public double getCpuPercent() {
+        long wallNanos = System.nanoTime() - startWallNanos;
+        if(wallNanos <= 0)
+            return 0;
+        Map<Long, Long> cpuNanos = new HashMap<>();
+        brokerCpuNanos(cpuNanos);
+        long total = 0;
+        for(Map.Entry<Long, Long> thread : cpuNanos.entrySet()) {
+            Long start = startCpuNanos.get(thread.getKey());
+            total += thread.getValue() - (start != null ? start : 0);
+        }
+        return 100.0 * total / wallNanos;
+    }
+
+    /**
+     * This method collects the CPU time of every thread of the broker, by ID.
+     */
+    private void brokerCpuNanos(Map<Long, Long> cpuNanos) {
+        for(ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if(info == null || isClientThread(info.getThreadName()))
+                continue;
+            long cpu = threads.getThreadCpuTime(info.getThreadId());
+            if(cpu > 0)
+                cpuNanos.put(info.getThreadId(), cpu);
+        }
+    }
+
+    private static boolean isClientThread(String name) {
+        for(String prefix : CLIENT_THREAD_PREFIXES)
+            if(name.startsWith(prefix))
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package it.unisa.diem.wearable.simulator;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class subscribes to the streams of all the devices, like the coordinator, and counts the messages
+ * which pass through the broker, so the throughput is measured end-to-end. It can also send a configuration
+ * message to the fleet on the broadcastTopic.
+ */
+public class CoordinatorProbe {
+
+    private static final String[] STREAMS = {"+/accelerometer", "+/orientation", "+/location"};
+
+    private final MqttAsyncClient client;
+    private final String[] filters;
+    private final LoadStats stats;
+
+    public CoordinatorProbe(String brokerURI, LoadStats stats) throws MqttException {
+        this(brokerURI, STREAMS, stats);
+    }
+
+    /**
+     * @param brokerURI
+     * @param filters: the topic filters of the messages to count, e.g. "deviceID/#"
+     * @param stats
+     */
+    public CoordinatorProbe(String brokerURI, String[] filters, LoadStats stats) throws MqttException {
+        this.client = new MqttAsyncClient(brokerURI, "coordinator-probe", new MemoryPersistence());
+        this.filters = filters.clone();
+        this.stats = stats;
+    }
+
+    /**
+     * @param username: the username, or null to connect anonymously
+     * @param password
+     * @param timeoutMillis
+     */
+    public void connect(String username, String password, long timeoutMillis) throws MqttException {
+        MqttConnectOptions connectOptions = new MqttConnectOptions();
+        connectOptions.setCleanSession(true);
+        if(username != null) {
+            connectOptions.setUserName(username);
+            connectOptions.setPassword(password.toCharArray());
+        }
+        client.setCallback(new CountingCallback());
+        client.connect(connectOptions).waitForCompletion(timeoutMillis);
+        for(String filter : filters)
+            client.subscribe(filter, 1).waitForCompletion(timeoutMillis);
+    }
+
+    /**
+     * This method sends a configuration message to all the devices, e.g. "samplingPeriod" and "100".
+     */
+    public void configure(String broadcastTopic, String name, String value) throws MqttException {
+        client.publish(broadcastTopic + "/" + name, value.getBytes(StandardCharsets.UTF_8), 1, false);
+    }
+
+    public void disconnect(long timeoutMillis) {
+        try {
+            client.disconnect(timeoutMillis).waitForCompletion(timeoutMillis);
+            client.close();
+        } catch (MqttException e) {
+            // The probe is closed anyway
+        }
+    }
+
+    /**
+     * This class counts the messages received from the devices.
+     */
+    private class CountingCallback implements MqttCallback {
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            System.err.println("The coordinator probe lost the connection: " + cause);
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            stats.received.incrementAndGet();
+            stats.receivedBytes.addAndGet(message.getPayload().length);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+
+/**
+ * This class runs a Moquette broker in the JVM of the simulator, without persistence and without
+ * authentication, so a fleet can be simulated without any external service.
+ */
+public class EmbeddedBroker {
+
+    private final Server server;
+    private final int port;
+
+    public EmbeddedBroker(int port) {
+        this.server = new Server();
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("host", "127.0.0.1");
+        properties.setProperty("port", String.valueOf(port));
+        properties.setProperty("allow_anonymous", "true");
+        properties.setProperty("persistence_enabled", "false");
+        properties.setProperty("netty.mqtt.message_size", String.valueOf(1 << 20));
+        server.startServer(new MemoryConfig(properties));
+    }
+
+    public String getURI() {
+        return "tcp://127.0.0.1:" + port;
+    }
+
+    public void stop() {
+        server.stopServer();
+    }
+}
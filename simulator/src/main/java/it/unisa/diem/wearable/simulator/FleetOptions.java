@@ -0,0 +1,116 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.io.File;
+
+/**
+ * This class holds the options of a simulation, parsed from the command line as "--name value".
+ * The defaults are the values of the "configuration.xml" resource of the application.
+ */
+public class FleetOptions {
+
+    public int devices = 100;
+    public int samplingPeriodMillis = 200;
+    public double sensorRateHz = 50;
+    public int durationSeconds = 60;
+    public int warmupSeconds = 5;
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public String codec = "text";
+    public int batchMaxSamples = 50;
+    public long batchMaxDelayMillis = 1000;
+    public String sampleDelivery = "0,10000,16";
+    public String locationDelivery = "1,60000,0";
+    public long locationIntervalMillis = 30000;
+    public int maxInflight = 1000;
+    /** The URI of an external broker, or null to start the embedded one */
+    public String brokerURI;
+    public int brokerPort = 1883;
+    public String username, password;
+    public String broadcastTopic = "configuration";
+    /** A recorded trace, or null to generate a synthetic trace for every device */
+    public File trace;
+    public long seed = 42;
+
+    /**
+     * @param args
+     * @return the options
+     * @throws IllegalArgumentException if an option is unknown or its value is not valid
+     */
+    public static FleetOptions parse(String[] args) {
+        FleetOptions options = new FleetOptions();
+        for(int i = 0; i < args.length; i += 2) {
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            String value = args[i + 1];
+            switch(args[i]) {
+                case "--devices":
+                    options.devices = Integer.parseInt(value);
+                    break;
+                case "--period":
+                    options.samplingPeriodMillis = Integer.parseInt(value);
+                    break;
+                case "--rate":
+                    options.sensorRateHz = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    options.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    options.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    options.threads = Integer.parseInt(value);
+                    break;
+                case "--codec":
+                    options.codec = value;
+                    break;
+                case "--batch":
+                    options.batchMaxSamples = Integer.parseInt(value);
+                    break;
+                case "--batch-delay":
+                    options.batchMaxDelayMillis = Long.parseLong(value);
+                    break;
+                case "--delivery":
+                    options.sampleDelivery = value;
+                    break;
+                case "--location-delivery":
+                    options.locationDelivery = value;
+                    break;
+                case "--location-interval":
+                    options.locationIntervalMillis = Long.parseLong(value);
+                    break;
+                case "--max-inflight":
+                    options.maxInflight = Integer.parseInt(value);
+                    break;
+                case "--broker":
+                    options.brokerURI = value;
+                    break;
+                case "--port":
+                    options.brokerPort = Integer.parseInt(value);
+                    break;
+                case "--username":
+                    options.username = value;
+                    break;
+                case "--password":
+                    options.password = value;
+                    break;
+                case "--broadcast-topic":
+                    options.broadcastTopic = value;
+                    break;
+                case "--trace":
+                    options.trace = new File(value);
+                    break;
+                case "--seed":
+                    options.seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if(options.devices <= 0 || options.samplingPeriodMillis <= 0 || options.sensorRateHz <= 0 ||
+                options.durationSeconds <= 0 || options.warmupSeconds < 0 || options.threads <= 0)
+            throw new IllegalArgumentException("The numeric options must be positive!");
+        if(options.username != null && options.password == null)
+            options.password = "";
+        return options;
+    }
+}
@@ -0,0 +1,175 @@
+package it.unisa.diem.wearable.simulator;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unisa.diem.wearable.metrics.LatencyHistogram;
+
+/**
+ * This class runs a fleet of simulated wearables against a broker and prints a load report:
+ * the end-to-end throughput, measured by a subscriber like the coordinator, the percentiles of the latency
+ * of the publications and the CPU used by the embedded broker.
+ *
+ * All the devices share a scheduler with a fixed number of threads, so hundreds of devices
+ * do not need hundreds of threads; the events of the devices are spread over the sensor period.
+ */
+public class FleetSimulator {
+
+    private static final long TIMEOUT_MS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        FleetOptions options;
+        try {
+            options = FleetOptions.parse(args);
+        } catch(IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: FleetSimulator [--devices N] [--period ms] [--rate Hz] [--duration s] " +
+                    "[--warmup s] [--threads N] [--codec text|binary|delta|delta-deflate] [--batch N] " +
+                    "[--batch-delay ms] [--delivery qos,latest,inflight] [--location-delivery qos,latest,inflight] " +
+                    "[--location-interval ms] [--max-inflight N] [--broker tcp://host:port | --port N] " +
+                    "[--username u --password p] [--broadcast-topic t] [--trace file.csv] [--seed N]");
+            System.exit(2);
+            return;
+        }
+        new FleetSimulator(options).run();
+    }
+
+    private final FleetOptions options;
+    private final LoadStats stats;
+
+    public FleetSimulator(FleetOptions options) {
+        this.options = options;
+        this.stats = new LoadStats();
+    }
+
+    /**
+     * This method runs the simulation and prints the report.
+     */
+    public void run() throws IOException, MqttException, InterruptedException {
+        EmbeddedBroker broker = null;
+        String brokerURI = options.brokerURI;
+        if(brokerURI == null) {
+            broker = new EmbeddedBroker(options.brokerPort);
+            broker.start();
+            brokerURI = broker.getURI();
+        }
+        options.brokerURI = brokerURI;
+
+        RecordedTrace recordedTrace = options.trace != null ? RecordedTrace.load(options.trace) : null;
+        Random random = new Random(options.seed);
+        CoordinatorProbe probe = new CoordinatorProbe(brokerURI, stats);
+        probe.connect(options.username, options.password, TIMEOUT_MS);
+
+        List<SimulatedDevice> devices = new ArrayList<>(options.devices);
+        for(int i = 0; i < options.devices; i++) {
+            TraceSource trace = recordedTrace != null ? recordedTrace.newCursor(random.nextInt()) :
+                    new SyntheticTrace(random.nextLong(), options.sensorRateHz);
+            SimulatedDevice device = new SimulatedDevice(options, trace, stats, random.nextLong());
+            device.connect(options, TIMEOUT_MS);
+            devices.add(device);
+        }
+        System.out.printf(Locale.ROOT, "%d devices connected to %s%n", devices.size(), brokerURI);
+
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(options.threads,
+                new FleetThreadFactory());
+        long periodMicros = Math.max(1, (long) (1000000 / options.sensorRateHz));
+        for(SimulatedDevice device : devices)
+            scheduler.scheduleAtFixedRate(new TickTask(device), (long) (random.nextDouble() * periodMicros),
+                    periodMicros, TimeUnit.MICROSECONDS);
+
+        Thread.sleep(options.warmupSeconds * 1000L);
+        stats.reset();
+        BrokerCpuMeter cpuMeter = broker != null ? new BrokerCpuMeter() : null;
+        if(cpuMeter != null)
+            cpuMeter.start();
+        long startNanos = System.nanoTime();
+        Thread.sleep(options.durationSeconds * 1000L);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double brokerCpu = cpuMeter != null && cpuMeter.isSupported() ? cpuMeter.getCpuPercent() : Double.NaN;
+        LatencyHistogram.Snapshot latency = stats.publishLatency.snapshotAndReset();
+        printReport(seconds, latency, brokerCpu, scheduler.getQueue().size());
+
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        for(SimulatedDevice device : devices)
+            device.disconnect(TIMEOUT_MS);
+        probe.disconnect(TIMEOUT_MS);
+        if(broker != null)
+            broker.stop();
+    }
+
+    private void printReport(double seconds, LatencyHistogram.Snapshot latency, double brokerCpu, int queuedTicks) {
+        System.out.println("=== Fleet load report ===");
+        System.out.printf(Locale.ROOT, "devices: %d, sampling period: %d ms, sensor rate: %.1f Hz, codec: %s%n",
+                options.devices, options.samplingPeriodMillis, options.sensorRateHz, options.codec);
+        System.out.printf(Locale.ROOT, "batch: %d samples / %d ms, delivery: %s, location delivery: %s%n",
+                options.batchMaxSamples, options.batchMaxDelayMillis, options.sampleDelivery,
+                options.locationDelivery);
+        System.out.printf(Locale.ROOT, "measured: %.1f s after %d s of warm-up, %d scheduler threads%n",
+                seconds, options.warmupSeconds, options.threads);
+        System.out.printf(Locale.ROOT, "sensor events:   %12.1f samples/s%n", stats.samples.get() / seconds);
+        System.out.printf(Locale.ROOT, "published:       %12.1f msg/s %12.1f kB/s%n",
+                stats.published.get() / seconds, stats.publishedBytes.get() / seconds / 1024);
+        System.out.printf(Locale.ROOT, "received:        %12.1f msg/s %12.1f kB/s (end-to-end)%n",
+                stats.received.get() / seconds, stats.receivedBytes.get() / seconds / 1024);
+        System.out.printf(Locale.ROOT, "failed:          %12d%n", stats.failed.get());
+        System.out.printf(Locale.ROOT, "publish latency: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, " +
+                        "p99.9 %.2f ms, max %.2f ms (%d publications)%n",
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(90) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                latency.getMax() / 1000.0, latency.getCount());
+        if(Double.isNaN(brokerCpu))
+            System.out.println("broker CPU:      not measured (external broker)");
+        else
+            System.out.printf(Locale.ROOT, "broker CPU:      %12.1f %% of one core%n", brokerCpu);
+        // Ticks which are late pile up in the queue: the scheduler cannot sustain the fleet
+        if(queuedTicks > options.devices)
+            System.out.printf(Locale.ROOT, "warning: %d ticks queued, the simulator is saturated%n", queuedTicks);
+    }
+
+    /**
+     * This class produces the next sensor event of a device. An exception would cancel the periodic task,
+     * so it is counted as a failure instead.
+     */
+    private class TickTask implements Runnable {
+
+        private final SimulatedDevice device;
+
+        TickTask(SimulatedDevice device) {
+            this.device = device;
+        }
+
+        @Override
+        public void run() {
+            try {
+                device.tick(System.currentTimeMillis());
+            } catch(RuntimeException ex) {
+                stats.failed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * This class names the threads of the scheduler, so they are not counted as threads of the broker.
+     */
+    private static class FleetThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "fleet-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
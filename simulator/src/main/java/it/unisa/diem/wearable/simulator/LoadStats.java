@@ -0,0 +1,36 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.unisa.diem.wearable.metrics.LatencyHistogram;
+
+/**
+ * This class collects the statistics of the fleet, updated by the threads of all the devices without locks.
+ * The latencies are in microseconds, from the call of publish() to the completion of the publication,
+ * i.e. the acknowledgement of the broker for QoS 1 and 2, or the write on the socket for QoS 0.
+ */
+public class LoadStats {
+
+    public final AtomicLong published = new AtomicLong();
+    public final AtomicLong publishedBytes = new AtomicLong();
+    public final AtomicLong completed = new AtomicLong();
+    public final AtomicLong failed = new AtomicLong();
+    public final AtomicLong received = new AtomicLong();
+    public final AtomicLong receivedBytes = new AtomicLong();
+    public final AtomicLong samples = new AtomicLong();
+    public final LatencyHistogram publishLatency = new LatencyHistogram();
+
+    /**
+     * This method resets the statistics, e.g. at the end of the warm-up.
+     */
+    public void reset() {
+        published.set(0);
+        publishedBytes.set(0);
+        completed.set(0);
+        failed.set(0);
+        received.set(0);
+        receivedBytes.set(0);
+        samples.set(0);
+        publishLatency.snapshotAndReset();
+    }
+}
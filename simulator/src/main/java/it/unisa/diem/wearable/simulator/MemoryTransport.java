@@ -0,0 +1,61 @@
+package it.unisa.diem.wearable.simulator;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import it.unisa.diem.wearable.communication.Publisher;
+import it.unisa.diem.wearable.communication.StreamPublisher;
+
+/**
+ * This class replaces the broker during a replay: every publication is completed immediately, on the thread
+ * of the pipeline, so the replay is limited only by the processing of the samples.
+ *
+ * The transport keeps a CRC32 digest of the topics and the payloads in the order of their publication,
+ * so two replays of the same trace with the same options can be compared: the pipeline runs on the time
+ * of the trace, so the digest does not depend on the speed of the replay. The latest topics are left out
+ * of the digest, because their rate is limited on the wall clock.
+ */
+public class MemoryTransport implements Publisher {
+
+    private final LoadStats stats;
+    private final CRC32 digest;
+    private long digestMessages;
+
+    public MemoryTransport(LoadStats stats) {
+        this.stats = stats;
+        this.digest = new CRC32();
+    }
+
+    @Override
+    public synchronized void publish(String topic, byte[] payload, int qos, boolean retained,
+                                     IMqttActionListener cbPublish) {
+        stats.published.incrementAndGet();
+        stats.publishedBytes.addAndGet(payload.length);
+        if(!topic.endsWith(StreamPublisher.LATEST_SUFFIX)) {
+            digest.update(topic.getBytes(StandardCharsets.UTF_8));
+            digest.update(payload);
+            digestMessages++;
+        }
+        stats.completed.incrementAndGet();
+        stats.received.incrementAndGet();
+        stats.receivedBytes.addAndGet(payload.length);
+        if(cbPublish != null)
+            cbPublish.onSuccess(null);
+    }
+
+    /**
+     * @return the digest of the messages published so far, except the latest topics
+     */
+    public synchronized long getDigest() {
+        return digest.getValue();
+    }
+
+    /**
+     * @return the number of messages in the digest
+     */
+    public synchronized long getDigestMessages() {
+        return digestMessages;
+    }
+}
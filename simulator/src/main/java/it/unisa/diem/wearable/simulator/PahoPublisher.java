@@ -0,0 +1,83 @@
+package it.unisa.diem.wearable.simulator;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import it.unisa.diem.wearable.communication.Publisher;
+
+/**
+ * This class publishes the payloads of the pipeline of a simulated device through the JVM Paho client,
+ * in place of the Android MQTTClient, and measures the latency of every publication.
+ */
+public class PahoPublisher implements Publisher {
+
+    private final IMqttAsyncClient client;
+    private final LoadStats stats;
+
+    public PahoPublisher(IMqttAsyncClient client, LoadStats stats) {
+        this.client = client;
+        this.stats = stats;
+    }
+
+    @Override
+    public void publish(String topic, byte[] payload, int qos, boolean retained, IMqttActionListener cbPublish) {
+        stats.published.incrementAndGet();
+        stats.publishedBytes.addAndGet(payload.length);
+        try {
+            client.publish(topic, payload, qos, retained, new Publication(System.nanoTime(), cbPublish),
+                    CompletionListener.INSTANCE);
+        } catch (MqttException e) {
+            stats.failed.incrementAndGet();
+            if(cbPublish != null)
+                cbPublish.onFailure(null, e);
+        }
+    }
+
+    /**
+     * This class is the context of a publication: its start time and the listener of the pipeline.
+     */
+    private class Publication {
+
+        final long startNanos;
+        final IMqttActionListener cbPublish;
+
+        Publication(long startNanos, IMqttActionListener cbPublish) {
+            this.startNanos = startNanos;
+            this.cbPublish = cbPublish;
+        }
+
+        void complete(IMqttToken token, Throwable exception) {
+            if(exception == null) {
+                stats.completed.incrementAndGet();
+                stats.publishLatency.record((System.nanoTime() - startNanos) / 1000);
+                if(cbPublish != null)
+                    cbPublish.onSuccess(token);
+            } else {
+                stats.failed.incrementAndGet();
+                if(cbPublish != null)
+                    cbPublish.onFailure(token, exception);
+            }
+        }
+    }
+
+    /**
+     * This class completes the publications, whose context is the user context of their token.
+     */
+    private static class CompletionListener implements IMqttActionListener {
+
+        static final CompletionListener INSTANCE = new CompletionListener();
+
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+            ((Publication) asyncActionToken.getUserContext()).complete(asyncActionToken, null);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+            ((Publication) asyncActionToken.getUserContext()).complete(asyncActionToken,
+                    exception != null ? exception : new MqttException(MqttException.REASON_CODE_UNEXPECTED_ERROR));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class holds a trace recorded on a real device, loaded once and shared by all the simulated devices.
+ *
+ * The trace is a CSV file with a sample per line, as "ax,ay,az" or "ax,ay,az,azimuth,pitch,roll";
+ * the empty lines and the ones starting with '#' are skipped. Every device reads the trace
+ * through its own cursor, from a different position, so the devices are not synchronized.
+ */
+public class RecordedTrace {
+
+    private final float[] accelerometer;
+    private final float[] orientation;
+    private final int samples;
+
+    private RecordedTrace(float[] accelerometer, float[] orientation, int samples) {
+        this.accelerometer = accelerometer;
+        this.orientation = orientation;
+        this.samples = samples;
+    }
+
+    /**
+     * @param file
+     * @return the trace
+     * @throws IOException if the file cannot be read or it has no valid samples
+     */
+    public static RecordedTrace load(File file) throws IOException {
+        float[] accelerometer = new float[3 * 1024];
+        float[] orientation = new float[3 * 1024];
+        int samples = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8));
+        try {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] values = line.split("\\s*,\\s*");
+                if(values.length != 3 && values.length != 6)
+                    throw new IOException("Invalid sample at line " + lineNumber + " of " + file);
+                if(3 * samples + 3 > accelerometer.length) {
+                    accelerometer = Arrays.copyOf(accelerometer, 2 * accelerometer.length);
+                    orientation = Arrays.copyOf(orientation, 2 * orientation.length);
+                }
+                try {
+                    for(int i = 0; i < values.length; i++) {
+                        float value = Float.parseFloat(values[i]);
+                        if(i < 3)
+                            accelerometer[3 * samples + i] = value;
+                        else
+                            orientation[3 * samples + i - 3] = value;
+                    }
+                } catch(NumberFormatException ex) {
+                    throw new IOException("Invalid sample at line " + lineNumber + " of " + file);
+                }
+                samples++;
+            }
+        } finally {
+            reader.close();
+        }
+        if(samples == 0)
+            throw new IOException("The trace " + file + " has no samples!");
+        return new RecordedTrace(accelerometer, orientation, samples);
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @param start: the index of the first sample, modulo the number of samples
+     * @return a new cursor on the trace
+     */
+    public TraceSource newCursor(int start) {
+        return new Cursor(Math.floorMod(start, samples));
+    }
+
+    /**
+     * This class reads the trace from a position and starts again from the beginning after the last sample.
+     */
+    private class Cursor implements TraceSource {
+
+        private int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public void next(float[] accelerometerValues, float[] orientationValues) {
+            System.arraycopy(accelerometer, 3 * position, accelerometerValues, 0, 3);
+            System.arraycopy(orientation, 3 * position, orientationValues, 0, 3);
+            if(++position == samples)
+                position = 0;
+        }
+    }
+}
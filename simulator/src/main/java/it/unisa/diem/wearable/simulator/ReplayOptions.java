@@ -0,0 +1,150 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.io.File;
+
+/**
+ * This class holds the options of the replay of a trace, parsed from the command line as "--name value".
+ * The defaults of the pipeline are the values of the "configuration.xml" resource of the application.
+ */
+public class ReplayOptions {
+
+    /** The transports which replace the MQTT client of the application */
+    public enum Transport {
+        MEMORY,
+        BROKER
+    }
+
+    public File trace;
+    /** The ratio between the time of the trace and the time of the replay, or 0 to replay as fast as possible */
+    public double speed = 0;
+    public Transport transport = Transport.MEMORY;
+    public String deviceID = "replay";
+    public int samplingPeriodMillis = 200;
+    public String codec = "text";
+    public int batchMaxSamples = 50;
+    public long batchMaxDelayMillis = 200;
+    public String accelerometerOutput = "raw";
+    public String accelerometerDeadBand = "0.05";
+    public String orientationDeadBand = "0.5";
+    public long deadBandHeartbeatMillis = 5000;
+    public String sampleDelivery = "0,10000,16";
+    public String locationDelivery = "1,60000,0";
+    public float locationMaxAccuracy = 50;
+    public float locationMinDistance = 20;
+    /** The additional sensors, as "name:period,name:period", e.g. "gyroscope:100" */
+    public String extraSensors = "";
+    /** The URI of an external broker, or null to start the embedded one */
+    public String brokerURI;
+    public int brokerPort = 1883;
+    public String username, password;
+    public int maxInflight = 1000;
+
+    /**
+     * @param args
+     * @return the options
+     * @throws IllegalArgumentException if an option is unknown or its value is not valid
+     */
+    public static ReplayOptions parse(String[] args) {
+        ReplayOptions options = new ReplayOptions();
+        for(int i = 0; i < args.length; i += 2) {
+            if(i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            String value = args[i + 1];
+            switch(args[i]) {
+                case "--trace":
+                    options.trace = new File(value);
+                    break;
+                case "--speed":
+                    options.speed = parseSpeed(value);
+                    break;
+                case "--transport":
+                    options.transport = Transport.valueOf(value.trim().toUpperCase());
+                    break;
+                case "--device-id":
+                    options.deviceID = value;
+                    break;
+                case "--period":
+                    options.samplingPeriodMillis = Integer.parseInt(value);
+                    break;
+                case "--codec":
+                    options.codec = value;
+                    break;
+                case "--batch":
+                    options.batchMaxSamples = Integer.parseInt(value);
+                    break;
+                case "--batch-delay":
+                    options.batchMaxDelayMillis = Long.parseLong(value);
+                    break;
+                case "--output":
+                    options.accelerometerOutput = value;
+                    break;
+                case "--accelerometer-dead-band":
+                    options.accelerometerDeadBand = value;
+                    break;
+                case "--orientation-dead-band":
+                    options.orientationDeadBand = value;
+                    break;
+                case "--heartbeat":
+                    options.deadBandHeartbeatMillis = Long.parseLong(value);
+                    break;
+                case "--delivery":
+                    options.sampleDelivery = value;
+                    break;
+                case "--location-delivery":
+                    options.locationDelivery = value;
+                    break;
+                case "--location-accuracy":
+                    options.locationMaxAccuracy = Float.parseFloat(value);
+                    break;
+                case "--location-distance":
+                    options.locationMinDistance = Float.parseFloat(value);
+                    break;
+                case "--extra-sensors":
+                    options.extraSensors = value;
+                    break;
+                case "--broker":
+                    options.brokerURI = value;
+                    break;
+                case "--port":
+                    options.brokerPort = Integer.parseInt(value);
+                    break;
+                case "--username":
+                    options.username = value;
+                    break;
+                case "--password":
+                    options.password = value;
+                    break;
+                case "--max-inflight":
+                    options.maxInflight = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if(options.trace == null)
+            throw new IllegalArgumentException("Missing --trace");
+        if(options.samplingPeriodMillis <= 0 || options.batchMaxSamples <= 0 || options.batchMaxDelayMillis <= 0)
+            throw new IllegalArgumentException("The numeric options must be positive!");
+        if(options.username != null && options.password == null)
+            options.password = "";
+        return options;
+    }
+
+    /**
+     * This method parses the speed of the replay: "realtime", "max" (as fast as possible) or a factor like "10"
+     * or "10x".
+     */
+    static double parseSpeed(String value) {
+        String speed = value.trim().toLowerCase();
+        if(speed.equals("realtime"))
+            return 1;
+        if(speed.equals("max"))
+            return 0;
+        if(speed.endsWith("x"))
+            speed = speed.substring(0, speed.length() - 1);
+        double factor = Double.parseDouble(speed);
+        if(!(factor > 0) || Double.isInfinite(factor))
+            throw new IllegalArgumentException("Invalid speed: " + value);
+        return factor;
+    }
+}
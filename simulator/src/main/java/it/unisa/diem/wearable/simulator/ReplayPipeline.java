@@ -0,0 +1,177 @@
+package it.unisa.diem.wearable.simulator;
+
+import it.unisa.diem.wearable.buffer.OverflowPolicy;
+import it.unisa.diem.wearable.buffer.SampleRingBuffer;
+import it.unisa.diem.wearable.codec.FrameCodecs;
+import it.unisa.diem.wearable.communication.DeliveryPolicy;
+import it.unisa.diem.wearable.communication.Publisher;
+import it.unisa.diem.wearable.communication.StreamPublisher;
+import it.unisa.diem.wearable.features.FeatureExtractor;
+import it.unisa.diem.wearable.features.FeaturePublisher;
+import it.unisa.diem.wearable.location.LocationEncoder;
+import it.unisa.diem.wearable.location.LocationFilter;
+import it.unisa.diem.wearable.pipeline.BatchPolicy;
+import it.unisa.diem.wearable.pipeline.DeadBandFilter;
+import it.unisa.diem.wearable.pipeline.SampleBatcher;
+import it.unisa.diem.wearable.pipeline.SampleDecimator;
+import it.unisa.diem.wearable.pipeline.SensorPipeline;
+
+/**
+ * This class builds the publishing pipeline of the SensingService on the JVM, with the same stages and topics:
+ * the ring buffer, the decimators, the dead-band filters and the batchers of the accelerometer, of the orientation
+ * and of the additional sensors, the feature extractor of the accelerometer and the filter of the locations.
+ *
+ * The pipeline has no clock of its own: the replay gives it the time of the trace, so it behaves like
+ * on the device when the events were recorded.
+ */
+public class ReplayPipeline {
+
+    // The types of android.hardware.Sensor, which is not available on the JVM
+    private static final int ACCELEROMETER = 1;
+    private static final int MAGNETIC_FIELD = 2;
+    private static final int ORIENTATION = 3;
+    private static final int GYROSCOPE = 4;
+    private static final int STEP_COUNTER = 19;
+    private static final int HEART_RATE = 21;
+    // The defaults of the resources of the application which are not options of the replay
+    private static final int BUFFER_CAPACITY = 1024;
+    private static final int FEATURE_WINDOW = 2000, FEATURE_HOP = 1000, FEATURE_CAPACITY = 512;
+    private static final String EXTRA_SENSOR_DELIVERY = "0,10000,16";
+
+    private final String deviceID;
+    private final SensorPipeline pipeline;
+    private final StreamPublisher locationPublisher;
+    private final LocationFilter locationFilter;
+    private final LocationEncoder locationEncoder;
+    private long locations;
+
+    /**
+     * @param options: the options of the replay
+     * @param publisher: the transport of the messages
+     * @throws IllegalArgumentException if an option of the pipeline is not valid
+     */
+    public ReplayPipeline(ReplayOptions options, Publisher publisher) {
+        this.deviceID = options.deviceID;
+        this.pipeline = new SensorPipeline(new SampleRingBuffer(BUFFER_CAPACITY, OverflowPolicy.DROP_OLDEST));
+        BatchPolicy batchPolicy = new BatchPolicy(options.batchMaxSamples, options.batchMaxDelayMillis);
+        DeliveryPolicy sampleDelivery = DeliveryPolicy.parse(options.sampleDelivery);
+
+        SampleBatcher accelerometerBatcher = new SampleBatcher(deviceID + "/accelerometer",
+                FrameCodecs.forName(options.codec), batchPolicy, new StreamPublisher(publisher, sampleDelivery),
+                0, false, null);
+        pipeline.addStream(ACCELEROMETER, new SampleDecimator(options.samplingPeriodMillis,
+                SampleDecimator.Mode.AVERAGE, new DeadBandFilter(DeadBandFilter.parseThresholds(
+                        options.accelerometerDeadBand), options.deadBandHeartbeatMillis, accelerometerBatcher)),
+                accelerometerBatcher);
+        pipeline.addFeatures(ACCELEROMETER, new FeatureExtractor(FEATURE_WINDOW, FEATURE_HOP, FEATURE_CAPACITY,
+                true, new FeaturePublisher(deviceID + "/accelerometer/features",
+                        new StreamPublisher(publisher, sampleDelivery), 0, false, null)));
+        pipeline.setOutput(SensorPipeline.Output.parse(options.accelerometerOutput));
+
+        SampleBatcher orientationBatcher = new SampleBatcher(deviceID + "/orientation",
+                FrameCodecs.forName(options.codec), batchPolicy, new StreamPublisher(publisher, sampleDelivery),
+                0, false, null);
+        pipeline.addStream(ORIENTATION, new SampleDecimator(options.samplingPeriodMillis,
+                SampleDecimator.Mode.LAST, new DeadBandFilter(DeadBandFilter.parseThresholds(
+                        options.orientationDeadBand), options.deadBandHeartbeatMillis, orientationBatcher)),
+                orientationBatcher);
+        addExtraSensors(options, publisher, batchPolicy);
+
+        this.locationPublisher = new StreamPublisher(publisher, DeliveryPolicy.parse(options.locationDelivery));
+        this.locationFilter = new LocationFilter(options.locationMaxAccuracy, options.locationMinDistance);
+        this.locationEncoder = new LocationEncoder();
+    }
+
+    private void addExtraSensors(ReplayOptions options, Publisher publisher, BatchPolicy batchPolicy) {
+        DeliveryPolicy delivery = DeliveryPolicy.parse(EXTRA_SENSOR_DELIVERY);
+        for(String sensor : options.extraSensors.split(",")) {
+            if(sensor.trim().isEmpty())
+                continue;
+            String[] nameAndPeriod = sensor.trim().split(":");
+            int type = parseSensorType(nameAndPeriod[0]);
+            if(type < 0 || nameAndPeriod.length != 2)
+                throw new IllegalArgumentException("Invalid additional sensor: " + sensor);
+            String name = nameAndPeriod[0].trim();
+            int period = Integer.parseInt(nameAndPeriod[1].trim());
+
+            SampleBatcher batcher = new SampleBatcher(deviceID + "/" + name, FrameCodecs.forName(options.codec),
+                    batchPolicy, new StreamPublisher(publisher, delivery), 0, false, null);
+            pipeline.addStream(type, new SampleDecimator(period, type == STEP_COUNTER ?
+                    SampleDecimator.Mode.LAST : SampleDecimator.Mode.AVERAGE, batcher), batcher);
+            pipeline.setSamplingPeriod(type, period);
+        }
+    }
+
+    private static int parseSensorType(String name) {
+        switch(name.trim()) {
+            case "gyroscope":
+                return GYROSCOPE;
+            case "magnetometer":
+                return MAGNETIC_FIELD;
+            case "heartRate":
+                return HEART_RATE;
+            case "stepCounter":
+                return STEP_COUNTER;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * This method gives a sample to the pipeline, like the thread of the sensor events and the DrainTask
+     * of the service. The samples of the sensors without a stream are ignored.
+     */
+    public void offer(int sensorType, long timestampNanos, float x, float y, float z) {
+        pipeline.offer(sensorType, timestampNanos, x, y, z);
+        pipeline.drain();
+    }
+
+    /**
+     * This method filters a location and publishes it on deviceID/location, like the location callback
+     * of the service.
+     *
+     * @param timestampNanos: the epoch time of the fix
+     * @param latitude
+     * @param longitude
+     * @param accuracy: the accuracy radius, in meters, or a negative value if it is unknown
+     * @param timeMillis: the time of the fix declared by the provider
+     */
+    public void offerLocation(long timestampNanos, double latitude, double longitude, float accuracy,
+                              long timeMillis) {
+        if(!locationFilter.accept(latitude, longitude, accuracy, timeMillis))
+            return;
+        locationPublisher.publish(deviceID + "/location", locationEncoder.encode(timestampNanos, latitude, longitude),
+                null, timestampNanos / 1000000L);
+        locations++;
+    }
+
+    /**
+     * This method publishes the windows older than the maximum delay, like the BatchFlushTask of the service.
+     *
+     * @param nowMillis: the time of the trace
+     */
+    public void flushExpired(long nowMillis) {
+        pipeline.flushExpired(nowMillis);
+    }
+
+    /**
+     * This method publishes all the pending samples, at the end of the trace.
+     */
+    public void flush() {
+        pipeline.flush();
+    }
+
+    /**
+     * @return the number of locations published
+     */
+    public long getLocations() {
+        return locations;
+    }
+
+    /**
+     * @return the number of locations discarded by the filter
+     */
+    public long getDiscardedLocations() {
+        return locationFilter.getDiscardedCount();
+    }
+}
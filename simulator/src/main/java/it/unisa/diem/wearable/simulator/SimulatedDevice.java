@@ -0,0 +1,221 @@
+package it.unisa.diem.wearable.simulator;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+import it.unisa.diem.wearable.codec.FrameCodecs;
+import it.unisa.diem.wearable.communication.DeliveryPolicy;
+import it.unisa.diem.wearable.communication.MessageHandler;
+import it.unisa.diem.wearable.communication.StreamPublisher;
+import it.unisa.diem.wearable.communication.TopicRouter;
+import it.unisa.diem.wearable.location.LocationEncoder;
+import it.unisa.diem.wearable.pipeline.BatchPolicy;
+import it.unisa.diem.wearable.pipeline.SampleBatcher;
+import it.unisa.diem.wearable.pipeline.SampleDecimator;
+
+/**
+ * This class simulates a wearable with the topics of the application: it registers its ID on
+ * broadcastTopic/newDevice, publishes the windows of the accelerometer and of the orientation on
+ * deviceID/accelerometer and deviceID/orientation through the decimators and the batchers of the app,
+ * publishes its location on deviceID/location and applies the sampling period and the enabled sensors
+ * sent by the coordinator on the broadcastTopic.
+ *
+ * The device has no thread of its own: tick() is called by a scheduler shared by the fleet,
+ * once per sensor event, and the executions of the same device never overlap.
+ */
+public class SimulatedDevice {
+
+    private static final int ACCELEROMETER = 1;
+    private static final int ORIENTATION = 3;
+
+    private final String deviceID;
+    private final String broadcastTopic;
+    private final MqttAsyncClient client;
+    private final TraceSource trace;
+    private final LoadStats stats;
+    private final TopicRouter router;
+    private final SampleDecimator accelerometerDecimator, orientationDecimator;
+    private final SampleBatcher accelerometerBatcher, orientationBatcher;
+    private final StreamPublisher locationPublisher;
+    private final long locationIntervalMillis;
+    private final float[] accelerometer = new float[3];
+    private final float[] orientation = new float[3];
+    private final Random random;
+    private final LocationEncoder locationEncoder;
+    private volatile boolean accelerometerEnabled = true, orientationEnabled = true;
+    private long nextLocationMillis;
+    private double latitude, longitude;
+
+    /**
+     * @param options: the options of the fleet
+     * @param trace: the source of the samples of the device
+     * @param stats: the statistics of the fleet
+     * @param seed: the seed of the random walk of the location
+     * @throws MqttException if the client cannot be created
+     */
+    public SimulatedDevice(FleetOptions options, TraceSource trace, LoadStats stats, long seed) throws MqttException {
+        this.deviceID = UUID.randomUUID().toString();
+        this.broadcastTopic = options.broadcastTopic;
+        this.client = new MqttAsyncClient(options.brokerURI, deviceID, new MemoryPersistence());
+        this.trace = trace;
+        this.stats = stats;
+        this.random = new Random(seed);
+        this.locationEncoder = new LocationEncoder();
+        this.locationIntervalMillis = options.locationIntervalMillis;
+        this.latitude = 40.7725 + 0.01 * random.nextGaussian();
+        this.longitude = 14.7903 + 0.01 * random.nextGaussian();
+
+        PahoPublisher publisher = new PahoPublisher(client, stats);
+        BatchPolicy batchPolicy = new BatchPolicy(options.batchMaxSamples, options.batchMaxDelayMillis);
+        DeliveryPolicy delivery = DeliveryPolicy.parse(options.sampleDelivery);
+        accelerometerBatcher = new SampleBatcher(deviceID + "/accelerometer", FrameCodecs.forName(options.codec),
+                batchPolicy, new StreamPublisher(publisher, delivery), 0, false, null);
+        accelerometerDecimator = new SampleDecimator(options.samplingPeriodMillis, SampleDecimator.Mode.AVERAGE,
+                accelerometerBatcher);
+        orientationBatcher = new SampleBatcher(deviceID + "/orientation", FrameCodecs.forName(options.codec),
+                batchPolicy, new StreamPublisher(publisher, delivery), 0, false, null);
+        orientationDecimator = new SampleDecimator(options.samplingPeriodMillis, SampleDecimator.Mode.LAST,
+                orientationBatcher);
+        locationPublisher = new StreamPublisher(publisher, DeliveryPolicy.parse(options.locationDelivery));
+        router = createTopicRouter();
+    }
+
+    public String getDeviceID() {
+        return deviceID;
+    }
+
+    /**
+     * This method connects the device, subscribes to the configuration topics and registers the device.
+     *
+     * @param options
+     * @param timeoutMillis: the maximum time to wait for the connection and the subscriptions
+     * @throws MqttException if the device cannot connect
+     */
+    public void connect(FleetOptions options, long timeoutMillis) throws MqttException {
+        MqttConnectOptions connectOptions = new MqttConnectOptions();
+        connectOptions.setCleanSession(true);
+        connectOptions.setMaxInflight(options.maxInflight);
+        if(options.username != null) {
+            connectOptions.setUserName(options.username);
+            connectOptions.setPassword(options.password.toCharArray());
+        }
+        client.setCallback(new ConfigCallback());
+        client.connect(connectOptions).waitForCompletion(timeoutMillis);
+        for(String filter : router.getFilters())
+            client.subscribe(filter, 1).waitForCompletion(timeoutMillis);
+        client.publish(broadcastTopic + "/newDevice", deviceID.getBytes(StandardCharsets.UTF_8), 1, true);
+        nextLocationMillis = System.currentTimeMillis() + (long) (random.nextDouble() * locationIntervalMillis);
+    }
+
+    /**
+     * This method produces a sensor event and publishes the windows and the location which are due.
+     *
+     * @param nowMillis
+     */
+    public void tick(long nowMillis) {
+        trace.next(accelerometer, orientation);
+        long timestampNanos = nowMillis * 1000000L;
+        if(accelerometerEnabled) {
+            accelerometerDecimator.accept(ACCELEROMETER, timestampNanos, accelerometer[0], accelerometer[1],
+                    accelerometer[2]);
+            stats.samples.incrementAndGet();
+        }
+        if(orientationEnabled) {
+            orientationDecimator.accept(ORIENTATION, timestampNanos, orientation[0], orientation[1], orientation[2]);
+            stats.samples.incrementAndGet();
+        }
+        accelerometerBatcher.flushExpired(nowMillis);
+        orientationBatcher.flushExpired(nowMillis);
+
+        if(locationIntervalMillis > 0 && nowMillis >= nextLocationMillis) {
+            nextLocationMillis += locationIntervalMillis;
+            latitude += 0.00005 * random.nextGaussian();
+            longitude += 0.00005 * random.nextGaussian();
+            locationPublisher.publish(deviceID + "/location",
+                    locationEncoder.encode(timestampNanos, latitude, longitude), null, nowMillis);
+        }
+    }
+
+    /**
+     * This method publishes the pending samples and disconnects the device.
+     *
+     * @param timeoutMillis
+     */
+    public void disconnect(long timeoutMillis) {
+        accelerometerDecimator.flush();
+        orientationDecimator.flush();
+        accelerometerBatcher.flush();
+        orientationBatcher.flush();
+        try {
+            client.disconnect(timeoutMillis).waitForCompletion(timeoutMillis);
+        } catch (MqttException e) {
+            // The device is closed anyway
+        }
+        try {
+            client.close();
+        } catch (MqttException e) {
+            // The client is already closed
+        }
+    }
+
+    /**
+     * This method creates the routes of the configuration messages which are simulated.
+     */
+    private TopicRouter createTopicRouter() {
+        TopicRouter router = new TopicRouter();
+        router.addRoute(broadcastTopic + "/samplingPeriod", new MessageHandler() {
+            @Override
+            public void onMessage(String topic, MqttMessage message) {
+                try {
+                    int samplingPeriod = Integer.parseInt(message.toString().trim());
+                    accelerometerDecimator.setSamplingPeriod(samplingPeriod);
+                    orientationDecimator.setSamplingPeriod(samplingPeriod);
+                } catch(IllegalArgumentException ex) {
+                    // The device keeps its sampling period, like the application
+                }
+            }
+        });
+        router.addRoute(broadcastTopic + "/accelerometer", new MessageHandler() {
+            @Override
+            public void onMessage(String topic, MqttMessage message) {
+                accelerometerEnabled = Boolean.parseBoolean(message.toString().trim());
+            }
+        });
+        router.addRoute(broadcastTopic + "/orientation", new MessageHandler() {
+            @Override
+            public void onMessage(String topic, MqttMessage message) {
+                orientationEnabled = Boolean.parseBoolean(message.toString().trim());
+            }
+        });
+        return router;
+    }
+
+    /**
+     * This class passes the configuration messages to the router.
+     */
+    private class ConfigCallback implements MqttCallback {
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            stats.failed.incrementAndGet();
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            router.route(topic, message);
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package it.unisa.diem.wearable.simulator;
+
+import java.util.Random;
+
+/**
+ * This class generates a synthetic trace of a walking wearer: the acceleration oscillates at the step frequency
+ * around the gravity, with Gaussian noise, and the azimuth drifts slowly. Every device has its own seed,
+ * so the devices of the fleet do not publish the same values.
+ */
+public class SyntheticTrace implements TraceSource {
+
+    private static final double GRAVITY = 9.80665;
+
+    private final Random random;
+    private final double sampleIntervalSeconds;
+    private final double stepFrequency;
+    private final double amplitude;
+    private double time;
+    private double azimuth;
+
+    /**
+     * @param seed
+     * @param rateHz: the rate of the samples
+     */
+    public SyntheticTrace(long seed, double rateHz) {
+        this.random = new Random(seed);
+        this.sampleIntervalSeconds = 1 / rateHz;
+        this.stepFrequency = 1.6 + 0.6 * random.nextDouble();
+        this.amplitude = 1 + 2 * random.nextDouble();
+        this.time = random.nextDouble() * 10;
+        this.azimuth = random.nextDouble() * 360;
+    }
+
+    @Override
+    public void next(float[] accelerometer, float[] orientation) {
+        time += sampleIntervalSeconds;
+        double phase = 2 * Math.PI * stepFrequency * time;
+        accelerometer[0] = (float) (amplitude * Math.sin(phase) + 0.05 * random.nextGaussian());
+        accelerometer[1] = (float) (0.3 * amplitude * Math.sin(phase / 2) + 0.05 * random.nextGaussian());
+        accelerometer[2] = (float) (GRAVITY + 0.5 * amplitude * Math.cos(phase) + 0.05 * random.nextGaussian());
+
+        azimuth = (azimuth + 0.2 * random.nextGaussian() + 360) % 360;
+        orientation[0] = (float) azimuth;
+        orientation[1] = (float) (5 * Math.sin(phase) + random.nextGaussian());
+        orientation[2] = (float) (3 * Math.cos(phase) + random.nextGaussian());
+    }
+}
@@ -0,0 +1,217 @@
+package it.unisa.diem.wearable.simulator;
+
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import it.unisa.diem.wearable.communication.Publisher;
+import it.unisa.diem.wearable.metrics.LatencyHistogram;
+import it.unisa.diem.wearable.trace.TraceEvent;
+import it.unisa.diem.wearable.trace.TraceReader;
+
+/**
+ * This class replays a trace recorded by the application (files/traces/*.wtr) through the publishing pipeline
+ * of the application, on the JVM, and prints a report.
+ *
+ * The pipeline runs on the time of the trace: the samples keep their timestamps and the windows are flushed
+ * at the cadence of the BatchFlushTask of the service, computed on the timestamps, so the published messages
+ * do not depend on the speed of the replay. The speed only decides how the replay waits between the events:
+ * in real time, N times faster, or not at all. The messages are published through a MemoryTransport,
+ * which measures the cost of the pipeline alone and computes a digest of the messages, or through a broker,
+ * the embedded one or an external one, with a subscriber which counts them end-to-end.
+ */
+public class TraceReplay {
+
+    private static final long TIMEOUT_MS = 10000;
+    /** The replay waits only if it is ahead of the trace by at least this time, so close events are not delayed */
+    private static final long MIN_SLEEP_NANOS = 1000000L;
+
+    public static void main(String[] args) throws Exception {
+        ReplayOptions options;
+        try {
+            options = ReplayOptions.parse(args);
+        } catch(IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: TraceReplay --trace file.wtr [--speed realtime|N|max] " +
+                    "[--transport memory|broker] [--device-id id] [--period ms] " +
+                    "[--codec text|binary|delta|delta-deflate] [--batch N] [--batch-delay ms] " +
+                    "[--output raw|features|both] [--accelerometer-dead-band t] [--orientation-dead-band t] " +
+                    "[--heartbeat ms] [--delivery qos,latest,inflight] [--location-delivery qos,latest,inflight] " +
+                    "[--location-accuracy m] [--location-distance m] [--extra-sensors name:period,...] " +
+                    "[--broker tcp://host:port | --port N] [--username u --password p] [--max-inflight N]");
+            System.exit(2);
+            return;
+        }
+        new TraceReplay(options).run();
+    }
+
+    private final ReplayOptions options;
+    private final LoadStats stats;
+    private long events, locations;
+    private long firstNanos, lastNanos;
+
+    public TraceReplay(ReplayOptions options) {
+        this.options = options;
+        this.stats = new LoadStats();
+    }
+
+    /**
+     * This method replays the trace and prints the report.
+     */
+    public void run() throws IOException, MqttException, InterruptedException {
+        EmbeddedBroker broker = null;
+        CoordinatorProbe probe = null;
+        MqttAsyncClient client = null;
+        MemoryTransport memory = null;
+        Publisher publisher;
+        String brokerURI = options.brokerURI;
+        if(options.transport == ReplayOptions.Transport.BROKER) {
+            if(brokerURI == null) {
+                broker = new EmbeddedBroker(options.brokerPort);
+                broker.start();
+                brokerURI = broker.getURI();
+            }
+            probe = new CoordinatorProbe(brokerURI, new String[]{options.deviceID + "/#"}, stats);
+            probe.connect(options.username, options.password, TIMEOUT_MS);
+            client = connect(brokerURI);
+            publisher = new PahoPublisher(client, stats);
+        } else {
+            memory = new MemoryTransport(stats);
+            publisher = memory;
+        }
+        ReplayPipeline pipeline = new ReplayPipeline(options, publisher);
+
+        TraceReader reader = new TraceReader(new FileInputStream(options.trace));
+        long startNanos = System.nanoTime();
+        try {
+            replay(reader, pipeline, startNanos);
+        } finally {
+            reader.close();
+        }
+        double replaySeconds = (System.nanoTime() - startNanos) / 1e9;
+        if(client != null)
+            awaitDelivery();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        printReport(reader.getStartMillis(), replaySeconds, seconds, pipeline, memory, brokerURI,
+                stats.publishLatency.snapshotAndReset());
+
+        if(client != null) {
+            try {
+                client.disconnect(TIMEOUT_MS).waitForCompletion(TIMEOUT_MS);
+                client.close();
+            } catch(MqttException e) {
+                // The client is closed anyway
+            }
+        }
+        if(probe != null)
+            probe.disconnect(TIMEOUT_MS);
+        if(broker != null)
+            broker.stop();
+    }
+
+    private MqttAsyncClient connect(String brokerURI) throws MqttException {
+        MqttAsyncClient client = new MqttAsyncClient(brokerURI, options.deviceID, new MemoryPersistence());
+        MqttConnectOptions connectOptions = new MqttConnectOptions();
+        connectOptions.setCleanSession(true);
+        connectOptions.setMaxInflight(options.maxInflight);
+        if(options.username != null) {
+            connectOptions.setUserName(options.username);
+            connectOptions.setPassword(options.password.toCharArray());
+        }
+        client.connect(connectOptions).waitForCompletion(TIMEOUT_MS);
+        return client;
+    }
+
+    /**
+     * This method gives the events of the trace to the pipeline, in the order in which they were recorded.
+     * A location can be older than the samples recorded before it, because the provider delivers the fixes
+     * late, so the time of the trace is the latest timestamp read so far and it never goes back.
+     */
+    private void replay(TraceReader reader, ReplayPipeline pipeline, long startNanos)
+            throws IOException, InterruptedException {
+        long flushIntervalMillis = options.batchMaxDelayMillis;
+        long nextFlushMillis = 0;
+        TraceEvent event = new TraceEvent();
+        while(reader.next(event)) {
+            long timestampNanos = event.getTimestampNanos();
+            if(events == 0) {
+                firstNanos = lastNanos = timestampNanos;
+                nextFlushMillis = timestampNanos / 1000000L + flushIntervalMillis;
+            }
+            lastNanos = Math.max(lastNanos, timestampNanos);
+            if(options.speed > 0) {
+                long waitNanos = startNanos + (long) ((lastNanos - firstNanos) / options.speed) - System.nanoTime();
+                if(waitNanos >= MIN_SLEEP_NANOS)
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+
+            // The periodic flushes which were due before the event
+            long nowMillis = lastNanos / 1000000L;
+            for(; nextFlushMillis <= nowMillis; nextFlushMillis += flushIntervalMillis)
+                pipeline.flushExpired(nextFlushMillis);
+
+            if(event.getType() == TraceEvent.Type.SAMPLE) {
+                pipeline.offer(event.getSensorType(), timestampNanos, event.getX(), event.getY(), event.getZ());
+                stats.samples.incrementAndGet();
+            } else {
+                pipeline.offerLocation(timestampNanos, event.getLatitude(), event.getLongitude(),
+                        event.getAccuracy(), event.getTimeMillis());
+                locations++;
+            }
+            events++;
+        }
+        pipeline.flush();
+    }
+
+    /**
+     * This method waits until the publications are completed and the subscriber has received them,
+     * at most for TIMEOUT_MS.
+     */
+    private void awaitDelivery() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while(System.currentTimeMillis() < deadline && (stats.completed.get() + stats.failed.get() <
+                stats.published.get() || stats.received.get() < stats.completed.get()))
+            Thread.sleep(10);
+    }
+
+    private void printReport(long traceStartMillis, double replaySeconds, double seconds, ReplayPipeline pipeline,
+                             MemoryTransport memory, String brokerURI, LatencyHistogram.Snapshot latency) {
+        double traceSeconds = (lastNanos - firstNanos) / 1e9;
+        System.out.println("=== Trace replay report ===");
+        System.out.printf(Locale.ROOT, "trace: %s, recorded at %s, %d events (%d samples, %d locations), %.1f s%n",
+                options.trace, new SimpleDateFormat("dd.MM.yy HH:mm:ss", Locale.ROOT).format(
+                        new Date(traceStartMillis)), events, stats.samples.get(), locations, traceSeconds);
+        System.out.printf(Locale.ROOT, "speed: %s, transport: %s, codec: %s, period: %d ms, " +
+                        "batch: %d samples / %d ms, output: %s%n",
+                options.speed > 0 ? options.speed + "x" : "max",
+                memory != null ? "memory" : "broker " + brokerURI, options.codec, options.samplingPeriodMillis,
+                options.batchMaxSamples, options.batchMaxDelayMillis, options.accelerometerOutput);
+        System.out.printf(Locale.ROOT, "replayed in:     %12.3f s (%.1fx the time of the trace)%n", replaySeconds,
+                replaySeconds > 0 ? traceSeconds / replaySeconds : Double.POSITIVE_INFINITY);
+        System.out.printf(Locale.ROOT, "sensor events:   %12.1f events/s%n", events / replaySeconds);
+        System.out.printf(Locale.ROOT, "published:       %12d msg %12.1f msg/s %12.1f kB/s%n",
+                stats.published.get(), stats.published.get() / replaySeconds,
+                stats.publishedBytes.get() / replaySeconds / 1024);
+        System.out.printf(Locale.ROOT, "locations:       %12d published, %d discarded by the filter%n",
+                pipeline.getLocations(), pipeline.getDiscardedLocations());
+        if(memory != null) {
+            System.out.printf(Locale.ROOT, "digest:          %08x over %d messages (latest topics excluded)%n",
+                    memory.getDigest(), memory.getDigestMessages());
+            return;
+        }
+        System.out.printf(Locale.ROOT, "received:        %12d msg %12.1f kB/s (end-to-end, in %.3f s)%n",
+                stats.received.get(), stats.receivedBytes.get() / seconds / 1024, seconds);
+        System.out.printf(Locale.ROOT, "failed:          %12d%n", stats.failed.get());
+        System.out.printf(Locale.ROOT, "publish latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms (%d publications)%n",
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getMax() / 1000.0, latency.getCount());
+    }
+}
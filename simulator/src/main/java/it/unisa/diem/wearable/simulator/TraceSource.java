@@ -0,0 +1,16 @@
+package it.unisa.diem.wearable.simulator;
+
+/**
+ * This interface describes the source of the sensor samples of a simulated device.
+ */
+public interface TraceSource {
+
+    /**
+     * This method produces the next sample of the trace, which never ends: a recorded trace starts again
+     * from the beginning after its last sample.
+     *
+     * @param accelerometer: the array which receives the acceleration [x, y, z], in m/s^2
+     * @param orientation: the array which receives the orientation [azimuth, pitch, roll], in degrees
+     */
+    public void next(float[] accelerometer, float[] orientation);
+}